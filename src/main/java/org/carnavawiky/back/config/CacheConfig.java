@@ -0,0 +1,54 @@
+package org.carnavawiky.back.config;
+
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.jcache.JCacheCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Cachés de lectura (Ehcache vía JCache, regiones definidas en ehcache.xml).
+ * Los nombres de región se usan en los @Cacheable / @CacheEvict de los servicios.
+ *
+ * Las respuestas llevan nombres desnormalizados de otras entidades (p. ej. PremioResponse
+ * incluye el nombre de la agrupación y del concurso), así que cada escritura desaloja su
+ * propia clave y, solo si ese dato cambia, las fichas que lo muestran (por clave, con
+ * CachesDependientes) y los listados que lo muestran:
+ *   Localidad  -> concursos (versión del listado), concurso_by_id, agrupacion_by_id, persona_by_id
+ *   Concurso   -> ediciones, premios, edicion_by_id, premio_by_id
+ *   Edicion    -> premios, premio_by_id
+ *   Agrupacion -> premios, premio_by_id
+ *   Comentario aprobado -> agrupacion_by_id (valoración; desaloja ValoracionesAgrupaciones)
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String LOCALIDADES_LIST = "localidades_list";
+    public static final String LOCALIDAD_BY_ID = "localidad_by_id";
+    public static final String CONCURSOS_LIST = "concursos_list";
+    public static final String CONCURSO_BY_ID = "concurso_by_id";
+    public static final String EDICIONES_LIST = "ediciones_list";
+    public static final String EDICION_BY_ID = "edicion_by_id";
+    public static final String PREMIOS_LIST = "premios_list";
+    public static final String PREMIO_BY_ID = "premio_by_id";
+    public static final String AGRUPACION_BY_ID = "agrupacion_by_id";
+    public static final String PERSONA_BY_ID = "persona_by_id";
+
+    // Clave de los listados paginados: incluye la ordenación, que cambia el contenido de la página
+    public static final String CLAVE_LISTADO =
+            "#pageable.pageNumber + '_' + #pageable.pageSize + '_' + #pageable.sort + '_' + #search + '_' + #modoConteo";
+
+    // Listado de concursos: con la versión que avanza al renombrar una localidad que tiene concursos
+    public static final String CLAVE_LISTADO_CONCURSOS =
+            "@cachesDependientes.version('" + CONCURSOS_LIST + "') + '_' + " + CLAVE_LISTADO;
+
+    /**
+     * Los put/evict se aplican tras el commit de la transacción en curso: así una lectura
+     * concurrente no vuelve a cachear el dato anterior justo después del desalojo.
+     */
+    @Bean
+    public CacheManagerCustomizer<JCacheCacheManager> cacheTrasCommit() {
+        return cacheManager -> cacheManager.setTransactionAware(true);
+    }
+}
@@ -0,0 +1,10 @@
+package org.carnavawiky.back.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling // Habilita las tareas @Scheduled
+public class SchedulingConfig {
+    // De momento solo la reconciliación periódica del almacén de imágenes (ReconciliadorImagenes)
+}
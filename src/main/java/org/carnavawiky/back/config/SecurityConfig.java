@@ -44,10 +44,13 @@ public class SecurityConfig {
 
                         // 2. ACCESO PÚBLICO A IMÁGENES (Añadido/Modificado)
                         // Permitimos que CUALQUIERA pueda ver las imágenes (GET)
+                        // salvo el estado de las subidas reanudables, que es de quien sube
+                        .requestMatchers(HttpMethod.GET, "/api/imagenes/subidas/**").hasRole(ADMIN)
                         .requestMatchers(HttpMethod.GET, "/api/imagenes/**").permitAll()
 
                         // Protegemos la subida y el borrado solo para ADMIN
                         .requestMatchers(HttpMethod.POST, "/api/imagenes/**").hasRole(ADMIN)
+                        .requestMatchers(HttpMethod.PUT, "/api/imagenes/**").hasRole(ADMIN)
                         .requestMatchers(HttpMethod.DELETE, "/api/imagenes/**").hasRole(ADMIN)
 
                         // 3. Agrupaciones: Público ver, Admin editar
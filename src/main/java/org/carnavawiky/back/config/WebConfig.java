@@ -1,32 +1,24 @@
 package org.carnavawiky.back.config;
 
-import org.springframework.beans.factory.annotation.Value;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.format.FormatterRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
-import java.nio.file.Paths;
+import java.util.Locale;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
-    @Value("${file.upload.location}")
-    private String uploadLocation;
+    // Las imágenes (/api/imagenes/**) ya no se exponen como recursos estáticos:
+    // las sirve ImagenController a través de ServidorImagenes (Range, caché LRU y sendfile).
 
     /**
-     * Configura un manejador de recursos estáticos para exponer la carpeta de imágenes
-     * a través de una URL pública.
+     * Permite ?count=exacto|aproximado|omitido sin distinguir mayúsculas en los listados paginados.
      */
     @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // Convertimos la ruta del properties a una URI válida para Spring (file:/...)
-        String locationUri = Paths.get(uploadLocation).toUri().toString();
-
-        // Mapea las peticiones que entren por /api/imagenes/ al directorio físico
-        registry.addResourceHandler("/api/imagenes/**")
-                .addResourceLocations(locationUri);
-
-        // Es buena práctica llamar al super si no hay más configuraciones
-        WebMvcConfigurer.super.addResourceHandlers(registry);
+    public void addFormatters(FormatterRegistry registry) {
+        registry.addConverter(String.class, ModoConteo.class,
+                valor -> ModoConteo.valueOf(valor.trim().toUpperCase(Locale.ROOT)));
     }
-}
\ No newline at end of file
+}
@@ -3,7 +3,9 @@ package org.carnavawiky.back.controller;
 import jakarta.validation.Valid;
 import org.carnavawiky.back.dto.AgrupacionRequest;
 import org.carnavawiky.back.dto.AgrupacionResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse; // << IMPORTAR
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.dto.VideoResponse;
 import org.carnavawiky.back.service.AgrupacionService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -44,12 +46,28 @@ public class AgrupacionController {
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<PageResponse<AgrupacionResponse>> obtenerTodasAgrupaciones(
                                                                                       Pageable pageable, // Spring inyecta Pageable
-                                                                                      @RequestParam(required = false) String search) { // Parámetro de búsqueda
+                                                                                      @RequestParam(required = false) String search, // Parámetro de búsqueda
+                                                                                      @RequestParam(name = "count", defaultValue = "EXACTO") ModoConteo modoConteo) {
 
-        PageResponse<AgrupacionResponse> agrupacionesPage = agrupacionService.obtenerTodasAgrupaciones(pageable, search);
+        PageResponse<AgrupacionResponse> agrupacionesPage = agrupacionService.obtenerTodasAgrupaciones(pageable, search, modoConteo);
         return ResponseEntity.ok(agrupacionesPage);
     }
 
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (GET /scroll) - PAGINACIÓN KEYSET
+    // Para páginas profundas: se pasa el 'nextCursor' de la respuesta anterior en ?cursor=
+    // =======================================================
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<SliceResponse<AgrupacionResponse>> obtenerAgrupacionesPorCursor(
+            Pageable pageable,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String cursor) {
+
+        SliceResponse<AgrupacionResponse> slice = agrupacionService.obtenerAgrupacionesPorCursor(pageable, search, cursor);
+        return ResponseEntity.ok(slice);
+    }
+
     // =======================================================
     // 3. OBTENER POR ID (GET /ID)
     // Accesible por USER y ADMIN.
@@ -0,0 +1,44 @@
+package org.carnavawiky.back.controller;
+
+import org.carnavawiky.back.dto.CacheEstadisticasResponse;
+import org.carnavawiky.back.service.CacheEstadisticasService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/caches")
+@PreAuthorize("hasRole('ADMIN')")
+public class CacheAdminController {
+
+    @Autowired
+    private CacheEstadisticasService cacheEstadisticasService;
+
+    // =======================================================
+    // ESTADÍSTICAS DE TODAS LAS REGIONES (GET)
+    // =======================================================
+    @GetMapping
+    public ResponseEntity<List<CacheEstadisticasResponse>> obtenerEstadisticas() {
+        return ResponseEntity.ok(cacheEstadisticasService.obtenerEstadisticas());
+    }
+
+    // =======================================================
+    // ESTADÍSTICAS DE UNA REGIÓN (GET /{nombre})
+    // =======================================================
+    @GetMapping("/{nombre}")
+    public ResponseEntity<CacheEstadisticasResponse> obtenerEstadisticas(@PathVariable String nombre) {
+        return ResponseEntity.ok(cacheEstadisticasService.obtenerEstadisticas(nombre));
+    }
+
+    // =======================================================
+    // REINICIAR CONTADORES (DELETE /estadisticas)
+    // =======================================================
+    @DeleteMapping("/estadisticas")
+    public ResponseEntity<Void> reiniciarEstadisticas() {
+        cacheEstadisticasService.reiniciarEstadisticas();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -3,8 +3,15 @@ package org.carnavawiky.back.controller;
 import jakarta.validation.Valid;
 import org.carnavawiky.back.dto.ComentarioRequest;
 import org.carnavawiky.back.dto.ComentarioResponse;
+import org.carnavawiky.back.dto.HiloComentarioResponse;
+import org.carnavawiky.back.dto.ModeracionLoteRequest;
+import org.carnavawiky.back.dto.ModeracionLoteResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.service.ComentarioService;
+import org.carnavawiky.back.service.IngestaComentarios;
+import org.carnavawiky.back.service.ModeracionComentarios;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
@@ -12,6 +19,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/comentarios")
 public class ComentarioController {
@@ -19,6 +28,12 @@ public class ComentarioController {
     @Autowired
     private ComentarioService comentarioService;
 
+    @Autowired
+    private ModeracionComentarios moderacionComentarios;
+
+    @Autowired
+    private IngestaComentarios ingestaComentarios;
+
     // =======================================================
     // 1. CREAR (POST) - Abierto a USER y ADMIN (Comentario se crea como 'aprobado=false')
     // =======================================================
@@ -27,6 +42,13 @@ public class ComentarioController {
     public ResponseEntity<ComentarioResponse> crearComentario(
             @Valid @RequestBody ComentarioRequest request) {
 
+        // Ingesta diferida (picos de tráfico): validado, aceptado y en el diario, se guardará en el siguiente volcado.
+        // Las respuestas van siempre por el alta normal: necesitan la ruta de su padre
+        if (ingestaComentarios.activa() && request.getPadreId() == null) {
+            ingestaComentarios.encolar(request);
+            return ResponseEntity.accepted().build();
+        }
+
         ComentarioResponse nuevoComentario = comentarioService.crearComentario(request);
         return new ResponseEntity<>(nuevoComentario, HttpStatus.CREATED);
     }
@@ -39,12 +61,56 @@ public class ComentarioController {
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<PageResponse<ComentarioResponse>> obtenerTodosComentarios(
             Pageable pageable,
-            @RequestParam(required = false) String search) {
+            @RequestParam(required = false) String search,
+            @RequestParam(name = "count", defaultValue = "EXACTO") ModoConteo modoConteo) {
 
-        PageResponse<ComentarioResponse> comentariosPage = comentarioService.obtenerTodosComentarios(pageable, search);
+        PageResponse<ComentarioResponse> comentariosPage = comentarioService.obtenerTodosComentarios(pageable, search, modoConteo);
         return ResponseEntity.ok(comentariosPage);
     }
 
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (GET /scroll) - PAGINACIÓN KEYSET
+    // Para páginas profundas: se pasa el 'nextCursor' de la respuesta anterior en ?cursor=
+    // =======================================================
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<SliceResponse<ComentarioResponse>> obtenerComentariosPorCursor(
+            Pageable pageable,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String cursor) {
+
+        SliceResponse<ComentarioResponse> slice = comentarioService.obtenerComentariosPorCursor(pageable, search, cursor);
+        return ResponseEntity.ok(slice);
+    }
+
+    // =======================================================
+    // HILOS (GET /hilos?agrupacionId=) - Abierto a USER y ADMIN
+    // Comentarios raíz aprobados por cursor, cada uno con sus respuestas hasta ?profundidad= niveles
+    // =======================================================
+    @GetMapping("/hilos")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<SliceResponse<HiloComentarioResponse>> obtenerHilos(
+            @RequestParam Long agrupacionId,
+            Pageable pageable,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer profundidad) {
+
+        return ResponseEntity.ok(comentarioService.obtenerHilosPorCursor(agrupacionId, pageable, cursor, profundidad));
+    }
+
+    // =======================================================
+    // RAMA (GET /ID/respuestas) - Abierto a USER y ADMIN
+    // El comentario y sus respuestas aprobadas en orden de lectura (para seguir un hilo profundo)
+    // =======================================================
+    @GetMapping("/{id}/respuestas")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<List<ComentarioResponse>> obtenerRespuestas(
+            @PathVariable Long id,
+            @RequestParam(required = false) Integer profundidad) {
+
+        return ResponseEntity.ok(comentarioService.obtenerRama(id, profundidad));
+    }
+
     // =======================================================
     // 3. OBTENER POR ID (GET /ID) - Abierto a USER y ADMIN
     // =======================================================
@@ -87,4 +153,39 @@ public class ComentarioController {
         ComentarioResponse comentarioAprobado = comentarioService.aprobarComentario(id);
         return ResponseEntity.ok(comentarioAprobado);
     }
-}
\ No newline at end of file
+
+    // =======================================================
+    // 7. COLA DE MODERACIÓN (GET /pendientes) - Solo ADMIN
+    // Pendientes de aprobar, los más antiguos primero; paginación por cursor (?cursor=)
+    // =======================================================
+    @GetMapping("/pendientes")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<SliceResponse<ComentarioResponse>> obtenerPendientes(
+            Pageable pageable,
+            @RequestParam(required = false) String cursor) {
+
+        return ResponseEntity.ok(comentarioService.obtenerPendientesPorCursor(pageable, cursor));
+    }
+
+    // =======================================================
+    // 8. MODERACIÓN EN LOTE (POST /aprobar, POST /rechazar) - Solo ADMIN
+    // 200 si se han moderado todos; 207 con el resultado de cada id si alguno no (404, 409)
+    // =======================================================
+    @PostMapping("/aprobar")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<ModeracionLoteResponse>> aprobarComentarios(@Valid @RequestBody ModeracionLoteRequest request) {
+        return resultadoModeracion(moderacionComentarios.aprobar(request.getIds()));
+    }
+
+    // Rechazar borra los comentarios pendientes
+    @PostMapping("/rechazar")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<ModeracionLoteResponse>> rechazarComentarios(@Valid @RequestBody ModeracionLoteRequest request) {
+        return resultadoModeracion(moderacionComentarios.rechazar(request.getIds()));
+    }
+
+    private static ResponseEntity<List<ModeracionLoteResponse>> resultadoModeracion(List<ModeracionLoteResponse> resultados) {
+        boolean todos = resultados.stream().allMatch(r -> r.getEstado() == HttpStatus.OK.value());
+        return ResponseEntity.status(todos ? HttpStatus.OK : HttpStatus.MULTI_STATUS).body(resultados);
+    }
+}
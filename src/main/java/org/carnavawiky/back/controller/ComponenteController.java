@@ -3,7 +3,9 @@ package org.carnavawiky.back.controller;
 import jakarta.validation.Valid;
 import org.carnavawiky.back.dto.ComponenteRequest;
 import org.carnavawiky.back.dto.ComponenteResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.service.ComponenteService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
@@ -38,12 +40,28 @@ public class ComponenteController {
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<PageResponse<ComponenteResponse>> obtenerTodosComponentes(
             Pageable pageable,
-            @RequestParam(required = false) String search) { // Búsqueda por Persona o Agrupación
+            @RequestParam(required = false) String search, // Búsqueda por Persona o Agrupación
+            @RequestParam(name = "count", defaultValue = "EXACTO") ModoConteo modoConteo) {
 
-        PageResponse<ComponenteResponse> componentesPage = componenteService.obtenerTodosComponentes(pageable, search);
+        PageResponse<ComponenteResponse> componentesPage = componenteService.obtenerTodosComponentes(pageable, search, modoConteo);
         return ResponseEntity.ok(componentesPage);
     }
 
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (GET /scroll) - PAGINACIÓN KEYSET
+    // Para páginas profundas: se pasa el 'nextCursor' de la respuesta anterior en ?cursor=
+    // =======================================================
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<SliceResponse<ComponenteResponse>> obtenerComponentesPorCursor(
+            Pageable pageable,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String cursor) {
+
+        SliceResponse<ComponenteResponse> slice = componenteService.obtenerComponentesPorCursor(pageable, search, cursor);
+        return ResponseEntity.ok(slice);
+    }
+
     // =======================================================
     // 3. OBTENER POR ID (GET /ID) - Abierto a USER y ADMIN
     // =======================================================
@@ -3,7 +3,9 @@ package org.carnavawiky.back.controller;
 import jakarta.validation.Valid;
 import org.carnavawiky.back.dto.ConcursoRequest;
 import org.carnavawiky.back.dto.ConcursoResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.service.ConcursoService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
@@ -38,12 +40,28 @@ public class ConcursoController {
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<PageResponse<ConcursoResponse>> obtenerTodosConcursos(
             Pageable pageable,
-            @RequestParam(required = false) String search) {
+            @RequestParam(required = false) String search,
+            @RequestParam(name = "count", defaultValue = "EXACTO") ModoConteo modoConteo) {
 
-        PageResponse<ConcursoResponse> concursosPage = concursoService.obtenerTodosConcursos(pageable, search);
+        PageResponse<ConcursoResponse> concursosPage = concursoService.obtenerTodosConcursos(pageable, search, modoConteo);
         return ResponseEntity.ok(concursosPage);
     }
 
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (GET /scroll) - PAGINACIÓN KEYSET
+    // Para páginas profundas: se pasa el 'nextCursor' de la respuesta anterior en ?cursor=
+    // =======================================================
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<SliceResponse<ConcursoResponse>> obtenerConcursosPorCursor(
+            Pageable pageable,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String cursor) {
+
+        SliceResponse<ConcursoResponse> slice = concursoService.obtenerConcursosPorCursor(pageable, search, cursor);
+        return ResponseEntity.ok(slice);
+    }
+
     // =======================================================
     // 3. OBTENER POR ID (GET /ID) - Abierto a USER y ADMIN
     // =======================================================
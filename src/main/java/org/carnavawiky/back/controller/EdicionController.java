@@ -3,7 +3,9 @@ package org.carnavawiky.back.controller;
 import jakarta.validation.Valid;
 import org.carnavawiky.back.dto.EdicionRequest;
 import org.carnavawiky.back.dto.EdicionResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.service.EdicionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
@@ -38,12 +40,28 @@ public class EdicionController {
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<PageResponse<EdicionResponse>> obtenerTodasEdiciones(
             Pageable pageable,
-            @RequestParam(required = false) String search) {
+            @RequestParam(required = false) String search,
+            @RequestParam(name = "count", defaultValue = "EXACTO") ModoConteo modoConteo) {
 
-        PageResponse<EdicionResponse> edicionesPage = edicionService.obtenerTodasEdiciones(pageable, search);
+        PageResponse<EdicionResponse> edicionesPage = edicionService.obtenerTodasEdiciones(pageable, search, modoConteo);
         return ResponseEntity.ok(edicionesPage);
     }
 
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (GET /scroll) - PAGINACIÓN KEYSET
+    // Para páginas profundas: se pasa el 'nextCursor' de la respuesta anterior en ?cursor=
+    // =======================================================
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<SliceResponse<EdicionResponse>> obtenerEdicionesPorCursor(
+            Pageable pageable,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String cursor) {
+
+        SliceResponse<EdicionResponse> slice = edicionService.obtenerEdicionesPorCursor(pageable, search, cursor);
+        return ResponseEntity.ok(slice);
+    }
+
     // =======================================================
     // 3. OBTENER POR ID (GET /ID) - Abierto a USER y ADMIN
     // =======================================================
@@ -0,0 +1,76 @@
+package org.carnavawiky.back.controller;
+
+import org.carnavawiky.back.dto.AlmacenImagenesResponse;
+import org.carnavawiky.back.dto.ReconciliacionImagenesResponse;
+import org.carnavawiky.back.service.ImagenService;
+import org.carnavawiky.back.service.MigracionAlmacenImagenes;
+import org.carnavawiky.back.service.ReconciliadorImagenes;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/admin/imagenes")
+@PreAuthorize("hasRole('ADMIN')")
+public class ImagenAdminController {
+
+    @Autowired
+    private ImagenService imagenService;
+
+    @Autowired
+    private MigracionAlmacenImagenes migracionAlmacenImagenes;
+
+    @Autowired
+    private ReconciliadorImagenes reconciliadorImagenes;
+
+    // =======================================================
+    // REGENERAR VARIANTES DE LAS IMÁGENES EXISTENTES (POST /variantes)
+    // Trabajo en segundo plano: se responde 202 sin esperar a que termine.
+    // =======================================================
+    @PostMapping("/variantes")
+    public ResponseEntity<Void> regenerarVariantes() {
+        imagenService.regenerarVariantes();
+        return ResponseEntity.accepted().build();
+    }
+
+    // =======================================================
+    // MIGRAR EL ALMACÉN AL ESQUEMA FRAGMENTADO ab/cd/<fichero> (POST /almacen/migracion)
+    // En segundo plano; el resultado se deja en el log y se consulta con GET /almacen.
+    // =======================================================
+    @PostMapping("/almacen/migracion")
+    public ResponseEntity<Void> migrarAlmacen() {
+        migracionAlmacenImagenes.migrarEnSegundoPlano();
+        return ResponseEntity.accepted().build();
+    }
+
+    // =======================================================
+    // VERIFICAR EL ALMACÉN (GET /almacen)
+    // Cada fila con su fichero, y cuántos quedan en el esquema plano.
+    // =======================================================
+    @GetMapping("/almacen")
+    public ResponseEntity<AlmacenImagenesResponse> verificarAlmacen() {
+        return ResponseEntity.ok(migracionAlmacenImagenes.verificar());
+    }
+
+    // =======================================================
+    // RECONCILIAR BD Y DISCO AHORA (POST /almacen/reconciliacion)
+    // La misma pasada que la programada, en segundo plano.
+    // =======================================================
+    @PostMapping("/almacen/reconciliacion")
+    public ResponseEntity<Void> reconciliarAlmacen() {
+        reconciliadorImagenes.reconciliarEnSegundoPlano();
+        return ResponseEntity.accepted().build();
+    }
+
+    // =======================================================
+    // INFORME DE LA ÚLTIMA RECONCILIACIÓN (GET /almacen/reconciliacion)
+    // 204 si aún no se ha ejecutado ninguna desde el arranque.
+    // =======================================================
+    @GetMapping("/almacen/reconciliacion")
+    public ResponseEntity<ReconciliacionImagenesResponse> obtenerReconciliacion() {
+        return reconciliadorImagenes.obtenerUltimoInforme()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+}
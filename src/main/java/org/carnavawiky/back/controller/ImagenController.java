@@ -1,13 +1,25 @@
 package org.carnavawiky.back.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import org.carnavawiky.back.dto.ImagenLoteResponse;
 import org.carnavawiky.back.dto.ImagenResponse;
+import org.carnavawiky.back.dto.SubidaImagenRequest;
+import org.carnavawiky.back.dto.SubidaImagenResponse;
 import org.carnavawiky.back.service.ImagenService;
+import org.carnavawiky.back.service.ServidorImagenes;
+import org.carnavawiky.back.service.SubidasReanudables;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.List;
 
 @RestController
@@ -17,7 +29,13 @@ public class ImagenController {
     @Autowired
     private ImagenService imagenService;
 
-    @PostMapping
+    @Autowired
+    private ServidorImagenes servidorImagenes;
+
+    @Autowired
+    private SubidasReanudables subidasReanudables;
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @ResponseStatus(HttpStatus.CREATED)
     public ImagenResponse subirImagen(
             @RequestParam("file") MultipartFile file,
@@ -26,14 +44,103 @@ public class ImagenController {
         return imagenService.subirImagen(agrupacionId, file, esPortada);
     }
 
+    /**
+     * Subida con la imagen como cuerpo de la petición (Content-Type: image/*).
+     * Los bytes van del socket al almacén sin pasar por el parser multipart.
+     */
+    @PostMapping(consumes = "image/*")
+    @ResponseStatus(HttpStatus.CREATED)
+    public ImagenResponse subirImagenDirecta(
+            InputStream contenido,
+            @RequestParam("agrupacionId") Long agrupacionId,
+            @RequestParam(value = "nombre", required = false) String nombre,
+            @RequestParam(value = "esPortada", defaultValue = "false") Boolean esPortada) throws IOException {
+        return imagenService.subirImagen(agrupacionId, contenido, nombre, esPortada);
+    }
+
+    /**
+     * Subida de varias imágenes en una petición (parámetro "archivos" repetido).
+     * 201 si se han creado todas; 207 con el resultado de cada fichero si alguno ha fallado.
+     */
+    @PostMapping(value = "/lote", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<List<ImagenLoteResponse>> subirImagenes(
+            @RequestParam("archivos") List<MultipartFile> archivos,
+            @RequestParam("agrupacionId") Long agrupacionId,
+            @RequestParam(value = "indicePortada", required = false) Integer indicePortada) throws IOException {
+        List<ImagenLoteResponse> resultados = imagenService.subirImagenes(agrupacionId, archivos, indicePortada);
+        boolean todasCreadas = resultados.stream().allMatch(r -> r.getEstado() == HttpStatus.CREATED.value());
+        return ResponseEntity.status(todasCreadas ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS).body(resultados);
+    }
+
+    // =======================================================
+    // SUBIDAS REANUDABLES (ver SubidasReanudables)
+    // =======================================================
+    @PostMapping("/subidas")
+    public ResponseEntity<SubidaImagenResponse> crearSubida(@Valid @RequestBody SubidaImagenRequest request) throws IOException {
+        SubidaImagenResponse subida = subidasReanudables.crear(request);
+        return ResponseEntity.created(URI.create("/api/imagenes/subidas/" + subida.getId())).body(subida);
+    }
+
+    @GetMapping("/subidas/{id}")
+    public SubidaImagenResponse obtenerSubida(@PathVariable String id) {
+        return subidasReanudables.obtener(id);
+    }
+
+    // Cuerpo: los bytes del trozo (application/octet-stream), que se escriben a partir de offset
+    @PutMapping(value = "/subidas/{id}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public SubidaImagenResponse enviarTrozo(@PathVariable String id,
+                                            @RequestParam("offset") long offset,
+                                            InputStream contenido) throws IOException {
+        return subidasReanudables.escribir(id, offset, contenido);
+    }
+
+    @PostMapping("/subidas/{id}/finalizar")
+    @ResponseStatus(HttpStatus.CREATED)
+    public ImagenResponse finalizarSubida(@PathVariable String id) throws IOException {
+        return subidasReanudables.finalizar(id);
+    }
+
+    @DeleteMapping("/subidas/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void cancelarSubida(@PathVariable String id) throws IOException {
+        subidasReanudables.cancelar(id);
+    }
+
+    // =======================================================
+    // ENVÍO DE FICHEROS (público)
+    // Range, caché de imágenes pequeñas y sendfile: ver ServidorImagenes
+    // =======================================================
+    @GetMapping("/{nombreFichero}")
+    public void servirImagen(@PathVariable String nombreFichero,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        servidorImagenes.servirOriginal(nombreFichero, request, response);
+    }
+
+    @GetMapping("/variantes/{nombreFichero}")
+    public void servirVariante(@PathVariable String nombreFichero,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
+        servidorImagenes.servirVariante(nombreFichero, request, response);
+    }
+
     @GetMapping("/agrupacion/{agrupacionId}")
     public List<ImagenResponse> obtenerPorAgrupacion(@PathVariable Long agrupacionId) {
         return imagenService.obtenerImagenesPorAgrupacion(agrupacionId);
     }
 
+    /**
+     * Redirige a la copia reducida más pequeña con al menos ese ancho (o al original).
+     * Pensado para src/srcset del frontend: /api/imagenes/42/variantes/480
+     */
+    @GetMapping("/{id}/variantes/{ancho}")
+    public ResponseEntity<Void> obtenerVariante(@PathVariable Long id, @PathVariable int ancho) {
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .location(URI.create(imagenService.obtenerUrlVariante(id, ancho)))
+                .build();
+    }
+
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void eliminar(@PathVariable Long id) throws IOException {
+    public void eliminar(@PathVariable Long id) {
         imagenService.eliminarImagen(id);
     }
 }
\ No newline at end of file
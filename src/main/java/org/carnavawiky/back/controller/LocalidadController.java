@@ -3,7 +3,9 @@ package org.carnavawiky.back.controller;
 import jakarta.validation.Valid;
 import org.carnavawiky.back.dto.LocalidadRequest;
 import org.carnavawiky.back.dto.LocalidadResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.service.LocalidadService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
@@ -38,12 +40,28 @@ public class LocalidadController {
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<PageResponse<LocalidadResponse>> obtenerTodasLocalidades(
             Pageable pageable, // Paginación
-            @RequestParam(required = false) String search) { // Búsqueda opcional
+            @RequestParam(required = false) String search, // Búsqueda opcional
+            @RequestParam(name = "count", defaultValue = "EXACTO") ModoConteo modoConteo) {
 
-        PageResponse<LocalidadResponse> localidadesPage = localidadService.obtenerTodasLocalidades(pageable, search);
+        PageResponse<LocalidadResponse> localidadesPage = localidadService.obtenerTodasLocalidades(pageable, search, modoConteo);
         return ResponseEntity.ok(localidadesPage);
     }
 
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (GET /scroll) - PAGINACIÓN KEYSET
+    // Para páginas profundas: se pasa el 'nextCursor' de la respuesta anterior en ?cursor=
+    // =======================================================
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<SliceResponse<LocalidadResponse>> obtenerLocalidadesPorCursor(
+            Pageable pageable,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String cursor) {
+
+        SliceResponse<LocalidadResponse> slice = localidadService.obtenerLocalidadesPorCursor(pageable, search, cursor);
+        return ResponseEntity.ok(slice);
+    }
+
     // =======================================================
     // 3. OBTENER POR ID (GET /ID) - Abierto a USER y ADMIN
     // =======================================================
@@ -1,9 +1,11 @@
 package org.carnavawiky.back.controller;
 
 import jakarta.validation.Valid;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
 import org.carnavawiky.back.dto.PersonaRequest;
 import org.carnavawiky.back.dto.PersonaResponse;
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.service.PersonaService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
@@ -38,12 +40,28 @@ public class PersonaController {
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<PageResponse<PersonaResponse>> obtenerTodasPersonas(
             Pageable pageable,
-            @RequestParam(required = false) String search) { // Búsqueda por nombre real o apodo
+            @RequestParam(required = false) String search, // Búsqueda por nombre real o apodo
+            @RequestParam(name = "count", defaultValue = "EXACTO") ModoConteo modoConteo) {
 
-        PageResponse<PersonaResponse> personasPage = personaService.obtenerTodasPersonas(pageable, search);
+        PageResponse<PersonaResponse> personasPage = personaService.obtenerTodasPersonas(pageable, search, modoConteo);
         return ResponseEntity.ok(personasPage);
     }
 
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (GET /scroll) - PAGINACIÓN KEYSET
+    // Para páginas profundas: se pasa el 'nextCursor' de la respuesta anterior en ?cursor=
+    // =======================================================
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<SliceResponse<PersonaResponse>> obtenerPersonasPorCursor(
+            Pageable pageable,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String cursor) {
+
+        SliceResponse<PersonaResponse> slice = personaService.obtenerPersonasPorCursor(pageable, search, cursor);
+        return ResponseEntity.ok(slice);
+    }
+
     // =======================================================
     // 3. OBTENER POR ID (GET /ID) - Abierto a USER y ADMIN
     // =======================================================
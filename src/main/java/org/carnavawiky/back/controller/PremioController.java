@@ -1,9 +1,11 @@
 package org.carnavawiky.back.controller;
 
 import jakarta.validation.Valid;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
 import org.carnavawiky.back.dto.PremioRequest;
 import org.carnavawiky.back.dto.PremioResponse;
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.service.PremioService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
@@ -38,12 +40,28 @@ public class PremioController {
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<PageResponse<PremioResponse>> obtenerTodosPremios(
             Pageable pageable,
-            @RequestParam(required = false) String search) { // Puede ser año o nombre de agrupación
+            @RequestParam(required = false) String search, // Puede ser año o nombre de agrupación
+            @RequestParam(name = "count", defaultValue = "EXACTO") ModoConteo modoConteo) {
 
-        PageResponse<PremioResponse> premiosPage = premioService.obtenerTodosPremios(pageable, search);
+        PageResponse<PremioResponse> premiosPage = premioService.obtenerTodosPremios(pageable, search, modoConteo);
         return ResponseEntity.ok(premiosPage);
     }
 
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (GET /scroll) - PAGINACIÓN KEYSET
+    // Para páginas profundas: se pasa el 'nextCursor' de la respuesta anterior en ?cursor=
+    // =======================================================
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<SliceResponse<PremioResponse>> obtenerPremiosPorCursor(
+            Pageable pageable,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String cursor) {
+
+        SliceResponse<PremioResponse> slice = premioService.obtenerPremiosPorCursor(pageable, search, cursor);
+        return ResponseEntity.ok(slice);
+    }
+
     // =======================================================
     // 3. OBTENER POR ID (GET /ID) - Abierto a USER y ADMIN
     // =======================================================
@@ -1,6 +1,7 @@
 package org.carnavawiky.back.controller;
 
 import jakarta.validation.Valid;
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.dto.UsuarioRequest;
 import org.carnavawiky.back.dto.UsuarioResponse;
 import org.carnavawiky.back.dto.PageResponse; // <-- NUEVA IMPORTACIÓN
@@ -46,6 +47,20 @@ public class UsuarioController {
         return ResponseEntity.ok(usuariosPage);
     }
 
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (GET /scroll) - PAGINACIÓN KEYSET
+    // Para páginas profundas: se pasa el 'nextCursor' de la respuesta anterior en ?cursor=
+    // =======================================================
+    @GetMapping("/scroll")
+    public ResponseEntity<SliceResponse<UsuarioResponse>> obtenerUsuariosPorCursor(
+            Pageable pageable,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String cursor) {
+
+        SliceResponse<UsuarioResponse> slice = usuarioService.obtenerUsuariosPorCursor(pageable, search, cursor);
+        return ResponseEntity.ok(slice);
+    }
+
     // =======================================================
     // 3. OBTENER POR ID (GET /ID) - Solo para ADMIN
     // =======================================================
@@ -1,11 +1,16 @@
 package org.carnavawiky.back.dto;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.carnavawiky.back.model.Modalidad;
+import java.io.Serializable;
 import java.time.LocalDateTime;
 
 @Data
-public class AgrupacionResponse {
+@NoArgsConstructor
+public class AgrupacionResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private Long id;
     private String nombre;
@@ -16,4 +21,24 @@ public class AgrupacionResponse {
     private Modalidad modalidad;
     private Long localidadId;
     private String localidadNombre;
-}
\ No newline at end of file
+
+    // Solo en los listados: se completa con una consulta por página (ImagenService.obtenerPortadas)
+    private PortadaResponse portada;
+
+    // Agregado de las puntuaciones de los comentarios aprobados (ValoracionesAgrupaciones)
+    private ValoracionResponse valoracion;
+
+    // Constructor para las proyecciones JPQL (SELECT new ...) de AgrupacionRepository
+    public AgrupacionResponse(Long id, String nombre, String descripcion, LocalDateTime fechaAlta, String nombreUsuarioCreador,
+                              Integer anho, Modalidad modalidad, Long localidadId, String localidadNombre) {
+        this.id = id;
+        this.nombre = nombre;
+        this.descripcion = descripcion;
+        this.fechaAlta = fechaAlta;
+        this.nombreUsuarioCreador = nombreUsuarioCreador;
+        this.anho = anho;
+        this.modalidad = modalidad;
+        this.localidadId = localidadId;
+        this.localidadNombre = localidadNombre;
+    }
+}
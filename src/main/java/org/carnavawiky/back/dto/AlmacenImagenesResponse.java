@@ -0,0 +1,25 @@
+package org.carnavawiky.back.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+// Estado del almacén de imágenes tras una migración al esquema fragmentado o una verificación
+@Data
+@Builder
+public class AlmacenImagenesResponse {
+
+    // Ficheros (originales, variantes e imágenes antiguas) que ya están en ab/cd/<nombre>
+    private long enEsquemaFragmentado;
+    // Ficheros que siguen en el directorio plano (pendientes de migrar)
+    private long enEsquemaPlano;
+    // Movidos en esta ejecución (siempre 0 en una verificación)
+    private long movidos;
+    // Filas cuyo fichero no está en su ruta o no tiene el tamaño registrado
+    private long perdidos;
+    // Los primeros nombres perdidos, para investigarlos
+    private List<String> ficherosPerdidos;
+    // Filas que no se pudieron procesar por un error de E/S o de BD
+    private long fallidos;
+}
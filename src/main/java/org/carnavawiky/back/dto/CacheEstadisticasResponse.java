@@ -0,0 +1,21 @@
+package org.carnavawiky.back.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+// Estadísticas JCache de una región (acumuladas desde el arranque o el último reinicio de contadores)
+@Data
+@Builder
+public class CacheEstadisticasResponse {
+
+    private String nombre;
+    private long aciertos;
+    private long fallos;
+    private float porcentajeAciertos;
+    private long lecturas;
+    private long escrituras;
+    private long borrados;
+    // Expulsiones por tamaño o caducidad (señal de que el nivel se queda pequeño o el TTL es corto)
+    private long desalojos;
+    private float tiempoMedioLecturaMicros;
+}
@@ -23,4 +23,7 @@ public class ComentarioRequest {
     // pero lo incluiremos en el Request para simplificar la prueba del servicio/mapper.
     @NotNull(message = "El ID del Usuario es obligatorio.")
     private Long usuarioId;
+
+    // Opcional: el comentario es una respuesta a este (aprobado y de la misma agrupación)
+    private Long padreId;
 }
\ No newline at end of file
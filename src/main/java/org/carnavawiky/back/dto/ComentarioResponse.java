@@ -1,9 +1,11 @@
 package org.carnavawiky.back.dto;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Data
+@NoArgsConstructor
 public class ComentarioResponse {
 
     private Long id;
@@ -19,4 +21,31 @@ public class ComentarioResponse {
     // Datos de Agrupación
     private Long agrupacionId;
     private String agrupacionNombre;
-}
\ No newline at end of file
+
+    // Posición en el hilo y respuestas aprobadas (directas y de toda la rama)
+    private Long padreId;
+    private Long raizId;
+    private Integer profundidad;
+    private Long respuestas;
+    private Long respuestasTotales;
+
+    // Constructor para las proyecciones JPQL (SELECT new ...) de ComentarioRepository
+    public ComentarioResponse(Long id, String contenido, Integer puntuacion, Boolean aprobado, LocalDateTime fechaCreacion,
+                              Long usuarioId, String usuarioUsername, Long agrupacionId, String agrupacionNombre,
+                              Long padreId, Long raizId, Integer profundidad, Long respuestas, Long respuestasTotales) {
+        this.id = id;
+        this.contenido = contenido;
+        this.puntuacion = puntuacion;
+        this.aprobado = aprobado;
+        this.fechaCreacion = fechaCreacion;
+        this.usuarioId = usuarioId;
+        this.usuarioUsername = usuarioUsername;
+        this.agrupacionId = agrupacionId;
+        this.agrupacionNombre = agrupacionNombre;
+        this.padreId = padreId;
+        this.raizId = raizId;
+        this.profundidad = profundidad;
+        this.respuestas = respuestas;
+        this.respuestasTotales = respuestasTotales;
+    }
+}
@@ -1,9 +1,11 @@
 package org.carnavawiky.back.dto;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.carnavawiky.back.model.RolComponente;
 
 @Data
+@NoArgsConstructor
 public class ComponenteResponse {
 
     private Long id;
@@ -17,4 +19,16 @@ public class ComponenteResponse {
     // Datos de Agrupación
     private Long agrupacionId;
     private String agrupacionNombre;
-}
\ No newline at end of file
+
+    // Constructor para las proyecciones JPQL (SELECT new ...) de ComponenteRepository
+    public ComponenteResponse(Long id, RolComponente rol, Long personaId, String nombreArtistico, String nombreReal,
+                              Long agrupacionId, String agrupacionNombre) {
+        this.id = id;
+        this.rol = rol;
+        this.personaId = personaId;
+        this.nombreArtistico = nombreArtistico;
+        this.nombreReal = nombreReal;
+        this.agrupacionId = agrupacionId;
+        this.agrupacionNombre = agrupacionNombre;
+    }
+}
@@ -1,9 +1,15 @@
 package org.carnavawiky.back.dto;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
 
 @Data
-public class ConcursoResponse {
+@NoArgsConstructor
+public class ConcursoResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private Long id;
     private String nombre;
@@ -12,4 +18,13 @@ public class ConcursoResponse {
     // Datos de Localidad (Necesarios para la respuesta)
     private Long localidadId;
     private String localidadNombre;
-}
\ No newline at end of file
+
+    // Constructor para las proyecciones JPQL (SELECT new ...) de ConcursoRepository
+    public ConcursoResponse(Long id, String nombre, Boolean estaActivo, Long localidadId, String localidadNombre) {
+        this.id = id;
+        this.nombre = nombre;
+        this.estaActivo = estaActivo;
+        this.localidadId = localidadId;
+        this.localidadNombre = localidadNombre;
+    }
+}
@@ -1,9 +1,15 @@
 package org.carnavawiky.back.dto;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
 
 @Data
-public class EdicionResponse {
+@NoArgsConstructor
+public class EdicionResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private Long id;
     private Integer anho;
@@ -11,4 +17,12 @@ public class EdicionResponse {
     // Datos del Concurso (Relación N:1)
     private Long concursoId;
     private String concursoNombre;
-}
\ No newline at end of file
+
+    // Constructor para las proyecciones JPQL (SELECT new ...) de EdicionRepository
+    public EdicionResponse(Long id, Integer anho, Long concursoId, String concursoNombre) {
+        this.id = id;
+        this.anho = anho;
+        this.concursoId = concursoId;
+        this.concursoNombre = concursoNombre;
+    }
+}
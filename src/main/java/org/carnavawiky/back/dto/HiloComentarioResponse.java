@@ -0,0 +1,23 @@
+package org.carnavawiky.back.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Un hilo de una página de hilos: el comentario raíz y sus respuestas en orden de lectura
+// (cada una tras su padre; padreId y profundidad permiten anidarlas en el cliente)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HiloComentarioResponse {
+
+    private ComentarioResponse comentario;
+    private List<ComentarioResponse> respuestas;
+
+    // El hilo tiene más respuestas (hasta esa profundidad) que las devueltas: el resto con GET /{id}/respuestas
+    private boolean truncado;
+}
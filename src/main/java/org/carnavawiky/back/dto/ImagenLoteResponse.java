@@ -0,0 +1,21 @@
+package org.carnavawiky.back.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+// Resultado de un fichero dentro de una subida múltiple (POST /api/imagenes/lote)
+@Data
+@Builder
+public class ImagenLoteResponse {
+
+    // Posición del fichero en la petición y su nombre original
+    private int indice;
+    private String nombreOriginal;
+
+    // 201 si se ha dado de alta; 400 si se rechazó (vacío, demasiado grande); 500 si falló la escritura
+    private int estado;
+    private String error;
+
+    // null si no se ha dado de alta
+    private ImagenResponse imagen;
+}
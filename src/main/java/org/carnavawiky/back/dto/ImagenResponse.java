@@ -2,6 +2,9 @@ package org.carnavawiky.back.dto;
 
 import lombok.Data;
 
+import java.util.Map;
+import java.util.TreeMap;
+
 @Data
 public class ImagenResponse {
 
@@ -10,6 +13,16 @@ public class ImagenResponse {
     private String urlPublica; // La URL que el frontend usará para mostrar la imagen
     private Boolean esPortada;
 
+    // Para reservar el hueco y pintar algo antes de descargar la imagen (null en imágenes antiguas)
+    private Integer ancho;
+    private Integer alto;
+    private Long tamanoBytes;
+    private String colorDominante;
+    private String marcador; // data:image/png;base64,... listo para usar como src
+
+    // Copias reducidas disponibles: ancho en px -> URL (vacío mientras se generan)
+    private Map<Integer, String> variantes = new TreeMap<>();
+
     // ID de la Agrupación a la que pertenece
     private Long agrupacionId;
     private String agrupacionNombre;
@@ -1,10 +1,22 @@
 package org.carnavawiky.back.dto;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
 
 @Data
-public class LocalidadResponse {
+@NoArgsConstructor
+public class LocalidadResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private Long id;
     private String nombre;
-}
\ No newline at end of file
+
+    // Constructor para las proyecciones JPQL (SELECT new ...) de LocalidadRepository
+    public LocalidadResponse(Long id, String nombre) {
+        this.id = id;
+        this.nombre = nombre;
+    }
+}
@@ -0,0 +1,19 @@
+package org.carnavawiky.back.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Comentarios a aprobar o rechazar de una vez (POST /api/comentarios/aprobar | /rechazar)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ModeracionLoteRequest {
+
+    @NotEmpty(message = "Debe indicar al menos un comentario.")
+    private List<@NotNull(message = "Los IDs de comentario no pueden ser nulos.") Long> ids;
+}
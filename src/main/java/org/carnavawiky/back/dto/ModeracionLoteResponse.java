@@ -0,0 +1,20 @@
+package org.carnavawiky.back.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Resultado de un comentario dentro de una moderación en lote
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ModeracionLoteResponse {
+
+    private Long id;
+
+    // 200 si se ha aprobado / rechazado; 404 si no existe; 409 si ya estaba aprobado
+    private int estado;
+    private String error;
+}
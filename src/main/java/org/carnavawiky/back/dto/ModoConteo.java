@@ -0,0 +1,11 @@
+package org.carnavawiky.back.dto;
+
+// Cómo calcula PageResponse el total de elementos de un listado paginado
+public enum ModoConteo {
+    // COUNT(*) cacheado e invalidado en cada escritura: siempre coincide con la BD
+    EXACTO,
+    // Se admite un total cacheado aunque haya habido escrituras (hasta un TTL)
+    APROXIMADO,
+    // Sin total: isLast sale de pedir una fila de más (size + 1)
+    OMITIDO
+}
@@ -3,18 +3,26 @@ package org.carnavawiky.back.dto;
 import lombok.Builder;
 import lombok.Data;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 
+import java.io.Serializable;
 import java.util.List;
 
 @Data
 @Builder
-public class PageResponse<T> {
+public class PageResponse<T> implements Serializable {
+
+    // Las páginas cacheadas pasan por los niveles off-heap / disco de Ehcache, que serializan los valores
+    private static final long serialVersionUID = 1L;
 
     private List<T> content;
     private int pageNumber;
     private int pageSize;
-    private long totalElements;
-    private int totalPages;
+    // null si el cliente pide ModoConteo.OMITIDO
+    private Long totalElements;
+    private Integer totalPages;
+    // true si el total puede no reflejar las últimas escrituras (ModoConteo.APROXIMADO)
+    private boolean approximateTotal;
     private boolean isLast;
 
     // Mét estático de utilidad para construir el DTO a partir del objeto Page de Spring.
@@ -28,4 +36,37 @@ public class PageResponse<T> {
                 .isLast(page.isLast())
                 .build();
     }
-}
\ No newline at end of file
+
+    // Construye el DTO a partir de un Slice (consulta de size + 1 filas, sin COUNT).
+    // isLast sale siempre del Slice; el total (si lo hay) se ajusta para no contradecirlo.
+    public static <T> PageResponse<T> fromSlice(Slice<T> slice, Long total, boolean approximate) {
+        Long totalElements = total;
+        Integer totalPages = null;
+        boolean aproximado = approximate;
+
+        if (total != null) {
+            long vistos = slice.getPageable().isPaged()
+                    ? slice.getPageable().getOffset() + slice.getNumberOfElements()
+                    : slice.getNumberOfElements();
+            if (slice.hasNext()) {
+                // Un total cacheado puede haberse quedado corto respecto a lo que se acaba de leer
+                totalElements = Math.max(total, vistos + 1);
+            } else if (slice.hasContent() || vistos == 0) {
+                // Última página con datos: el total es exacto sin necesidad de contar
+                totalElements = vistos;
+                aproximado = false;
+            }
+            totalPages = slice.getSize() == 0 ? 1 : (int) Math.ceil((double) totalElements / slice.getSize());
+        }
+
+        return PageResponse.<T>builder()
+                .content(slice.getContent())
+                .pageNumber(slice.getNumber())
+                .pageSize(slice.getSize())
+                .totalElements(totalElements)
+                .totalPages(totalPages)
+                .approximateTotal(total != null && aproximado)
+                .isLast(!slice.hasNext())
+                .build();
+    }
+}
@@ -1,9 +1,15 @@
 package org.carnavawiky.back.dto;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
 
 @Data
-public class PersonaResponse {
+@NoArgsConstructor
+public class PersonaResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private Long id;
     private String nombreReal;
@@ -16,4 +22,16 @@ public class PersonaResponse {
     // Datos de Usuario (Asociado)
     private Long usuarioId;
     private String usuarioUsername;
-}
\ No newline at end of file
+
+    // Constructor para las proyecciones JPQL (SELECT new ...) de PersonaRepository
+    public PersonaResponse(Long id, String nombreReal, String apodo, Long localidadId, String localidadNombre,
+                           Long usuarioId, String usuarioUsername) {
+        this.id = id;
+        this.nombreReal = nombreReal;
+        this.apodo = apodo;
+        this.localidadId = localidadId;
+        this.localidadNombre = localidadNombre;
+        this.usuarioId = usuarioId;
+        this.usuarioUsername = usuarioUsername;
+    }
+}
@@ -0,0 +1,27 @@
+package org.carnavawiky.back.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+// Imagen de portada de una agrupación tal como la necesita una tarjeta de listado
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortadaResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long imagenId;
+    private String urlPublica;
+    // Copia reducida más pequeña; el original mientras no se haya generado
+    private String urlMiniatura;
+    private Integer ancho;
+    private Integer alto;
+    private String colorDominante;
+    private String marcador;
+}
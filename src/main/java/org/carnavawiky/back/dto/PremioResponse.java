@@ -1,10 +1,16 @@
 package org.carnavawiky.back.dto;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.carnavawiky.back.model.Modalidad;
 
+import java.io.Serializable;
+
 @Data
-public class PremioResponse {
+@NoArgsConstructor
+public class PremioResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private Long id;
     private Integer puesto;
@@ -18,4 +24,17 @@ public class PremioResponse {
     private Long edicionId;
     private Integer edicionAnho;
     private String concursoNombre; // Incluimos el nombre del concurso para contexto
-}
\ No newline at end of file
+
+    // Constructor para las proyecciones JPQL (SELECT new ...) de PremioRepository
+    public PremioResponse(Long id, Integer puesto, Modalidad modalidad, Long agrupacionId, String agrupacionNombre,
+                          Long edicionId, Integer edicionAnho, String concursoNombre) {
+        this.id = id;
+        this.puesto = puesto;
+        this.modalidad = modalidad;
+        this.agrupacionId = agrupacionId;
+        this.agrupacionNombre = agrupacionNombre;
+        this.edicionId = edicionId;
+        this.edicionAnho = edicionAnho;
+        this.concursoNombre = concursoNombre;
+    }
+}
@@ -0,0 +1,39 @@
+package org.carnavawiky.back.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Informe de una pasada de reconciliación entre la tabla imagen y el directorio del almacén
+@Data
+@Builder
+public class ReconciliacionImagenesResponse {
+
+    private LocalDateTime inicio;
+    private LocalDateTime fin;
+    // false si solo se ha informado (app.imagenes.reconciliacion.borrar=false o demasiadas filas sin fichero)
+    private boolean limpieza;
+
+    // Filas -> ficheros
+    private long filasRevisadas;
+    private long filasSinFichero;
+    // Filas cuyo fichero estaba en otra ubicación del almacén: se corrige su ruta
+    private long rutasCorregidas;
+    private long filasEliminadas;
+
+    // Blobs cuyo contador de referencias no cuadraba con las filas que los usan (corregido si hay limpieza)
+    private long referenciasCorregidas;
+    private long blobsRecolectados;
+
+    // Ficheros -> filas
+    private long ficherosRevisados;
+    private long ficherosHuerfanos;
+    private long ficherosBorrados;
+    private long temporalesBorrados;
+
+    // Los primeros nombres afectados, para investigarlos
+    private List<String> ejemplosFilasSinFichero;
+    private List<String> ejemplosFicherosHuerfanos;
+}
@@ -0,0 +1,19 @@
+package org.carnavawiky.back.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+// Respuesta de la paginación por cursor (keyset). A diferencia de PageResponse
+// no incluye totales: no se ejecuta COUNT(*) ni OFFSET en cada petición.
+@Data
+@Builder
+public class SliceResponse<T> {
+
+    private List<T> content;
+    private int size;
+    // Cursor opaco para pedir la siguiente porción (null si no hay más)
+    private String nextCursor;
+    private boolean hasNext;
+}
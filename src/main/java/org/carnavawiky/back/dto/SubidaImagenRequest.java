@@ -0,0 +1,24 @@
+package org.carnavawiky.back.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubidaImagenRequest {
+    @NotNull(message = "El ID de la agrupación es obligatorio")
+    private Long agrupacionId;
+
+    // Nombre original del fichero: solo se usa su extensión
+    private String nombre;
+
+    @NotNull(message = "El tamaño de la imagen es obligatorio")
+    @Positive(message = "El tamaño de la imagen debe ser mayor que cero")
+    private Long tamanoBytes;
+
+    private Boolean esPortada = false;
+}
@@ -0,0 +1,23 @@
+package org.carnavawiky.back.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Estado de una subida reanudable: el cliente sigue enviando a partir de "recibidos"
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubidaImagenResponse {
+
+    private String id;
+    private Long tamanoBytes;
+    private Long recibidos;
+
+    // Sin trozos nuevos antes de esta fecha, la sesión se descarta
+    private Instant expira;
+}
@@ -0,0 +1,26 @@
+package org.carnavawiky.back.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+// Puntuaciones de los comentarios aprobados de una agrupación
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ValoracionResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long numero;
+    private Long suma;
+    // null si todavía no hay puntuaciones
+    private Double media;
+    // Número de votos con 1, 2, 3, 4 y 5 puntos (en ese orden)
+    private List<Long> histograma;
+}
@@ -2,12 +2,15 @@ package org.carnavawiky.back.exception;
 
 import org.carnavawiky.back.dto.ErrorDetails;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import java.time.LocalDateTime;
 import java.util.stream.Collectors;
@@ -78,6 +81,63 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
     }
 
+    // =======================================================
+    // 3b. ERRORES DE NEGOCIO DEL CLIENTE (400 Bad Request)
+    // Ej: datos duplicados, token caducado o cursor de paginación no válido
+    // =======================================================
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<ErrorDetails> handleBadRequestException(
+            BadRequestException exception,
+            WebRequest webRequest) {
+
+        ErrorDetails errorDetails = new ErrorDetails(
+                LocalDateTime.now(),
+                exception.getMessage(),
+                webRequest.getDescription(false),
+                HttpStatus.BAD_REQUEST.value()
+        );
+
+        return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
+    }
+
+    // =======================================================
+    // 3c. PARÁMETROS DE URL CON TIPO NO VÁLIDO (400 Bad Request)
+    // Ej: ?count=todos en un listado paginado
+    // =======================================================
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<ErrorDetails> handleMethodArgumentTypeMismatchException(
+            MethodArgumentTypeMismatchException exception,
+            WebRequest webRequest) {
+
+        ErrorDetails errorDetails = new ErrorDetails(
+                LocalDateTime.now(),
+                "Valor no válido para el parámetro '" + exception.getName() + "': " + exception.getValue(),
+                webRequest.getDescription(false),
+                HttpStatus.BAD_REQUEST.value()
+        );
+
+        return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
+    }
+
+    // =======================================================
+    // 3d. FICHERO SUBIDO DEMASIADO GRANDE (413 Payload Too Large)
+    // Límites spring.servlet.multipart.* del parser multipart
+    // =======================================================
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<ErrorDetails> handleMaxUploadSizeExceededException(
+            MaxUploadSizeExceededException exception,
+            WebRequest webRequest) {
+
+        ErrorDetails errorDetails = new ErrorDetails(
+                LocalDateTime.now(),
+                "El fichero supera el tamaño máximo permitido",
+                webRequest.getDescription(false),
+                HttpStatus.PAYLOAD_TOO_LARGE.value()
+        );
+
+        return new ResponseEntity<>(errorDetails, HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
     // =======================================================
     // 4. MANEJO DE CONFLICTO DE DATOS (409 Conflict)
     // Se utiliza principalmente para violaciones de unicidad (UNIQUE constraints) o NOT NULL
@@ -121,6 +181,27 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorDetails, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    // =======================================================
+    // 5b. SERVIDOR SATURADO (503 Service Unavailable)
+    // Cola de ingesta llena: Retry-After indica cuándo reintentar
+    // =======================================================
+    @ExceptionHandler(ServicioSaturadoException.class)
+    public ResponseEntity<ErrorDetails> handleServicioSaturadoException(
+            ServicioSaturadoException exception,
+            WebRequest webRequest) {
+
+        ErrorDetails errorDetails = new ErrorDetails(
+                LocalDateTime.now(),
+                exception.getMessage(),
+                webRequest.getDescription(false),
+                HttpStatus.SERVICE_UNAVAILABLE.value()
+        );
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, exception.getReintentarEn().toSeconds())))
+                .body(errorDetails);
+    }
+
     // =======================================================
     // 6. MANEJO DE EXCEPCIÓN GENÉRICA (500 Internal Server Error)
     // =======================================================
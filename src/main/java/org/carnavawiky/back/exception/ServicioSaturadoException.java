@@ -0,0 +1,18 @@
+package org.carnavawiky.back.exception;
+
+import java.time.Duration;
+
+// El servidor no puede aceptar más trabajo por ahora (cola llena): el cliente debe reintentar más tarde
+public class ServicioSaturadoException extends RuntimeException {
+
+    private final Duration reintentarEn;
+
+    public ServicioSaturadoException(String message, Duration reintentarEn) {
+        super(message);
+        this.reintentarEn = reintentarEn;
+    }
+
+    public Duration getReintentarEn() {
+        return reintentarEn;
+    }
+}
@@ -44,6 +44,13 @@ public class ComentarioMapper {
             response.setAgrupacionNombre(entity.getAgrupacion().getNombre());
         }
 
+        // Hilo
+        response.setPadreId(entity.getPadreId());
+        response.setRaizId(entity.getRaizId());
+        response.setProfundidad(entity.getProfundidad());
+        response.setRespuestas(entity.getRespuestas());
+        response.setRespuestasTotales(entity.getRespuestasTotales());
+
         return response;
     }
 }
\ No newline at end of file
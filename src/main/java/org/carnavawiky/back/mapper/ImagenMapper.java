@@ -1,9 +1,14 @@
 package org.carnavawiky.back.mapper;
 
 import org.carnavawiky.back.dto.ImagenResponse;
+import org.carnavawiky.back.dto.PortadaResponse;
 import org.carnavawiky.back.model.Imagen;
+import org.carnavawiky.back.model.ImagenVariante;
+import org.carnavawiky.back.repository.ImagenRepository;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 @Component
 public class ImagenMapper {
 
@@ -19,6 +24,11 @@ public class ImagenMapper {
         response.setNombreFichero(entity.getNombreFichero());
         response.setUrlPublica(entity.getUrlPublica());
         response.setEsPortada(entity.getEsPortada() != null && entity.getEsPortada());
+        response.setAncho(entity.getAncho());
+        response.setAlto(entity.getAlto());
+        response.setTamanoBytes(entity.getTamanoBytes());
+        response.setColorDominante(entity.getColorDominante());
+        response.setMarcador(entity.getMarcador());
 
         // Mapeo de Agrupación
         if (entity.getAgrupacion() != null) {
@@ -28,4 +38,39 @@ public class ImagenMapper {
 
         return response;
     }
+
+    /**
+     * Igual que toResponse(entity), añadiendo las URLs de sus copias reducidas.
+     */
+    public ImagenResponse toResponse(Imagen entity, List<ImagenVariante> variantes) {
+        ImagenResponse response = toResponse(entity);
+        for (ImagenVariante variante : variantes) {
+            response.getVariantes().put(variante.getAncho(), urlVariante(variante));
+        }
+        return response;
+    }
+
+    /**
+     * Convierte la proyección de ImagenRepository.findPortadas a la portada de un listado.
+     */
+    public PortadaResponse toPortadaResponse(ImagenRepository.Portada portada) {
+        return PortadaResponse.builder()
+                .imagenId(portada.getImagenId())
+                .urlPublica(portada.getUrlPublica())
+                .urlMiniatura(portada.getMiniatura() != null ? urlVariante(portada.getMiniatura()) : portada.getUrlPublica())
+                .ancho(portada.getAncho())
+                .alto(portada.getAlto())
+                .colorDominante(portada.getColorDominante())
+                .marcador(portada.getMarcador())
+                .build();
+    }
+
+    // Subdirectorio "variantes" del almacén, servido bajo /api/imagenes/**
+    public String urlVariante(ImagenVariante variante) {
+        return urlVariante(variante.getNombreFichero());
+    }
+
+    private static String urlVariante(String nombreFichero) {
+        return "/api/imagenes/variantes/" + nombreFichero;
+    }
 }
\ No newline at end of file
@@ -11,7 +11,12 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "comentario")
+@Table(name = "comentario", indexes = {
+        // Cola de moderación: pendientes en orden de llegada, sin recorrer los ya aprobados
+        @Index(name = "idx_comentario_pendientes", columnList = "aprobado, fechaCreacion, id"),
+        // Hilos: un hilo (o una rama, por prefijo de ruta) en orden de lectura con un rango del índice
+        @Index(name = "idx_comentario_hilo", columnList = "raizId, ruta")
+})
 @EntityListeners(AuditingEntityListener.class)
 @NoArgsConstructor
 @AllArgsConstructor
@@ -51,4 +56,35 @@ public class Comentario {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "agrupacion_id", nullable = false)
     private Agrupacion agrupacion;
+
+    // =======================================================
+    // HILOS DE RESPUESTAS (HilosComentarios)
+    // =======================================================
+    // Ids sueltos y no relaciones: leer un hilo nunca navega de respuesta en respuesta
+    @Column(name = "padre_id")
+    private Long padreId; // null: comentario raíz
+
+    @Column(name = "raiz_id")
+    private Long raizId; // Comentario raíz del hilo (él mismo si es raíz)
+
+    // Ruta materializada: ids de la raíz hasta él, con ancho fijo ("000000000012/000000000345/").
+    // Ordenar por ruta da el hilo en orden de lectura (cada respuesta tras su padre)
+    @Column(length = 300)
+    private String ruta;
+
+    private Integer profundidad; // 0 en la raíz
+
+    // Contadores desnormalizados de respuestas APROBADAS: directas y de toda la rama
+    @Column(nullable = false)
+    private Long respuestas = 0L;
+
+    @Column(name = "respuestas_totales", nullable = false)
+    private Long respuestasTotales = 0L;
+
+    // =======================================================
+    // INGESTA DIFERIDA (IngestaComentarios)
+    // =======================================================
+    // Clave de la entrada del diario de la que salió: reescribir el diario tras una caída no duplica
+    @Column(name = "id_ingesta", length = 36, unique = true)
+    private String idIngesta;
 }
\ No newline at end of file
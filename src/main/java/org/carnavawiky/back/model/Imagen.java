@@ -34,4 +34,25 @@ public class Imagen {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "agrupacion_id", nullable = false)
     private Agrupacion agrupacion;
-}
\ No newline at end of file
+
+    // Huella SHA-256 (hex) calculada al subir; null en imágenes anteriores a su introducción
+    @Column(length = 64)
+    private String sha256;
+
+    @Column
+    private Long tamanoBytes;
+
+    // Calculados al subir (PrevisualizacionImagenes) para maquetar sin descargar la imagen;
+    // null si no es una imagen legible o si es anterior a su introducción
+    private Integer ancho;
+
+    private Integer alto;
+
+    // ej: #a1b2c3
+    @Column(length = 7)
+    private String colorDominante;
+
+    // PNG difuminado de como mucho 16 px como data URI (unos cientos de bytes)
+    @Column(length = 2048)
+    private String marcador;
+}
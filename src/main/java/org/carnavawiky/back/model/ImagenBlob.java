@@ -0,0 +1,41 @@
+package org.carnavawiky.back.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Fichero físico del almacén de imágenes, identificado por el SHA-256 de su contenido.
+ * Varias filas de Imagen (el mismo cartel en distintas agrupaciones o años) comparten un blob;
+ * el fichero se borra cuando el contador de referencias llega a cero.
+ */
+@Data
+@Entity
+@Table(name = "imagen_blob")
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImagenBlob {
+
+    @Id
+    @Column(length = 64)
+    private String sha256;
+
+    // hash + extensión de la primera subida (ej: 3a6e...c8b7.jpg)
+    @Column(nullable = false)
+    private String nombreFichero;
+
+    @Column(nullable = false)
+    private String rutaAbsoluta;
+
+    @Column(nullable = false)
+    private Long tamanoBytes;
+
+    // Filas de Imagen que apuntan a este blob
+    @Column(nullable = false)
+    private Integer referencias = 0;
+
+    // true cuando ya se han intentado generar sus variantes reducidas (aunque no hubiera ninguna)
+    @Column(nullable = false)
+    private Boolean variantesGeneradas = false;
+}
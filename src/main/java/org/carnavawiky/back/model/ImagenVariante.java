@@ -0,0 +1,44 @@
+package org.carnavawiky.back.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Copia reducida (sin metadatos EXIF) de un blob de imagen a un ancho fijo.
+ * Pertenece al contenido y no a cada Imagen: todas las filas que comparten
+ * blob comparten también sus variantes.
+ */
+@Data
+@Entity
+@Table(name = "imagen_variante",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"sha256", "ancho"}))
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImagenVariante {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Blob original (ImagenBlob.sha256)
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    @Column(nullable = false)
+    private Integer ancho;
+
+    @Column(nullable = false)
+    private Integer alto;
+
+    // ej: 3a6e...c8b7_480.jpg, servido en /api/imagenes/variantes/<nombreFichero>
+    @Column(nullable = false)
+    private String nombreFichero;
+
+    @Column(nullable = false)
+    private String rutaAbsoluta;
+
+    @Column(nullable = false)
+    private Long tamanoBytes;
+}
@@ -0,0 +1,44 @@
+package org.carnavawiky.back.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Sesión de subida reanudable: la imagen llega por trozos a un fichero preasignado
+ * (<location>/subidas/<id>.part) y se da de alta al finalizar. Sobrevive a reinicios,
+ * así que el cliente puede preguntar cuántos bytes tiene el servidor y seguir desde ahí.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@Table(name = "subida_imagen", indexes = @Index(name = "idx_subida_imagen_expira", columnList = "expira"))
+public class SubidaImagen {
+
+    // UUID aleatorio: es también la credencial para enviar trozos a la sesión
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(nullable = false)
+    private Long agrupacionId;
+
+    private String nombreOriginal;
+
+    @Column(nullable = false)
+    private Boolean esPortada = false;
+
+    // Tamaño total declarado al crear la sesión
+    @Column(nullable = false)
+    private Long tamanoBytes;
+
+    // Bytes contiguos desde el principio ya escritos y forzados a disco
+    @Column(nullable = false)
+    private Long recibidos = 0L;
+
+    // Se renueva con cada trozo; pasada esta fecha la sesión y su fichero se borran
+    @Column(nullable = false)
+    private Instant expira;
+}
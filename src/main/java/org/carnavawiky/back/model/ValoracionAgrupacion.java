@@ -0,0 +1,49 @@
+package org.carnavawiky.back.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Agregado de las puntuaciones de los comentarios APROBADOS de una agrupación.
+ * Se mantiene con UPDATE atómicos desde ComentarioService (aprobar, actualizar, eliminar),
+ * así que un listado "mejor valoradas" no agrupa la tabla de comentarios en cada petición.
+ * Los comentarios sin puntuación no cuentan.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@Table(name = "valoracion_agrupacion", indexes = @Index(name = "idx_valoracion_media", columnList = "media, numero"))
+public class ValoracionAgrupacion {
+
+    @Id
+    @Column(name = "agrupacion_id")
+    private Long agrupacionId;
+
+    @Column(nullable = false)
+    private Long numero = 0L;
+
+    @Column(nullable = false)
+    private Long suma = 0L;
+
+    // =======================================================
+    // HISTOGRAMA (puntuaciones de 1 a 5)
+    // =======================================================
+    @Column(nullable = false)
+    private Long votos1 = 0L;
+
+    @Column(nullable = false)
+    private Long votos2 = 0L;
+
+    @Column(nullable = false)
+    private Long votos3 = 0L;
+
+    @Column(nullable = false)
+    private Long votos4 = 0L;
+
+    @Column(nullable = false)
+    private Long votos5 = 0L;
+
+    // suma / numero, guardada para poder ordenar por índice; null si no hay puntuaciones
+    private Double media;
+}
@@ -1,18 +1,95 @@
 package org.carnavawiky.back.repository;
 
+import jakarta.persistence.LockModeType;
+import org.carnavawiky.back.dto.AgrupacionResponse;
 import org.carnavawiky.back.model.Agrupacion;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page; // <-- NECESARIA
 import org.springframework.data.domain.Pageable; // <-- NECESARIA
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface AgrupacionRepository extends JpaRepository<Agrupacion, Long> {
 
-    // Met PARA BÚSQUEDA (Página y filtra por nombre o descripción)
-    Page<Agrupacion> findByNombreContainingIgnoreCaseOrDescripcionContainingIgnoreCase(
-            String nombre, String descripcion, Pageable pageable);
+    // =======================================================
+    // LECTURAS PARA LISTADOS: proyección directa a AgrupacionResponse
+    // (una sola consulta, sin entidades gestionadas ni N+1)
+    // =======================================================
+
+    String SELECT_RESPONSE = "SELECT new org.carnavawiky.back.dto.AgrupacionResponse(" +
+            "a.id, a.nombre, a.descripcion, a.fechaAlta, u.username, a.anho, a.modalidad, l.id, l.nombre) " +
+            "FROM Agrupacion a JOIN a.usuarioCreador u JOIN a.localidad l";
+
+    String WHERE_BUSQUEDA = " WHERE LOWER(a.nombre) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
+            "LOWER(a.descripcion) LIKE LOWER(CONCAT('%', :search, '%'))";
+
+    // Paginación simple
+    @Query(SELECT_RESPONSE)
+    Slice<AgrupacionResponse> findAllResponses(Pageable pageable);
+
+    // Búsqueda por nombre o descripción (fallback del índice en memoria)
+    @Query(SELECT_RESPONSE + WHERE_BUSQUEDA)
+    Slice<AgrupacionResponse> searchResponses(@Param("search") String search, Pageable pageable);
+
+    @Query("SELECT COUNT(a) FROM Agrupacion a" + WHERE_BUSQUEDA)
+    long countBusqueda(@Param("search") String search);
+
+    // Mejor valoradas primero (agregado ValoracionAgrupacion, sin recorrer comentarios);
+    // las que no tienen puntuaciones, al final
+    String JOIN_VALORACION = " LEFT JOIN ValoracionAgrupacion v ON v.agrupacionId = a.id";
+    String ORDEN_VALORACION = " ORDER BY v.media DESC NULLS LAST, v.numero DESC, a.id";
+
+    @Query(SELECT_RESPONSE + JOIN_VALORACION + ORDEN_VALORACION)
+    Slice<AgrupacionResponse> findAllResponsesPorValoracion(Pageable pageable);
+
+    @Query(SELECT_RESPONSE + JOIN_VALORACION + WHERE_BUSQUEDA + ORDEN_VALORACION)
+    Slice<AgrupacionResponse> searchResponsesPorValoracion(@Param("search") String search, Pageable pageable);
+
+    // Carga de una página de IDs (resultado del índice de búsqueda)
+    @Query(SELECT_RESPONSE + " WHERE a.id IN :ids")
+    List<AgrupacionResponse> findResponsesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Serializa la creación de filas dependientes de la agrupación (p. ej. su valoración)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Agrupacion a WHERE a.id = :id")
+    Optional<Agrupacion> findByIdParaActualizar(@Param("id") Long id);
 
     // Mét para buscar agrupaciones por una parte de su nombre, ignorando mayúsculas/minúsculas, con paginación.
     Page<Agrupacion> findAllByNombreContainingIgnoreCase(String nombre, Pageable pageable);
-}
\ No newline at end of file
+
+    // Proyección mínima para construir el índice de búsqueda en memoria (sin materializar entidades)
+    @Query("SELECT a.id AS id, a.nombre AS nombre, a.descripcion AS descripcion FROM Agrupacion a")
+    List<DatosBusqueda> findAllDatosBusqueda();
+
+    interface DatosBusqueda {
+        Long getId();
+        String getNombre();
+        String getDescripcion();
+    }
+
+    // =======================================================
+    // PAGINACIÓN POR CURSOR (keyset): sin OFFSET ni COUNT(*)
+    // =======================================================
+    @EntityGraph(attributePaths = {"usuarioCreador", "localidad"})
+    Window<Agrupacion> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    @EntityGraph(attributePaths = {"usuarioCreador", "localidad"})
+    Window<Agrupacion> findByNombreContainingIgnoreCaseOrDescripcionContainingIgnoreCase(String nombre, String descripcion, ScrollPosition position, Sort sort, Limit limit);
+
+    // Fichas que muestran el nombre de la localidad (desalojo de agrupacion_by_id al renombrarla)
+    @Query("SELECT a.id FROM Agrupacion a WHERE a.localidad.id = :localidadId")
+    List<Long> findIdsByLocalidadId(@Param("localidadId") Long localidadId);
+}
@@ -0,0 +1,67 @@
+package org.carnavawiky.back.repository;
+
+import org.carnavawiky.back.model.Comentario;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Alta de comentarios en un único lote JDBC (ingesta diferida, IngestaComentarios).
+ * Cada fila es un INSERT ... SELECT: si el usuario o la agrupación no existen, o la entrada del
+ * diario ya se insertó antes de una caída (id_ingesta), esa fila no inserta nada en lugar de
+ * abortar el lote entero con una violación de clave. Corre en la transacción en curso.
+ * Solo comentarios raíz: la ruta del hilo (que incluye el id) la completa después
+ * ComentarioRepository.completarRaicesIngeridas en la misma transacción.
+ */
+@Repository
+public class ComentarioLoteRepository {
+
+    private static final String INSERTAR = "INSERT INTO comentario "
+            + "(contenido, puntuacion, aprobado, fecha_creacion, id_ingesta, profundidad, respuestas, respuestas_totales, "
+            + "usuario_id, agrupacion_id) "
+            + "SELECT ?, ?, FALSE, ?, ?, 0, 0, 0, u.id, a.id FROM usuario u, agrupacion a "
+            + "WHERE u.id = ? AND a.id = ? "
+            + "AND NOT EXISTS (SELECT 1 FROM comentario c WHERE c.id_ingesta = ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserta los comentarios (con idIngesta, fechaCreacion y las referencias por id).
+     * Devuelve las filas insertadas; algunos drivers (MySQL con rewriteBatchedStatements)
+     * no informan por sentencia y entonces se cuentan todas las del lote.
+     */
+    public int insertar(List<Comentario> comentarios) {
+        if (comentarios.isEmpty()) {
+            return 0;
+        }
+        int[] filas = jdbcTemplate.batchUpdate(INSERTAR, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Comentario comentario = comentarios.get(i);
+                ps.setString(1, comentario.getContenido());
+                ps.setObject(2, comentario.getPuntuacion(), Types.INTEGER);
+                ps.setTimestamp(3, Timestamp.valueOf(comentario.getFechaCreacion()));
+                ps.setString(4, comentario.getIdIngesta());
+                ps.setLong(5, comentario.getUsuario().getId());
+                ps.setLong(6, comentario.getAgrupacion().getId());
+                ps.setString(7, comentario.getIdIngesta());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return comentarios.size();
+            }
+        });
+        return Arrays.stream(filas).map(n -> n == Statement.SUCCESS_NO_INFO ? 1 : Math.max(n, 0)).sum();
+    }
+}
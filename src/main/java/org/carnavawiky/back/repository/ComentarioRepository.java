@@ -1,23 +1,152 @@
 package org.carnavawiky.back.repository;
 
+import jakarta.persistence.LockModeType;
+import org.carnavawiky.back.dto.ComentarioResponse;
 import org.carnavawiky.back.model.Comentario;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface ComentarioRepository extends JpaRepository<Comentario, Long> {
 
-    // 1. Obtener SOLO comentarios APROBADOS paginados por Agrupación (Uso Público)
-    Page<Comentario> findByAgrupacion_IdAndAprobadoTrueOrderByFechaCreacionDesc(Long agrupacionId, Pageable pageable);
-
-    // 2. Obtener SOLO comentarios APROBADOS paginados por Usuario (Uso Público)
+    // 1. Obtener SOLO comentarios APROBADOS paginados por Usuario (Uso Público)
     Page<Comentario> findByUsuario_IdAndAprobadoTrue(Long usuarioId, Pageable pageable);
 
-    // 3. Obtener TODOS los comentarios (Aprobados o No) para la moderación (Uso ADMIN)
-    // Usamos findAll() estándar de JpaRepository.
+    // 2. Obtener TODOS los comentarios (Aprobados o No) para la moderación (Uso ADMIN)
+    // Usamos findAllResponses() (proyección).
 
-    // 4. Búsqueda simple por contenido (SOLO APROBADOS para público)
+    // 3. Búsqueda simple por contenido (SOLO APROBADOS para público)
+    @EntityGraph(attributePaths = {"usuario", "agrupacion"})
     Page<Comentario> findByContenidoContainingIgnoreCaseAndAprobadoTrue(String contenido, Pageable pageable);
-}
\ No newline at end of file
+
+    // Aprobar, editar y borrar bloquean el comentario: dos aprobaciones simultáneas
+    // no lo suman dos veces a la valoración de la agrupación
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Comentario c WHERE c.id = :id")
+    Optional<Comentario> findByIdParaActualizar(@Param("id") Long id);
+
+    // =======================================================
+    // MODERACIÓN EN LOTE: sentencias por conjunto de ids, no una por comentario
+    // =======================================================
+
+    // Ordenados por id: dos lotes que se solapan bloquean las filas en el mismo orden
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Comentario c WHERE c.id IN :ids ORDER BY c.id")
+    List<Comentario> findAllByIdParaActualizar(@Param("ids") Collection<Long> ids);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Comentario c SET c.aprobado = TRUE WHERE c.id IN :ids AND c.aprobado = FALSE")
+    int aprobarPendientes(@Param("ids") Collection<Long> ids);
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Comentario c WHERE c.id IN :ids AND c.aprobado = FALSE")
+    int eliminarPendientes(@Param("ids") Collection<Long> ids);
+
+    // =======================================================
+    // LECTURAS PARA LISTADOS: proyección directa a ComentarioResponse
+    // =======================================================
+
+    String SELECT_RESPONSE = "SELECT new org.carnavawiky.back.dto.ComentarioResponse(" +
+            "c.id, c.contenido, c.puntuacion, c.aprobado, c.fechaCreacion, u.id, u.username, a.id, a.nombre, " +
+            "c.padreId, c.raizId, c.profundidad, c.respuestas, c.respuestasTotales) " +
+            "FROM Comentario c JOIN c.usuario u JOIN c.agrupacion a";
+
+    @Query(SELECT_RESPONSE)
+    Slice<ComentarioResponse> findAllResponses(Pageable pageable);
+
+    @Query(SELECT_RESPONSE + " WHERE a.id = :agrupacionId AND c.aprobado = TRUE ORDER BY c.fechaCreacion DESC")
+    Slice<ComentarioResponse> findAprobadosResponsesByAgrupacionId(@Param("agrupacionId") Long agrupacionId, Pageable pageable);
+
+    @Query("SELECT COUNT(c) FROM Comentario c WHERE c.agrupacion.id = :agrupacionId AND c.aprobado = TRUE")
+    long countAprobadosByAgrupacionId(@Param("agrupacionId") Long agrupacionId);
+
+    @Query(SELECT_RESPONSE + " WHERE LOWER(c.contenido) LIKE LOWER(CONCAT('%', :contenido, '%')) AND c.aprobado = TRUE")
+    Slice<ComentarioResponse> findAprobadosResponsesByContenido(@Param("contenido") String contenido, Pageable pageable);
+
+    @Query("SELECT COUNT(c) FROM Comentario c " +
+            "WHERE LOWER(c.contenido) LIKE LOWER(CONCAT('%', :contenido, '%')) AND c.aprobado = TRUE")
+    long countAprobadosByContenido(@Param("contenido") String contenido);
+
+    // =======================================================
+    // HILOS DE RESPUESTAS: ruta materializada, una consulta por página de hilos o por rama
+    // =======================================================
+
+    // Raíces aprobadas de una agrupación (paginación por cursor)
+    @EntityGraph(attributePaths = {"usuario", "agrupacion"})
+    Window<Comentario> findByAgrupacion_IdAndPadreIdIsNullAndAprobadoTrue(Long agrupacionId, ScrollPosition position, Sort sort, Limit limit);
+
+    // Respuestas aprobadas de un hilo hasta una profundidad, en orden de lectura (rango de idx_comentario_hilo)
+    @Query(SELECT_RESPONSE + " WHERE c.raizId = :raizId AND c.profundidad BETWEEN 1 AND :profundidad " +
+            "AND c.aprobado = TRUE ORDER BY c.ruta")
+    List<ComentarioResponse> findRespuestasHiloResponses(@Param("raizId") Long raizId,
+                                                         @Param("profundidad") int profundidad, Limit limit);
+
+    // Una rama (el comentario y sus respuestas aprobadas) por prefijo de ruta, en orden de lectura
+    @Query(SELECT_RESPONSE + " WHERE c.raizId = :raizId AND c.ruta LIKE :prefijo AND c.profundidad <= :profundidad " +
+            "AND c.aprobado = TRUE ORDER BY c.ruta")
+    List<ComentarioResponse> findRamaResponses(@Param("raizId") Long raizId, @Param("prefijo") String prefijo,
+                                               @Param("profundidad") int profundidad, Limit limit);
+
+    boolean existsByPadreId(Long padreId);
+
+    // Contadores: una sentencia por conjunto de comentarios con el mismo delta
+    @Modifying
+    @Query("UPDATE Comentario c SET c.respuestas = c.respuestas + :delta WHERE c.id IN :ids")
+    int sumarRespuestas(@Param("ids") Collection<Long> ids, @Param("delta") long delta);
+
+    @Modifying
+    @Query("UPDATE Comentario c SET c.respuestasTotales = c.respuestasTotales + :delta WHERE c.id IN :ids")
+    int sumarRespuestasTotales(@Param("ids") Collection<Long> ids, @Param("delta") long delta);
+
+    // Descendientes de una rama (sin el propio comentario), aprobados o no
+    @Modifying
+    @Query("DELETE FROM Comentario c WHERE c.raizId = :raizId AND c.ruta LIKE :prefijo AND c.id <> :id")
+    int eliminarDescendientes(@Param("raizId") Long raizId, @Param("prefijo") String prefijo, @Param("id") Long id);
+
+    // Raíces sin ruta (la ruta incluye el id, que no existe hasta insertar)
+    String COMPLETAR_RAIZ = "UPDATE Comentario c SET c.raizId = c.id, c.profundidad = 0, " +
+            "c.ruta = CONCAT(pad(CAST(c.id AS String) WITH 12 LEADING '0'), '/') " +
+            "WHERE c.ruta IS NULL AND c.padreId IS NULL";
+
+    // Comentarios anteriores a los hilos: una vez al arrancar
+    @Modifying
+    @Query(COMPLETAR_RAIZ)
+    int completarRaices();
+
+    // Recién insertados por la ingesta diferida: solo sus filas, por el índice único de id_ingesta
+    @Modifying
+    @Query(COMPLETAR_RAIZ + " AND c.idIngesta IN :idsIngesta")
+    int completarRaicesIngeridas(@Param("idsIngesta") Collection<String> idsIngesta);
+
+    // =======================================================
+    // PAGINACIÓN POR CURSOR (keyset): sin OFFSET ni COUNT(*)
+    // =======================================================
+    @EntityGraph(attributePaths = {"usuario", "agrupacion"})
+    Window<Comentario> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    @EntityGraph(attributePaths = {"usuario", "agrupacion"})
+    Window<Comentario> findByAgrupacion_IdAndAprobadoTrue(Long agrupacionId, ScrollPosition position, Sort sort, Limit limit);
+
+    // Cola de moderación (índice idx_comentario_pendientes)
+    @EntityGraph(attributePaths = {"usuario", "agrupacion"})
+    Window<Comentario> findByAprobadoFalse(ScrollPosition position, Sort sort, Limit limit);
+
+    @EntityGraph(attributePaths = {"usuario", "agrupacion"})
+    Window<Comentario> findByContenidoContainingIgnoreCaseAndAprobadoTrue(String contenido, ScrollPosition position, Sort sort, Limit limit);
+}
@@ -1,8 +1,15 @@
 package org.carnavawiky.back.repository;
 
+import org.carnavawiky.back.dto.ComponenteResponse;
 import org.carnavawiky.back.model.Componente;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -14,10 +21,34 @@ public interface ComponenteRepository extends JpaRepository<Componente, Long> {
     // Búsqueda por agrupación (útil para obtener el listado de componentes de una agrupación)
     Page<Componente> findByAgrupacion_Id(Long agrupacionId, Pageable pageable);
 
-    // Búsqueda flexible por nombre/apodo de la Persona
-    @Query("SELECT c FROM Componente c WHERE " +
-            "LOWER(c.persona.nombreReal) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-            "LOWER(c.persona.apodo) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-            "LOWER(c.agrupacion.nombre) LIKE LOWER(CONCAT('%', :search, '%'))")
-    Page<Componente> findBySearchTerm(@Param("search") String search, Pageable pageable);
-}
\ No newline at end of file
+    // =======================================================
+    // LECTURAS PARA LISTADOS: proyección directa a ComponenteResponse
+    // =======================================================
+
+    String SELECT_RESPONSE = "SELECT new org.carnavawiky.back.dto.ComponenteResponse(" +
+            "c.id, c.rol, p.id, p.apodo, p.nombreReal, a.id, a.nombre) " +
+            "FROM Componente c JOIN c.persona p JOIN c.agrupacion a";
+
+    String WHERE_BUSQUEDA = " WHERE LOWER(p.nombreReal) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
+            "LOWER(p.apodo) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
+            "LOWER(a.nombre) LIKE LOWER(CONCAT('%', :search, '%'))";
+
+    @Query(SELECT_RESPONSE)
+    Slice<ComponenteResponse> findAllResponses(Pageable pageable);
+
+    @Query(SELECT_RESPONSE + WHERE_BUSQUEDA)
+    Slice<ComponenteResponse> searchResponses(@Param("search") String search, Pageable pageable);
+
+    @Query("SELECT COUNT(c) FROM Componente c JOIN c.persona p JOIN c.agrupacion a" + WHERE_BUSQUEDA)
+    long countBusqueda(@Param("search") String search);
+
+    // =======================================================
+    // PAGINACIÓN POR CURSOR (keyset): sin OFFSET ni COUNT(*)
+    // =======================================================
+    @EntityGraph(attributePaths = {"persona", "agrupacion"})
+    Window<Componente> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    @EntityGraph(attributePaths = {"persona", "agrupacion"})
+    Window<Componente> findByPersona_NombreRealContainingIgnoreCaseOrPersona_ApodoContainingIgnoreCaseOrAgrupacion_NombreContainingIgnoreCase(
+            String nombreReal, String apodo, String nombreAgrupacion, ScrollPosition position, Sort sort, Limit limit);
+}
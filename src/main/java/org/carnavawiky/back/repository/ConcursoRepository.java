@@ -1,14 +1,57 @@
 package org.carnavawiky.back.repository;
 
+import org.carnavawiky.back.dto.ConcursoResponse;
 import org.carnavawiky.back.model.Concurso;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface ConcursoRepository extends JpaRepository<Concurso, Long> {
 
     // Método para paginación y búsqueda por nombre (sin distinción de mayúsculas/minúsculas)
     Page<Concurso> findByNombreContainingIgnoreCase(String nombre, Pageable pageable);
-}
\ No newline at end of file
+
+    // =======================================================
+    // LECTURAS PARA LISTADOS: proyección directa a ConcursoResponse
+    // =======================================================
+
+    String SELECT_RESPONSE = "SELECT new org.carnavawiky.back.dto.ConcursoResponse(" +
+            "c.id, c.nombre, c.estaActivo, l.id, l.nombre) " +
+            "FROM Concurso c JOIN c.localidad l";
+
+    String WHERE_BUSQUEDA = " WHERE LOWER(c.nombre) LIKE LOWER(CONCAT('%', :nombre, '%'))";
+
+    @Query(SELECT_RESPONSE)
+    Slice<ConcursoResponse> findAllResponses(Pageable pageable);
+
+    @Query(SELECT_RESPONSE + WHERE_BUSQUEDA)
+    Slice<ConcursoResponse> searchResponses(@Param("nombre") String nombre, Pageable pageable);
+
+    @Query("SELECT COUNT(c) FROM Concurso c" + WHERE_BUSQUEDA)
+    long countBusqueda(@Param("nombre") String nombre);
+
+    // =======================================================
+    // PAGINACIÓN POR CURSOR (keyset): sin OFFSET ni COUNT(*)
+    // =======================================================
+    @EntityGraph(attributePaths = {"localidad"})
+    Window<Concurso> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    @EntityGraph(attributePaths = {"localidad"})
+    Window<Concurso> findByNombreContainingIgnoreCase(String nombre, ScrollPosition position, Sort sort, Limit limit);
+
+    // Fichas que muestran el nombre de la localidad (desalojo de concurso_by_id al renombrarla)
+    @Query("SELECT c.id FROM Concurso c WHERE c.localidad.id = :localidadId")
+    List<Long> findIdsByLocalidadId(@Param("localidadId") Long localidadId);
+}
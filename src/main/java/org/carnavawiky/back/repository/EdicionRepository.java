@@ -1,11 +1,22 @@
 package org.carnavawiky.back.repository;
 
+import org.carnavawiky.back.dto.EdicionResponse;
 import org.carnavawiky.back.model.Edicion;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface EdicionRepository extends JpaRepository<Edicion, Long> {
 
@@ -14,4 +25,44 @@ public interface EdicionRepository extends JpaRepository<Edicion, Long> {
 
     // Mét para paginación y búsqueda por una parte del nombre del Concurso (para búsquedas flexibles)
     Page<Edicion> findByConcurso_NombreContainingIgnoreCase(String nombreConcurso, Pageable pageable);
-}
\ No newline at end of file
+
+    // =======================================================
+    // LECTURAS PARA LISTADOS: proyección directa a EdicionResponse
+    // =======================================================
+
+    String SELECT_RESPONSE = "SELECT new org.carnavawiky.back.dto.EdicionResponse(" +
+            "e.id, e.anho, c.id, c.nombre) " +
+            "FROM Edicion e JOIN e.concurso c";
+
+    @Query(SELECT_RESPONSE)
+    Slice<EdicionResponse> findAllResponses(Pageable pageable);
+
+    @Query(SELECT_RESPONSE + " WHERE e.anho = :anho")
+    Slice<EdicionResponse> findResponsesByAnho(@Param("anho") Integer anho, Pageable pageable);
+
+    @Query("SELECT COUNT(e) FROM Edicion e WHERE e.anho = :anho")
+    long countByAnho(@Param("anho") Integer anho);
+
+    @Query(SELECT_RESPONSE + " WHERE LOWER(c.nombre) LIKE LOWER(CONCAT('%', :nombre, '%'))")
+    Slice<EdicionResponse> findResponsesByConcursoNombre(@Param("nombre") String nombreConcurso, Pageable pageable);
+
+    @Query("SELECT COUNT(e) FROM Edicion e JOIN e.concurso c " +
+            "WHERE LOWER(c.nombre) LIKE LOWER(CONCAT('%', :nombre, '%'))")
+    long countByConcursoNombre(@Param("nombre") String nombreConcurso);
+
+    // Fichas que muestran el nombre del concurso (desalojo de edicion_by_id al renombrarlo)
+    @Query("SELECT e.id FROM Edicion e WHERE e.concurso.id = :concursoId")
+    List<Long> findIdsByConcursoId(@Param("concursoId") Long concursoId);
+
+    // =======================================================
+    // PAGINACIÓN POR CURSOR (keyset): sin OFFSET ni COUNT(*)
+    // =======================================================
+    @EntityGraph(attributePaths = {"concurso"})
+    Window<Edicion> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    @EntityGraph(attributePaths = {"concurso"})
+    Window<Edicion> findByAnho(Integer anho, ScrollPosition position, Sort sort, Limit limit);
+
+    @EntityGraph(attributePaths = {"concurso"})
+    Window<Edicion> findByConcurso_NombreContainingIgnoreCase(String nombreConcurso, ScrollPosition position, Sort sort, Limit limit);
+}
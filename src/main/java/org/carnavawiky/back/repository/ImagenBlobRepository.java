@@ -0,0 +1,32 @@
+package org.carnavawiky.back.repository;
+
+import jakarta.persistence.LockModeType;
+import org.carnavawiky.back.model.ImagenBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ImagenBlobRepository extends JpaRepository<ImagenBlob, String> {
+
+    // SELECT ... FOR UPDATE: serializa altas y bajas de referencias (y el borrado del fichero) por blob
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM ImagenBlob b WHERE b.sha256 = :sha256")
+    Optional<ImagenBlob> findBySha256ParaActualizar(@Param("sha256") String sha256);
+
+    @Query("SELECT b.sha256 FROM ImagenBlob b WHERE b.variantesGeneradas = FALSE")
+    List<String> findSha256SinVariantes();
+
+    // Solo claves: recorrer el almacén entero sin cargar cientos de miles de entidades a la vez
+    @Query("SELECT b.sha256 FROM ImagenBlob b ORDER BY b.sha256")
+    List<String> findAllSha256();
+
+    @Query("SELECT b.nombreFichero FROM ImagenBlob b WHERE b.nombreFichero IN :nombres")
+    List<String> findNombreFicheroIn(@Param("nombres") Collection<String> nombres);
+}
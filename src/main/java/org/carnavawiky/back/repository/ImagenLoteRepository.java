@@ -0,0 +1,73 @@
+package org.carnavawiky.back.repository;
+
+import org.carnavawiky.back.model.Imagen;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Alta de varias filas de imagen en un único lote JDBC (subida múltiple).
+ * Imagen usa IDENTITY y Hibernate no agrupa esos INSERT: aquí se envían juntos y se recuperan
+ * las claves generadas. Corre en la transacción JPA en curso, sobre la misma conexión.
+ */
+@Repository
+public class ImagenLoteRepository {
+
+    private static final String INSERTAR = "INSERT INTO imagen "
+            + "(nombre_fichero, ruta_absoluta, url_publica, es_portada, agrupacion_id, sha256, tamano_bytes, "
+            + "ancho, alto, color_dominante, marcador) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserta las imágenes (sin id) y les asigna el id generado, en el mismo orden.
+     */
+    public void insertar(List<Imagen> imagenes) {
+        if (imagenes.isEmpty()) {
+            return;
+        }
+        GeneratedKeyHolder claves = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERTAR, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Imagen imagen = imagenes.get(i);
+                        ps.setString(1, imagen.getNombreFichero());
+                        ps.setString(2, imagen.getRutaAbsoluta());
+                        ps.setString(3, imagen.getUrlPublica());
+                        ps.setBoolean(4, Boolean.TRUE.equals(imagen.getEsPortada()));
+                        ps.setLong(5, imagen.getAgrupacion().getId());
+                        ps.setString(6, imagen.getSha256());
+                        ps.setObject(7, imagen.getTamanoBytes(), Types.BIGINT);
+                        ps.setObject(8, imagen.getAncho(), Types.INTEGER);
+                        ps.setObject(9, imagen.getAlto(), Types.INTEGER);
+                        ps.setString(10, imagen.getColorDominante());
+                        ps.setString(11, imagen.getMarcador());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return imagenes.size();
+                    }
+                },
+                claves);
+
+        // El nombre de la columna de la clave depende del driver (ID en H2, GENERATED_KEY en MySQL)
+        List<Map<String, Object>> generadas = claves.getKeyList();
+        for (int i = 0; i < imagenes.size(); i++) {
+            imagenes.get(i).setId(((Number) generadas.get(i).values().iterator().next()).longValue());
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package org.carnavawiky.back.repository;
 
 import org.carnavawiky.back.model.Imagen;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,7 +19,45 @@ public interface ImagenRepository extends JpaRepository<Imagen, Long> {
 
     List<Imagen> findByAgrupacion_Id(Long agrupacionId);
 
+    // Imágenes subidas antes del almacén por contenido (sin blob)
+    @Query("SELECT i.id FROM Imagen i WHERE i.sha256 IS NULL")
+    List<Long> findIdsSinHuella();
+
+    // Recorrido completo de la tabla por cursor (keyset), sin OFFSET: lo usa la reconciliación
+    Window<Imagen> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    long countBySha256(String sha256);
+
+    // Cuáles de estos nombres de fichero tienen fila (los demás están huérfanos en disco)
+    @Query("SELECT i.nombreFichero FROM Imagen i WHERE i.nombreFichero IN :nombres")
+    List<String> findNombreFicheroIn(@Param("nombres") Collection<String> nombres);
+
+    // Las filas que comparten blob guardan una copia de su ruta: se actualizan todas a la vez
+    @Modifying
+    @Query("UPDATE Imagen i SET i.rutaAbsoluta = :rutaAbsoluta WHERE i.sha256 = :sha256")
+    int actualizarRutaPorSha256(@Param("sha256") String sha256, @Param("rutaAbsoluta") String rutaAbsoluta);
+
     @Modifying
     @Query("UPDATE Imagen i SET i.esPortada = FALSE WHERE i.agrupacion.id = :agrupacionId AND i.esPortada = TRUE")
     void desmarcarPortadaActual(@Param("agrupacionId") Long agrupacionId);
+
+    // Portadas de una página de agrupaciones en una sola consulta, con su copia reducida de ese ancho si ya existe
+    @Query("SELECT i.agrupacion.id AS agrupacionId, i.id AS imagenId, i.urlPublica AS urlPublica, " +
+            "v.nombreFichero AS miniatura, i.ancho AS ancho, i.alto AS alto, " +
+            "i.colorDominante AS colorDominante, i.marcador AS marcador " +
+            "FROM Imagen i LEFT JOIN ImagenVariante v ON v.sha256 = i.sha256 AND v.ancho = :anchoMiniatura " +
+            "WHERE i.esPortada = TRUE AND i.agrupacion.id IN :agrupacionIds")
+    List<Portada> findPortadas(@Param("agrupacionIds") Collection<Long> agrupacionIds,
+                               @Param("anchoMiniatura") int anchoMiniatura);
+
+    interface Portada {
+        Long getAgrupacionId();
+        Long getImagenId();
+        String getUrlPublica();
+        String getMiniatura(); // nombre de fichero de la variante, null si no hay
+        Integer getAncho();
+        Integer getAlto();
+        String getColorDominante();
+        String getMarcador();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package org.carnavawiky.back.repository;
+
+import org.carnavawiky.back.model.ImagenVariante;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ImagenVarianteRepository extends JpaRepository<ImagenVariante, Long> {
+
+    List<ImagenVariante> findBySha256(String sha256);
+
+    // Variantes de todas las imágenes de un listado en una sola consulta
+    List<ImagenVariante> findBySha256In(Collection<String> sha256s);
+
+    @Query("SELECT v.nombreFichero FROM ImagenVariante v WHERE v.nombreFichero IN :nombres")
+    List<String> findNombreFicheroIn(@Param("nombres") Collection<String> nombres);
+}
@@ -1,9 +1,17 @@
 package org.carnavawiky.back.repository;
 
+import org.carnavawiky.back.dto.LocalidadResponse;
 import org.carnavawiky.back.model.Localidad;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -11,4 +19,28 @@ public interface LocalidadRepository extends JpaRepository<Localidad, Long> {
 
     // Mét para paginación y búsqueda por nombre (sin distinción de mayúsculas/minúsculas)
     Page<Localidad> findByNombreContainingIgnoreCase(String nombre, Pageable pageable);
-}
\ No newline at end of file
+
+    // =======================================================
+    // LECTURAS PARA LISTADOS: proyección directa a LocalidadResponse
+    // =======================================================
+
+    String SELECT_RESPONSE = "SELECT new org.carnavawiky.back.dto.LocalidadResponse(l.id, l.nombre) FROM Localidad l";
+
+    String WHERE_BUSQUEDA = " WHERE LOWER(l.nombre) LIKE LOWER(CONCAT('%', :search, '%'))";
+
+    @Query(SELECT_RESPONSE)
+    Slice<LocalidadResponse> findAllResponses(Pageable pageable);
+
+    @Query(SELECT_RESPONSE + WHERE_BUSQUEDA)
+    Slice<LocalidadResponse> searchResponses(@Param("search") String search, Pageable pageable);
+
+    @Query("SELECT COUNT(l) FROM Localidad l" + WHERE_BUSQUEDA)
+    long countBusqueda(@Param("search") String search);
+
+    // =======================================================
+    // PAGINACIÓN POR CURSOR (keyset): sin OFFSET ni COUNT(*)
+    // =======================================================
+    Window<Localidad> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    Window<Localidad> findByNombreContainingIgnoreCase(String nombre, ScrollPosition position, Sort sort, Limit limit);
+}
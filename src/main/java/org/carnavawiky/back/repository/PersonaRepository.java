@@ -1,11 +1,21 @@
 package org.carnavawiky.back.repository;
 
+import org.carnavawiky.back.dto.PersonaResponse;
 import org.carnavawiky.back.model.Persona;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -19,4 +29,39 @@ public interface PersonaRepository extends JpaRepository<Persona, Long> {
 
     // Para validar la unicidad de la relación 1:1 con Usuario
     Optional<Persona> findByUsuario_Id(Long usuarioId);
-}
\ No newline at end of file
+
+    // =======================================================
+    // LECTURAS PARA LISTADOS: proyección directa a PersonaResponse
+    // El usuario es opcional, por eso LEFT JOIN.
+    // =======================================================
+
+    String SELECT_RESPONSE = "SELECT new org.carnavawiky.back.dto.PersonaResponse(" +
+            "p.id, p.nombreReal, p.apodo, l.id, l.nombre, u.id, u.username) " +
+            "FROM Persona p JOIN p.origen l LEFT JOIN p.usuario u";
+
+    String WHERE_BUSQUEDA = " WHERE LOWER(p.nombreReal) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
+            "LOWER(p.apodo) LIKE LOWER(CONCAT('%', :search, '%'))";
+
+    @Query(SELECT_RESPONSE)
+    Slice<PersonaResponse> findAllResponses(Pageable pageable);
+
+    @Query(SELECT_RESPONSE + WHERE_BUSQUEDA)
+    Slice<PersonaResponse> searchResponses(@Param("search") String search, Pageable pageable);
+
+    @Query("SELECT COUNT(p) FROM Persona p" + WHERE_BUSQUEDA)
+    long countBusqueda(@Param("search") String search);
+
+    // =======================================================
+    // PAGINACIÓN POR CURSOR (keyset): sin OFFSET ni COUNT(*)
+    // =======================================================
+    @EntityGraph(attributePaths = {"origen", "usuario"})
+    Window<Persona> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    @EntityGraph(attributePaths = {"origen", "usuario"})
+    Window<Persona> findByNombreRealContainingIgnoreCaseOrApodoContainingIgnoreCase(
+            String nombreReal, String apodo, ScrollPosition position, Sort sort, Limit limit);
+
+    // Fichas que muestran el nombre de la localidad de origen (desalojo de persona_by_id al renombrarla)
+    @Query("SELECT p.id FROM Persona p WHERE p.origen.id = :localidadId")
+    List<Long> findIdsByOrigenId(@Param("localidadId") Long localidadId);
+}
@@ -1,17 +1,76 @@
 package org.carnavawiky.back.repository;
 
+import org.carnavawiky.back.dto.PremioResponse;
 import org.carnavawiky.back.model.Premio;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface PremioRepository extends JpaRepository<Premio, Long> {
 
     // Búsqueda por año de Edición (útil para listar premios de un año)
+    @EntityGraph(attributePaths = {"agrupacion", "edicion", "edicion.concurso"})
     Page<Premio> findByEdicion_Anho(Integer anho, Pageable pageable);
 
     // Búsqueda por nombre de Agrupación (útil para listar premios de una agrupación)
+    @EntityGraph(attributePaths = {"agrupacion", "edicion", "edicion.concurso"})
     Page<Premio> findByAgrupacion_NombreContainingIgnoreCase(String nombreAgrupacion, Pageable pageable);
-}
\ No newline at end of file
+
+    // =======================================================
+    // LECTURAS PARA LISTADOS: proyección directa a PremioResponse
+    // =======================================================
+
+    String SELECT_RESPONSE = "SELECT new org.carnavawiky.back.dto.PremioResponse(" +
+            "p.id, p.puesto, p.modalidad, a.id, a.nombre, e.id, e.anho, c.nombre) " +
+            "FROM Premio p JOIN p.agrupacion a JOIN p.edicion e JOIN e.concurso c";
+
+    @Query(SELECT_RESPONSE)
+    Slice<PremioResponse> findAllResponses(Pageable pageable);
+
+    @Query(SELECT_RESPONSE + " WHERE e.anho = :anho")
+    Slice<PremioResponse> findResponsesByEdicionAnho(@Param("anho") Integer anho, Pageable pageable);
+
+    @Query("SELECT COUNT(p) FROM Premio p JOIN p.edicion e WHERE e.anho = :anho")
+    long countByEdicionAnho(@Param("anho") Integer anho);
+
+    @Query(SELECT_RESPONSE + " WHERE LOWER(a.nombre) LIKE LOWER(CONCAT('%', :nombre, '%'))")
+    Slice<PremioResponse> findResponsesByAgrupacionNombre(@Param("nombre") String nombreAgrupacion, Pageable pageable);
+
+    @Query("SELECT COUNT(p) FROM Premio p JOIN p.agrupacion a WHERE LOWER(a.nombre) LIKE LOWER(CONCAT('%', :nombre, '%'))")
+    long countByAgrupacionNombre(@Param("nombre") String nombreAgrupacion);
+
+    // Fichas que muestran el nombre de la agrupación, el año de la edición o el nombre del concurso
+    // (desalojo de premio_by_id cuando alguno de ellos cambia)
+    @Query("SELECT p.id FROM Premio p WHERE p.agrupacion.id = :agrupacionId")
+    List<Long> findIdsByAgrupacionId(@Param("agrupacionId") Long agrupacionId);
+
+    @Query("SELECT p.id FROM Premio p WHERE p.edicion.id = :edicionId")
+    List<Long> findIdsByEdicionId(@Param("edicionId") Long edicionId);
+
+    @Query("SELECT p.id FROM Premio p WHERE p.edicion.concurso.id = :concursoId")
+    List<Long> findIdsByConcursoId(@Param("concursoId") Long concursoId);
+
+    // =======================================================
+    // PAGINACIÓN POR CURSOR (keyset): sin OFFSET ni COUNT(*)
+    // =======================================================
+    @EntityGraph(attributePaths = {"agrupacion", "edicion", "edicion.concurso"})
+    Window<Premio> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    @EntityGraph(attributePaths = {"agrupacion", "edicion", "edicion.concurso"})
+    Window<Premio> findByEdicion_Anho(Integer anho, ScrollPosition position, Sort sort, Limit limit);
+
+    @EntityGraph(attributePaths = {"agrupacion", "edicion", "edicion.concurso"})
+    Window<Premio> findByAgrupacion_NombreContainingIgnoreCase(String nombreAgrupacion, ScrollPosition position, Sort sort, Limit limit);
+}
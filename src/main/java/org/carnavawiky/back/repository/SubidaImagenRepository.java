@@ -0,0 +1,35 @@
+package org.carnavawiky.back.repository;
+
+import jakarta.persistence.LockModeType;
+import org.carnavawiky.back.model.SubidaImagen;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SubidaImagenRepository extends JpaRepository<SubidaImagen, String> {
+
+    // Finalizar y caducar bloquean la sesión: ninguna de las dos se cruza con la otra
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM SubidaImagen s WHERE s.id = :id")
+    Optional<SubidaImagen> findByIdParaActualizar(@Param("id") String id);
+
+    /**
+     * Avanza los bytes recibidos solo si el trozo [inicio, fin) continúa lo ya recibido.
+     * Un reenvío de bytes que ya estaban (o un trozo que llega tras otro más adelantado) no actualiza nada.
+     */
+    @Modifying
+    @Query("UPDATE SubidaImagen s SET s.recibidos = :fin, s.expira = :expira "
+            + "WHERE s.id = :id AND s.recibidos >= :inicio AND s.recibidos < :fin")
+    int avanzar(@Param("id") String id, @Param("inicio") long inicio, @Param("fin") long fin, @Param("expira") Instant expira);
+
+    @Query("SELECT s.id FROM SubidaImagen s WHERE s.expira < :ahora")
+    List<String> findIdsCaducadas(@Param("ahora") Instant ahora);
+}
@@ -1,10 +1,18 @@
 package org.carnavawiky.back.repository;
 
+import org.carnavawiky.back.model.Role;
 import org.carnavawiky.back.model.Usuario;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page; // <-- NUEVA IMPORTACIÓN
 import org.springframework.data.domain.Pageable; // <-- NUEVA IMPORTACIÓN
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
@@ -35,4 +43,26 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
     // =======================================================
     // Permite buscar por parte del username O del email, ignorando mayúsculas, con paginación.
     Page<Usuario> findAllByUsernameContainingIgnoreCaseOrEmailContainingIgnoreCase(String username, String email, Pageable pageable);
-}
\ No newline at end of file
+
+    // =======================================================
+    // PAGINACIÓN POR CURSOR (keyset): sin OFFSET ni COUNT(*)
+    // Los roles (EAGER, colección) se cargan aparte: no admiten fetch con LIMIT en la misma consulta
+    // =======================================================
+    Window<Usuario> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    Window<Usuario> findByUsernameContainingIgnoreCaseOrEmailContainingIgnoreCase(
+            String username, String email, ScrollPosition position, Sort sort, Limit limit);
+
+    // =======================================================
+    // ESTADO DE ACCESO (autenticación sin estado por JWT)
+    // Solo id, enabled + nombres de rol: una fila por rol, sin materializar la entidad
+    // =======================================================
+    @Query("SELECT u.id AS id, u.enabled AS enabled, r.name AS rol FROM Usuario u LEFT JOIN u.roles r WHERE u.username = :username")
+    List<EstadoAcceso> findEstadoAccesoByUsername(@Param("username") String username);
+
+    interface EstadoAcceso {
+        Long getId();
+        Boolean getEnabled();
+        Role.RoleName getRol();
+    }
+}
@@ -0,0 +1,51 @@
+package org.carnavawiky.back.repository;
+
+import org.carnavawiky.back.model.ValoracionAgrupacion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ValoracionAgrupacionRepository extends JpaRepository<ValoracionAgrupacion, Long> {
+
+    /**
+     * Suma (delta = 1) o resta (delta = -1) una puntuación sobre la fila, sin leerla antes:
+     * dos aprobaciones simultáneas no se pisan. Devuelve 0 si la agrupación aún no tiene fila.
+     */
+    @Modifying
+    @Query("UPDATE ValoracionAgrupacion v SET v.numero = v.numero + :delta, v.suma = v.suma + :delta * :puntuacion, "
+            + "v.votos1 = v.votos1 + CASE WHEN :puntuacion = 1 THEN :delta ELSE 0 END, "
+            + "v.votos2 = v.votos2 + CASE WHEN :puntuacion = 2 THEN :delta ELSE 0 END, "
+            + "v.votos3 = v.votos3 + CASE WHEN :puntuacion = 3 THEN :delta ELSE 0 END, "
+            + "v.votos4 = v.votos4 + CASE WHEN :puntuacion = 4 THEN :delta ELSE 0 END, "
+            + "v.votos5 = v.votos5 + CASE WHEN :puntuacion = 5 THEN :delta ELSE 0 END "
+            + "WHERE v.agrupacionId = :agrupacionId")
+    int acumular(@Param("agrupacionId") Long agrupacionId, @Param("puntuacion") long puntuacion, @Param("delta") long delta);
+
+    // En una sentencia aparte: MySQL evalúa el SET de izquierda a derecha y otras BD con los valores previos
+    @Modifying
+    @Query("UPDATE ValoracionAgrupacion v SET v.media = CASE WHEN v.numero > 0 THEN CAST(v.suma AS double) / v.numero ELSE NULL END "
+            + "WHERE v.agrupacionId = :agrupacionId")
+    int actualizarMedia(@Param("agrupacionId") Long agrupacionId);
+
+    @Modifying
+    @Query("INSERT INTO ValoracionAgrupacion (agrupacionId, numero, suma, votos1, votos2, votos3, votos4, votos5) "
+            + "VALUES (:agrupacionId, 0, 0, 0, 0, 0, 0, 0)")
+    int crearVacia(@Param("agrupacionId") Long agrupacionId);
+
+    // Carga inicial desde los comentarios existentes (una sola sentencia INSERT ... SELECT)
+    @Modifying
+    @Query("INSERT INTO ValoracionAgrupacion (agrupacionId, numero, suma, votos1, votos2, votos3, votos4, votos5, media) "
+            + "SELECT c.agrupacion.id, COUNT(c), SUM(c.puntuacion), "
+            + "SUM(CASE WHEN c.puntuacion = 1 THEN 1 ELSE 0 END), SUM(CASE WHEN c.puntuacion = 2 THEN 1 ELSE 0 END), "
+            + "SUM(CASE WHEN c.puntuacion = 3 THEN 1 ELSE 0 END), SUM(CASE WHEN c.puntuacion = 4 THEN 1 ELSE 0 END), "
+            + "SUM(CASE WHEN c.puntuacion = 5 THEN 1 ELSE 0 END), AVG(c.puntuacion) "
+            + "FROM Comentario c WHERE c.aprobado = TRUE AND c.puntuacion IS NOT NULL GROUP BY c.agrupacion.id")
+    int recalcularTodas();
+
+    @Modifying
+    @Query("DELETE FROM ValoracionAgrupacion v WHERE v.agrupacionId = :agrupacionId")
+    int eliminar(@Param("agrupacionId") Long agrupacionId);
+}
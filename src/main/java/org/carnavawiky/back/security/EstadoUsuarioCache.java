@@ -0,0 +1,95 @@
+package org.carnavawiky.back.security;
+
+import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.util.MapasLru;
+import org.carnavawiky.back.util.TrasCommit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Caché de corta duración del estado de acceso de cada usuario (existe con qué id, está habilitado y qué roles tiene).
+ * En modo sin estado (jwt.auth.stateless) el JwtTokenFilter construye el principal a partir del token
+ * y solo consulta aquí: como mucho una consulta ligera por usuario y TTL, en lugar de cargar la
+ * entidad Usuario con sus roles en cada petición. Las escrituras sobre usuarios la invalidan.
+ */
+@Component
+public class EstadoUsuarioCache {
+
+    public record EstadoUsuario(Long id, boolean activo, Set<String> roles) {
+    }
+
+    // Marca de "el usuario no existe" (también se cachea para no ir a la BD con tokens de usuarios borrados)
+    private static final EstadoUsuario INEXISTENTE = new EstadoUsuario(null, false, Set.of());
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Value("${jwt.auth.estado.enabled:true}")
+    private boolean habilitado = true;
+
+    @Value("${jwt.auth.estado.ttl:PT30S}")
+    private Duration ttl = Duration.ofSeconds(30);
+
+    @Value("${jwt.auth.estado.max-entradas:10000}")
+    private int maxEntradas = 10000;
+
+    private Clock reloj = Clock.systemUTC();
+
+    private record Entrada(EstadoUsuario estado, long instante) {
+    }
+
+    private final Map<String, Entrada> entradas = MapasLru.sincronizado(256, () -> maxEntradas);
+
+    // Si está deshabilitada, la autenticación sin estado confía solo en el token (hasta su expiración)
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    /**
+     * Estado actual del usuario; vacío si no existe.
+     */
+    public Optional<EstadoUsuario> obtener(String username) {
+        long ahora = reloj.millis();
+        Entrada entrada = entradas.get(username);
+        if (entrada != null && ahora - entrada.instante() < ttl.toMillis()) {
+            return entrada.estado() == INEXISTENTE ? Optional.empty() : Optional.of(entrada.estado());
+        }
+
+        EstadoUsuario estado = cargar(username);
+        if (ttl.toMillis() > 0) {
+            entradas.put(username, new Entrada(estado, ahora));
+        }
+        return estado == INEXISTENTE ? Optional.empty() : Optional.of(estado);
+    }
+
+    private EstadoUsuario cargar(String username) {
+        List<UsuarioRepository.EstadoAcceso> filas = usuarioRepository.findEstadoAccesoByUsername(username);
+        if (filas.isEmpty()) {
+            return INEXISTENTE;
+        }
+        Set<String> roles = filas.stream()
+                .map(UsuarioRepository.EstadoAcceso::getRol)
+                .filter(Objects::nonNull)
+                .map(Enum::name)
+                .collect(Collectors.toUnmodifiableSet());
+        return new EstadoUsuario(filas.get(0).getId(), Boolean.TRUE.equals(filas.get(0).getEnabled()), roles);
+    }
+
+    // =======================================================
+    // INVALIDACIÓN (tras el commit de la escritura)
+    // =======================================================
+
+    public void invalidar(String username) {
+        TrasCommit.ejecutar(() -> entradas.remove(username));
+    }
+
+    public void invalidarTodos() {
+        TrasCommit.ejecutar(entradas::clear);
+    }
+}
@@ -1,8 +1,11 @@
 package org.carnavawiky.back.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import org.carnavawiky.back.util.MapasLru;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -10,8 +13,10 @@ import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
-import java.util.Date;
-import java.util.List;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,9 +30,39 @@ public class JwtService {
     @Value("${jwt.access.expiration-minutes:15}")
     private Long jwtExpirationMinutes;
 
+    // Tokens ya verificados que se recuerdan (0 = sin caché)
+    @Value("${jwt.cache.max-entries:10000}")
+    private int maxTokensCacheados = 10000;
+
+    private Clock reloj = Clock.systemUTC();
+
+    // Clave y parser se derivan una sola vez (de forma perezosa: en los tests el secreto se inyecta por reflexión)
+    private volatile SecretKey signingKey;
+    private volatile JwtParser parser;
+
+    // hash SHA-256 del token -> datos verificados. LRU acotado; cada entrada caduca con su token
+    private final Map<String, VerifiedToken> tokensVerificados = MapasLru.sincronizado(256, () -> maxTokensCacheados);
+
     // Genera la clave secreta a partir de la cadena de texto
     private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecretKey.getBytes(StandardCharsets.UTF_8));
+        SecretKey key = signingKey;
+        if (key == null) {
+            key = Keys.hmacShaKeyFor(jwtSecretKey.getBytes(StandardCharsets.UTF_8));
+            signingKey = key;
+        }
+        return key;
+    }
+
+    private JwtParser getParser() {
+        JwtParser jwtParser = parser;
+        if (jwtParser == null) {
+            jwtParser = Jwts.parser()
+                    .verifyWith(getSigningKey())
+                    .clock(() -> Date.from(reloj.instant()))
+                    .build();
+            parser = jwtParser;
+        }
+        return jwtParser;
     }
 
     /**
@@ -58,33 +93,59 @@ public class JwtService {
     }
 
     /**
-     * Valida el token JWT verificando la firma y la fecha de expiración.
+     * Verifica firma y expiración y extrae los datos del token en una sola pasada.
+     * Los tokens ya verificados se sirven desde una caché acotada (clave: hash del token)
+     * hasta su expiración, sin volver a calcular el HMAC ni a parsear el JSON.
+     *
+     * @return vacío si el token no es válido o ha expirado
      */
-    public boolean validateToken(String token) {
+    public Optional<VerifiedToken> verifyToken(String token) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+
+        String clave = maxTokensCacheados > 0 ? hash(token) : null;
+        if (clave != null) {
+            VerifiedToken cacheado = tokensVerificados.get(clave);
+            if (cacheado != null) {
+                if (cacheado.isExpired(reloj.instant())) {
+                    tokensVerificados.remove(clave);
+                    return Optional.empty();
+                }
+                return Optional.of(cacheado);
+            }
+        }
+
+        VerifiedToken verificado;
         try {
-            // Sintaxis alternativa para evitar el error 'parserBuilder'
-            Jwts.parser()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
+            Claims claims = getParser().parseSignedClaims(token).getPayload();
+            verificado = VerifiedToken.fromClaims(claims);
         } catch (Exception e) {
-            // Si hay alguna excepción (token expirado, firma inválida), retorna falso
-            // logger.warn("JWT inválido o expirado: " + e.getMessage()); // Descomentar en producción
-            return false;
+            // Token expirado, firma inválida o mal formado
+            return Optional.empty();
+        }
+
+        if (clave != null && verificado.expiresAt() != null) {
+            tokensVerificados.put(clave, verificado);
         }
+        return Optional.of(verificado);
+    }
+
+    /**
+     * Valida el token JWT verificando la firma y la fecha de expiración.
+     */
+    public boolean validateToken(String token) {
+        return verifyToken(token).isPresent();
     }
 
     /**
      * Extrae el nombre de usuario (subject) del token JWT.
+     * Lanza JwtException si el token no es válido.
      */
     public String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        return claims.getSubject();
+        return verifyToken(token)
+                .map(VerifiedToken::username)
+                .orElseThrow(() -> new JwtException("JWT inválido o expirado"));
     }
 
     /**
@@ -93,4 +154,14 @@ public class JwtService {
     public Long getExpirationSeconds() {
         return jwtExpirationMinutes * 60;
     }
-}
\ No newline at end of file
+
+    // SHA-256 en Base64: no se guarda el token en claro en memoria
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
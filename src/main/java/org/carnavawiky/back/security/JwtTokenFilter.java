@@ -5,8 +5,11 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -14,6 +17,8 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
 
 @Component
 public class JwtTokenFilter extends OncePerRequestFilter {
@@ -24,6 +29,13 @@ public class JwtTokenFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private EstadoUsuarioCache estadoUsuarios;
+
+    // true: el principal y sus roles salen del token, sin cargar el Usuario de la BD en cada petición
+    @Value("${jwt.auth.stateless:false}")
+    private boolean stateless = false;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
@@ -32,8 +44,6 @@ public class JwtTokenFilter extends OncePerRequestFilter {
 
         // 1. Intentar extraer el token de la cabecera "Authorization"
         final String authHeader = request.getHeader("Authorization");
-        final String jwt;
-        final String username;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             filterChain.doFilter(request, response);
@@ -41,36 +51,70 @@ public class JwtTokenFilter extends OncePerRequestFilter {
         }
 
         // El token empieza después de "Bearer " (7 caracteres)
-        jwt = authHeader.substring(7);
+        final String jwt = authHeader.substring(7);
 
         try {
-            // 2. Extraer el username y validar el token
-            username = jwtService.getUsernameFromToken(jwt);
+            // 2. Una sola verificación (firma + expiración) que además devuelve el username
+            Optional<VerifiedToken> token = jwtService.verifyToken(jwt);
+            String username = token.map(VerifiedToken::username).orElse(null);
+
+            if (token.isEmpty()) {
+                logger.debug("JWT inválido o expirado");
+            }
 
             // 3. Si el username es válido y no hay autenticación actual en el contexto
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
 
-                // Cargar UserDetails desde la DB
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-
-                if (jwtService.validateToken(jwt)) {
-                    // Crear un objeto de autenticación
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
-                            null, // Credenciales nulas (ya validadas por el token)
-                            userDetails.getAuthorities()
-                    );
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                // Sin estado: desde los claims; si no, cargar UserDetails desde la DB
+                UserDetails userDetails = stateless
+                        ? principalDesdeToken(token.get())
+                        : this.userDetailsService.loadUserByUsername(username);
 
-                    // Establecer el usuario como autenticado en el contexto de seguridad
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
+                if (userDetails == null) {
+                    filterChain.doFilter(request, response);
+                    return;
                 }
+
+                // Crear un objeto de autenticación
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                        userDetails,
+                        null, // Credenciales nulas (ya validadas por el token)
+                        userDetails.getAuthorities()
+                );
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+                // Establecer el usuario como autenticado en el contexto de seguridad
+                SecurityContextHolder.getContext().setAuthentication(authToken);
             }
         } catch (Exception e) {
-            // Si el token es inválido o expiró, la solicitud es rechazada
-            logger.warn("JWT inválido o expirado: " + e.getMessage());
+            // Si no se puede cargar el usuario, la solicitud sigue sin autenticar
+            logger.warn("No se pudo autenticar el JWT: " + e.getMessage());
         }
 
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    /**
+     * Construye el principal solo con el token verificado. Si la comprobación de estado está activa,
+     * rechaza cuentas borradas o deshabilitadas y se queda con los roles del token que el usuario
+     * sigue teniendo (una retirada de rol surte efecto como mucho tras el TTL de la caché).
+     * Devuelve null si la petición no debe autenticarse.
+     */
+    private UserDetails principalDesdeToken(VerifiedToken token) {
+        List<String> roles = token.roles();
+
+        if (estadoUsuarios.isHabilitado()) {
+            Optional<EstadoUsuarioCache.EstadoUsuario> estado = estadoUsuarios.obtener(token.username());
+            if (estado.isEmpty() || !estado.get().activo()) {
+                logger.debug("JWT de un usuario inexistente o deshabilitado: " + token.username());
+                return null;
+            }
+            roles = roles.stream().filter(estado.get().roles()::contains).toList();
+        }
+
+        return User.withUsername(token.username())
+                .password("") // Nunca se usa: las credenciales ya las validó el token
+                .authorities(roles.stream().map(SimpleGrantedAuthority::new).toList())
+                .build();
+    }
+}
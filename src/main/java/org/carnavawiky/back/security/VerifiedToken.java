@@ -0,0 +1,26 @@
+package org.carnavawiky.back.security;
+
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Datos de un Access Token cuya firma y expiración ya se han verificado.
+ * Es inmutable para poder compartirse entre peticiones desde la caché de JwtService.
+ */
+public record VerifiedToken(String username, List<String> roles, Instant expiresAt) {
+
+    static VerifiedToken fromClaims(Claims claims) {
+        List<String> roles = claims.get("roles") instanceof Collection<?> lista
+                ? lista.stream().map(String::valueOf).toList()
+                : List.of();
+        Instant expiresAt = claims.getExpiration() != null ? claims.getExpiration().toInstant() : null;
+        return new VerifiedToken(claims.getSubject(), roles, expiresAt);
+    }
+
+    public boolean isExpired(Instant ahora) {
+        return expiresAt != null && !ahora.isBefore(expiresAt);
+    }
+}
@@ -4,6 +4,7 @@ import org.carnavawiky.back.exception.BadRequestException;
 import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.model.Usuario;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import org.springframework.beans.factory.annotation.Value;
@@ -22,6 +23,9 @@ public class ActivationService {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private EstadoUsuarioCache estadoUsuarios;
+
     // Configuramos la URL base de tu API (debe coincidir con la configuración real)
     @Value("${app.base-url:http://localhost:8083}") // Valor por defecto si no está en application.properties
     private String baseUrl;
@@ -77,5 +81,6 @@ public class ActivationService {
         usuario.setActivationToken(null);
 
         usuarioRepository.save(usuario);
+        estadoUsuarios.invalidar(usuario.getUsername());
     }
 }
\ No newline at end of file
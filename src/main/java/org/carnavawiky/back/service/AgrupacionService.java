@@ -1,8 +1,13 @@
 package org.carnavawiky.back.service;
 
+import org.carnavawiky.back.config.CacheConfig;
 import org.carnavawiky.back.dto.AgrupacionRequest;
 import org.carnavawiky.back.dto.AgrupacionResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.dto.PortadaResponse;
+import org.carnavawiky.back.dto.SliceResponse;
+import org.carnavawiky.back.dto.ValoracionResponse;
 import org.carnavawiky.back.dto.VideoResponse;
 import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.mapper.AgrupacionMapper;
@@ -11,15 +16,28 @@ import org.carnavawiky.back.model.Localidad;
 import org.carnavawiky.back.model.Usuario;
 import org.carnavawiky.back.repository.AgrupacionRepository;
 import org.carnavawiky.back.repository.LocalidadRepository;
+import org.carnavawiky.back.repository.PremioRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 
@@ -27,6 +45,14 @@ import java.util.stream.Collectors;
 public class AgrupacionService {
 
     public static final String AGRUPACION = "Agrupacion";
+
+    // ?sort=valoracion: mejor valoradas primero, resuelto con el agregado de puntuaciones
+    public static final String ORDEN_VALORACION = "valoracion";
+
+    // Paginación por cursor: propiedades por las que se permite ordenar (además del id)
+    private static final PaginacionKeyset.Config<Agrupacion> SCROLL = new PaginacionKeyset.Config<>(
+            Agrupacion.class, Sort.unsorted(), Set.of("nombre", "anho", "fechaAlta"));
+
     @Autowired
     private AgrupacionRepository agrupacionRepository;
 
@@ -39,6 +65,24 @@ public class AgrupacionService {
     @Autowired
     private LocalidadRepository localidadRepository;
 
+    @Autowired
+    private IndiceBusquedaAgrupaciones indiceBusqueda;
+
+    @Autowired
+    private ConteoCache conteoCache;
+
+    @Autowired
+    private ImagenService imagenService;
+
+    @Autowired
+    private ValoracionesAgrupaciones valoraciones;
+
+    @Autowired
+    private CachesDependientes cachesDependientes; // Premios que muestran el nombre de la agrupación
+
+    @Autowired
+    private PremioRepository premioRepository;
+
 
     // =======================================================
     // MÉT 1: CREAR (POST) - MODIFICADO para Localidad
@@ -60,6 +104,8 @@ public class AgrupacionService {
         Agrupacion agrupacion = agrupacionMapper.toEntity(request, usuarioCreador, localidad); // << FIRMA MODIFICADA
 
         Agrupacion nuevaAgrupacion = agrupacionRepository.save(agrupacion);
+        conteoCache.invalidar(ConteoCache.AGRUPACIONES);
+        indiceBusqueda.indexar(nuevaAgrupacion);
 
         return agrupacionMapper.toResponse(nuevaAgrupacion);
     }
@@ -69,41 +115,102 @@ public class AgrupacionService {
     // =======================================================
 
     @Transactional(readOnly = true)
+    @Cacheable(value = CacheConfig.AGRUPACION_BY_ID, key = "#id")
     public AgrupacionResponse obtenerAgrupacionPorId(Long id) {
         Agrupacion agrupacion = agrupacionRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(AGRUPACION, "id", id));
 
-        return agrupacionMapper.toResponse(agrupacion);
+        AgrupacionResponse response = agrupacionMapper.toResponse(agrupacion);
+        // Cambia al aprobar comentarios: ValoracionesAgrupaciones desaloja esta entrada
+        response.setValoracion(valoraciones.obtener(id));
+        return response;
     }
 
     // =======================================================
     // MÉTODO 3: OBTENER TODAS (GET) - CON PAGINACIÓN Y BÚSQUEDA
     // =======================================================
     @Transactional(readOnly = true)
-    public PageResponse<AgrupacionResponse> obtenerTodasAgrupaciones(Pageable pageable, String search) {
+    public PageResponse<AgrupacionResponse> obtenerTodasAgrupaciones(Pageable pageable, String search, ModoConteo modoConteo) {
 
-        Page<Agrupacion> agrupacionPage;
+        if (pageable.getSort().getOrderFor(ORDEN_VALORACION) != null) {
+            return obtenerPorValoracion(pageable, search, modoConteo);
+        }
+
+        // Página sin COUNT (size + 1 filas); el total lo resuelve la caché de conteos
+        Slice<AgrupacionResponse> slice;
+        String filtro = null;
+        LongSupplier contar = agrupacionRepository::count;
 
         if (StringUtils.hasText(search)) {
-            // Utilizamos el método de búsqueda por nombre o descripción (existente en el repositorio)
-            agrupacionPage = agrupacionRepository.findByNombreContainingIgnoreCaseOrDescripcionContainingIgnoreCase(search, search, pageable);
+            // 1. Índice invertido en memoria (ordenado por relevancia); el total sale gratis del índice
+            Optional<Page<Long>> resultado = indiceBusqueda.buscar(search, pageable);
+            if (resultado.isPresent()) {
+                Page<AgrupacionResponse> pagina = cargarEnOrden(resultado.get());
+                completarListado(pagina.getContent());
+                return PageResponse.fromPage(pagina);
+            }
+            // 2. Fallback: búsqueda LIKE por nombre o descripción (índice no disponible)
+            slice = agrupacionRepository.searchResponses(search, pageable);
+            filtro = ConteoCache.filtro("search", search);
+            contar = () -> agrupacionRepository.countBusqueda(search);
         } else {
             // Paginación simple
-            agrupacionPage = agrupacionRepository.findAll(pageable);
+            slice = agrupacionRepository.findAllResponses(pageable);
         }
 
-        // Mapear el contenido de la página a AgrupacionResponse
-        Page<AgrupacionResponse> responsePage = agrupacionPage.map(agrupacionMapper::toResponse);
+        completarListado(slice.getContent());
 
         // Construir y retornar el objeto PageResponse
-        return PageResponse.fromPage(responsePage);
+        return conteoCache.paginar(slice, modoConteo, ConteoCache.AGRUPACIONES, filtro, contar);
+    }
+
+    /**
+     * Listado ordenado por valoración media (desempate: número de puntuaciones). Con búsqueda
+     * se usa el LIKE en lugar del índice, cuyo orden por relevancia no es el pedido.
+     */
+    private PageResponse<AgrupacionResponse> obtenerPorValoracion(Pageable pageable, String search, ModoConteo modoConteo) {
+        // El ORDER BY va en la consulta: 'valoracion' no es una propiedad de Agrupacion
+        Pageable sinOrden = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        Slice<AgrupacionResponse> slice;
+        String filtro = null;
+        LongSupplier contar = agrupacionRepository::count;
+
+        if (StringUtils.hasText(search)) {
+            slice = agrupacionRepository.searchResponsesPorValoracion(search, sinOrden);
+            filtro = ConteoCache.filtro("search", search);
+            contar = () -> agrupacionRepository.countBusqueda(search);
+        } else {
+            slice = agrupacionRepository.findAllResponsesPorValoracion(sinOrden);
+        }
+
+        completarListado(slice.getContent());
+        return conteoCache.paginar(slice, modoConteo, ConteoCache.AGRUPACIONES, filtro, contar);
+    }
+
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (keyset) - sin OFFSET ni COUNT(*)
+    // =======================================================
+    @Transactional(readOnly = true)
+    public SliceResponse<AgrupacionResponse> obtenerAgrupacionesPorCursor(Pageable pageable, String search, String cursor) {
+
+        PaginacionKeyset.Consulta<Agrupacion> consulta = StringUtils.hasText(search)
+                // Búsqueda LIKE: el orden por relevancia del índice no admite cursor
+                ? (posicion, sort, limit) -> agrupacionRepository
+                        .findByNombreContainingIgnoreCaseOrDescripcionContainingIgnoreCase(search, search, posicion, sort, limit)
+                : agrupacionRepository::findAllBy;
+
+        SliceResponse<AgrupacionResponse> pagina = PaginacionKeyset.scroll(consulta, pageable, cursor, SCROLL, agrupacionMapper::toResponse);
+        completarListado(pagina.getContent());
+        return pagina;
     }
 
     // =======================================================
     // MÉT 4: ACTUALIZAR (PUT /ID) - MODIFICADO para Localidad
+    // El nombre de la agrupación se muestra también en los premios (cachés dependientes)
     // =======================================================
 
     @Transactional
+    @CacheEvict(value = CacheConfig.AGRUPACION_BY_ID, key = "#id")
     public AgrupacionResponse actualizarAgrupacion(Long id, AgrupacionRequest request) {
         // 1. Verificar si la entidad existe
         Agrupacion agrupacionExistente = agrupacionRepository.findById(id)
@@ -114,6 +221,7 @@ public class AgrupacionService {
                 .orElseThrow(() -> new ResourceNotFoundException("Localidad", "id", request.getLocalidadId()));
 
         // 3. Actualizar campos
+        String nombreAnterior = agrupacionExistente.getNombre();
         agrupacionExistente.setNombre(request.getNombre());
         agrupacionExistente.setDescripcion(request.getDescripcion());
         agrupacionExistente.setModalidad(request.getModalidad());
@@ -122,6 +230,12 @@ public class AgrupacionService {
 
         // 4. Guardar y retornar
         Agrupacion agrupacionActualizada = agrupacionRepository.save(agrupacionExistente);
+        conteoCache.invalidar(ConteoCache.AGRUPACIONES);
+        indiceBusqueda.indexar(agrupacionActualizada);
+        if (!Objects.equals(nombreAnterior, agrupacionActualizada.getNombre())) {
+            cachesDependientes.desalojar(CacheConfig.PREMIO_BY_ID, premioRepository.findIdsByAgrupacionId(id));
+            cachesDependientes.vaciar(CacheConfig.PREMIOS_LIST);
+        }
 
         return agrupacionMapper.toResponse(agrupacionActualizada);
     }
@@ -131,6 +245,7 @@ public class AgrupacionService {
     // =======================================================
 
     @Transactional
+    @CacheEvict(value = CacheConfig.AGRUPACION_BY_ID, key = "#id")
     public void eliminarAgrupacion(Long id) {
         // 1. Verificar si la entidad existe
         Agrupacion agrupacion = agrupacionRepository.findById(id)
@@ -138,6 +253,39 @@ public class AgrupacionService {
 
         // 2. Eliminar
         agrupacionRepository.delete(agrupacion);
+        valoraciones.eliminar(id);
+        conteoCache.invalidar(ConteoCache.AGRUPACIONES);
+        indiceBusqueda.eliminar(id);
+    }
+
+    /**
+     * Añade la portada y la valoración de cada agrupación de la página: una consulta para
+     * todas las portadas y otra para todas las valoraciones, no una petición por tarjeta.
+     */
+    private void completarListado(List<AgrupacionResponse> agrupaciones) {
+        List<Long> ids = agrupaciones.stream().map(AgrupacionResponse::getId).toList();
+        Map<Long, PortadaResponse> portadas = imagenService.obtenerPortadas(ids);
+        Map<Long, ValoracionResponse> valoracionesPorId = valoraciones.obtener(ids);
+        agrupaciones.forEach(agrupacion -> {
+            agrupacion.setPortada(portadas.get(agrupacion.getId()));
+            agrupacion.setValoracion(valoracionesPorId.get(agrupacion.getId()));
+        });
+    }
+
+    /**
+     * Carga las agrupaciones de una página de IDs devuelta por el índice,
+     * respetando el orden de relevancia.
+     */
+    private Page<AgrupacionResponse> cargarEnOrden(Page<Long> paginaIds) {
+        Map<Long, AgrupacionResponse> porId = agrupacionRepository.findResponsesByIdIn(paginaIds.getContent()).stream()
+                .collect(Collectors.toMap(AgrupacionResponse::getId, Function.identity()));
+
+        List<AgrupacionResponse> contenido = paginaIds.getContent().stream()
+                .map(porId::get)
+                .filter(Objects::nonNull) // Eliminada entre la consulta al índice y la carga
+                .collect(Collectors.toList());
+
+        return new PageImpl<>(contenido, paginaIds.getPageable(), paginaIds.getTotalElements());
     }
 
 
@@ -0,0 +1,443 @@
+package org.carnavawiky.back.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.carnavawiky.back.exception.BadRequestException;
+import org.carnavawiky.back.exception.FileStorageException;
+import org.carnavawiky.back.util.TrasCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Escritura de imágenes en el directorio de subidas (file.upload.location).
+ * El contenido se copia por canales NIO a un fichero temporal del mismo directorio, calculando
+ * el SHA-256 y el tamaño sobre la marcha y forzándolo a disco. Después se publica con un
+ * renombrado atómico bajo su nombre direccionado por contenido (hash + extensión): nunca queda
+ * a la vista un fichero a medio escribir y unos mismos bytes se guardan una sola vez.
+ * <p>
+ * Los ficheros se reparten en dos niveles de subdirectorios según los 4 primeros caracteres
+ * del hash (3a/6e/3a6e...c8b7.jpg): 65536 directorios, pocos ficheros en cada uno aunque el
+ * archivo crezca a cientos de miles de imágenes. Los ficheros del esquema plano anterior se
+ * siguen encontrando hasta que MigracionAlmacenImagenes los mueve.
+ */
+@Component
+public class AlmacenImagenes {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AlmacenImagenes.class);
+
+    // Subdirectorio de las copias reducidas, servido en /api/imagenes/variantes/**
+    public static final String DIRECTORIO_VARIANTES = "variantes";
+
+    // Ficheros de las subidas reanudables en curso (<id>.part); los limpia SubidasReanudables
+    public static final String DIRECTORIO_SUBIDAS = "subidas";
+
+    private static final int TAMANO_BUFFER = 64 * 1024;
+    private static final Pattern EXTENSION_VALIDA = Pattern.compile("[a-z0-9]{1,10}");
+    private static final Pattern PREFIJO_HEX = Pattern.compile("^[0-9a-f]{4}.*");
+
+    @Value("${file.upload.location}")
+    private String uploadLocation;
+
+    // El mismo límite se aplica a spring.servlet.multipart.max-file-size
+    @Value("${app.imagenes.max-bytes:10485760}")
+    private long maxBytes = 10 * 1024 * 1024;
+
+    // Escrituras simultáneas de una subida múltiple, en total para todas las peticiones
+    @Value("${app.imagenes.lote.hilos:4}")
+    private int hilosEscritura = 4;
+
+    private ThreadPoolExecutor executor;
+
+    public record FicheroTemporal(Path ruta, String sha256, long tamanoBytes, String extension) {
+
+        // Nombre definitivo en el almacén: el contenido determina el nombre
+        public String nombreFichero() {
+            return sha256 + extension;
+        }
+    }
+
+    @PostConstruct
+    void iniciar() {
+        AtomicInteger contador = new AtomicInteger();
+        // Cola corta y CallerRunsPolicy: con el pool ocupado, el hilo de la petición escribe su
+        // propio fichero en lugar de acumular trabajo; el disco nunca tiene más de hilos + peticiones
+        executor = new ThreadPoolExecutor(hilosEscritura, hilosEscritura, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(hilosEscritura),
+                tarea -> {
+                    Thread hilo = new Thread(tarea, "escritura-imagen-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void detener() {
+        executor.shutdown();
+    }
+
+    // =======================================================
+    // ESCRITURA
+    // =======================================================
+
+    /**
+     * Copia el contenido a un fichero temporal durable del almacén.
+     * Quien lo recibe debe publicarlo o descartarlo.
+     *
+     * @throws BadRequestException si el contenido está vacío o supera app.imagenes.max-bytes
+     */
+    public FicheroTemporal recibir(InputStream contenido, String nombreOriginal) throws IOException {
+        Path temporal = Files.createTempFile(directorio(), ".subida-", ".tmp");
+
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            long tamano = copiar(contenido, temporal, sha256);
+            return new FicheroTemporal(temporal, HexFormat.of().formatHex(sha256.digest()), tamano, extension(nombreOriginal));
+        } catch (NoSuchAlgorithmException e) {
+            descartar(temporal);
+            throw new FileStorageException("SHA-256 no disponible en esta JVM", e);
+        } catch (IOException | RuntimeException e) {
+            descartar(temporal);
+            throw e;
+        }
+    }
+
+    /**
+     * Mueve el temporal a su nombre definitivo. Si ya existe un fichero con ese nombre
+     * (mismo contenido subido antes) se reutiliza y el temporal se descarta.
+     * Llamar con el blob bloqueado en BD, para no cruzarse con su borrado.
+     */
+    public Path publicar(FicheroTemporal fichero, String nombreFichero) throws IOException {
+        Path destino = ruta(nombreFichero);
+        Path plano = rutaPlana(nombreFichero);
+        if (Files.exists(destino)) {
+            descartar(fichero.ruta());
+            // Vuelve a ser reciente: la reconciliación no lo tomará por huérfano mientras se registra
+            Files.setLastModifiedTime(destino, FileTime.from(Instant.now()));
+        } else if (Files.exists(plano)) {
+            // Blob del esquema plano aún sin migrar: sigue siendo el fichero bueno
+            descartar(fichero.ruta());
+            return plano;
+        } else {
+            Files.createDirectories(destino.getParent());
+            Files.move(fichero.ruta(), destino, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return destino;
+    }
+
+    @FunctionalInterface
+    public interface Origen {
+        InputStream abrir() throws IOException;
+    }
+
+    /**
+     * Como recibir(), en el pool de escritura: para copiar a la vez los ficheros de una subida múltiple.
+     * alRecibir se ejecuta en el mismo hilo con el temporal ya en disco (p. ej. para analizar la imagen);
+     * si falla, el temporal se descarta. El Future falla con la misma excepción que lanzaría recibir().
+     */
+    public <T> Future<T> recibirEnParalelo(Origen origen, String nombreOriginal, Function<FicheroTemporal, T> alRecibir) {
+        return executor.submit(() -> {
+            FicheroTemporal fichero;
+            try (InputStream contenido = origen.abrir()) {
+                fichero = recibir(contenido, nombreOriginal);
+            }
+            try {
+                return alRecibir.apply(fichero);
+            } catch (RuntimeException e) {
+                descartar(fichero);
+                throw e;
+            }
+        });
+    }
+
+    public void descartar(FicheroTemporal fichero) {
+        descartar(fichero.ruta());
+    }
+
+    @FunctionalInterface
+    public interface Escritura {
+        void escribir(OutputStream salida) throws IOException;
+    }
+
+    /**
+     * Escribe un fichero derivado (p. ej. una variante reducida) con el mismo patrón
+     * temporal + renombrado atómico que las subidas. Devuelve su tamaño en bytes.
+     */
+    public long escribir(Path destino, Escritura escritura) throws IOException {
+        Files.createDirectories(destino.getParent());
+        Path temporal = Files.createTempFile(destino.getParent(), ".derivado-", ".tmp");
+        try {
+            try (OutputStream salida = Files.newOutputStream(temporal)) {
+                escritura.escribir(salida);
+            }
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+            return Files.size(destino);
+        } finally {
+            descartar(temporal);
+        }
+    }
+
+    private long copiar(InputStream contenido, Path temporal, MessageDigest sha256) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(TAMANO_BUFFER);
+        long tamano = 0;
+
+        try (ReadableByteChannel entrada = Channels.newChannel(contenido);
+             FileChannel salida = FileChannel.open(temporal, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (entrada.read(buffer) != -1) {
+                buffer.flip();
+                tamano += buffer.remaining();
+                if (tamano > maxBytes) {
+                    throw new BadRequestException("La imagen supera el tamaño máximo permitido de " + maxBytes + " bytes");
+                }
+                sha256.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    salida.write(buffer);
+                }
+                buffer.clear();
+            }
+            if (tamano == 0) {
+                throw new BadRequestException("La imagen está vacía");
+            }
+            // Los bytes deben ser durables antes de registrar la imagen en BD
+            salida.force(true);
+        }
+        return tamano;
+    }
+
+    /**
+     * SHA-256 (hex) de un fichero ya almacenado; para incorporar imágenes antiguas al almacén por contenido.
+     */
+    public String huella(Path fichero) throws IOException {
+        try (FileChannel entrada = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocate(TAMANO_BUFFER);
+            while (entrada.read(buffer) != -1) {
+                buffer.flip();
+                sha256.update(buffer);
+                buffer.clear();
+            }
+            return HexFormat.of().formatHex(sha256.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new FileStorageException("SHA-256 no disponible en esta JVM", e);
+        }
+    }
+
+    // =======================================================
+    // SUBIDAS REANUDABLES
+    // El fichero se crea con su tamaño final y cada trozo se escribe en su posición
+    // (FileChannel.write posicional): un reenvío tras un corte sobrescribe, nunca añade.
+    // =======================================================
+
+    public Path directorioSubidas() throws IOException {
+        return directorio().resolve(DIRECTORIO_SUBIDAS);
+    }
+
+    public Path rutaSubida(String id) throws IOException {
+        return directorioSubidas().resolve(id + ".part");
+    }
+
+    /**
+     * Crea el fichero de una subida reanudable con su tamaño definitivo.
+     *
+     * @throws BadRequestException si el tamaño no está entre 1 y app.imagenes.max-bytes
+     */
+    public void reservar(Path parte, long tamanoBytes) throws IOException {
+        if (tamanoBytes <= 0) {
+            throw new BadRequestException("La imagen está vacía");
+        }
+        if (tamanoBytes > maxBytes) {
+            throw new BadRequestException("La imagen supera el tamaño máximo permitido de " + maxBytes + " bytes");
+        }
+        Files.createDirectories(parte.getParent());
+        if (Files.getFileStore(parte.getParent()).getUsableSpace() < tamanoBytes) {
+            throw new FileStorageException("No queda espacio en disco para una subida de " + tamanoBytes + " bytes");
+        }
+        try (FileChannel salida = FileChannel.open(parte, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            // Un byte en la última posición fija la longitud: los trozos no hacen crecer el fichero
+            salida.write(ByteBuffer.allocate(1), tamanoBytes - 1);
+        }
+    }
+
+    /**
+     * Escribe el contenido a partir de la posición indicada y lo fuerza a disco antes de volver.
+     * Devuelve los bytes escritos.
+     *
+     * @throws BadRequestException si el trozo se sale del tamaño reservado
+     */
+    public long escribirEn(Path parte, long posicion, InputStream contenido) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(TAMANO_BUFFER);
+        long escritos = 0;
+
+        try (ReadableByteChannel entrada = Channels.newChannel(contenido);
+             FileChannel salida = FileChannel.open(parte, StandardOpenOption.WRITE)) {
+            long tamano = salida.size();
+            while (entrada.read(buffer) != -1) {
+                buffer.flip();
+                if (posicion + escritos + buffer.remaining() > tamano) {
+                    throw new BadRequestException("El trozo se sale del tamaño declarado de " + tamano + " bytes");
+                }
+                while (buffer.hasRemaining()) {
+                    escritos += salida.write(buffer, posicion + escritos);
+                }
+                buffer.clear();
+            }
+            // Solo los datos: la longitud del fichero no cambia
+            salida.force(false);
+        }
+        return escritos;
+    }
+
+    /**
+     * Convierte una subida reanudable completa en un temporal listo para publicar().
+     */
+    public FicheroTemporal completar(Path parte, String nombreOriginal) throws IOException {
+        return new FicheroTemporal(parte, huella(parte), Files.size(parte), extension(nombreOriginal));
+    }
+
+    // =======================================================
+    // BORRADO
+    // =======================================================
+
+    public void eliminar(Path ruta) {
+        try {
+            Files.deleteIfExists(ruta);
+        } catch (IOException e) {
+            throw new FileStorageException("No se pudo borrar el fichero " + ruta, e);
+        }
+    }
+
+    /**
+     * Borra el fichero cuando la transacción en curso se confirma (en el acto si no hay ninguna).
+     * Si el commit falla, la fila sigue teniendo su fichero.
+     */
+    public void eliminarTrasCommit(Path ruta) {
+        TrasCommit.ejecutar(() -> {
+            try {
+                eliminar(ruta);
+            } catch (FileStorageException e) {
+                // La fila ya no existe: el fichero queda huérfano para la reconciliación
+                LOG.warn("No se pudo borrar {} tras el commit", ruta, e);
+            }
+        });
+    }
+
+    // =======================================================
+    // UTILIDADES
+    // =======================================================
+
+    private void descartar(Path temporal) {
+        try {
+            Files.deleteIfExists(temporal);
+        } catch (IOException e) {
+            // Un temporal que no se pudo borrar no afecta a nadie: lo recoge la limpieza del directorio
+        }
+    }
+
+    // ".jpg" a partir de "foto.JPG"; vacío si no hay extensión o contiene caracteres no esperados
+    static String extension(String nombreOriginal) {
+        if (nombreOriginal == null || !nombreOriginal.contains(".")) {
+            return "";
+        }
+        String extension = nombreOriginal.substring(nombreOriginal.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return EXTENSION_VALIDA.matcher(extension).matches() ? "." + extension : "";
+    }
+
+    // =======================================================
+    // RUTAS (esquema fragmentado ab/cd/nombre)
+    // =======================================================
+
+    /**
+     * Ruta de un original en el esquema fragmentado. No crea directorios: publicar() lo hace.
+     */
+    public Path ruta(String nombreFichero) throws IOException {
+        return directorio().resolve(fragmento(nombreFichero));
+    }
+
+    // Ruta de una variante en el esquema fragmentado; escribir() crea sus directorios
+    public Path rutaVariante(String nombreFichero) throws IOException {
+        return directorio().resolve(DIRECTORIO_VARIANTES).resolve(fragmento(nombreFichero));
+    }
+
+    // Ubicaciones del esquema plano anterior, solo para leer y migrar
+    public Path rutaPlana(String nombreFichero) throws IOException {
+        return directorio().resolve(nombreFichero);
+    }
+
+    public Path rutaVariantePlana(String nombreFichero) throws IOException {
+        return directorio().resolve(DIRECTORIO_VARIANTES).resolve(nombreFichero);
+    }
+
+    /**
+     * Dónde está ahora un original: en el esquema fragmentado o, si aún no se ha migrado, en el plano.
+     * Si no está en ninguno se devuelve la fragmentada: si la migración lo movió entre las dos
+     * comprobaciones, es justo donde está.
+     */
+    public Path localizar(String nombreFichero) throws IOException {
+        return localizar(ruta(nombreFichero), rutaPlana(nombreFichero));
+    }
+
+    public Path localizarVariante(String nombreFichero) throws IOException {
+        return localizar(rutaVariante(nombreFichero), rutaVariantePlana(nombreFichero));
+    }
+
+    private static Path localizar(Path fragmentada, Path plana) {
+        return Files.exists(fragmentada) || !Files.exists(plana) ? fragmentada : plana;
+    }
+
+    /**
+     * "3a/6e/3a6e...c8b7.jpg" para un nombre direccionado por contenido. Los nombres que no empiezan
+     * por hexadecimal (imágenes antiguas) se reparten por el hash del propio nombre.
+     */
+    static String fragmento(String nombreFichero) {
+        String clave = PREFIJO_HEX.matcher(nombreFichero).matches()
+                ? nombreFichero
+                : HexFormat.of().formatHex(sha256(nombreFichero.getBytes(StandardCharsets.UTF_8)));
+        return clave.substring(0, 2) + "/" + clave.substring(2, 4) + "/" + nombreFichero;
+    }
+
+    private static byte[] sha256(byte[] datos) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(datos);
+        } catch (NoSuchAlgorithmException e) {
+            throw new FileStorageException("SHA-256 no disponible en esta JVM", e);
+        }
+    }
+
+    // Raíz del almacén, para recorrerlo entero (reconciliación)
+    public Path raiz() throws IOException {
+        return directorio();
+    }
+
+    private Path directorio() throws IOException {
+        Path root = Paths.get(uploadLocation);
+        if (!Files.exists(root)) {
+            Files.createDirectories(root);
+        }
+        return root;
+    }
+}
@@ -11,6 +11,7 @@ import org.carnavawiky.back.model.Role;
 import org.carnavawiky.back.model.Usuario;
 import org.carnavawiky.back.repository.RoleRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.carnavawiky.back.security.JwtService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -54,6 +55,9 @@ public class AuthService {
     @Autowired
     private EmailService emailService; // Necesario para enviar el email de reseteo
 
+    @Autowired
+    private EstadoUsuarioCache estadoUsuarios; // Estado de acceso cacheado para la autenticación por JWT
+
     @Value("${app.base-url:http://localhost:8083}")
     private String baseUrl;
 
@@ -85,6 +89,8 @@ public class AuthService {
         nuevoUsuario.setEnabled(false);
 
         Usuario usuarioGuardado = usuarioRepository.save(nuevoUsuario);
+        // Puede haber cacheado "no existe" para ese nombre (p. ej. un token de un usuario ya borrado)
+        estadoUsuarios.invalidar(usuarioGuardado.getUsername());
 
         activationService.generateAndSendActivationEmail(usuarioGuardado);
 
@@ -200,5 +206,7 @@ public class AuthService {
         usuario.setResetTokenExpiryDate(null);
 
         usuarioRepository.save(usuario);
+        // Cambio de credenciales: el estado de acceso se vuelve a leer en la siguiente petición
+        estadoUsuarios.invalidar(usuario.getUsername());
     }
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.dto.CacheEstadisticasResponse;
+import org.carnavawiky.back.exception.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.jcache.JCacheCacheManager;
+import org.springframework.stereotype.Service;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Lee las estadísticas JCache de cada región (enable-statistics en ehcache.xml) a través de los
+ * MBeans javax.cache:type=CacheStatistics que registra Ehcache, para dimensionar los niveles
+ * heap / off-heap / disco con datos reales.
+ */
+@Service
+public class CacheEstadisticasService {
+
+    private static final String TIPO_ESTADISTICAS = "CacheStatistics";
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    public List<CacheEstadisticasResponse> obtenerEstadisticas() {
+        return cacheManager.getCacheNames().stream()
+                .sorted()
+                .map(this::leer)
+                .flatMap(Optional::stream)
+                .toList();
+    }
+
+    public CacheEstadisticasResponse obtenerEstadisticas(String nombre) {
+        return leer(nombre).orElseThrow(() -> new ResourceNotFoundException("Cache", "nombre", nombre));
+    }
+
+    // Pone a cero los contadores (p. ej. tras cambiar el tamaño de un nivel)
+    public void reiniciarEstadisticas() {
+        for (String nombre : cacheManager.getCacheNames()) {
+            nombreMBean(nombre).ifPresent(mbean -> {
+                try {
+                    mBeanServer.invoke(mbean, "clear", null, null);
+                } catch (Exception e) {
+                    throw new IllegalStateException("No se pudieron reiniciar las estadísticas de " + nombre, e);
+                }
+            });
+        }
+    }
+
+    private Optional<CacheEstadisticasResponse> leer(String nombre) {
+        return nombreMBean(nombre).map(mbean -> {
+            try {
+                return CacheEstadisticasResponse.builder()
+                        .nombre(nombre)
+                        .aciertos((Long) mBeanServer.getAttribute(mbean, "CacheHits"))
+                        .fallos((Long) mBeanServer.getAttribute(mbean, "CacheMisses"))
+                        .porcentajeAciertos((Float) mBeanServer.getAttribute(mbean, "CacheHitPercentage"))
+                        .lecturas((Long) mBeanServer.getAttribute(mbean, "CacheGets"))
+                        .escrituras((Long) mBeanServer.getAttribute(mbean, "CachePuts"))
+                        .borrados((Long) mBeanServer.getAttribute(mbean, "CacheRemovals"))
+                        .desalojos((Long) mBeanServer.getAttribute(mbean, "CacheEvictions"))
+                        .tiempoMedioLecturaMicros((Float) mBeanServer.getAttribute(mbean, "AverageGetTime"))
+                        .build();
+            } catch (Exception e) {
+                throw new IllegalStateException("No se pudieron leer las estadísticas de " + nombre, e);
+            }
+        });
+    }
+
+    // Mismo nombre que registra Ehcache (Eh107MXBean): ',', ':', '=' y saltos de línea pasan a '.'
+    private Optional<ObjectName> nombreMBean(String cache) {
+        if (!(cacheManager instanceof JCacheCacheManager jCache) || jCache.getCacheManager() == null
+                || cacheManager.getCache(cache) == null) {
+            return Optional.empty();
+        }
+        try {
+            ObjectName nombre = new ObjectName("javax.cache:type=" + TIPO_ESTADISTICAS
+                    + ",CacheManager=" + sanear(jCache.getCacheManager().getURI().toString())
+                    + ",Cache=" + sanear(cache));
+            return mBeanServer.isRegistered(nombre) ? Optional.of(nombre) : Optional.empty();
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    private static String sanear(String texto) {
+        return texto == null ? "" : texto.replaceAll(",|:|=|\n", ".");
+    }
+}
@@ -0,0 +1,63 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.util.TrasCommit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Desalojo de las cachés que muestran un dato desnormalizado de otra entidad (p. ej. el nombre de la
+ * localidad en agrupacion_by_id): solo las fichas que la referencian, por clave, y solo si el dato cambió.
+ * Los listados se desalojan enteros (cualquier página puede contener una ficha afectada), vaciando la
+ * región o avanzando la versión que forma parte de su clave (CLAVE_LISTADO_CONCURSOS).
+ */
+@Component("cachesDependientes")
+public class CachesDependientes {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private final Map<String, AtomicLong> versiones = new ConcurrentHashMap<>();
+
+    // Caché consciente de la transacción: se desaloja tras el commit
+    public void desalojar(String region, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Cache cache = cacheManager.getCache(region);
+        if (cache != null) {
+            ids.forEach(cache::evict);
+        }
+    }
+
+    public void vaciar(String... regiones) {
+        for (String region : regiones) {
+            Cache cache = cacheManager.getCache(region);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+
+    // =======================================================
+    // LISTADOS CON VERSIÓN EN LA CLAVE
+    // =======================================================
+
+    public long version(String region) {
+        return versiones.computeIfAbsent(region, r -> new AtomicLong()).get();
+    }
+
+    /**
+     * Las páginas de la versión anterior dejan de leerse y caducan solas en Ehcache. Tras el commit:
+     * una página leída antes con el dato viejo se guarda con la versión anterior y ya no se sirve.
+     */
+    public void avanzarVersion(String region) {
+        TrasCommit.ejecutar(() -> versiones.computeIfAbsent(region, r -> new AtomicLong()).incrementAndGet());
+    }
+}
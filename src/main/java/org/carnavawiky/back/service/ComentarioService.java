@@ -2,7 +2,10 @@ package org.carnavawiky.back.service;
 
 import org.carnavawiky.back.dto.ComentarioRequest;
 import org.carnavawiky.back.dto.ComentarioResponse;
+import org.carnavawiky.back.dto.HiloComentarioResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.mapper.ComentarioMapper;
 import org.carnavawiky.back.model.Agrupacion;
@@ -12,17 +15,29 @@ import org.carnavawiky.back.repository.AgrupacionRepository;
 import org.carnavawiky.back.repository.ComentarioRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
 @Service
 public class ComentarioService {
 
     public static final String COMENTARIO = "Comentario" ;
     public static final String COMENTARIO1 = "Comentario1";
+
+    // Paginación por cursor: propiedades por las que se permite ordenar (además del id)
+    private static final PaginacionKeyset.Config<Comentario> SCROLL = new PaginacionKeyset.Config<>(
+            Comentario.class, Sort.unsorted(), Set.of("fechaCreacion"));
+
     @Autowired
     private ComentarioRepository comentarioRepository;
 
@@ -35,6 +50,27 @@ public class ComentarioService {
     @Autowired
     private ComentarioMapper comentarioMapper;
 
+    @Autowired
+    private ConteoCache conteoCache;
+
+    @Autowired
+    private ValoracionesAgrupaciones valoraciones;
+
+    @Autowired
+    private HilosComentarios hilos;
+
+    // Niveles de respuestas que acompañan a cada hilo en el listado si no se piden otros
+    @Value("${app.comentarios.hilos.profundidad:3}")
+    private int profundidadPorDefecto = 3;
+
+    // Tope de respuestas de cada hilo en el listado; el resto, por su rama (GET /{id}/respuestas)
+    @Value("${app.comentarios.hilos.respuestas-por-hilo:50}")
+    private int respuestasPorHilo = 50;
+
+    // Tope de respuestas de una rama
+    @Value("${app.comentarios.hilos.max-respuestas:500}")
+    private int maxRespuestas = 500;
+
     // =======================================================
     // Helpers para relaciones
     // =======================================================
@@ -61,7 +97,11 @@ public class ComentarioService {
 
         // 2. Mapear y guardar (Comentario.aprobado por defecto es false)
         Comentario comentario = comentarioMapper.toEntity(request, usuario, agrupacion);
+        Comentario padre = request.getPadreId() != null ? hilos.colgar(comentario, request.getPadreId()) : null;
         Comentario nuevoComentario = comentarioRepository.save(comentario);
+        // La ruta incluye su propio id: se completa ya guardado, en la misma transacción
+        hilos.completarRuta(nuevoComentario, padre);
+        conteoCache.invalidar(ConteoCache.COMENTARIOS);
 
         return comentarioMapper.toResponse(nuevoComentario);
     }
@@ -85,28 +125,128 @@ public class ComentarioService {
     // Si no hay búsqueda, devuelve todos (uso de moderación/admin).
     // =======================================================
     @Transactional(readOnly = true)
-    public PageResponse<ComentarioResponse> obtenerTodosComentarios(Pageable pageable, String search) {
+    public PageResponse<ComentarioResponse> obtenerTodosComentarios(Pageable pageable, String search, ModoConteo modoConteo) {
 
-        Page<Comentario> comentarioPage;
+        // Página sin COUNT (size + 1 filas); el total lo resuelve la caché de conteos
+        Slice<ComentarioResponse> slice;
+        String filtro = null;
+        LongSupplier contar = comentarioRepository::count;
 
         if (StringUtils.hasText(search)) {
             try {
                 // 1. Intentamos buscar por ID de Agrupación (SOLO APROBADOS)
                 Long agrupacionId = Long.parseLong(search);
-                comentarioPage = comentarioRepository.findByAgrupacion_IdAndAprobadoTrueOrderByFechaCreacionDesc(agrupacionId, pageable);
+                slice = comentarioRepository.findAprobadosResponsesByAgrupacionId(agrupacionId, pageable);
+                filtro = ConteoCache.filtro("agrupacion", agrupacionId);
+                contar = () -> comentarioRepository.countAprobadosByAgrupacionId(agrupacionId);
             } catch (NumberFormatException e) {
                 // 2. Si no es un número, buscamos por contenido (SOLO APROBADOS)
-                comentarioPage = comentarioRepository.findByContenidoContainingIgnoreCaseAndAprobadoTrue(search, pageable);
+                slice = comentarioRepository.findAprobadosResponsesByContenido(search, pageable);
+                filtro = ConteoCache.filtro("contenido", search);
+                contar = () -> comentarioRepository.countAprobadosByContenido(search);
             }
         } else {
             // Paginación normal. Para el uso de ADMIN/Moderación.
             // Si esto fuese un endpoint público, usaríamos findByAprobadoTrue(pageable).
-            comentarioPage = comentarioRepository.findAll(pageable);
+            slice = comentarioRepository.findAllResponses(pageable);
+        }
+
+        return conteoCache.paginar(slice, modoConteo, ConteoCache.COMENTARIOS, filtro, contar);
+    }
+
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (keyset) - sin OFFSET ni COUNT(*)
+    // =======================================================
+    @Transactional(readOnly = true)
+    public SliceResponse<ComentarioResponse> obtenerComentariosPorCursor(Pageable pageable, String search, String cursor) {
+
+        PaginacionKeyset.Consulta<Comentario> consulta = comentarioRepository::findAllBy;
+        PaginacionKeyset.Config<Comentario> config = SCROLL;
+
+        if (StringUtils.hasText(search)) {
+            try {
+                // 1. Por ID de Agrupación (SOLO APROBADOS), los más recientes primero
+                Long agrupacionId = Long.parseLong(search);
+                consulta = (posicion, sort, limit) ->
+                        comentarioRepository.findByAgrupacion_IdAndAprobadoTrue(agrupacionId, posicion, sort, limit);
+                config = SCROLL.conPorDefecto(Sort.by(Sort.Direction.DESC, "fechaCreacion"));
+            } catch (NumberFormatException e) {
+                // 2. Por contenido (SOLO APROBADOS)
+                consulta = (posicion, sort, limit) ->
+                        comentarioRepository.findByContenidoContainingIgnoreCaseAndAprobadoTrue(search, posicion, sort, limit);
+            }
+        }
+
+        return PaginacionKeyset.scroll(consulta, pageable, cursor, config, comentarioMapper::toResponse);
+    }
+
+    // =======================================================
+    // COLA DE MODERACIÓN (GET /pendientes) - los más antiguos primero, por cursor
+    // =======================================================
+    @Transactional(readOnly = true)
+    public SliceResponse<ComentarioResponse> obtenerPendientesPorCursor(Pageable pageable, String cursor) {
+        return PaginacionKeyset.scroll(comentarioRepository::findByAprobadoFalse, pageable, cursor,
+                SCROLL.conPorDefecto(Sort.by(Sort.Direction.ASC, "fechaCreacion")), comentarioMapper::toResponse);
+    }
+
+    // =======================================================
+    // HILOS (GET /hilos) - raíces aprobadas por cursor con sus respuestas
+    // Una consulta para las raíces y una por hilo con respuestas, cada una con su propio tope:
+    // un hilo muy largo no deja sin respuestas a los siguientes de la página
+    // =======================================================
+    @Transactional(readOnly = true)
+    public SliceResponse<HiloComentarioResponse> obtenerHilosPorCursor(Long agrupacionId, Pageable pageable, String cursor,
+                                                                       Integer profundidad) {
+        SliceResponse<ComentarioResponse> raices = PaginacionKeyset.scroll(
+                (posicion, sort, limit) ->
+                        comentarioRepository.findByAgrupacion_IdAndPadreIdIsNullAndAprobadoTrue(agrupacionId, posicion, sort, limit),
+                pageable, cursor, SCROLL.conPorDefecto(Sort.by(Sort.Direction.DESC, "fechaCreacion")),
+                comentarioMapper::toResponse);
+
+        int niveles = niveles(profundidad != null ? profundidad : profundidadPorDefecto);
+        return SliceResponse.<HiloComentarioResponse>builder()
+                .content(raices.getContent().stream().map(raiz -> hilo(raiz, niveles)).toList())
+                .size(raices.getSize())
+                .nextCursor(raices.getNextCursor())
+                .hasNext(raices.isHasNext())
+                .build();
+    }
+
+    // =======================================================
+    // RAMA (GET /ID/respuestas) - el comentario y sus respuestas aprobadas en una consulta
+    // =======================================================
+    @Transactional(readOnly = true)
+    public List<ComentarioResponse> obtenerRama(Long id, Integer profundidad) {
+        Comentario comentario = comentarioRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException(COMENTARIO, "id", id));
+        if (comentario.getRuta() == null) {
+            // Raíz aún sin ruta (ingesta diferida en curso): no puede tener respuestas
+            return List.of(comentarioMapper.toResponse(comentario));
         }
 
-        Page<ComentarioResponse> responsePage = comentarioPage.map(comentarioMapper::toResponse);
+        int hasta = comentario.getProfundidad() + niveles(profundidad != null ? profundidad : HilosComentarios.PROFUNDIDAD_MAXIMA);
+        return comentarioRepository.findRamaResponses(comentario.getRaizId(), HilosComentarios.prefijoRama(comentario),
+                hasta, Limit.of(maxRespuestas));
+    }
 
-        return PageResponse.fromPage(responsePage);
+    private HiloComentarioResponse hilo(ComentarioResponse raiz, int niveles) {
+        // Solo se consulta si tiene respuestas aprobadas (contador desnormalizado)
+        if (niveles == 0 || raiz.getRespuestasTotales() == null || raiz.getRespuestasTotales() == 0) {
+            return HiloComentarioResponse.builder().comentario(raiz).respuestas(List.of()).build();
+        }
+        // Una de más para saber si el hilo sigue
+        List<ComentarioResponse> respuestas = comentarioRepository.findRespuestasHiloResponses(
+                raiz.getId(), niveles, Limit.of(respuestasPorHilo + 1));
+        boolean truncado = respuestas.size() > respuestasPorHilo;
+        return HiloComentarioResponse.builder()
+                .comentario(raiz)
+                .respuestas(truncado ? respuestas.subList(0, respuestasPorHilo) : respuestas)
+                .truncado(truncado)
+                .build();
+    }
+
+    private static int niveles(int profundidad) {
+        return Math.max(0, Math.min(profundidad, HilosComentarios.PROFUNDIDAD_MAXIMA));
     }
 
     // =======================================================
@@ -114,12 +254,16 @@ public class ComentarioService {
     // =======================================================
     @Transactional
     public ComentarioResponse actualizarComentario(Long id, ComentarioRequest request) {
-        Comentario comentarioExistente = comentarioRepository.findById(id)
+        Comentario comentarioExistente = comentarioRepository.findByIdParaActualizar(id)
                 .orElseThrow(() -> new ResourceNotFoundException(COMENTARIO, "id", id));
 
         // 1. Buscar entidades relacionadas (se necesita de nuevo si los IDs cambiaron)
         Usuario nuevoUsuario = findUsuario(request.getUsuarioId());
         Agrupacion nuevaAgrupacion = findAgrupacion(request.getAgrupacionId());
+        hilos.validarEdicion(comentarioExistente, request);
+
+        // Si ya estaba aprobado, su puntuación sale de la valoración actual y entra con los valores nuevos
+        valoraciones.restar(comentarioExistente);
 
         // 2. Actualizar campos
         comentarioExistente.setContenido(request.getContenido());
@@ -130,6 +274,8 @@ public class ComentarioService {
 
         // 3. Guardar y retornar
         Comentario comentarioActualizado = comentarioRepository.save(comentarioExistente);
+        valoraciones.sumar(comentarioActualizado);
+        conteoCache.invalidar(ConteoCache.COMENTARIOS);
 
         return comentarioMapper.toResponse(comentarioActualizado);
     }
@@ -139,10 +285,14 @@ public class ComentarioService {
     // =======================================================
     @Transactional
     public void eliminarComentario(Long id) {
-        Comentario comentario = comentarioRepository.findById(id)
+        Comentario comentario = comentarioRepository.findByIdParaActualizar(id)
                 .orElseThrow(() -> new ResourceNotFoundException(COMENTARIO1, "id", id));
 
+        valoraciones.restar(comentario);
+        // Con él se van sus respuestas; los contadores de sus antepasados se descuentan
+        hilos.eliminarRama(comentario);
         comentarioRepository.delete(comentario);
+        conteoCache.invalidar(ConteoCache.COMENTARIOS);
     }
 
     // =======================================================
@@ -150,11 +300,18 @@ public class ComentarioService {
     // =======================================================
     @Transactional
     public ComentarioResponse aprobarComentario(Long id) {
-        Comentario comentario = comentarioRepository.findById(id)
+        Comentario comentario = comentarioRepository.findByIdParaActualizar(id)
                 .orElseThrow(() -> new ResourceNotFoundException(COMENTARIO1, "id", id));
 
+        // Aprobar dos veces no suma dos veces la puntuación
+        boolean yaAprobado = Boolean.TRUE.equals(comentario.getAprobado());
         comentario.setAprobado(true);
         Comentario comentarioActualizado = comentarioRepository.save(comentario);
+        if (!yaAprobado) {
+            valoraciones.sumar(comentarioActualizado);
+            hilos.sumar(comentarioActualizado);
+        }
+        conteoCache.invalidar(ConteoCache.COMENTARIOS);
 
         return comentarioMapper.toResponse(comentarioActualizado);
     }
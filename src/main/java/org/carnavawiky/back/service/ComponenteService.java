@@ -2,7 +2,9 @@ package org.carnavawiky.back.service;
 
 import org.carnavawiky.back.dto.ComponenteRequest;
 import org.carnavawiky.back.dto.ComponenteResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.mapper.ComponenteMapper;
 import org.carnavawiky.back.model.Agrupacion;
@@ -12,16 +14,25 @@ import org.carnavawiky.back.repository.AgrupacionRepository;
 import org.carnavawiky.back.repository.ComponenteRepository;
 import org.carnavawiky.back.repository.PersonaRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.util.Set;
+import java.util.function.LongSupplier;
+
 @Service
 public class ComponenteService {
 
     public static final String COMPONENTE = "Componente";
+
+    // Paginación por cursor: propiedades por las que se permite ordenar (además del id)
+    private static final PaginacionKeyset.Config<Componente> SCROLL = new PaginacionKeyset.Config<>(
+            Componente.class, Sort.unsorted(), Set.of());
+
     @Autowired
     private ComponenteRepository componenteRepository;
 
@@ -34,6 +45,9 @@ public class ComponenteService {
     @Autowired
     private ComponenteMapper componenteMapper;
 
+    @Autowired
+    private ConteoCache conteoCache;
+
     // =======================================================
     // Helpers para relaciones
     // =======================================================
@@ -61,6 +75,7 @@ public class ComponenteService {
         // 2. Mapear y guardar (la restricción de unicidad la gestiona la base de datos)
         Componente componente = componenteMapper.toEntity(request, persona, agrupacion);
         Componente nuevoComponente = componenteRepository.save(componente);
+        conteoCache.invalidar(ConteoCache.COMPONENTES);
 
         return componenteMapper.toResponse(nuevoComponente);
     }
@@ -79,21 +94,40 @@ public class ComponenteService {
     // 3. OBTENER TODOS (GET) - CON PAGINACIÓN Y BÚSQUEDA
     // =======================================================
     @Transactional(readOnly = true)
-    public PageResponse<ComponenteResponse> obtenerTodosComponentes(Pageable pageable, String search) {
+    public PageResponse<ComponenteResponse> obtenerTodosComponentes(Pageable pageable, String search, ModoConteo modoConteo) {
 
-        Page<Componente> componentePage;
+        // Página sin COUNT (size + 1 filas); el total lo resuelve la caché de conteos
+        Slice<ComponenteResponse> slice;
+        String filtro = null;
+        LongSupplier contar = componenteRepository::count;
 
         if (StringUtils.hasText(search)) {
             // Buscamos por nombre real, apodo o nombre de agrupación
-            componentePage = componenteRepository.findBySearchTerm(search, pageable);
+            slice = componenteRepository.searchResponses(search, pageable);
+            filtro = ConteoCache.filtro("search", search);
+            contar = () -> componenteRepository.countBusqueda(search);
         } else {
             // Paginación normal
-            componentePage = componenteRepository.findAll(pageable);
+            slice = componenteRepository.findAllResponses(pageable);
         }
 
-        Page<ComponenteResponse> responsePage = componentePage.map(componenteMapper::toResponse);
+        return conteoCache.paginar(slice, modoConteo, ConteoCache.COMPONENTES, filtro, contar);
+    }
+
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (keyset) - sin OFFSET ni COUNT(*)
+    // =======================================================
+    @Transactional(readOnly = true)
+    public SliceResponse<ComponenteResponse> obtenerComponentesPorCursor(Pageable pageable, String search, String cursor) {
+
+        PaginacionKeyset.Consulta<Componente> consulta = StringUtils.hasText(search)
+                // Por nombre real, apodo o nombre de agrupación (como searchResponses)
+                ? (posicion, sort, limit) -> componenteRepository
+                        .findByPersona_NombreRealContainingIgnoreCaseOrPersona_ApodoContainingIgnoreCaseOrAgrupacion_NombreContainingIgnoreCase(
+                                search, search, search, posicion, sort, limit)
+                : componenteRepository::findAllBy;
 
-        return PageResponse.fromPage(responsePage);
+        return PaginacionKeyset.scroll(consulta, pageable, cursor, SCROLL, componenteMapper::toResponse);
     }
 
     // =======================================================
@@ -115,6 +149,7 @@ public class ComponenteService {
 
         // 3. Guardar y retornar
         Componente componenteActualizado = componenteRepository.save(componenteExistente);
+        conteoCache.invalidar(ConteoCache.COMPONENTES);
 
         return componenteMapper.toResponse(componenteActualizado);
     }
@@ -128,5 +163,6 @@ public class ComponenteService {
                 .orElseThrow(() -> new ResourceNotFoundException(COMPONENTE, "id", id));
 
         componenteRepository.delete(componente);
+        conteoCache.invalidar(ConteoCache.COMPONENTES);
     }
 }
\ No newline at end of file
@@ -1,25 +1,43 @@
 package org.carnavawiky.back.service;
 
+import org.carnavawiky.back.config.CacheConfig;
 import org.carnavawiky.back.dto.ConcursoRequest;
 import org.carnavawiky.back.dto.ConcursoResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.mapper.ConcursoMapper;
 import org.carnavawiky.back.model.Concurso;
 import org.carnavawiky.back.model.Localidad;
 import org.carnavawiky.back.repository.ConcursoRepository;
+import org.carnavawiky.back.repository.EdicionRepository;
 import org.carnavawiky.back.repository.LocalidadRepository;
+import org.carnavawiky.back.repository.PremioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
 @Service
 public class ConcursoService {
 
     public static final String CONCURSO = "Concurso";
+
+    // Paginación por cursor: propiedades por las que se permite ordenar (además del id)
+    private static final PaginacionKeyset.Config<Concurso> SCROLL = new PaginacionKeyset.Config<>(
+            Concurso.class, Sort.unsorted(), Set.of("nombre"));
+
     @Autowired
     private ConcursoRepository concursoRepository;
 
@@ -29,10 +47,23 @@ public class ConcursoService {
     @Autowired
     private ConcursoMapper concursoMapper;
 
+    @Autowired
+    private ConteoCache conteoCache;
+
+    @Autowired
+    private CachesDependientes cachesDependientes; // Fichas y listados que muestran el nombre del concurso
+
+    @Autowired
+    private EdicionRepository edicionRepository;
+
+    @Autowired
+    private PremioRepository premioRepository;
+
     // =======================================================
     // 1. CREAR (POST)
     // =======================================================
     @Transactional
+    @CacheEvict(value = CacheConfig.CONCURSOS_LIST, allEntries = true)
     public ConcursoResponse crearConcurso(ConcursoRequest request) {
 
         // 1. Buscar Localidad (N:1)
@@ -42,6 +73,7 @@ public class ConcursoService {
         // 2. Mapear y guardar
         Concurso concurso = concursoMapper.toEntity(request, localidad);
         Concurso nuevoConcurso = concursoRepository.save(concurso);
+        conteoCache.invalidar(ConteoCache.CONCURSOS);
 
         return concursoMapper.toResponse(nuevoConcurso);
     }
@@ -50,6 +82,7 @@ public class ConcursoService {
     // 2. OBTENER POR ID (GET /ID)
     // =======================================================
     @Transactional(readOnly = true)
+    @Cacheable(value = CacheConfig.CONCURSO_BY_ID, key = "#id")
     public ConcursoResponse obtenerConcursoPorId(Long id) {
         Concurso concurso = concursoRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(CONCURSO, "id", id));
@@ -60,27 +93,49 @@ public class ConcursoService {
     // 3. OBTENER TODOS (GET) - CON PAGINACIÓN Y BÚSQUEDA
     // =======================================================
     @Transactional(readOnly = true)
-    public PageResponse<ConcursoResponse> obtenerTodosConcursos(Pageable pageable, String search) {
+    @Cacheable(value = CacheConfig.CONCURSOS_LIST, key = CacheConfig.CLAVE_LISTADO_CONCURSOS)
+    public PageResponse<ConcursoResponse> obtenerTodosConcursos(Pageable pageable, String search, ModoConteo modoConteo) {
 
-        Page<Concurso> concursoPage;
+        // Página sin COUNT (size + 1 filas); el total lo resuelve la caché de conteos
+        Slice<ConcursoResponse> slice;
+        String filtro = null;
+        LongSupplier contar = concursoRepository::count;
 
         if (StringUtils.hasText(search)) {
             // Buscamos por nombre
-            concursoPage = concursoRepository.findByNombreContainingIgnoreCase(search, pageable);
+            slice = concursoRepository.searchResponses(search, pageable);
+            filtro = ConteoCache.filtro("nombre", search);
+            contar = () -> concursoRepository.countBusqueda(search);
         } else {
             // Paginación normal
-            concursoPage = concursoRepository.findAll(pageable);
+            slice = concursoRepository.findAllResponses(pageable);
         }
 
-        Page<ConcursoResponse> responsePage = concursoPage.map(concursoMapper::toResponse);
+        return conteoCache.paginar(slice, modoConteo, ConteoCache.CONCURSOS, filtro, contar);
+    }
+
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (keyset) - sin OFFSET ni COUNT(*)
+    // =======================================================
+    @Transactional(readOnly = true)
+    public SliceResponse<ConcursoResponse> obtenerConcursosPorCursor(Pageable pageable, String search, String cursor) {
+
+        PaginacionKeyset.Consulta<Concurso> consulta = StringUtils.hasText(search)
+                ? (posicion, sort, limit) -> concursoRepository.findByNombreContainingIgnoreCase(search, posicion, sort, limit)
+                : concursoRepository::findAllBy;
 
-        return PageResponse.fromPage(responsePage);
+        return PaginacionKeyset.scroll(consulta, pageable, cursor, SCROLL, concursoMapper::toResponse);
     }
 
     // =======================================================
     // 4. ACTUALIZAR (PUT /ID)
+    // El nombre del concurso se muestra también en ediciones y premios (cachés dependientes)
     // =======================================================
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(value = CacheConfig.CONCURSO_BY_ID, key = "#id"),
+            @CacheEvict(value = CacheConfig.CONCURSOS_LIST, allEntries = true)
+    })
     public ConcursoResponse actualizarConcurso(Long id, ConcursoRequest request) {
         Concurso concursoExistente = concursoRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(CONCURSO, "id", id));
@@ -90,25 +145,41 @@ public class ConcursoService {
                 .orElseThrow(() -> new ResourceNotFoundException("Localidad", "id", request.getLocalidadId()));
 
         // 2. Actualizar campos
+        String nombreAnterior = concursoExistente.getNombre();
         concursoExistente.setNombre(request.getNombre());
         concursoExistente.setEstaActivo(request.getEstaActivo());
         concursoExistente.setLocalidad(nuevaLocalidad);
 
         // 3. Guardar y retornar
         Concurso concursoActualizado = concursoRepository.save(concursoExistente);
+        conteoCache.invalidar(ConteoCache.CONCURSOS);
+        if (!Objects.equals(nombreAnterior, concursoActualizado.getNombre())) {
+            desalojarDependientes(id);
+        }
 
         return concursoMapper.toResponse(concursoActualizado);
     }
 
+    private void desalojarDependientes(Long id) {
+        cachesDependientes.desalojar(CacheConfig.EDICION_BY_ID, edicionRepository.findIdsByConcursoId(id));
+        cachesDependientes.desalojar(CacheConfig.PREMIO_BY_ID, premioRepository.findIdsByConcursoId(id));
+        cachesDependientes.vaciar(CacheConfig.EDICIONES_LIST, CacheConfig.PREMIOS_LIST);
+    }
+
     // =======================================================
     // 5. ELIMINAR (DELETE /ID)
     // =======================================================
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(value = CacheConfig.CONCURSO_BY_ID, key = "#id"),
+            @CacheEvict(value = CacheConfig.CONCURSOS_LIST, allEntries = true)
+    })
     public void eliminarConcurso(Long id) {
         Concurso concurso = concursoRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(CONCURSO, "id", id));
 
         // NOTA: La eliminación fallará si existen Ediciones vinculadas (Integridad Referencial)
         concursoRepository.delete(concurso);
+        conteoCache.invalidar(ConteoCache.CONCURSOS);
     }
 }
\ No newline at end of file
@@ -0,0 +1,146 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.dto.ModoConteo;
+import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.util.MapasLru;
+import org.carnavawiky.back.util.TrasCommit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Caché de totales (COUNT(*)) de los listados paginados, por (región, filtro).
+ * Los listados piden a la BD un Slice (size + 1 filas, sin COUNT) y el total se toma de aquí:
+ * solo se cuenta cuando no hay entrada vigente. Cada región lleva un número de versión que
+ * los servicios incrementan tras el commit de cualquier escritura; una entrada de otra versión
+ * ya no vale como total EXACTO, aunque sigue sirviendo como APROXIMADO hasta su TTL.
+ */
+@Component
+public class ConteoCache {
+
+    // Regiones (una por listado) y de qué otras dependen sus filtros:
+    // p. ej. el buscador de componentes filtra por nombre de persona y de agrupación.
+    public static final String AGRUPACIONES = "Agrupacion";
+    public static final String COMENTARIOS = "Comentario";
+    public static final String COMPONENTES = "Componente";
+    public static final String CONCURSOS = "Concurso";
+    public static final String EDICIONES = "Edicion";
+    public static final String LOCALIDADES = "Localidad";
+    public static final String PERSONAS = "Persona";
+    public static final String PREMIOS = "Premio";
+
+    private static final Map<String, Set<String>> DEPENDIENTES = Map.of(
+            AGRUPACIONES, Set.of(COMENTARIOS, COMPONENTES, PREMIOS),
+            PERSONAS, Set.of(COMPONENTES),
+            CONCURSOS, Set.of(EDICIONES),
+            EDICIONES, Set.of(PREMIOS));
+
+    @Value("${app.conteo.max-entradas:5000}")
+    private int maxEntradas = 5000;
+
+    // Red de seguridad para escrituras que no pasan por esta instancia (seeds, otros nodos)
+    @Value("${app.conteo.ttl-exacto:PT10M}")
+    private Duration ttlExacto = Duration.ofMinutes(10);
+
+    @Value("${app.conteo.ttl-aproximado:PT30M}")
+    private Duration ttlAproximado = Duration.ofMinutes(30);
+
+    private Clock reloj = Clock.systemUTC();
+
+    private final Map<String, AtomicLong> versiones = new ConcurrentHashMap<>();
+
+    // LRU acotado: los filtros son texto libre del buscador
+    private final Map<Clave, Entrada> entradas = MapasLru.sincronizado(64, () -> maxEntradas);
+
+    private record Clave(String region, String filtro) {
+    }
+
+    private record Entrada(long total, long version, long instante) {
+    }
+
+    // =======================================================
+    // LECTURA
+    // =======================================================
+
+    /**
+     * Construye la página a partir del Slice y del total según el modo pedido.
+     *
+     * @param filtro clave del filtro aplicado (null o "" para el listado sin filtro)
+     * @param contar COUNT(*) con el mismo filtro; solo se ejecuta si no hay total en caché
+     */
+    public <T> PageResponse<T> paginar(Slice<T> slice, ModoConteo modo, String region, String filtro, LongSupplier contar) {
+        ModoConteo efectivo = modo != null ? modo : ModoConteo.EXACTO;
+
+        if (efectivo == ModoConteo.OMITIDO) {
+            return PageResponse.fromSlice(slice, null, false);
+        }
+        if (!slice.hasNext() && (slice.hasContent() || slice.getNumber() == 0)) {
+            // Última página: el total sale de lo leído, no hace falta contar
+            return PageResponse.fromSlice(slice, 0L, false);
+        }
+        return PageResponse.fromSlice(slice, total(region, filtro, efectivo, contar), efectivo == ModoConteo.APROXIMADO);
+    }
+
+    // Clave de filtro normalizada como la comparación LOWER(...) LIKE de las consultas
+    public static String filtro(String campo, Object valor) {
+        return campo + ":" + String.valueOf(valor).toLowerCase(Locale.ROOT);
+    }
+
+    long total(String region, String filtro, ModoConteo modo, LongSupplier contar) {
+        Clave clave = new Clave(region, filtro == null ? "" : filtro);
+        // La versión se lee ANTES de contar: si hay un commit a mitad, la entrada nace ya caducada
+        long version = version(region).get();
+        long ahora = reloj.millis();
+
+        Entrada entrada = entradas.get(clave);
+        if (entrada != null && vigente(entrada, version, modo, ahora)) {
+            return entrada.total();
+        }
+
+        long total = contar.getAsLong();
+        entradas.put(clave, new Entrada(total, version, ahora));
+        return total;
+    }
+
+    private boolean vigente(Entrada entrada, long version, ModoConteo modo, long ahora) {
+        long edad = ahora - entrada.instante();
+        if (modo == ModoConteo.APROXIMADO) {
+            return edad < ttlAproximado.toMillis();
+        }
+        return entrada.version() == version && edad < ttlExacto.toMillis();
+    }
+
+    // =======================================================
+    // INVALIDACIÓN (llamar desde las escrituras de los servicios)
+    // =======================================================
+
+    /**
+     * Marca como no exactos los totales de la región y de las que dependen de ella.
+     * Dentro de una transacción se aplica tras el commit, para que un conteo concurrente
+     * no vuelva a cachear el valor anterior con la versión nueva.
+     */
+    public void invalidar(String region) {
+        TrasCommit.ejecutar(() -> incrementar(region, new HashSet<>()));
+    }
+
+    private void incrementar(String region, Set<String> visitadas) {
+        if (!visitadas.add(region)) {
+            return;
+        }
+        version(region).incrementAndGet();
+        for (String dependiente : DEPENDIENTES.getOrDefault(region, Set.of())) {
+            incrementar(dependiente, visitadas);
+        }
+    }
+
+    private AtomicLong version(String region) {
+        return versiones.computeIfAbsent(region, r -> new AtomicLong());
+    }
+}
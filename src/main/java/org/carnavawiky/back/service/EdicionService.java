@@ -1,25 +1,42 @@
 package org.carnavawiky.back.service;
 
+import org.carnavawiky.back.config.CacheConfig;
 import org.carnavawiky.back.dto.EdicionRequest;
 import org.carnavawiky.back.dto.EdicionResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.mapper.EdicionMapper;
 import org.carnavawiky.back.model.Concurso;
 import org.carnavawiky.back.model.Edicion;
 import org.carnavawiky.back.repository.ConcursoRepository;
 import org.carnavawiky.back.repository.EdicionRepository;
+import org.carnavawiky.back.repository.PremioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
 @Service
 public class EdicionService {
 
     public static final String EDICION = "Edicion";
+
+    // Paginación por cursor: propiedades por las que se permite ordenar (además del id)
+    private static final PaginacionKeyset.Config<Edicion> SCROLL = new PaginacionKeyset.Config<>(
+            Edicion.class, Sort.unsorted(), Set.of("anho"));
+
     @Autowired
     private EdicionRepository edicionRepository;
 
@@ -29,6 +46,15 @@ public class EdicionService {
     @Autowired
     private EdicionMapper edicionMapper;
 
+    @Autowired
+    private ConteoCache conteoCache;
+
+    @Autowired
+    private CachesDependientes cachesDependientes; // Premios que muestran el año y el concurso de la edición
+
+    @Autowired
+    private PremioRepository premioRepository;
+
     // =======================================================
     // Helpers
     // =======================================================
@@ -42,6 +68,7 @@ public class EdicionService {
     // 1. CREAR (POST)
     // =======================================================
     @Transactional
+    @CacheEvict(value = CacheConfig.EDICIONES_LIST, allEntries = true)
     public EdicionResponse crearEdicion(EdicionRequest request) {
 
         // 1. Buscar Concurso (N:1)
@@ -50,6 +77,7 @@ public class EdicionService {
         // 2. Mapear y guardar (la restricción de unicidad la maneja la base de datos)
         Edicion edicion = edicionMapper.toEntity(request, concurso);
         Edicion nuevaEdicion = edicionRepository.save(edicion);
+        conteoCache.invalidar(ConteoCache.EDICIONES);
 
         return edicionMapper.toResponse(nuevaEdicion);
     }
@@ -58,6 +86,7 @@ public class EdicionService {
     // 2. OBTENER POR ID (GET /ID)
     // =======================================================
     @Transactional(readOnly = true)
+    @Cacheable(value = CacheConfig.EDICION_BY_ID, key = "#id")
     public EdicionResponse obtenerEdicionPorId(Long id) {
         Edicion edicion = edicionRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(EDICION, "id", id));
@@ -69,33 +98,65 @@ public class EdicionService {
     // NOTA: Se buscará por año o por nombre de concurso
     // =======================================================
     @Transactional(readOnly = true)
-    public PageResponse<EdicionResponse> obtenerTodasEdiciones(Pageable pageable, String search) {
+    @Cacheable(value = CacheConfig.EDICIONES_LIST, key = CacheConfig.CLAVE_LISTADO)
+    public PageResponse<EdicionResponse> obtenerTodasEdiciones(Pageable pageable, String search, ModoConteo modoConteo) {
 
-        Page<Edicion> edicionPage;
+        // Página sin COUNT (size + 1 filas); el total lo resuelve la caché de conteos
+        Slice<EdicionResponse> slice;
+        String filtro = null;
+        LongSupplier contar = edicionRepository::count;
 
         if (StringUtils.hasText(search)) {
             // Intentamos buscar por año (si es un número)
             try {
                 Integer anho = Integer.parseInt(search);
-                edicionPage = edicionRepository.findByAnho(anho, pageable);
+                slice = edicionRepository.findResponsesByAnho(anho, pageable);
+                filtro = ConteoCache.filtro("anho", anho);
+                contar = () -> edicionRepository.countByAnho(anho);
             } catch (NumberFormatException e) {
                 // Si no es un número, buscamos por nombre del Concurso
-                edicionPage = edicionRepository.findByConcurso_NombreContainingIgnoreCase(search, pageable);
+                slice = edicionRepository.findResponsesByConcursoNombre(search, pageable);
+                filtro = ConteoCache.filtro("concurso", search);
+                contar = () -> edicionRepository.countByConcursoNombre(search);
             }
         } else {
             // Paginación normal
-            edicionPage = edicionRepository.findAll(pageable);
+            slice = edicionRepository.findAllResponses(pageable);
         }
 
-        Page<EdicionResponse> responsePage = edicionPage.map(edicionMapper::toResponse);
+        return conteoCache.paginar(slice, modoConteo, ConteoCache.EDICIONES, filtro, contar);
+    }
 
-        return PageResponse.fromPage(responsePage);
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (keyset) - sin OFFSET ni COUNT(*)
+    // =======================================================
+    @Transactional(readOnly = true)
+    public SliceResponse<EdicionResponse> obtenerEdicionesPorCursor(Pageable pageable, String search, String cursor) {
+
+        PaginacionKeyset.Consulta<Edicion> consulta = edicionRepository::findAllBy;
+
+        if (StringUtils.hasText(search)) {
+            try {
+                Integer anho = Integer.parseInt(search);
+                consulta = (posicion, sort, limit) -> edicionRepository.findByAnho(anho, posicion, sort, limit);
+            } catch (NumberFormatException e) {
+                consulta = (posicion, sort, limit) ->
+                        edicionRepository.findByConcurso_NombreContainingIgnoreCase(search, posicion, sort, limit);
+            }
+        }
+
+        return PaginacionKeyset.scroll(consulta, pageable, cursor, SCROLL, edicionMapper::toResponse);
     }
 
     // =======================================================
     // 4. ACTUALIZAR (PUT /ID)
+    // El año de la edición se muestra también en los premios (cachés dependientes)
     // =======================================================
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(value = CacheConfig.EDICION_BY_ID, key = "#id"),
+            @CacheEvict(value = CacheConfig.EDICIONES_LIST, allEntries = true)
+    })
     public EdicionResponse actualizarEdicion(Long id, EdicionRequest request) {
         Edicion edicionExistente = edicionRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(EDICION, "id", id));
@@ -104,11 +165,18 @@ public class EdicionService {
         Concurso nuevoConcurso = obtenerConcurso(request.getConcursoId());
 
         // 2. Actualizar campos
+        Integer anhoAnterior = edicionExistente.getAnho();
+        Long concursoAnteriorId = edicionExistente.getConcurso().getId();
         edicionExistente.setAnho(request.getAnho());
         edicionExistente.setConcurso(nuevoConcurso);
 
         // 3. Guardar y retornar
         Edicion edicionActualizada = edicionRepository.save(edicionExistente);
+        conteoCache.invalidar(ConteoCache.EDICIONES);
+        if (!Objects.equals(anhoAnterior, request.getAnho()) || !Objects.equals(concursoAnteriorId, nuevoConcurso.getId())) {
+            cachesDependientes.desalojar(CacheConfig.PREMIO_BY_ID, premioRepository.findIdsByEdicionId(id));
+            cachesDependientes.vaciar(CacheConfig.PREMIOS_LIST);
+        }
 
         return edicionMapper.toResponse(edicionActualizada);
     }
@@ -117,11 +185,16 @@ public class EdicionService {
     // 5. ELIMINAR (DELETE /ID)
     // =======================================================
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(value = CacheConfig.EDICION_BY_ID, key = "#id"),
+            @CacheEvict(value = CacheConfig.EDICIONES_LIST, allEntries = true)
+    })
     public void eliminarEdicion(Long id) {
         Edicion edicion = edicionRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(EDICION, "id", id));
 
         // NOTA: La eliminación fallará si existen Premios vinculados (Integridad Referencial)
         edicionRepository.delete(edicion);
+        conteoCache.invalidar(ConteoCache.EDICIONES);
     }
 }
\ No newline at end of file
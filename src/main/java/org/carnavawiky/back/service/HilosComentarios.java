@@ -0,0 +1,198 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.dto.ComentarioRequest;
+import org.carnavawiky.back.exception.BadRequestException;
+import org.carnavawiky.back.exception.ResourceNotFoundException;
+import org.carnavawiky.back.model.Comentario;
+import org.carnavawiky.back.repository.ComentarioRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Hilos de respuestas con ruta materializada: cada comentario guarda la ruta de ids desde la raíz
+ * (Comentario.ruta), así que un hilo o una rama se lee con una sola consulta por rango de índice
+ * (raizId, ruta), ya en orden de lectura. Los contadores de respuestas aprobadas se mantienen aquí,
+ * dentro de la transacción del comentario, con un UPDATE por conjunto de antepasados.
+ */
+@Component
+public class HilosComentarios {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HilosComentarios.class);
+
+    // 12 dígitos + '/' por nivel: con 21 niveles (0..20) la ruta cabe en sus 300 caracteres
+    public static final int PROFUNDIDAD_MAXIMA = 20;
+    private static final int ANCHO_SEGMENTO = 13;
+
+    @Autowired
+    private ComentarioRepository comentarioRepository;
+
+    // =======================================================
+    // CARGA INICIAL
+    // =======================================================
+
+    // Los comentarios anteriores a los hilos pasan a ser raíces de su propio hilo
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void inicializar() {
+        int filas = comentarioRepository.completarRaices();
+        if (filas > 0) {
+            LOG.info("Comentarios convertidos en raíz de hilo: {}", filas);
+        }
+    }
+
+    // =======================================================
+    // ALTA Y EDICIÓN
+    // =======================================================
+
+    /**
+     * Cuelga el comentario (aún sin guardar) de su padre: bloquea el padre, comprueba que se le
+     * puede responder y fija padreId, raizId y profundidad. Devuelve el padre para completarRuta.
+     */
+    public Comentario colgar(Comentario comentario, Long padreId) {
+        // Bloqueado: no se puede borrar la rama mientras se le añade una respuesta
+        Comentario padre = comentarioRepository.findByIdParaActualizar(padreId)
+                .orElseThrow(() -> new ResourceNotFoundException(ComentarioService.COMENTARIO, "id", padreId));
+        if (!Boolean.TRUE.equals(padre.getAprobado())) {
+            throw new BadRequestException("Solo se puede responder a comentarios aprobados.");
+        }
+        if (!padre.getAgrupacion().getId().equals(comentario.getAgrupacion().getId())) {
+            throw new BadRequestException("La respuesta debe ser de la misma agrupación que el comentario al que responde.");
+        }
+        if (padre.getProfundidad() >= PROFUNDIDAD_MAXIMA) {
+            throw new BadRequestException("No se admiten más de " + PROFUNDIDAD_MAXIMA + " niveles de respuestas.");
+        }
+        if (comentario.getPuntuacion() != null) {
+            throw new BadRequestException("Las respuestas no llevan puntuación.");
+        }
+
+        comentario.setPadreId(padre.getId());
+        comentario.setRaizId(padre.getRaizId());
+        comentario.setProfundidad(padre.getProfundidad() + 1);
+        return padre;
+    }
+
+    // Tras guardarlo (ya tiene id): ruta del padre + su propio id; una raíz abre su hilo
+    public void completarRuta(Comentario comentario, Comentario padre) {
+        if (padre == null) {
+            comentario.setRaizId(comentario.getId());
+            comentario.setProfundidad(0);
+            comentario.setRuta(segmento(comentario.getId()));
+        } else {
+            comentario.setRuta(padre.getRuta() + segmento(comentario.getId()));
+        }
+    }
+
+    // La posición en el hilo no cambia al editar: ni de agrupación ni puntuación en una respuesta
+    public void validarEdicion(Comentario comentario, ComentarioRequest request) {
+        boolean cambiaAgrupacion = !comentario.getAgrupacion().getId().equals(request.getAgrupacionId());
+        if (cambiaAgrupacion && (comentario.getPadreId() != null || comentarioRepository.existsByPadreId(comentario.getId()))) {
+            throw new BadRequestException("Un comentario de un hilo no puede cambiar de agrupación.");
+        }
+        if (comentario.getPadreId() != null && request.getPuntuacion() != null) {
+            throw new BadRequestException("Las respuestas no llevan puntuación.");
+        }
+    }
+
+    // =======================================================
+    // CONTADORES DE RESPUESTAS APROBADAS
+    // =======================================================
+
+    // La respuesta acaba de aprobarse
+    @Transactional
+    public void sumar(Comentario comentario) {
+        sumarAprobados(List.of(comentario));
+    }
+
+    /**
+     * Aprobación en lote: los deltas se agrupan por antepasado y se aplican con una sentencia por
+     * valor de delta, no una por respuesta.
+     */
+    @Transactional
+    public void sumarAprobados(Collection<Comentario> comentarios) {
+        Map<Long, Long> directas = new TreeMap<>();
+        Map<Long, Long> totales = new TreeMap<>();
+        for (Comentario comentario : comentarios) {
+            if (comentario.getPadreId() == null) {
+                continue;
+            }
+            directas.merge(comentario.getPadreId(), 1L, Long::sum);
+            for (Long antepasado : antepasados(comentario.getRuta())) {
+                totales.merge(antepasado, 1L, Long::sum);
+            }
+        }
+        aplicar(directas, true);
+        aplicar(totales, false);
+    }
+
+    /**
+     * Borra las respuestas del comentario (toda la rama, aprobadas o no) y descuenta de sus
+     * antepasados las aprobadas que desaparecen. El propio comentario lo borra quien llama.
+     */
+    @Transactional
+    public int eliminarRama(Comentario comentario) {
+        int borradas = 0;
+        if (comentario.getRuta() != null) {
+            borradas = comentarioRepository.eliminarDescendientes(comentario.getRaizId(), prefijoRama(comentario),
+                    comentario.getId());
+        }
+        if (Boolean.TRUE.equals(comentario.getAprobado()) && comentario.getPadreId() != null) {
+            comentarioRepository.sumarRespuestas(List.of(comentario.getPadreId()), -1);
+            List<Long> antepasados = antepasados(comentario.getRuta());
+            if (!antepasados.isEmpty()) {
+                comentarioRepository.sumarRespuestasTotales(antepasados, -(1 + comentario.getRespuestasTotales()));
+            }
+        }
+        return borradas;
+    }
+
+    // =======================================================
+    // UTILIDADES
+    // =======================================================
+
+    private void aplicar(Map<Long, Long> deltas, boolean directas) {
+        Map<Long, List<Long>> porDelta = new TreeMap<>();
+        deltas.forEach((id, delta) -> porDelta.computeIfAbsent(delta, d -> new ArrayList<>()).add(id));
+        porDelta.forEach((delta, ids) -> {
+            if (directas) {
+                comentarioRepository.sumarRespuestas(ids, delta);
+            } else {
+                comentarioRepository.sumarRespuestasTotales(ids, delta);
+            }
+        });
+    }
+
+    static String segmento(Long id) {
+        return String.format("%012d/", id);
+    }
+
+    // Ids de la ruta sin el último (el propio comentario), de la raíz hacia abajo
+    static List<Long> antepasados(String ruta) {
+        if (ruta == null) {
+            return List.of();
+        }
+        int niveles = ruta.length() / ANCHO_SEGMENTO;
+        List<Long> ids = new ArrayList<>(Math.max(niveles - 1, 0));
+        for (int nivel = 0; nivel < niveles - 1; nivel++) {
+            int desde = nivel * ANCHO_SEGMENTO;
+            ids.add(Long.parseLong(ruta.substring(desde, desde + ANCHO_SEGMENTO - 1)));
+        }
+        return ids;
+    }
+
+    // Prefijo LIKE de la rama del comentario (él incluido)
+    static String prefijoRama(Comentario comentario) {
+        return Objects.requireNonNull(comentario.getRuta(), "Comentario sin ruta") + "%";
+    }
+}
@@ -1,27 +1,46 @@
 package org.carnavawiky.back.service;
 
+import org.carnavawiky.back.dto.ImagenLoteResponse;
 import org.carnavawiky.back.dto.ImagenResponse;
+import org.carnavawiky.back.dto.PortadaResponse;
+import org.carnavawiky.back.exception.BadRequestException;
+import org.carnavawiky.back.exception.FileStorageException;
 import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.mapper.ImagenMapper;
 import org.carnavawiky.back.model.Agrupacion;
 import org.carnavawiky.back.model.Imagen;
+import org.carnavawiky.back.model.ImagenBlob;
+import org.carnavawiky.back.model.ImagenVariante;
 import org.carnavawiky.back.repository.AgrupacionRepository;
+import org.carnavawiky.back.repository.ImagenBlobRepository;
+import org.carnavawiky.back.repository.ImagenLoteRepository;
 import org.carnavawiky.back.repository.ImagenRepository;
+import org.carnavawiky.back.repository.ImagenVarianteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.*;
-import java.util.List;
-import java.util.UUID;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 @Service
 public class ImagenService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(ImagenService.class);
+
     @Autowired
     private ImagenRepository imagenRepository;
 
@@ -31,63 +50,451 @@ public class ImagenService {
     @Autowired
     private ImagenMapper imagenMapper;
 
-    @Value("${file.upload.location}")
-    private String uploadLocation;
+    @Autowired
+    private AlmacenImagenes almacenImagenes;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ImagenBlobRepository imagenBlobRepository;
+
+    @Autowired
+    private ImagenVarianteRepository imagenVarianteRepository;
+
+    @Autowired
+    private VariantesImagenes variantesImagenes;
+
+    @Autowired
+    private ImagenLoteRepository imagenLoteRepository;
+
+    @Value("${app.imagenes.lote.max-ficheros:100}")
+    private int maxFicherosLote = 100;
+
+    // =======================================================
+    // SUBIDA
+    // El fichero se escribe y se fuerza a disco ANTES de abrir la transacción:
+    // una subida lenta no retiene ninguna conexión del pool.
+    // =======================================================
 
-    @Transactional
     public ImagenResponse subirImagen(Long agrupacionId, MultipartFile archivo, Boolean esPortada) throws IOException {
+        try (InputStream contenido = archivo.getInputStream()) {
+            return subirImagen(agrupacionId, contenido, archivo.getOriginalFilename(), esPortada);
+        }
+    }
+
+    public ImagenResponse subirImagen(Long agrupacionId, InputStream contenido, String nombreOriginal, Boolean esPortada) throws IOException {
+        // Comprobación previa (consulta suelta, sin transacción) para no recibir bytes que se van a descartar
+        if (!agrupacionRepository.existsById(agrupacionId)) {
+            throw new ResourceNotFoundException("Agrupacion", "id", agrupacionId);
+        }
+
+        // 1. Copia en streaming a un temporal del almacén (SHA-256 + fsync)
+        AlmacenImagenes.FicheroTemporal fichero = almacenImagenes.recibir(contenido, nombreOriginal);
+
+        // 2. Registro en BD en una transacción corta que publica el fichero bajo su hash
+        return registrarRecibida(agrupacionId, fichero, esPortada);
+    }
+
+    /**
+     * Da de alta un fichero ya recibido en el almacén (subida directa o reanudable).
+     * El temporal se publica o se descarta siempre, también si el registro falla. Si el fallo llega
+     * con el fichero ya publicado, no se borra aquí: otra subida del mismo contenido puede estar
+     * reclamándolo a la vez. Si queda huérfano lo recoge ReconciliadorImagenes pasada su gracia.
+     */
+    public ImagenResponse registrarRecibida(Long agrupacionId, AlmacenImagenes.FicheroTemporal fichero, Boolean esPortada) throws IOException {
+        try {
+            // Dimensiones y marcador de posición, antes de abrir la transacción
+            PrevisualizacionImagenes.Previsualizacion previsualizacion = PrevisualizacionImagenes.analizar(fichero.ruta());
+            return registrarConReintento(agrupacionId, fichero, previsualizacion, esPortada);
+        } finally {
+            // No hace nada si el temporal ya se publicó
+            almacenImagenes.descartar(fichero);
+        }
+    }
+
+    private ImagenResponse registrarConReintento(Long agrupacionId, AlmacenImagenes.FicheroTemporal fichero,
+                                                 PrevisualizacionImagenes.Previsualizacion previsualizacion, Boolean esPortada) {
+        try {
+            return transactionTemplate.execute(status -> registrarImagen(agrupacionId, fichero, previsualizacion, esPortada));
+        } catch (DataIntegrityViolationException e) {
+            // Otra subida del mismo contenido dio de alta el blob a la vez: ahora existe y se puede bloquear
+            if (!imagenBlobRepository.existsById(fichero.sha256())) {
+                throw e;
+            }
+            return transactionTemplate.execute(status -> registrarImagen(agrupacionId, fichero, previsualizacion, esPortada));
+        }
+    }
+
+    private ImagenResponse registrarImagen(Long agrupacionId, AlmacenImagenes.FicheroTemporal fichero,
+                                           PrevisualizacionImagenes.Previsualizacion previsualizacion, Boolean esPortada) {
         Agrupacion agrupacion = agrupacionRepository.findById(agrupacionId)
                 .orElseThrow(() -> new ResourceNotFoundException("Agrupacion", "id", agrupacionId));
 
-        // 1. Crear directorio si no existe
-        Path root = Paths.get(uploadLocation);
-        if (!Files.exists(root)) {
-            Files.createDirectories(root);
+        // Bytes idénticos a una subida anterior: se reutiliza su blob y solo se suma una referencia
+        ImagenBlob blob = imagenBlobRepository.findBySha256ParaActualizar(fichero.sha256())
+                .orElseGet(() -> new ImagenBlob(fichero.sha256(), fichero.nombreFichero(), "", fichero.tamanoBytes(), 0, false));
+        try {
+            blob.setRutaAbsoluta(almacenImagenes.publicar(fichero, blob.getNombreFichero()).toString());
+        } catch (IOException e) {
+            throw new FileStorageException("No se pudo publicar la imagen " + blob.getNombreFichero(), e);
+        }
+        blob.setReferencias(blob.getReferencias() + 1);
+        imagenBlobRepository.save(blob);
+        if (!Boolean.TRUE.equals(blob.getVariantesGeneradas())) {
+            // Copias reducidas en segundo plano, tras el commit
+            variantesImagenes.programar(blob.getSha256());
         }
 
-        // 2. Gestionar la portada (si es nueva portada, desmarcamos la anterior)
+        // Gestionar la portada (si es nueva portada, desmarcamos la anterior)
         if (Boolean.TRUE.equals(esPortada)) {
             imagenRepository.desmarcarPortadaActual(agrupacionId);
         }
 
-        // 3. Generar nombre único y guardar archivo
-        String extension = "";
-        String originalName = archivo.getOriginalFilename();
-        if (originalName != null && originalName.contains(".")) {
-            extension = originalName.substring(originalName.lastIndexOf("."));
-        }
-        String nombreFichero = UUID.randomUUID().toString() + extension;
-        Path destino = root.resolve(nombreFichero);
-        Files.copy(archivo.getInputStream(), destino, StandardCopyOption.REPLACE_EXISTING);
-
-        // 4. Guardar en Base de Datos
         Imagen imagen = new Imagen();
-        imagen.setNombreFichero(nombreFichero);
-        imagen.setRutaAbsoluta(destino.toString());
-        imagen.setUrlPublica("/api/imagenes/" + nombreFichero);
+        imagen.setNombreFichero(blob.getNombreFichero());
+        imagen.setRutaAbsoluta(blob.getRutaAbsoluta());
+        imagen.setUrlPublica("/api/imagenes/" + blob.getNombreFichero());
         imagen.setEsPortada(esPortada);
+        imagen.setSha256(blob.getSha256());
+        imagen.setTamanoBytes(blob.getTamanoBytes());
+        completarPrevisualizacion(imagen, previsualizacion);
         imagen.setAgrupacion(agrupacion);
 
         Imagen guardada = imagenRepository.save(imagen);
         return imagenMapper.toResponse(guardada);
     }
 
+    // =======================================================
+    // SUBIDA MÚLTIPLE
+    // Los ficheros se escriben en paralelo (pool acotado de AlmacenImagenes) y se registran
+    // todos en una sola transacción: una consulta de la agrupación, un desmarcado de portada
+    // y un único lote JDBC para las filas de imagen.
+    // =======================================================
+
+    /**
+     * Sube varias imágenes a la vez. Cada fichero que no se puede escribir (vacío, demasiado grande,
+     * error de disco) se informa en su resultado sin afectar a los demás; un fallo de BD revierte el lote
+     * (sus ficheros ya publicados quedan para ReconciliadorImagenes, como en la subida individual).
+     *
+     * @param indicePortada posición del fichero que pasa a ser la portada, o null para no cambiarla
+     */
+    public List<ImagenLoteResponse> subirImagenes(Long agrupacionId, List<MultipartFile> archivos, Integer indicePortada) throws IOException {
+        if (archivos == null || archivos.isEmpty()) {
+            throw new BadRequestException("No se ha enviado ninguna imagen");
+        }
+        if (archivos.size() > maxFicherosLote) {
+            throw new BadRequestException("Como máximo se pueden subir " + maxFicherosLote + " imágenes a la vez");
+        }
+        if (indicePortada != null && (indicePortada < 0 || indicePortada >= archivos.size())) {
+            throw new BadRequestException("indicePortada fuera de rango: " + indicePortada);
+        }
+        if (!agrupacionRepository.existsById(agrupacionId)) {
+            throw new ResourceNotFoundException("Agrupacion", "id", agrupacionId);
+        }
+
+        // 1. Copia en paralelo a temporales del almacén, analizando cada imagen en el mismo hilo
+        List<Future<Recibida>> escrituras = new ArrayList<>();
+        for (MultipartFile archivo : archivos) {
+            escrituras.add(almacenImagenes.recibirEnParalelo(archivo::getInputStream, archivo.getOriginalFilename(),
+                    fichero -> new Recibida(fichero, PrevisualizacionImagenes.analizar(fichero.ruta()))));
+        }
+        ImagenLoteResponse[] resultados = new ImagenLoteResponse[archivos.size()];
+        Map<Integer, Recibida> recibidos = new TreeMap<>();
+        try {
+            for (int i = 0; i < escrituras.size(); i++) {
+                try {
+                    recibidos.put(i, escrituras.get(i).get());
+                } catch (ExecutionException e) {
+                    resultados[i] = fallido(i, archivos.get(i).getOriginalFilename(), e.getCause());
+                }
+            }
+
+            // 2. Registro del lote en una transacción corta
+            if (!recibidos.isEmpty()) {
+                List<Imagen> imagenes = registrarLoteConReintento(agrupacionId, recibidos, indicePortada);
+                int posicion = 0;
+                for (Integer i : recibidos.keySet()) {
+                    resultados[i] = ImagenLoteResponse.builder()
+                            .indice(i)
+                            .nombreOriginal(archivos.get(i).getOriginalFilename())
+                            .estado(201)
+                            .imagen(imagenMapper.toResponse(imagenes.get(posicion++)))
+                            .build();
+                }
+            }
+            return Arrays.asList(resultados);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileStorageException("Subida múltiple interrumpida", e);
+        } finally {
+            // Los que aún no se hayan recibido se descartan al terminar su escritura
+            for (Future<Recibida> escritura : escrituras) {
+                descartarAlTerminar(escritura);
+            }
+        }
+    }
+
+    // Un fichero del lote ya en el almacén, con sus datos de previsualización (null si no es legible)
+    private record Recibida(AlmacenImagenes.FicheroTemporal fichero, PrevisualizacionImagenes.Previsualizacion previsualizacion) {
+    }
+
+    private List<Imagen> registrarLoteConReintento(Long agrupacionId, Map<Integer, Recibida> recibidos, Integer indicePortada) {
+        try {
+            return transactionTemplate.execute(status -> registrarLote(agrupacionId, recibidos, indicePortada));
+        } catch (DataIntegrityViolationException e) {
+            // Otra subida dio de alta a la vez alguno de los blobs nuevos: ahora existen y se pueden bloquear
+            return transactionTemplate.execute(status -> registrarLote(agrupacionId, recibidos, indicePortada));
+        }
+    }
+
+    private List<Imagen> registrarLote(Long agrupacionId, Map<Integer, Recibida> recibidos, Integer indicePortada) {
+        Agrupacion agrupacion = agrupacionRepository.findById(agrupacionId)
+                .orElseThrow(() -> new ResourceNotFoundException("Agrupacion", "id", agrupacionId));
+
+        // Blobs bloqueados en orden de hash: dos lotes con ficheros en común no se interbloquean
+        Map<String, ImagenBlob> blobs = new TreeMap<>();
+        recibidos.values().stream()
+                .map(Recibida::fichero)
+                .sorted(Comparator.comparing(AlmacenImagenes.FicheroTemporal::sha256))
+                .forEach(fichero -> {
+                    ImagenBlob blob = blobs.computeIfAbsent(fichero.sha256(), sha256 ->
+                            imagenBlobRepository.findBySha256ParaActualizar(sha256)
+                                    .orElseGet(() -> new ImagenBlob(sha256, fichero.nombreFichero(), "", fichero.tamanoBytes(), 0, false)));
+                    try {
+                        // El mismo contenido repetido en el lote: el segundo temporal se descarta
+                        blob.setRutaAbsoluta(almacenImagenes.publicar(fichero, blob.getNombreFichero()).toString());
+                    } catch (IOException e) {
+                        throw new FileStorageException("No se pudo publicar la imagen " + blob.getNombreFichero(), e);
+                    }
+                    blob.setReferencias(blob.getReferencias() + 1);
+                });
+        imagenBlobRepository.saveAll(blobs.values());
+        blobs.values().stream()
+                .filter(blob -> !Boolean.TRUE.equals(blob.getVariantesGeneradas()))
+                .forEach(blob -> variantesImagenes.programar(blob.getSha256()));
+
+        // La portada se cambia una sola vez por lote, y solo si su fichero ha llegado
+        boolean conPortada = indicePortada != null && recibidos.containsKey(indicePortada);
+        if (conPortada) {
+            imagenRepository.desmarcarPortadaActual(agrupacionId);
+        }
+
+        List<Imagen> imagenes = new ArrayList<>();
+        for (Map.Entry<Integer, Recibida> recibido : recibidos.entrySet()) {
+            ImagenBlob blob = blobs.get(recibido.getValue().fichero().sha256());
+            Imagen imagen = new Imagen();
+            imagen.setNombreFichero(blob.getNombreFichero());
+            imagen.setRutaAbsoluta(blob.getRutaAbsoluta());
+            imagen.setUrlPublica("/api/imagenes/" + blob.getNombreFichero());
+            imagen.setEsPortada(conPortada && recibido.getKey().equals(indicePortada));
+            imagen.setSha256(blob.getSha256());
+            imagen.setTamanoBytes(blob.getTamanoBytes());
+            completarPrevisualizacion(imagen, recibido.getValue().previsualizacion());
+            imagen.setAgrupacion(agrupacion);
+            imagenes.add(imagen);
+        }
+        imagenLoteRepository.insertar(imagenes);
+        return imagenes;
+    }
+
+    private static ImagenLoteResponse fallido(int indice, String nombreOriginal, Throwable causa) {
+        boolean rechazada = causa instanceof BadRequestException;
+        if (!rechazada) {
+            LOG.warn("No se pudo escribir la imagen {} de una subida múltiple", nombreOriginal, causa);
+        }
+        return ImagenLoteResponse.builder()
+                .indice(indice)
+                .nombreOriginal(nombreOriginal)
+                .estado(rechazada ? 400 : 500)
+                .error(rechazada ? causa.getMessage() : "No se pudo guardar la imagen")
+                .build();
+    }
+
+    private void descartarAlTerminar(Future<Recibida> escritura) {
+        try {
+            // No hace nada si el temporal ya se publicó
+            almacenImagenes.descartar(escritura.get().fichero());
+        } catch (ExecutionException e) {
+            // Falló la escritura: recibir() ya borró su temporal
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void completarPrevisualizacion(Imagen imagen, PrevisualizacionImagenes.Previsualizacion previsualizacion) {
+        if (previsualizacion != null) {
+            imagen.setAncho(previsualizacion.ancho());
+            imagen.setAlto(previsualizacion.alto());
+            imagen.setColorDominante(previsualizacion.colorDominante());
+            imagen.setMarcador(previsualizacion.marcador());
+        }
+    }
+
+    // =======================================================
+    // LECTURA
+    // =======================================================
+
     @Transactional(readOnly = true)
     public List<ImagenResponse> obtenerImagenesPorAgrupacion(Long agrupacionId) {
         List<Imagen> imagenes = imagenRepository.findByAgrupacion_Id(agrupacionId);
-        return imagenes.stream().map(imagenMapper::toResponse).collect(Collectors.toList());
+
+        // Variantes de todo el listado en una sola consulta
+        Set<String> sha256s = imagenes.stream().map(Imagen::getSha256).filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<String, List<ImagenVariante>> variantes = sha256s.isEmpty() ? Map.of()
+                : imagenVarianteRepository.findBySha256In(sha256s).stream()
+                .collect(Collectors.groupingBy(ImagenVariante::getSha256));
+
+        return imagenes.stream()
+                .map(imagen -> imagenMapper.toResponse(imagen, variantes.getOrDefault(imagen.getSha256(), List.of())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Portada de cada agrupación de una página de listado, en una sola consulta.
+     * Las agrupaciones sin portada no aparecen en el mapa.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, PortadaResponse> obtenerPortadas(Collection<Long> agrupacionIds) {
+        if (agrupacionIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, PortadaResponse> portadas = new HashMap<>();
+        for (ImagenRepository.Portada portada : imagenRepository.findPortadas(agrupacionIds, variantesImagenes.anchoMiniatura())) {
+            // Dos marcadas a la vez (subidas simultáneas): gana la más reciente
+            portadas.merge(portada.getAgrupacionId(), imagenMapper.toPortadaResponse(portada),
+                    (una, otra) -> una.getImagenId() > otra.getImagenId() ? una : otra);
+        }
+        return portadas;
     }
 
-    @Transactional
-    public void eliminarImagen(Long id) throws IOException {
+    /**
+     * URL de la copia más pequeña que tenga al menos el ancho pedido; el original si no hay ninguna.
+     */
+    @Transactional(readOnly = true)
+    public String obtenerUrlVariante(Long id, int ancho) {
         Imagen imagen = imagenRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Imagen", "id", id));
+        if (imagen.getSha256() == null) {
+            return imagen.getUrlPublica();
+        }
+        return imagenVarianteRepository.findBySha256(imagen.getSha256()).stream()
+                .filter(variante -> variante.getAncho() >= ancho)
+                .min(Comparator.comparing(ImagenVariante::getAncho))
+                .map(imagenMapper::urlVariante)
+                .orElse(imagen.getUrlPublica());
+    }
+
+    // =======================================================
+    // REGENERACIÓN DE VARIANTES (imágenes ya existentes)
+    // =======================================================
 
-        // Borrado físico
-        Path rutaFichero = Paths.get(imagen.getRutaAbsoluta());
-        Files.deleteIfExists(rutaFichero);
+    /**
+     * En segundo plano: incorpora al almacén por contenido las imágenes antiguas (sin huella)
+     * y encola las variantes de todos los blobs que aún no las tienen.
+     */
+    public void regenerarVariantes() {
+        variantesImagenes.enSegundoPlano(() -> {
+            int adoptadas = adoptarImagenesAntiguas();
+            int encolados = variantesImagenes.regenerarPendientes();
+            LOG.info("Regeneración de variantes: {} imágenes antiguas incorporadas, {} blobs encolados", adoptadas, encolados);
+        });
+    }
 
-        // Borrado lógico (BD)
+    int adoptarImagenesAntiguas() {
+        int adoptadas = 0;
+        for (Long id : imagenRepository.findIdsSinHuella()) {
+            try {
+                if (adoptar(id)) {
+                    adoptadas++;
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("No se pudo incorporar la imagen {} al almacén por contenido", id, e);
+            }
+        }
+        return adoptadas;
+    }
+
+    // El fichero se queda donde está (misma URL) salvo que su contenido ya tuviera blob:
+    // entonces la imagen pasa a apuntar a ese blob y su copia duplicada se borra tras el commit.
+    private boolean adoptar(Long id) throws IOException {
+        Imagen imagen = imagenRepository.findById(id).orElse(null);
+        if (imagen == null || imagen.getSha256() != null || !Files.exists(Paths.get(imagen.getRutaAbsoluta()))) {
+            return false;
+        }
+        Path propio = Paths.get(imagen.getRutaAbsoluta());
+        String sha256 = almacenImagenes.huella(propio);
+        long tamano = Files.size(propio);
+        PrevisualizacionImagenes.Previsualizacion previsualizacion = PrevisualizacionImagenes.analizar(propio);
+
+        Boolean duplicado = transactionTemplate.execute(status -> {
+            Imagen actual = imagenRepository.findById(id).orElse(null);
+            if (actual == null || actual.getSha256() != null) {
+                return null;
+            }
+            ImagenBlob blob = imagenBlobRepository.findBySha256ParaActualizar(sha256)
+                    .orElseGet(() -> new ImagenBlob(sha256, actual.getNombreFichero(), actual.getRutaAbsoluta(), tamano, 0, false));
+            blob.setReferencias(blob.getReferencias() + 1);
+            imagenBlobRepository.save(blob);
+
+            actual.setSha256(sha256);
+            actual.setTamanoBytes(tamano);
+            completarPrevisualizacion(actual, previsualizacion);
+            actual.setNombreFichero(blob.getNombreFichero());
+            actual.setRutaAbsoluta(blob.getRutaAbsoluta());
+            actual.setUrlPublica("/api/imagenes/" + blob.getNombreFichero());
+            return !propio.equals(Paths.get(blob.getRutaAbsoluta()));
+        });
+
+        if (duplicado == null) {
+            return false;
+        }
+        if (duplicado) {
+            almacenImagenes.eliminar(propio);
+        }
+        return true;
+    }
+
+    // =======================================================
+    // BORRADO
+    // La fila se borra y su referencia se descuenta en una transacción; el fichero,
+    // solo cuando el blob se queda sin referencias y tras el commit. Lo que se quede
+    // a medias (commit fallido, caída) lo recoge ReconciliadorImagenes.
+    // =======================================================
+
+    public void eliminarImagen(Long id) {
+        Imagen imagen = transactionTemplate.execute(status -> darDeBaja(id));
+
+        if (imagen.getSha256() == null) {
+            // Imagen anterior al almacén por contenido: el fichero es solo suyo
+            almacenImagenes.eliminar(Paths.get(imagen.getRutaAbsoluta()));
+        } else {
+            transactionTemplate.execute(status -> recolectarBlob(imagen.getSha256()));
+        }
+    }
+
+    private Imagen darDeBaja(Long id) {
+        Imagen imagen = imagenRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Imagen", "id", id));
+
+        if (imagen.getSha256() != null) {
+            imagenBlobRepository.findBySha256ParaActualizar(imagen.getSha256())
+                    .ifPresent(blob -> blob.setReferencias(blob.getReferencias() - 1));
+        }
         imagenRepository.delete(imagen);
+        return imagen;
+    }
+
+    // Con el blob bloqueado: si nadie ha vuelto a referenciarlo entretanto, se borran fila y fichero.
+    // El fichero se borra tras el commit: si el commit falla, la fila sigue teniendo su fichero.
+    Void recolectarBlob(String sha256) {
+        imagenBlobRepository.findBySha256ParaActualizar(sha256)
+                .filter(blob -> blob.getReferencias() <= 0)
+                .ifPresent(blob -> {
+                    variantesImagenes.eliminar(sha256);
+                    imagenBlobRepository.delete(blob);
+                    almacenImagenes.eliminarTrasCommit(Paths.get(blob.getRutaAbsoluta()));
+                });
+        return null;
     }
-}
\ No newline at end of file
+}
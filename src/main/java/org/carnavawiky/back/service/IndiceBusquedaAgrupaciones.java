@@ -0,0 +1,280 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.model.Agrupacion;
+import org.carnavawiky.back.repository.AgrupacionRepository;
+import org.carnavawiky.back.util.TrasCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido en memoria sobre el nombre y la descripción de las agrupaciones.
+ * Sustituye a las búsquedas LIKE '%term%' (que MySQL no puede resolver con índices)
+ * en el buscador del frontend. Los términos se normalizan sin tildes ni mayúsculas
+ * (Cádiz == cadiz) y cada término de la consulta se trata como prefijo.
+ */
+@Component
+public class IndiceBusquedaAgrupaciones {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IndiceBusquedaAgrupaciones.class);
+
+    // Un término que aparece en el nombre pesa más que uno de la descripción
+    static final int PESO_NOMBRE = 3;
+    static final int PESO_DESCRIPCION = 1;
+    // Bonus para coincidencias exactas frente a coincidencias por prefijo
+    static final int FACTOR_EXACTO = 2;
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    @Autowired
+    private AgrupacionRepository agrupacionRepository;
+
+    @Value("${app.search.agrupaciones.indice-enabled:true}")
+    private boolean habilitado = true;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // término -> (id agrupación -> peso acumulado)
+    private NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+
+    // id agrupación -> términos indexados (necesario para desindexar en update/delete)
+    private Map<Long, Map<String, Integer>> documentos = new HashMap<>();
+
+    private volatile boolean disponible = false;
+
+    // Cambios confirmados mientras se lee la tabla para reconstruir: la lectura puede no verlos,
+    // así que se vuelven a aplicar sobre el índice nuevo antes de publicarlo.
+    // id -> último nombre/descripción (null si la agrupación se eliminó)
+    private Map<Long, Texto> pendientes = null;
+
+    private record Texto(String nombre, String descripcion) {
+    }
+
+    // =======================================================
+    // CARGA INICIAL
+    // =======================================================
+
+    /**
+     * Construye el índice completo al arrancar la aplicación.
+     * Se lee solo (id, nombre, descripción) para no materializar entidades.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruir() {
+        if (!habilitado) {
+            LOG.info("Índice de búsqueda de agrupaciones deshabilitado; se usará la búsqueda JPA");
+            return;
+        }
+
+        NavigableMap<String, Map<Long, Integer>> nuevosPostings = new TreeMap<>();
+        Map<Long, Map<String, Integer>> nuevosDocumentos = new HashMap<>();
+
+        lock.writeLock().lock();
+        try {
+            pendientes = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            for (AgrupacionRepository.DatosBusqueda datos : agrupacionRepository.findAllDatosBusqueda()) {
+                agregar(nuevosPostings, nuevosDocumentos, datos.getId(), datos.getNombre(), datos.getDescripcion());
+            }
+        } catch (RuntimeException e) {
+            // Se sigue con el índice anterior, que ya recibió esos cambios
+            lock.writeLock().lock();
+            try {
+                pendientes = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            pendientes.forEach((id, texto) -> {
+                quitar(nuevosPostings, nuevosDocumentos, id);
+                if (texto != null) {
+                    agregar(nuevosPostings, nuevosDocumentos, id, texto.nombre(), texto.descripcion());
+                }
+            });
+            pendientes = null;
+            postings = nuevosPostings;
+            documentos = nuevosDocumentos;
+            disponible = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LOG.info("Índice de búsqueda de agrupaciones construido: {} documentos, {} términos",
+                nuevosDocumentos.size(), nuevosPostings.size());
+    }
+
+    // =======================================================
+    // ACTUALIZACIÓN INCREMENTAL (create / update / delete)
+    // Se aplica tras el commit para no indexar cambios que luego se deshacen.
+    // =======================================================
+
+    public void indexar(Agrupacion agrupacion) {
+        Long id = agrupacion.getId();
+        String nombre = agrupacion.getNombre();
+        String descripcion = agrupacion.getDescripcion();
+        TrasCommit.ejecutar(() -> {
+            lock.writeLock().lock();
+            try {
+                quitar(postings, documentos, id);
+                agregar(postings, documentos, id, nombre, descripcion);
+                if (pendientes != null) {
+                    pendientes.put(id, new Texto(nombre, descripcion));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void eliminar(Long id) {
+        TrasCommit.ejecutar(() -> {
+            lock.writeLock().lock();
+            try {
+                quitar(postings, documentos, id);
+                if (pendientes != null) {
+                    pendientes.put(id, null);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // =======================================================
+    // CONSULTA
+    // =======================================================
+
+    /**
+     * Devuelve la página de IDs ordenada por relevancia (y por id en caso de empate).
+     * Devuelve Optional.empty() si el índice no está disponible o la consulta no contiene
+     * ningún término indexable; en ese caso el llamante debe usar la búsqueda JPA.
+     */
+    public Optional<Page<Long>> buscar(String consulta, Pageable pageable) {
+        List<String> terminos = tokenizar(consulta);
+        if (!disponible || terminos.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Map<Long, Integer> puntuaciones = null;
+
+        lock.readLock().lock();
+        try {
+            // Semántica AND: cada término de la consulta debe coincidir en el documento
+            for (String termino : terminos) {
+                Map<Long, Integer> coincidencias = puntuarTermino(termino);
+                if (puntuaciones == null) {
+                    puntuaciones = coincidencias;
+                } else {
+                    puntuaciones.keySet().retainAll(coincidencias.keySet());
+                    puntuaciones.replaceAll((id, puntos) -> puntos + coincidencias.get(id));
+                }
+                if (puntuaciones.isEmpty()) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map.Entry<Long, Integer>> ordenados = new ArrayList<>(puntuaciones.entrySet());
+        ordenados.sort(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+
+        int total = ordenados.size();
+        List<Long> idsPagina;
+        if (pageable.isUnpaged()) {
+            idsPagina = ordenados.stream().map(Map.Entry::getKey).toList();
+        } else {
+            int desde = (int) Math.min(pageable.getOffset(), total);
+            int hasta = Math.min(desde + pageable.getPageSize(), total);
+            idsPagina = ordenados.subList(desde, hasta).stream().map(Map.Entry::getKey).toList();
+        }
+
+        return Optional.of(new PageImpl<>(idsPagina, pageable, total));
+    }
+
+    public boolean isDisponible() {
+        return disponible;
+    }
+
+    /**
+     * Normaliza un texto: minúsculas, sin tildes ni diéresis y partido por cualquier
+     * carácter que no sea letra o dígito.
+     */
+    static List<String> tokenizar(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return Collections.emptyList();
+        }
+        String sinTildes = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        List<String> terminos = new ArrayList<>();
+        for (String termino : SEPARADORES.split(sinTildes.toLowerCase(Locale.ROOT))) {
+            if (!termino.isEmpty()) {
+                terminos.add(termino);
+            }
+        }
+        return terminos;
+    }
+
+    // =======================================================
+    // Helpers (deben llamarse con el lock correspondiente adquirido)
+    // =======================================================
+
+    private Map<Long, Integer> puntuarTermino(String termino) {
+        Map<Long, Integer> resultado = new HashMap<>();
+        // Todos los términos indexados que empiezan por 'termino'
+        SortedMap<String, Map<Long, Integer>> rango = postings.subMap(termino, termino + Character.MAX_VALUE);
+        for (Map.Entry<String, Map<Long, Integer>> entrada : rango.entrySet()) {
+            int factor = entrada.getKey().equals(termino) ? FACTOR_EXACTO : 1;
+            entrada.getValue().forEach((id, peso) -> resultado.merge(id, peso * factor, Integer::sum));
+        }
+        return resultado;
+    }
+
+    private static void agregar(NavigableMap<String, Map<Long, Integer>> postings,
+                               Map<Long, Map<String, Integer>> documentos,
+                               Long id, String nombre, String descripcion) {
+        Map<String, Integer> pesos = new HashMap<>();
+        tokenizar(nombre).forEach(t -> pesos.merge(t, PESO_NOMBRE, Integer::sum));
+        tokenizar(descripcion).forEach(t -> pesos.merge(t, PESO_DESCRIPCION, Integer::sum));
+
+        pesos.forEach((termino, peso) -> postings.computeIfAbsent(termino, k -> new HashMap<>()).put(id, peso));
+        documentos.put(id, pesos);
+    }
+
+    private static void quitar(NavigableMap<String, Map<Long, Integer>> postings,
+                               Map<Long, Map<String, Integer>> documentos,
+                               Long id) {
+        Map<String, Integer> anteriores = documentos.remove(id);
+        if (anteriores == null) {
+            return;
+        }
+        for (String termino : anteriores.keySet()) {
+            Map<Long, Integer> lista = postings.get(termino);
+            if (lista != null) {
+                lista.remove(id);
+                if (lista.isEmpty()) {
+                    postings.remove(termino);
+                }
+            }
+        }
+    }
+}
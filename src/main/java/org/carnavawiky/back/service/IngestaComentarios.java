@@ -0,0 +1,422 @@
+package org.carnavawiky.back.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.carnavawiky.back.dto.ComentarioRequest;
+import org.carnavawiky.back.exception.BadRequestException;
+import org.carnavawiky.back.exception.FileStorageException;
+import org.carnavawiky.back.exception.ResourceNotFoundException;
+import org.carnavawiky.back.exception.ServicioSaturadoException;
+import org.carnavawiky.back.model.Agrupacion;
+import org.carnavawiky.back.model.Comentario;
+import org.carnavawiky.back.model.Usuario;
+import org.carnavawiky.back.repository.ComentarioLoteRepository;
+import org.carnavawiky.back.repository.ComentarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Ingesta diferida de comentarios para picos de tráfico (p. ej. la final del COAC).
+ * Con app.comentarios.ingesta.enabled=true, POST /api/comentarios no escribe en la BD:
+ *   1. se comprueba con consultas cacheadas que la agrupación existe y que el usuario es el autenticado
+ *      (404/400 en el momento, no un descarte silencioso al volcar);
+ *   2. la petición ya validada se añade como una línea JSON al diario en disco
+ *      (<directorio>/comentarios-<n>.jsonl) y se fuerza a disco antes de responder 202;
+ *   3. cada app.comentarios.ingesta.intervalo se vuelcan los pendientes con INSERT en lotes JDBC
+ *      (ComentarioLoteRepository) y después se borran los segmentos del diario ya volcados.
+ * La cola admite app.comentarios.ingesta.capacidad comentarios sin volcar; llena, la petición
+ * espera un hueco hasta app.comentarios.ingesta.espera y si no lo hay responde 503 (Retry-After).
+ * Al arrancar se releen los segmentos que quedaran: una caída no pierde comentarios ya aceptados,
+ * y el id de ingesta de cada entrada evita insertarla dos veces.
+ */
+@Component
+public class IngestaComentarios {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IngestaComentarios.class);
+
+    static final String PREFIJO = "comentarios-";
+    static final String SUFIJO = ".jsonl";
+
+    private static final ObjectMapper JSON = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    // Una línea del diario
+    record Pendiente(String id, Long usuarioId, Long agrupacionId, String contenido, Integer puntuacion,
+                     LocalDateTime recibido) {
+    }
+
+    // Segmento del diario; canal null si se recuperó al arrancar (ya no se escribe en él)
+    private record Segmento(Path ruta, FileChannel canal) {
+    }
+
+    @Autowired
+    private ComentarioLoteRepository comentarioLoteRepository;
+
+    @Autowired
+    private ComentarioRepository comentarioRepository;
+
+    @Autowired
+    private ConteoCache conteoCache;
+
+    @Autowired
+    private AgrupacionService agrupacionService;
+
+    @Autowired
+    private EstadoUsuarioCache estadoUsuarios;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.comentarios.ingesta.enabled:false}")
+    private boolean activa = false;
+
+    @Value("${app.comentarios.ingesta.directorio:ingesta-comentarios}")
+    private String directorio = "ingesta-comentarios";
+
+    @Value("${app.comentarios.ingesta.capacidad:10000}")
+    private int capacidad = 10000;
+
+    @Value("${app.comentarios.ingesta.espera:PT0.2S}")
+    private Duration espera = Duration.ofMillis(200);
+
+    @Value("${app.comentarios.ingesta.lote:500}")
+    private int tamanoLote = 500;
+
+    // Protege la cola, el contador y los segmentos; la espera por hueco usa su condición
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hayHueco = lock.newCondition();
+    private final Queue<Pendiente> cola = new ArrayDeque<>();
+    private final List<Segmento> cerrados = new ArrayList<>();
+    private Segmento segmento;
+    private long secuencia;
+    // En cola + en vuelo: un comentario ocupa hueco hasta que está en la BD
+    private int pendientes;
+
+    // Solo los usa volcar() (synchronized): lo tomado de la cola y sus segmentos, hasta que se confirma
+    private List<Pendiente> enVuelo;
+    private List<Segmento> segmentosEnVuelo;
+
+    public boolean activa() {
+        return activa;
+    }
+
+    // =======================================================
+    // RECUPERACIÓN AL ARRANCAR
+    // =======================================================
+
+    @PostConstruct
+    void recuperar() throws IOException {
+        Path dir = Paths.get(directorio);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        List<Path> segmentos;
+        try (Stream<Path> ficheros = Files.list(dir)) {
+            segmentos = ficheros.filter(IngestaComentarios::esSegmento).sorted().toList();
+        }
+
+        lock.lock();
+        try {
+            for (Path ruta : segmentos) {
+                secuencia = Math.max(secuencia, numero(ruta));
+                try (BufferedReader lector = Files.newBufferedReader(ruta)) {
+                    String linea;
+                    while ((linea = lector.readLine()) != null) {
+                        if (linea.isBlank()) {
+                            continue;
+                        }
+                        try {
+                            cola.add(JSON.readValue(linea, Pendiente.class));
+                            pendientes++;
+                        } catch (IOException e) {
+                            // Última línea a medio escribir en la caída: nunca se respondió 202 por ella
+                            LOG.warn("Entrada ilegible en el diario de comentarios {}, se ignora", ruta.getFileName());
+                        }
+                    }
+                }
+                cerrados.add(new Segmento(ruta, null));
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (pendientes > 0) {
+            LOG.info("Diario de comentarios recuperado: {} comentarios pendientes de volcar en {} segmentos",
+                    pendientes, segmentos.size());
+        }
+    }
+
+    // =======================================================
+    // ACEPTACIÓN
+    // =======================================================
+
+    /**
+     * Añade el comentario (ya validado) al diario y a la cola de volcado. Al volver está en disco.
+     *
+     * @throws ResourceNotFoundException si la agrupación o el usuario autenticado no existen
+     * @throws BadRequestException si el comentario no es del usuario autenticado
+     * @throws ServicioSaturadoException si la cola sigue llena tras esperar app.comentarios.ingesta.espera
+     */
+    public void encolar(ComentarioRequest request) {
+        validarReferencias(request);
+        Pendiente pendiente = new Pendiente(UUID.randomUUID().toString(), request.getUsuarioId(),
+                request.getAgrupacionId(), request.getContenido(), request.getPuntuacion(), LocalDateTime.now());
+        ByteBuffer linea;
+        try {
+            linea = ByteBuffer.wrap((JSON.writeValueAsString(pendiente) + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo serializar el comentario", e);
+        }
+
+        FileChannel canal;
+        lock.lock();
+        try {
+            esperarHueco();
+            canal = segmentoActual();
+            while (linea.hasRemaining()) {
+                canal.write(linea);
+            }
+            cola.add(pendiente);
+            pendientes++;
+        } catch (IOException e) {
+            throw new FileStorageException("No se pudo escribir en el diario de comentarios", e);
+        } finally {
+            lock.unlock();
+        }
+
+        // Fuera del cerrojo: varias peticiones fuerzan a disco a la vez y el SO agrupa las escrituras
+        try {
+            canal.force(false);
+        } catch (ClosedChannelException e) {
+            // Un segmento solo se cierra cuando todo lo suyo está ya en la BD: nada que forzar
+        } catch (IOException e) {
+            throw new FileStorageException("No se pudo forzar a disco el diario de comentarios", e);
+        }
+    }
+
+    // Lo que el INSERT ... SELECT del volcado descartaría se rechaza ya, antes de responder 202
+    private void validarReferencias(ComentarioRequest request) {
+        // Caché AGRUPACION_BY_ID; 404 si no existe
+        agrupacionService.obtenerAgrupacionPorId(request.getAgrupacionId());
+
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        EstadoUsuarioCache.EstadoUsuario usuario = estadoUsuarios.obtener(username)
+                .orElseThrow(() -> new ResourceNotFoundException("Usuario", "username", username));
+        if (!usuario.id().equals(request.getUsuarioId())) {
+            throw new BadRequestException("El comentario debe publicarse con el usuario autenticado.");
+        }
+    }
+
+    private void esperarHueco() {
+        long restante = espera.toNanos();
+        try {
+            while (pendientes >= capacidad) {
+                if (restante <= 0) {
+                    throw new ServicioSaturadoException(
+                            "Hay demasiados comentarios pendientes de guardar; inténtelo de nuevo en unos segundos.",
+                            Duration.ofSeconds(1));
+                }
+                restante = hayHueco.awaitNanos(restante);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServicioSaturadoException("Petición interrumpida esperando hueco en la cola de comentarios.",
+                    Duration.ofSeconds(1));
+        }
+    }
+
+    private FileChannel segmentoActual() throws IOException {
+        if (segmento == null) {
+            Path dir = Files.createDirectories(Paths.get(directorio));
+            secuencia++;
+            Path ruta = dir.resolve(String.format("%s%020d%s", PREFIJO, secuencia, SUFIJO));
+            segmento = new Segmento(ruta, FileChannel.open(ruta,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+        }
+        return segmento.canal();
+    }
+
+    // =======================================================
+    // VOLCADO A LA BD
+    // =======================================================
+
+    @Scheduled(initialDelayString = "${app.comentarios.ingesta.intervalo:PT1S}",
+            fixedDelayString = "${app.comentarios.ingesta.intervalo:PT1S}")
+    void volcarPeriodicamente() {
+        try {
+            volcar();
+        } catch (RuntimeException e) {
+            // Se reintenta en la siguiente pasada con los mismos comentarios; el diario sigue en disco
+            LOG.error("No se pudieron volcar los comentarios pendientes", e);
+        }
+    }
+
+    /**
+     * Inserta en lotes todo lo aceptado hasta ahora y borra sus segmentos del diario.
+     * Si falla, lo tomado se reintenta tal cual en la siguiente pasada (las filas ya insertadas
+     * no se repiten). Devuelve los comentarios insertados.
+     */
+    synchronized int volcar() {
+        if (enVuelo == null) {
+            lock.lock();
+            try {
+                if (cola.isEmpty()) {
+                    return 0;
+                }
+                // Lo que llegue a partir de aquí va a un segmento nuevo
+                if (segmento != null) {
+                    cerrados.add(segmento);
+                    segmento = null;
+                }
+                enVuelo = new ArrayList<>(cola);
+                cola.clear();
+                segmentosEnVuelo = new ArrayList<>(cerrados);
+                cerrados.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int insertados = 0;
+        for (int desde = 0; desde < enVuelo.size(); desde += tamanoLote) {
+            List<Comentario> tramo = enVuelo.subList(desde, Math.min(desde + tamanoLote, enVuelo.size())).stream()
+                    .map(IngestaComentarios::toEntity)
+                    .toList();
+            insertados += transactionTemplate.execute(status -> {
+                int filas = comentarioLoteRepository.insertar(tramo);
+                // Cada comentario abre su propio hilo (ruta con su id, ya asignado)
+                comentarioRepository.completarRaicesIngeridas(tramo.stream().map(Comentario::getIdIngesta).toList());
+                return filas;
+            });
+        }
+
+        for (Segmento volcado : segmentosEnVuelo) {
+            try {
+                if (volcado.canal() != null) {
+                    volcado.canal().close();
+                }
+                Files.deleteIfExists(volcado.ruta());
+            } catch (IOException e) {
+                // Se releerá al arrancar; el id de ingesta evita duplicarlo
+                LOG.warn("No se pudo borrar el segmento volcado {}", volcado.ruta().getFileName(), e);
+            }
+        }
+
+        int volcados = enVuelo.size();
+        enVuelo = null;
+        segmentosEnVuelo = null;
+        lock.lock();
+        try {
+            pendientes -= volcados;
+            hayHueco.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        if (insertados > 0) {
+            conteoCache.invalidar(ConteoCache.COMENTARIOS);
+        }
+        if (insertados < volcados) {
+            // Validados al aceptarlos: solo si se borraron entre la aceptación y el volcado, o ya estaban
+            LOG.warn("Comentarios descartados al volcar (usuario o agrupación borrados, o ya insertados): {}",
+                    volcados - insertados);
+        }
+        return insertados;
+    }
+
+    @PreDestroy
+    void detener() {
+        try {
+            volcar();
+        } catch (RuntimeException e) {
+            LOG.error("No se pudieron volcar los comentarios al parar; quedan en el diario", e);
+        }
+        lock.lock();
+        try {
+            if (segmento != null && segmento.canal() != null) {
+                segmento.canal().close();
+            }
+        } catch (IOException e) {
+            LOG.warn("No se pudo cerrar el diario de comentarios", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // =======================================================
+    // UTILIDADES
+    // =======================================================
+
+    // Comentarios aceptados y aún no confirmados en la BD
+    public int pendientes() {
+        lock.lock();
+        try {
+            return pendientes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Comentario toEntity(Pendiente pendiente) {
+        Usuario usuario = new Usuario();
+        usuario.setId(pendiente.usuarioId());
+        Agrupacion agrupacion = new Agrupacion();
+        agrupacion.setId(pendiente.agrupacionId());
+
+        Comentario comentario = new Comentario();
+        comentario.setContenido(pendiente.contenido());
+        comentario.setPuntuacion(pendiente.puntuacion());
+        comentario.setFechaCreacion(pendiente.recibido());
+        comentario.setIdIngesta(pendiente.id());
+        comentario.setUsuario(usuario);
+        comentario.setAgrupacion(agrupacion);
+        return comentario;
+    }
+
+    private static boolean esSegmento(Path fichero) {
+        String nombre = fichero.getFileName().toString();
+        return nombre.startsWith(PREFIJO) && nombre.endsWith(SUFIJO);
+    }
+
+    private static long numero(Path segmento) {
+        String nombre = segmento.getFileName().toString();
+        try {
+            return Long.parseLong(nombre.substring(PREFIJO.length(), nombre.length() - SUFIJO.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
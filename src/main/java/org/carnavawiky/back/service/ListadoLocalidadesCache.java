@@ -0,0 +1,161 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.config.CacheConfig;
+import org.carnavawiky.back.dto.LocalidadResponse;
+import org.carnavawiky.back.dto.ModoConteo;
+import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.util.MapasLru;
+import org.carnavawiky.back.util.TrasCommit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Caché del listado paginado de localidades (región "localidades_list") con seguimiento de dependencias.
+ * Por cada página cacheada se recuerda qué búsqueda la produjo, si está ordenada por nombre y qué ids
+ * contiene; una escritura desaloja solo las páginas a las que puede afectar en lugar de vaciar la región:
+ *   - alta / baja: las búsquedas que incluyen (o incluían) ese nombre, porque cambian el total y el reparto;
+ *   - renombrado: las páginas que contienen la localidad, y la búsqueda entera si entra o sale de ella
+ *     o si está ordenada por nombre (la localidad cambia de posición).
+ * Una página cuya clave no está en el índice se trata como fallo, así que el índice manda sobre Ehcache.
+ */
+@Component
+public class ListadoLocalidadesCache {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+
+    // Igual que el heap de la región en ehcache.xml
+    @Value("${app.cache.localidades.max-paginas:1000}")
+    private int maxPaginas = 1000;
+
+    // Se incrementa en cada invalidación: una página leída antes de un commit ajeno no se cachea
+    private long generacion;
+
+    private record Dependencias(String busqueda, boolean ordenPorNombre, Set<Long> ids) {
+    }
+
+    private final Map<String, Dependencias> indice = MapasLru.crear(64, () -> maxPaginas);
+
+    // =======================================================
+    // LECTURA
+    // =======================================================
+
+    public PageResponse<LocalidadResponse> obtener(Pageable pageable, String search, ModoConteo modoConteo,
+                                                   Supplier<PageResponse<LocalidadResponse>> cargar) {
+        Cache cache = cache();
+        String clave = clave(pageable, search, modoConteo);
+        long generacionLeida;
+
+        synchronized (this) {
+            if (indice.containsKey(clave)) {
+                Cache.ValueWrapper valor = cache.get(clave);
+                if (valor != null) {
+                    @SuppressWarnings("unchecked")
+                    PageResponse<LocalidadResponse> pagina = (PageResponse<LocalidadResponse>) valor.get();
+                    return pagina;
+                }
+            }
+            generacionLeida = generacion;
+        }
+
+        PageResponse<LocalidadResponse> pagina = cargar.get();
+
+        synchronized (this) {
+            if (generacion == generacionLeida) {
+                Set<Long> ids = pagina.getContent().stream()
+                        .map(LocalidadResponse::getId)
+                        .collect(Collectors.toUnmodifiableSet());
+                indice.put(clave, new Dependencias(normalizar(search), ordenaPorNombre(pageable), ids));
+                cache.put(clave, pagina);
+            }
+        }
+        return pagina;
+    }
+
+    // La misma información que CacheConfig.CLAVE_LISTADO
+    static String clave(Pageable pageable, String search, ModoConteo modoConteo) {
+        return pageable.getPageNumber() + "_" + pageable.getPageSize() + "_" + pageable.getSort() + "_" + search + "_" + modoConteo;
+    }
+
+    // =======================================================
+    // INVALIDACIÓN (tras el commit de la escritura)
+    // =======================================================
+
+    public void localidadCreada(String nombre) {
+        invalidar(dep -> incluye(dep.busqueda(), nombre));
+    }
+
+    public void localidadRenombrada(Long id, String nombreAnterior, String nombreNuevo) {
+        invalidar(dep -> {
+            boolean antes = incluye(dep.busqueda(), nombreAnterior);
+            boolean ahora = incluye(dep.busqueda(), nombreNuevo);
+            return dep.ids().contains(id)
+                    || antes != ahora
+                    || (ahora && dep.ordenPorNombre() && !Objects.equals(nombreAnterior, nombreNuevo));
+        });
+    }
+
+    public void localidadEliminada(Long id, String nombre) {
+        invalidar(dep -> dep.ids().contains(id) || incluye(dep.busqueda(), nombre));
+    }
+
+    private void invalidar(Predicate<Dependencias> afectada) {
+        TrasCommit.ejecutar(() -> {
+            Cache cache = cache();
+            synchronized (this) {
+                generacion++;
+                Iterator<Map.Entry<String, Dependencias>> it = indice.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, Dependencias> entrada = it.next();
+                    if (afectada.test(entrada.getValue())) {
+                        cache.evict(entrada.getKey());
+                        it.remove();
+                    }
+                }
+            }
+        });
+    }
+
+    // Réplica en Java de WHERE LOWER(l.nombre) LIKE LOWER('%search%') de LocalidadRepository.
+    // Sin tildes, como la colación por defecto de MySQL: ante la duda es mejor desalojar de más.
+    static boolean incluye(String busqueda, String nombre) {
+        if (busqueda == null || busqueda.indexOf('%') >= 0 || busqueda.indexOf('_') >= 0) {
+            // Sin filtro, o comodines de LIKE que no replicamos: se asume que puede incluirla
+            return true;
+        }
+        return nombre != null && normalizar(nombre).contains(normalizar(busqueda));
+    }
+
+    private static String normalizar(String texto) {
+        if (!StringUtils.hasText(texto)) {
+            return null;
+        }
+        return DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean ordenaPorNombre(Pageable pageable) {
+        return pageable.getSort().getOrderFor("nombre") != null;
+    }
+
+    // El índice ya aplica las invalidaciones tras el commit: se usa la caché sin el decorador transaccional
+    private Cache cache() {
+        Cache cache = Objects.requireNonNull(cacheManager.getCache(CacheConfig.LOCALIDADES_LIST));
+        return cache instanceof TransactionAwareCacheDecorator decorador ? decorador.getTargetCache() : cache;
+    }
+}
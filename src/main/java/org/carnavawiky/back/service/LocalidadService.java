@@ -1,40 +1,78 @@
 package org.carnavawiky.back.service;
 
+import org.carnavawiky.back.config.CacheConfig;
 import org.carnavawiky.back.dto.LocalidadRequest;
 import org.carnavawiky.back.dto.LocalidadResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.mapper.LocalidadMapper;
 import org.carnavawiky.back.model.Localidad;
+import org.carnavawiky.back.repository.AgrupacionRepository;
+import org.carnavawiky.back.repository.ConcursoRepository;
 import org.carnavawiky.back.repository.LocalidadRepository;
+import org.carnavawiky.back.repository.PersonaRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
 @Service
 public class LocalidadService {
 
     public static final String LOCALIDAD = "Localidad";
+
+    // Paginación por cursor: propiedades por las que se permite ordenar (además del id)
+    private static final PaginacionKeyset.Config<Localidad> SCROLL = new PaginacionKeyset.Config<>(
+            Localidad.class, Sort.unsorted(), Set.of("nombre"));
+
     @Autowired
     private LocalidadRepository localidadRepository;
 
     @Autowired
     private LocalidadMapper localidadMapper;
 
+    @Autowired
+    private ConteoCache conteoCache;
+
+    @Autowired
+    private ListadoLocalidadesCache listadoCache; // Páginas del listado con seguimiento de dependencias
+
+    @Autowired
+    private CachesDependientes cachesDependientes; // Fichas y listados que muestran el nombre de la localidad
+
+    @Autowired
+    private AgrupacionRepository agrupacionRepository;
+
+    @Autowired
+    private PersonaRepository personaRepository;
+
+    @Autowired
+    private ConcursoRepository concursoRepository;
+
     // =======================================================
     // 1. CREAR (POST)
-    // Cuando creamos, invalidamos la lista y la caché por ID, ya que hay un nuevo recurso.
+    // Cuando creamos, solo cambian los listados cuya búsqueda incluye el nuevo nombre:
+    // las fichas por ID ya cacheadas siguen siendo válidas.
     // =======================================================
     @Transactional
-    @CacheEvict(value = {"localidades_list", "localidad_by_id"}, allEntries = true)
     public LocalidadResponse crearLocalidad(LocalidadRequest request) {
         Localidad localidad = localidadMapper.toEntity(request);
         Localidad nuevaLocalidad = localidadRepository.save(localidad);
+        conteoCache.invalidar(ConteoCache.LOCALIDADES);
+        listadoCache.localidadCreada(nuevaLocalidad.getNombre());
         return localidadMapper.toResponse(nuevaLocalidad);
     }
 
@@ -43,7 +81,7 @@ public class LocalidadService {
     // El resultado se almacena en el caché "localidad_by_id", usando el ID como clave.
     // =======================================================
     @Transactional(readOnly = true)
-    @Cacheable(value = "localidad_by_id", key = "#id")
+    @Cacheable(value = CacheConfig.LOCALIDAD_BY_ID, key = "#id")
     public LocalidadResponse obtenerLocalidadPorId(Long id) {
         Localidad localidad = localidadRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(LOCALIDAD, "id", id));
@@ -52,55 +90,95 @@ public class LocalidadService {
 
     // =======================================================
     // 3. OBTENER TODAS (GET) - CON PAGINACIÓN Y BÚSQUEDA
-    // El resultado se almacena en el caché "localidades_list".
-    // La clave debe incluir todos los parámetros (página, tamaño, búsqueda) para diferenciar cachés.
+    // El resultado se almacena en el caché "localidades_list" a través de ListadoLocalidadesCache,
+    // que recuerda qué localidades contiene cada página para desalojar solo las afectadas.
     // =======================================================
     @Transactional(readOnly = true)
-    @Cacheable(value = "localidades_list", key = "#pageable.pageNumber + '_' + #pageable.pageSize + '_' + #search")
-    public PageResponse<LocalidadResponse> obtenerTodasLocalidades(Pageable pageable, String search) {
+    public PageResponse<LocalidadResponse> obtenerTodasLocalidades(Pageable pageable, String search, ModoConteo modoConteo) {
+        return listadoCache.obtener(pageable, search, modoConteo, () -> cargarLocalidades(pageable, search, modoConteo));
+    }
 
-        Page<Localidad> localidadPage;
+    private PageResponse<LocalidadResponse> cargarLocalidades(Pageable pageable, String search, ModoConteo modoConteo) {
+
+        // Página sin COUNT (size + 1 filas); el total lo resuelve la caché de conteos
+        Slice<LocalidadResponse> slice;
+        String filtro = null;
+        LongSupplier contar = localidadRepository::count;
 
         if (StringUtils.hasText(search)) {
             // Si hay término de búsqueda, buscamos por nombre
-            localidadPage = localidadRepository.findByNombreContainingIgnoreCase(search, pageable);
+            slice = localidadRepository.searchResponses(search, pageable);
+            filtro = ConteoCache.filtro("nombre", search);
+            contar = () -> localidadRepository.countBusqueda(search);
         } else {
             // Si no hay búsqueda, usamos la paginación normal
-            localidadPage = localidadRepository.findAll(pageable);
+            slice = localidadRepository.findAllResponses(pageable);
         }
 
-        Page<LocalidadResponse> responsePage = localidadPage.map(localidadMapper::toResponse);
+        return conteoCache.paginar(slice, modoConteo, ConteoCache.LOCALIDADES, filtro, contar);
+    }
 
-        return PageResponse.fromPage(responsePage);
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (keyset) - sin OFFSET ni COUNT(*)
+    // =======================================================
+    @Transactional(readOnly = true)
+    public SliceResponse<LocalidadResponse> obtenerLocalidadesPorCursor(Pageable pageable, String search, String cursor) {
+
+        PaginacionKeyset.Consulta<Localidad> consulta = StringUtils.hasText(search)
+                ? (posicion, sort, limit) -> localidadRepository.findByNombreContainingIgnoreCase(search, posicion, sort, limit)
+                : localidadRepository::findAllBy;
+
+        return PaginacionKeyset.scroll(consulta, pageable, cursor, SCROLL, localidadMapper::toResponse);
     }
 
     // =======================================================
     // 4. ACTUALIZAR (PUT /ID)
-    // Al actualizar, invalidamos la lista y el objeto individual.
+    // Al actualizar, la ficha se reescribe con el resultado y del listado solo se desalojan las páginas
+    // afectadas; el nombre de la localidad aparece también en las respuestas de concursos,
+    // agrupaciones y personas: si cambia, se desalojan solo las fichas de esta localidad.
     // =======================================================
     @Transactional
-    @CacheEvict(value = {"localidades_list", "localidad_by_id"}, allEntries = true)
+    @CachePut(value = CacheConfig.LOCALIDAD_BY_ID, key = "#id")
     public LocalidadResponse actualizarLocalidad(Long id, LocalidadRequest request) {
         Localidad localidadExistente = localidadRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(LOCALIDAD, "id", id));
 
+        String nombreAnterior = localidadExistente.getNombre();
         localidadExistente.setNombre(request.getNombre());
 
         Localidad localidadActualizada = localidadRepository.save(localidadExistente);
+        conteoCache.invalidar(ConteoCache.LOCALIDADES);
+        listadoCache.localidadRenombrada(id, nombreAnterior, localidadActualizada.getNombre());
+        if (!Objects.equals(nombreAnterior, localidadActualizada.getNombre())) {
+            desalojarDependientes(id);
+        }
 
         return localidadMapper.toResponse(localidadActualizada);
     }
 
+    private void desalojarDependientes(Long id) {
+        cachesDependientes.desalojar(CacheConfig.AGRUPACION_BY_ID, agrupacionRepository.findIdsByLocalidadId(id));
+        cachesDependientes.desalojar(CacheConfig.PERSONA_BY_ID, personaRepository.findIdsByOrigenId(id));
+        List<Long> concursos = concursoRepository.findIdsByLocalidadId(id);
+        if (!concursos.isEmpty()) {
+            cachesDependientes.desalojar(CacheConfig.CONCURSO_BY_ID, concursos);
+            cachesDependientes.avanzarVersion(CacheConfig.CONCURSOS_LIST);
+        }
+    }
+
     // =======================================================
     // 5. ELIMINAR (DELETE /ID)
-    // Al eliminar, invalidamos la lista y el objeto individual.
+    // Al eliminar, invalidamos el objeto individual y las páginas que la contenían o cuya búsqueda
+    // la incluía (no puede estar referenciada por otras entidades).
     // =======================================================
     @Transactional
-    @CacheEvict(value = {"localidades_list", "localidad_by_id"}, allEntries = true)
+    @CacheEvict(value = CacheConfig.LOCALIDAD_BY_ID, key = "#id")
     public void eliminarLocalidad(Long id) {
         Localidad localidad = localidadRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(LOCALIDAD, "id", id));
 
         localidadRepository.delete(localidad);
+        conteoCache.invalidar(ConteoCache.LOCALIDADES);
+        listadoCache.localidadEliminada(id, localidad.getNombre());
     }
 }
\ No newline at end of file
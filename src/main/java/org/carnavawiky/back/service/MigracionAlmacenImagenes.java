@@ -0,0 +1,266 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.dto.AlmacenImagenesResponse;
+import org.carnavawiky.back.exception.FileStorageException;
+import org.carnavawiky.back.model.Imagen;
+import org.carnavawiky.back.model.ImagenBlob;
+import org.carnavawiky.back.model.ImagenVariante;
+import org.carnavawiky.back.repository.ImagenBlobRepository;
+import org.carnavawiky.back.repository.ImagenRepository;
+import org.carnavawiky.back.repository.ImagenVarianteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lleva al esquema fragmentado (ab/cd/<nombre>) los ficheros del almacén que siguen en el
+ * directorio plano y reescribe sus rutas en BD; al terminar verifica que cada fila tiene su fichero.
+ * Cada blob se migra con su fila bloqueada, junto con sus variantes y las imágenes que lo usan,
+ * igual que las altas y bajas de referencias: se puede ejecutar con la aplicación en marcha.
+ * Es idempotente: un fichero ya movido cuya fila no llegó a actualizarse solo se registra.
+ */
+@Component
+public class MigracionAlmacenImagenes {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MigracionAlmacenImagenes.class);
+
+    private static final int TAMANO_LOTE = 500;
+    private static final int MAX_PERDIDOS_LISTADOS = 100;
+
+    @Autowired
+    private ImagenBlobRepository imagenBlobRepository;
+
+    @Autowired
+    private ImagenVarianteRepository imagenVarianteRepository;
+
+    @Autowired
+    private ImagenRepository imagenRepository;
+
+    @Autowired
+    private AlmacenImagenes almacenImagenes;
+
+    @Autowired
+    private VariantesImagenes variantesImagenes;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+
+    // =======================================================
+    // MIGRACIÓN
+    // =======================================================
+
+    /**
+     * Lanza la migración en segundo plano. Si ya hay una en curso no hace nada.
+     */
+    public void migrarEnSegundoPlano() {
+        variantesImagenes.enSegundoPlano(() -> {
+            AlmacenImagenesResponse resultado = migrar();
+            if (resultado != null) {
+                LOG.info("Migración del almacén de imágenes: {}", resultado);
+            }
+        });
+    }
+
+    /**
+     * Mueve todo lo pendiente y devuelve la verificación posterior; null si ya había otra en curso.
+     */
+    AlmacenImagenesResponse migrar() {
+        if (!enCurso.compareAndSet(false, true)) {
+            LOG.warn("Ya hay una migración del almacén de imágenes en curso");
+            return null;
+        }
+        try {
+            long movidos = 0;
+            long fallidos = 0;
+
+            for (String sha256 : imagenBlobRepository.findAllSha256()) {
+                try {
+                    movidos += transactionTemplate.execute(status -> migrarBlob(sha256));
+                } catch (RuntimeException e) {
+                    LOG.warn("No se pudo migrar el blob {}", sha256, e);
+                    fallidos++;
+                }
+            }
+            for (Long id : imagenRepository.findIdsSinHuella()) {
+                try {
+                    movidos += transactionTemplate.execute(status -> migrarImagenAntigua(id));
+                } catch (RuntimeException e) {
+                    LOG.warn("No se pudo migrar la imagen {}", id, e);
+                    fallidos++;
+                }
+            }
+
+            AlmacenImagenesResponse resultado = verificar();
+            resultado.setMovidos(movidos);
+            resultado.setFallidos(resultado.getFallidos() + fallidos);
+            return resultado;
+        } finally {
+            enCurso.set(false);
+        }
+    }
+
+    // Con el blob bloqueado nadie puede borrarlo ni publicarlo a la vez
+    private int migrarBlob(String sha256) {
+        ImagenBlob blob = imagenBlobRepository.findBySha256ParaActualizar(sha256).orElse(null);
+        if (blob == null) {
+            return 0;
+        }
+        int movidos = 0;
+        try {
+            Path destino = almacenImagenes.ruta(blob.getNombreFichero());
+            if (colocar(Paths.get(blob.getRutaAbsoluta()), destino, blob.getTamanoBytes())) {
+                blob.setRutaAbsoluta(destino.toString());
+                imagenRepository.actualizarRutaPorSha256(sha256, destino.toString());
+                movidos++;
+            }
+            for (ImagenVariante variante : imagenVarianteRepository.findBySha256(sha256)) {
+                Path destinoVariante = almacenImagenes.rutaVariante(variante.getNombreFichero());
+                if (colocar(Paths.get(variante.getRutaAbsoluta()), destinoVariante, variante.getTamanoBytes())) {
+                    variante.setRutaAbsoluta(destinoVariante.toString());
+                    movidos++;
+                }
+            }
+        } catch (IOException e) {
+            throw new FileStorageException("No se pudo migrar el blob " + sha256, e);
+        }
+        return movidos;
+    }
+
+    // Imagen anterior al almacén por contenido: el fichero es solo suyo
+    private int migrarImagenAntigua(Long id) {
+        Imagen imagen = imagenRepository.findById(id).orElse(null);
+        if (imagen == null || imagen.getSha256() != null) {
+            return 0;
+        }
+        try {
+            Path destino = almacenImagenes.ruta(imagen.getNombreFichero());
+            if (colocar(Paths.get(imagen.getRutaAbsoluta()), destino, imagen.getTamanoBytes())) {
+                imagen.setRutaAbsoluta(destino.toString());
+                return 1;
+            }
+            return 0;
+        } catch (IOException e) {
+            throw new FileStorageException("No se pudo migrar la imagen " + id, e);
+        }
+    }
+
+    /**
+     * Deja el fichero en su ruta fragmentada y comprueba que llega entero.
+     * Devuelve true si la fila debe pasar a apuntar al destino.
+     */
+    static boolean colocar(Path origen, Path destino, Long tamanoBytes) throws IOException {
+        if (origen.equals(destino)) {
+            return false;
+        }
+        if (!Files.exists(origen)) {
+            // Movido por una ejecución anterior cuya transacción no llegó a confirmarse;
+            // si tampoco está en el destino, se perdió antes y lo informa la verificación
+            return tieneTamano(destino, tamanoBytes);
+        }
+
+        Files.createDirectories(destino.getParent());
+        if (Files.exists(destino)) {
+            // Mismo nombre en el almacén = mismo contenido: sobra la copia plana
+            if (!tieneTamano(destino, tamanoBytes)) {
+                throw new FileStorageException("Ya existe " + destino + " con otro contenido que " + origen);
+            }
+            Files.delete(origen);
+        } else {
+            Files.move(origen, destino, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        if (!tieneTamano(destino, tamanoBytes)) {
+            // La fila no se toca: el fichero se sigue encontrando en el destino (localizar())
+            throw new FileStorageException("Tamaño inesperado tras mover " + origen + " a " + destino);
+        }
+        return true;
+    }
+
+    // =======================================================
+    // VERIFICACIÓN
+    // =======================================================
+
+    /**
+     * Recorre todas las filas (blobs, variantes e imágenes antiguas) y comprueba que su fichero
+     * existe con el tamaño registrado, contando cuántos están ya en el esquema fragmentado.
+     */
+    public AlmacenImagenesResponse verificar() {
+        Recuento recuento = new Recuento();
+
+        List<String> sha256s = imagenBlobRepository.findAllSha256();
+        for (List<String> lote : lotes(sha256s)) {
+            for (ImagenBlob blob : imagenBlobRepository.findAllById(lote)) {
+                recuento.comprobar(blob.getNombreFichero(), blob.getRutaAbsoluta(), blob.getTamanoBytes(), false);
+            }
+            for (ImagenVariante variante : imagenVarianteRepository.findBySha256In(lote)) {
+                recuento.comprobar(variante.getNombreFichero(), variante.getRutaAbsoluta(), variante.getTamanoBytes(), true);
+            }
+        }
+        for (List<Long> lote : lotes(imagenRepository.findIdsSinHuella())) {
+            for (Imagen imagen : imagenRepository.findAllById(lote)) {
+                recuento.comprobar(imagen.getNombreFichero(), imagen.getRutaAbsoluta(), imagen.getTamanoBytes(), false);
+            }
+        }
+
+        return AlmacenImagenesResponse.builder()
+                .enEsquemaFragmentado(recuento.fragmentados)
+                .enEsquemaPlano(recuento.planos)
+                .perdidos(recuento.perdidos)
+                .ficherosPerdidos(recuento.ficherosPerdidos)
+                .fallidos(recuento.fallidos)
+                .build();
+    }
+
+    private class Recuento {
+        long fragmentados;
+        long planos;
+        long perdidos;
+        long fallidos;
+        final List<String> ficherosPerdidos = new ArrayList<>();
+
+        void comprobar(String nombreFichero, String rutaAbsoluta, Long tamanoBytes, boolean variante) {
+            try {
+                Path ruta = Paths.get(rutaAbsoluta);
+                if (!tieneTamano(ruta, tamanoBytes)) {
+                    perdidos++;
+                    if (ficherosPerdidos.size() < MAX_PERDIDOS_LISTADOS) {
+                        ficherosPerdidos.add(nombreFichero);
+                    }
+                } else if (ruta.equals(variante ? almacenImagenes.rutaVariante(nombreFichero) : almacenImagenes.ruta(nombreFichero))) {
+                    fragmentados++;
+                } else {
+                    planos++;
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("No se pudo comprobar el fichero {}", nombreFichero, e);
+                fallidos++;
+            }
+        }
+    }
+
+    // Las imágenes antiguas pueden no tener tamaño registrado: basta con que exista
+    private static boolean tieneTamano(Path fichero, Long tamanoBytes) throws IOException {
+        return Files.isRegularFile(fichero) && (tamanoBytes == null || Files.size(fichero) == tamanoBytes);
+    }
+
+    private static <T> List<List<T>> lotes(List<T> elementos) {
+        List<List<T>> lotes = new ArrayList<>();
+        for (int i = 0; i < elementos.size(); i += TAMANO_LOTE) {
+            lotes.add(elementos.subList(i, Math.min(i + TAMANO_LOTE, elementos.size())));
+        }
+        return lotes;
+    }
+}
@@ -0,0 +1,114 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.dto.ModeracionLoteResponse;
+import org.carnavawiky.back.exception.BadRequestException;
+import org.carnavawiky.back.model.Comentario;
+import org.carnavawiky.back.repository.ComentarioRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Aprobación y rechazo de comentarios en lote para vaciar la cola de moderación
+ * (p. ej. tras una final televisada). Los ids se procesan por tramos de
+ * app.comentarios.moderacion.lote, cada uno en su transacción:
+ *   1. SELECT ... FOR UPDATE de los comentarios del tramo (en orden de id);
+ *   2. un UPDATE (aprobar) o DELETE (rechazar) WHERE id IN (...) para los pendientes;
+ *   3. al aprobar, la valoración de cada agrupación afectada en la misma transacción.
+ * Un comentario ya aprobado no se toca (409) ni se vuelve a sumar; rechazar solo borra pendientes.
+ * Si un tramo falla, los anteriores quedan confirmados.
+ */
+@Component
+public class ModeracionComentarios {
+
+    @Autowired
+    private ComentarioRepository comentarioRepository;
+
+    @Autowired
+    private ValoracionesAgrupaciones valoraciones;
+
+    @Autowired
+    private HilosComentarios hilos;
+
+    @Autowired
+    private ConteoCache conteoCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.comentarios.moderacion.max-ids:5000}")
+    private int maxIds = 5000;
+
+    @Value("${app.comentarios.moderacion.lote:500}")
+    private int tamanoLote = 500;
+
+    public List<ModeracionLoteResponse> aprobar(List<Long> ids) {
+        return moderar(ids, true);
+    }
+
+    public List<ModeracionLoteResponse> rechazar(List<Long> ids) {
+        return moderar(ids, false);
+    }
+
+    private List<ModeracionLoteResponse> moderar(List<Long> ids, boolean aprobar) {
+        // Un id repetido solo se procesa (y se informa) una vez
+        List<Long> distintos = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (distintos.size() > maxIds) {
+            throw new BadRequestException("Se pueden moderar como máximo " + maxIds + " comentarios por petición.");
+        }
+
+        List<ModeracionLoteResponse> resultados = new ArrayList<>(distintos.size());
+        for (int desde = 0; desde < distintos.size(); desde += tamanoLote) {
+            List<Long> tramo = distintos.subList(desde, Math.min(desde + tamanoLote, distintos.size()));
+            resultados.addAll(transactionTemplate.execute(status -> moderarTramo(tramo, aprobar)));
+        }
+
+        if (resultados.stream().anyMatch(r -> r.getEstado() == HttpStatus.OK.value())) {
+            conteoCache.invalidar(ConteoCache.COMENTARIOS);
+        }
+        return resultados;
+    }
+
+    private List<ModeracionLoteResponse> moderarTramo(List<Long> tramo, boolean aprobar) {
+        Map<Long, Comentario> porId = comentarioRepository.findAllByIdParaActualizar(tramo).stream()
+                .collect(Collectors.toMap(Comentario::getId, Function.identity()));
+        List<Comentario> pendientes = porId.values().stream()
+                .filter(comentario -> !Boolean.TRUE.equals(comentario.getAprobado()))
+                .toList();
+
+        if (!pendientes.isEmpty()) {
+            List<Long> idsPendientes = pendientes.stream().map(Comentario::getId).toList();
+            if (aprobar) {
+                valoraciones.sumarAprobados(pendientes);
+                hilos.sumarAprobados(pendientes);
+                comentarioRepository.aprobarPendientes(idsPendientes);
+            } else {
+                // Un pendiente aún no cuenta en la valoración: rechazarlo no la cambia
+                comentarioRepository.eliminarPendientes(idsPendientes);
+            }
+        }
+
+        return tramo.stream().map(id -> resultado(id, porId.get(id))).toList();
+    }
+
+    private static ModeracionLoteResponse resultado(Long id, Comentario comentario) {
+        if (comentario == null) {
+            return ModeracionLoteResponse.builder().id(id).estado(HttpStatus.NOT_FOUND.value())
+                    .error("Comentario no encontrado").build();
+        }
+        if (Boolean.TRUE.equals(comentario.getAprobado())) {
+            return ModeracionLoteResponse.builder().id(id).estado(HttpStatus.CONFLICT.value())
+                    .error("El comentario ya estaba aprobado").build();
+        }
+        return ModeracionLoteResponse.builder().id(id).estado(HttpStatus.OK.value()).build();
+    }
+}
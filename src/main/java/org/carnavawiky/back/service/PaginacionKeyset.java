@@ -0,0 +1,151 @@
+package org.carnavawiky.back.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.carnavawiky.back.dto.SliceResponse;
+import org.carnavawiky.back.exception.BadRequestException;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Paginación por cursor (keyset / seek) para los listados.
+ * En lugar de OFFSET n + COUNT(*), cada porción se pide con un predicado sobre
+ * (clave de ordenación, id) a partir de la última fila devuelta, por lo que el coste
+ * no crece con la profundidad de la página. El cursor es opaco para el cliente:
+ * JSON en Base64 URL-safe con la ordenación y los valores de la última fila.
+ * Las consultas son métodos derivados de los repositorios que reciben
+ * (ScrollPosition, Sort, Limit) y devuelven Window, con su @EntityGraph.
+ */
+public final class PaginacionKeyset {
+
+    private static final String ID = "id";
+
+    private static final ObjectMapper JSON = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    /**
+     * Configuración de scroll de una entidad.
+     *
+     * @param tipo       clase de la entidad (para convertir los valores del cursor)
+     * @param porDefecto ordenación si el cliente no indica ninguna (Spring añade siempre el id como desempate)
+     * @param ordenables propiedades por las que se permite ordenar (además del id); deben ser no nulas
+     */
+    public record Config<E>(Class<E> tipo, Sort porDefecto, Set<String> ordenables) {
+
+        public Config<E> conPorDefecto(Sort sort) {
+            return new Config<>(tipo, sort, ordenables);
+        }
+    }
+
+    // Método de repositorio del tipo: Window<E> findAllBy(ScrollPosition position, Sort sort, Limit limit)
+    @FunctionalInterface
+    public interface Consulta<E> {
+        Window<E> scroll(ScrollPosition posicion, Sort sort, Limit limit);
+    }
+
+    private PaginacionKeyset() {
+    }
+
+    public static <E, R> SliceResponse<R> scroll(Consulta<E> consulta,
+                                                 Pageable pageable,
+                                                 String cursor,
+                                                 Config<E> config,
+                                                 Function<E, R> mapper) {
+
+        Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : config.porDefecto();
+        validarOrdenacion(sort, config);
+
+        ScrollPosition posicion = cursor == null || cursor.isBlank()
+                ? ScrollPosition.keyset()
+                : decodificar(cursor, sort, config);
+        int size = pageable.getPageSize();
+
+        Window<E> ventana = consulta.scroll(posicion, sort, Limit.of(size));
+
+        String nextCursor = ventana.hasNext() && !ventana.isEmpty()
+                ? codificar(sort, (KeysetScrollPosition) ventana.positionAt(ventana.size() - 1))
+                : null;
+
+        return SliceResponse.<R>builder()
+                .content(ventana.getContent().stream().map(mapper).toList())
+                .size(size)
+                .nextCursor(nextCursor)
+                .hasNext(nextCursor != null)
+                .build();
+    }
+
+    // =======================================================
+    // Codificación del cursor
+    // =======================================================
+
+    static String codificar(Sort sort, KeysetScrollPosition posicion) {
+        ObjectNode raiz = JSON.createObjectNode();
+        raiz.put("o", sort.toString());
+        raiz.set("k", JSON.valueToTree(posicion.getKeys()));
+        try {
+            byte[] bytes = JSON.writeValueAsBytes(raiz);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        } catch (Exception e) {
+            throw new IllegalStateException("No se pudo generar el cursor de paginación", e);
+        }
+    }
+
+    static <E> KeysetScrollPosition decodificar(String cursor, Sort sort, Config<E> config) {
+        JsonNode raiz;
+        try {
+            raiz = JSON.readTree(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new BadRequestException("Cursor de paginación no válido.");
+        }
+
+        // Un cursor solo vale para la ordenación con la que se generó
+        if (raiz == null || !sort.toString().equals(raiz.path("o").asText()) || !raiz.path("k").isObject()) {
+            throw new BadRequestException("Cursor de paginación no válido para esta ordenación.");
+        }
+
+        Map<String, Object> claves = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> campos = raiz.get("k").fields();
+        while (campos.hasNext()) {
+            Map.Entry<String, JsonNode> campo = campos.next();
+            String propiedad = campo.getKey();
+            if (!esOrdenable(propiedad, config)) {
+                throw new BadRequestException("Cursor de paginación no válido.");
+            }
+            Class<?> tipoValor = BeanUtils.findPropertyType(propiedad, config.tipo());
+            try {
+                claves.put(propiedad, JSON.convertValue(campo.getValue(), tipoValor));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Cursor de paginación no válido.");
+            }
+        }
+        return ScrollPosition.forward(claves);
+    }
+
+    private static <E> void validarOrdenacion(Sort sort, Config<E> config) {
+        for (Sort.Order orden : sort) {
+            if (!esOrdenable(orden.getProperty(), config)) {
+                throw new BadRequestException(
+                        "La paginación por cursor no admite ordenar por '" + orden.getProperty() + "'.");
+            }
+        }
+    }
+
+    private static <E> boolean esOrdenable(String propiedad, Config<E> config) {
+        return ID.equals(propiedad) || config.ordenables().contains(propiedad);
+    }
+}
@@ -1,8 +1,11 @@
 package org.carnavawiky.back.service;
 
+import org.carnavawiky.back.config.CacheConfig;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PersonaRequest;
 import org.carnavawiky.back.dto.PersonaResponse;
 import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.exception.BadRequestException;
 import org.carnavawiky.back.mapper.PersonaMapper;
@@ -13,18 +16,28 @@ import org.carnavawiky.back.repository.LocalidadRepository;
 import org.carnavawiky.back.repository.PersonaRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongSupplier;
 
 @Service
 public class PersonaService {
 
     public static final String PERSONA = "Persona";
+
+    // Paginación por cursor: propiedades por las que se permite ordenar (además del id)
+    private static final PaginacionKeyset.Config<Persona> SCROLL = new PaginacionKeyset.Config<>(
+            Persona.class, Sort.unsorted(), Set.of("nombreReal"));
+
     @Autowired
     private PersonaRepository personaRepository;
 
@@ -37,6 +50,9 @@ public class PersonaService {
     @Autowired
     private PersonaMapper personaMapper;
 
+    @Autowired
+    private ConteoCache conteoCache;
+
     // =======================================================
     // Helpers para relaciones
     // =======================================================
@@ -84,6 +100,7 @@ public class PersonaService {
         // 2. Mapear y guardar
         Persona persona = personaMapper.toEntity(request, origen, usuario);
         Persona nuevaPersona = personaRepository.save(persona);
+        conteoCache.invalidar(ConteoCache.PERSONAS);
 
         return personaMapper.toResponse(nuevaPersona);
     }
@@ -92,6 +109,7 @@ public class PersonaService {
     // 2. OBTENER POR ID (GET /ID)
     // =======================================================
     @Transactional(readOnly = true)
+    @Cacheable(value = CacheConfig.PERSONA_BY_ID, key = "#id")
     public PersonaResponse obtenerPersonaPorId(Long id) {
         Persona persona = personaRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(PERSONA, "id", id));
@@ -103,28 +121,45 @@ public class PersonaService {
     // Búsqueda por nombre real o apodo
     // =======================================================
     @Transactional(readOnly = true)
-    public PageResponse<PersonaResponse> obtenerTodasPersonas(Pageable pageable, String search) {
+    public PageResponse<PersonaResponse> obtenerTodasPersonas(Pageable pageable, String search, ModoConteo modoConteo) {
 
-        Page<Persona> personaPage;
+        // Página sin COUNT (size + 1 filas); el total lo resuelve la caché de conteos
+        Slice<PersonaResponse> slice;
+        String filtro = null;
+        LongSupplier contar = personaRepository::count;
 
         if (StringUtils.hasText(search)) {
             // Buscamos por nombre real o apodo
-            personaPage = personaRepository.findByNombreRealContainingIgnoreCaseOrApodoContainingIgnoreCase(
-                    search, search, pageable);
+            slice = personaRepository.searchResponses(search, pageable);
+            filtro = ConteoCache.filtro("search", search);
+            contar = () -> personaRepository.countBusqueda(search);
         } else {
             // Paginación normal
-            personaPage = personaRepository.findAll(pageable);
+            slice = personaRepository.findAllResponses(pageable);
         }
 
-        Page<PersonaResponse> responsePage = personaPage.map(personaMapper::toResponse);
+        return conteoCache.paginar(slice, modoConteo, ConteoCache.PERSONAS, filtro, contar);
+    }
+
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (keyset) - sin OFFSET ni COUNT(*)
+    // =======================================================
+    @Transactional(readOnly = true)
+    public SliceResponse<PersonaResponse> obtenerPersonasPorCursor(Pageable pageable, String search, String cursor) {
+
+        PaginacionKeyset.Consulta<Persona> consulta = StringUtils.hasText(search)
+                ? (posicion, sort, limit) -> personaRepository
+                        .findByNombreRealContainingIgnoreCaseOrApodoContainingIgnoreCase(search, search, posicion, sort, limit)
+                : personaRepository::findAllBy;
 
-        return PageResponse.fromPage(responsePage);
+        return PaginacionKeyset.scroll(consulta, pageable, cursor, SCROLL, personaMapper::toResponse);
     }
 
     // =======================================================
     // 4. ACTUALIZAR (PUT /ID)
     // =======================================================
     @Transactional
+    @CacheEvict(value = CacheConfig.PERSONA_BY_ID, key = "#id")
     public PersonaResponse actualizarPersona(Long id, PersonaRequest request) {
         Persona personaExistente = personaRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(PERSONA, "id", id));
@@ -144,6 +179,7 @@ public class PersonaService {
 
         // 3. Guardar y retornar
         Persona personaActualizada = personaRepository.save(personaExistente);
+        conteoCache.invalidar(ConteoCache.PERSONAS);
 
         return personaMapper.toResponse(personaActualizada);
     }
@@ -152,11 +188,13 @@ public class PersonaService {
     // 5. ELIMINAR (DELETE /ID)
     // =======================================================
     @Transactional
+    @CacheEvict(value = CacheConfig.PERSONA_BY_ID, key = "#id")
     public void eliminarPersona(Long id) {
         Persona persona = personaRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(PERSONA, "id", id));
 
         // NOTA: La eliminación fallará si existen Componentes o Autores vinculados
         personaRepository.delete(persona);
+        conteoCache.invalidar(ConteoCache.PERSONAS);
     }
 }
\ No newline at end of file
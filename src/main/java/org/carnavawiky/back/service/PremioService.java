@@ -1,8 +1,11 @@
 package org.carnavawiky.back.service;
 
+import org.carnavawiky.back.config.CacheConfig;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
 import org.carnavawiky.back.dto.PremioRequest;
 import org.carnavawiky.back.dto.PremioResponse;
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.mapper.PremioMapper;
 import org.carnavawiky.back.model.Agrupacion;
@@ -12,16 +15,28 @@ import org.carnavawiky.back.repository.AgrupacionRepository;
 import org.carnavawiky.back.repository.EdicionRepository;
 import org.carnavawiky.back.repository.PremioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.util.Set;
+import java.util.function.LongSupplier;
+
 @Service
 public class PremioService {
 
     public static final String PREMIO = "Premio";
+
+    // Paginación por cursor: propiedades por las que se permite ordenar (además del id)
+    private static final PaginacionKeyset.Config<Premio> SCROLL = new PaginacionKeyset.Config<>(
+            Premio.class, Sort.unsorted(), Set.of("puesto"));
+
     @Autowired
     private PremioRepository premioRepository;
 
@@ -34,6 +49,9 @@ public class PremioService {
     @Autowired
     private PremioMapper premioMapper;
 
+    @Autowired
+    private ConteoCache conteoCache;
+
     // =======================================================
     // Helpers
     // =======================================================
@@ -52,6 +70,7 @@ public class PremioService {
     // 1. CREAR (POST)
     // =======================================================
     @Transactional
+    @CacheEvict(value = CacheConfig.PREMIOS_LIST, allEntries = true)
     public PremioResponse crearPremio(PremioRequest request) {
 
         // 1. Buscar entidades relacionadas
@@ -61,6 +80,7 @@ public class PremioService {
         // 2. Mapear y guardar (las restricciones de unicidad las gestiona la base de datos)
         Premio premio = premioMapper.toEntity(request, agrupacion, edicion);
         Premio nuevoPremio = premioRepository.save(premio);
+        conteoCache.invalidar(ConteoCache.PREMIOS);
 
         return premioMapper.toResponse(nuevoPremio);
     }
@@ -69,6 +89,7 @@ public class PremioService {
     // 2. OBTENER POR ID (GET /ID)
     // =======================================================
     @Transactional(readOnly = true)
+    @Cacheable(value = CacheConfig.PREMIO_BY_ID, key = "#id")
     public PremioResponse obtenerPremioPorId(Long id) {
         Premio premio = premioRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(PREMIO, "id", id));
@@ -80,33 +101,64 @@ public class PremioService {
     // Búsqueda por año (si es número) o por nombre de agrupación
     // =======================================================
     @Transactional(readOnly = true)
-    public PageResponse<PremioResponse> obtenerTodosPremios(Pageable pageable, String search) {
+    @Cacheable(value = CacheConfig.PREMIOS_LIST, key = CacheConfig.CLAVE_LISTADO)
+    public PageResponse<PremioResponse> obtenerTodosPremios(Pageable pageable, String search, ModoConteo modoConteo) {
 
-        Page<Premio> premioPage;
+        // Página sin COUNT (size + 1 filas); el total lo resuelve la caché de conteos
+        Slice<PremioResponse> slice;
+        String filtro = null;
+        LongSupplier contar = premioRepository::count;
 
         if (StringUtils.hasText(search)) {
             // 1. Intentamos buscar por año (si es un número)
             try {
                 Integer anho = Integer.parseInt(search);
-                premioPage = premioRepository.findByEdicion_Anho(anho, pageable);
+                slice = premioRepository.findResponsesByEdicionAnho(anho, pageable);
+                filtro = ConteoCache.filtro("anho", anho);
+                contar = () -> premioRepository.countByEdicionAnho(anho);
             } catch (NumberFormatException e) {
                 // 2. Si no es un número, buscamos por nombre de Agrupación
-                premioPage = premioRepository.findByAgrupacion_NombreContainingIgnoreCase(search, pageable);
+                slice = premioRepository.findResponsesByAgrupacionNombre(search, pageable);
+                filtro = ConteoCache.filtro("agrupacion", search);
+                contar = () -> premioRepository.countByAgrupacionNombre(search);
             }
         } else {
             // Paginación normal
-            premioPage = premioRepository.findAll(pageable);
+            slice = premioRepository.findAllResponses(pageable);
         }
 
-        Page<PremioResponse> responsePage = premioPage.map(premioMapper::toResponse);
+        return conteoCache.paginar(slice, modoConteo, ConteoCache.PREMIOS, filtro, contar);
+    }
+
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (keyset) - sin OFFSET ni COUNT(*)
+    // =======================================================
+    @Transactional(readOnly = true)
+    public SliceResponse<PremioResponse> obtenerPremiosPorCursor(Pageable pageable, String search, String cursor) {
+
+        PaginacionKeyset.Consulta<Premio> consulta = premioRepository::findAllBy;
+
+        if (StringUtils.hasText(search)) {
+            try {
+                Integer anho = Integer.parseInt(search);
+                consulta = (posicion, sort, limit) -> premioRepository.findByEdicion_Anho(anho, posicion, sort, limit);
+            } catch (NumberFormatException e) {
+                consulta = (posicion, sort, limit) ->
+                        premioRepository.findByAgrupacion_NombreContainingIgnoreCase(search, posicion, sort, limit);
+            }
+        }
 
-        return PageResponse.fromPage(responsePage);
+        return PaginacionKeyset.scroll(consulta, pageable, cursor, SCROLL, premioMapper::toResponse);
     }
 
     // =======================================================
     // 4. ACTUALIZAR (PUT /ID)
     // =======================================================
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(value = CacheConfig.PREMIO_BY_ID, key = "#id"),
+            @CacheEvict(value = CacheConfig.PREMIOS_LIST, allEntries = true)
+    })
     public PremioResponse actualizarPremio(Long id, PremioRequest request) {
         Premio premioExistente = premioRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(PREMIO, "id", id));
@@ -123,6 +175,7 @@ public class PremioService {
 
         // 3. Guardar y retornar
         Premio premioActualizado = premioRepository.save(premioExistente);
+        conteoCache.invalidar(ConteoCache.PREMIOS);
 
         return premioMapper.toResponse(premioActualizado);
     }
@@ -131,10 +184,15 @@ public class PremioService {
     // 5. ELIMINAR (DELETE /ID)
     // =======================================================
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(value = CacheConfig.PREMIO_BY_ID, key = "#id"),
+            @CacheEvict(value = CacheConfig.PREMIOS_LIST, allEntries = true)
+    })
     public void eliminarPremio(Long id) {
         Premio premio = premioRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(PREMIO, "id", id));
 
         premioRepository.delete(premio);
+        conteoCache.invalidar(ConteoCache.PREMIOS);
     }
 }
\ No newline at end of file
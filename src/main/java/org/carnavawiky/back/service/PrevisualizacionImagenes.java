@@ -0,0 +1,97 @@
+package org.carnavawiky.back.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Datos para maquetar una galería antes de descargar las imágenes: dimensiones reales, color
+ * dominante y un marcador de posición de unos cientos de bytes (PNG difuminado de como mucho
+ * 16 px de lado, como data URI) que el navegador amplía mientras llega la imagen buena.
+ * Se calculan al subir, sobre el fichero ya en disco y fuera de la transacción; como en las
+ * variantes, la lectura va submuestreada y no descomprime en memoria la foto completa.
+ */
+final class PrevisualizacionImagenes {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PrevisualizacionImagenes.class);
+
+    static final int LADO_MARCADOR = 16;
+    static final String PREFIJO_MARCADOR = "data:image/png;base64,";
+
+    // Bits por canal al agrupar los píxeles para buscar el color dominante
+    private static final int BITS_COLOR = 4;
+
+    private static final ConvolveOp DIFUMINADO = new ConvolveOp(
+            new Kernel(3, 3, new float[]{1 / 9f, 1 / 9f, 1 / 9f, 1 / 9f, 1 / 9f, 1 / 9f, 1 / 9f, 1 / 9f, 1 / 9f}),
+            ConvolveOp.EDGE_NO_OP, null);
+
+    record Previsualizacion(int ancho, int alto, String colorDominante, String marcador) {
+    }
+
+    private PrevisualizacionImagenes() {
+    }
+
+    /**
+     * Devuelve null si el fichero no es una imagen que ImageIO sepa leer: la subida sigue
+     * adelante sin estos datos, igual que sin variantes.
+     */
+    static Previsualizacion analizar(Path fichero) {
+        try {
+            VariantesImagenes.Original original = VariantesImagenes.leer(fichero, LADO_MARCADOR);
+            if (original == null) {
+                return null;
+            }
+            BufferedImage imagen = original.imagen();
+            // Cabe en un cuadrado de LADO_MARCADOR conservando la proporción
+            int ancho = imagen.getWidth() >= imagen.getHeight()
+                    ? LADO_MARCADOR
+                    : Math.max(1, Math.round((float) LADO_MARCADOR * imagen.getWidth() / imagen.getHeight()));
+            BufferedImage reducida = VariantesImagenes.reducir(imagen, ancho, true);
+
+            return new Previsualizacion(original.ancho(), original.alto(), colorDominante(reducida), marcador(reducida));
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("No se pudo analizar la imagen {}", fichero, e);
+            return null;
+        }
+    }
+
+    // Media del grupo de colores parecidos más numeroso: no se desvía hacia el gris como la media global
+    static String colorDominante(BufferedImage imagen) {
+        Map<Integer, long[]> grupos = new HashMap<>();
+        int desplazamiento = 8 - BITS_COLOR;
+        for (int y = 0; y < imagen.getHeight(); y++) {
+            for (int x = 0; x < imagen.getWidth(); x++) {
+                int rgb = imagen.getRGB(x, y);
+                int r = (rgb >> 16) & 0xff;
+                int g = (rgb >> 8) & 0xff;
+                int b = rgb & 0xff;
+                int clave = (r >> desplazamiento) << (2 * BITS_COLOR) | (g >> desplazamiento) << BITS_COLOR | (b >> desplazamiento);
+                long[] suma = grupos.computeIfAbsent(clave, k -> new long[4]);
+                suma[0] += r;
+                suma[1] += g;
+                suma[2] += b;
+                suma[3]++;
+            }
+        }
+        long[] mayor = grupos.values().stream().max((a, b) -> Long.compare(a[3], b[3])).orElseThrow();
+        return String.format("#%02x%02x%02x", mayor[0] / mayor[3], mayor[1] / mayor[3], mayor[2] / mayor[3]);
+    }
+
+    // PNG sin metadatos de la imagen ya difuminada: además de ocultar el detalle, comprime mejor
+    static String marcador(BufferedImage reducida) throws IOException {
+        BufferedImage difuminada = DIFUMINADO.filter(reducida, null);
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(1024);
+        ImageIO.write(difuminada, "png", salida);
+        return PREFIJO_MARCADOR + Base64.getEncoder().encodeToString(salida.toByteArray());
+    }
+}
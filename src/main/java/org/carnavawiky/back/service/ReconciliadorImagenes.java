@@ -0,0 +1,427 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.dto.ReconciliacionImagenesResponse;
+import org.carnavawiky.back.model.Imagen;
+import org.carnavawiky.back.repository.ImagenBlobRepository;
+import org.carnavawiky.back.repository.ImagenRepository;
+import org.carnavawiky.back.repository.ImagenVarianteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.WindowIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Reconciliación periódica entre la BD y el directorio del almacén de imágenes, en las dos direcciones:
+ *   - filas sin fichero: se corrige la ruta si el fichero está en otra ubicación del almacén
+ *     (esquema plano / fragmentado) y, si no está en ninguna, se da de baja la imagen;
+ *   - blobs: el contador de referencias se recalcula con las filas que lo usan (bajas a medias,
+ *     borrados en cascada) y los que se quedan a cero se recolectan;
+ *   - ficheros sin fila: se borran, igual que los temporales abandonados por subidas caídas.
+ * Solo se consideran ficheros modificados hace más de app.imagenes.reconciliacion.gracia, para no
+ * tocar los de una subida que aún no ha confirmado su transacción; el acceso a disco se limita a
+ * app.imagenes.reconciliacion.ficheros-por-segundo. Si faltan demasiados ficheros a la vez
+ * (¿volumen sin montar?) solo se informa, sin borrar ninguna fila.
+ */
+@Component
+public class ReconciliadorImagenes {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReconciliadorImagenes.class);
+
+    private static final int TAMANO_LOTE = 500;
+    private static final int MAX_EJEMPLOS = 50;
+    // Por encima de esta fracción de filas sin fichero se sospecha del almacén, no de las filas
+    private static final double MAX_FRACCION_SIN_FICHERO = 0.10;
+    private static final int MIN_FILAS_SOSPECHA = 10;
+
+    @Autowired
+    private ImagenRepository imagenRepository;
+
+    @Autowired
+    private ImagenBlobRepository imagenBlobRepository;
+
+    @Autowired
+    private ImagenVarianteRepository imagenVarianteRepository;
+
+    @Autowired
+    private AlmacenImagenes almacenImagenes;
+
+    @Autowired
+    private ImagenService imagenService;
+
+    @Autowired
+    private VariantesImagenes variantesImagenes;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.imagenes.reconciliacion.enabled:true}")
+    private boolean activa = true;
+
+    // false: solo informa, no borra ni corrige nada
+    @Value("${app.imagenes.reconciliacion.borrar:true}")
+    private boolean borrar = true;
+
+    @Value("${app.imagenes.reconciliacion.gracia:PT1H}")
+    private Duration gracia = Duration.ofHours(1);
+
+    // 0 = sin límite
+    @Value("${app.imagenes.reconciliacion.ficheros-por-segundo:200}")
+    private int ficherosPorSegundo = 200;
+
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+    private volatile ReconciliacionImagenesResponse ultimoInforme;
+
+    // =======================================================
+    // LANZAMIENTO
+    // =======================================================
+
+    @Scheduled(initialDelayString = "${app.imagenes.reconciliacion.retraso-inicial:PT10M}",
+            fixedDelayString = "${app.imagenes.reconciliacion.intervalo:PT6H}")
+    void reconciliarPeriodicamente() {
+        if (activa) {
+            reconciliar();
+        }
+    }
+
+    public void reconciliarEnSegundoPlano() {
+        variantesImagenes.enSegundoPlano(this::reconciliar);
+    }
+
+    public Optional<ReconciliacionImagenesResponse> obtenerUltimoInforme() {
+        return Optional.ofNullable(ultimoInforme);
+    }
+
+    /**
+     * Ejecuta una pasada completa; null si ya había otra en curso.
+     */
+    ReconciliacionImagenesResponse reconciliar() {
+        if (!enCurso.compareAndSet(false, true)) {
+            LOG.warn("Ya hay una reconciliación del almacén de imágenes en curso");
+            return null;
+        }
+        try {
+            Pasada pasada = new Pasada();
+            revisarFilas(pasada);
+            revisarBlobs(pasada);
+            revisarFicheros(pasada);
+
+            ReconciliacionImagenesResponse informe = pasada.informe();
+            ultimoInforme = informe;
+            if (informe.getFilasSinFichero() > 0 || informe.getFicherosHuerfanos() > 0 || informe.getReferenciasCorregidas() > 0) {
+                LOG.warn("Reconciliación del almacén de imágenes con incidencias: {}", informe);
+            } else {
+                LOG.info("Reconciliación del almacén de imágenes sin incidencias: {}", informe);
+            }
+            return informe;
+        } catch (IOException e) {
+            LOG.error("No se pudo recorrer el almacén de imágenes", e);
+            return null;
+        } finally {
+            enCurso.set(false);
+        }
+    }
+
+    // =======================================================
+    // FILAS -> FICHEROS
+    // =======================================================
+
+    private void revisarFilas(Pasada pasada) throws IOException {
+        List<Long> sinFichero = new ArrayList<>();
+
+        // La tabla se recorre por cursor en lotes: nunca se carga entera
+        WindowIterator<Imagen> filas = WindowIterator
+                .of(posicion -> imagenRepository.findAllBy(posicion, Sort.by("id"), Limit.of(TAMANO_LOTE)))
+                .startingAt(ScrollPosition.keyset());
+        while (filas.hasNext()) {
+            Imagen imagen = filas.next();
+            pasada.limitador.esperar();
+            pasada.filasRevisadas++;
+
+            if (Files.exists(Paths.get(imagen.getRutaAbsoluta()))) {
+                continue;
+            }
+            Path encontrado = almacenImagenes.localizar(imagen.getNombreFichero());
+            if (Files.exists(encontrado)) {
+                if (borrar) {
+                    corregirRuta(imagen.getId(), encontrado);
+                    pasada.rutasCorregidas++;
+                }
+            } else {
+                sinFichero.add(imagen.getId());
+                pasada.ejemplo(pasada.ejemplosFilasSinFichero, imagen.getNombreFichero());
+            }
+        }
+        pasada.filasSinFichero = sinFichero.size();
+
+        if (pasada.limpieza && sinFichero.size() >= MIN_FILAS_SOSPECHA
+                && sinFichero.size() > pasada.filasRevisadas * MAX_FRACCION_SIN_FICHERO) {
+            LOG.error("{} de {} imágenes sin fichero: no se borra ninguna fila, revisar el almacén ({})",
+                    sinFichero.size(), pasada.filasRevisadas, almacenImagenes.raiz());
+            pasada.limpieza = false;
+        }
+        if (!pasada.limpieza) {
+            return;
+        }
+        for (Long id : sinFichero) {
+            try {
+                // Misma baja que la de la API: descuenta la referencia de su blob
+                imagenService.eliminarImagen(id);
+                pasada.filasEliminadas++;
+            } catch (RuntimeException e) {
+                LOG.warn("No se pudo dar de baja la imagen {} sin fichero", id, e);
+            }
+        }
+    }
+
+    private void corregirRuta(Long id, Path ruta) {
+        transactionTemplate.execute(status -> {
+            imagenRepository.findById(id).ifPresent(imagen -> imagen.setRutaAbsoluta(ruta.toString()));
+            return null;
+        });
+    }
+
+    // =======================================================
+    // CONTADORES DE REFERENCIAS DE LOS BLOBS
+    // =======================================================
+
+    private void revisarBlobs(Pasada pasada) {
+        for (String sha256 : imagenBlobRepository.findAllSha256()) {
+            try {
+                Integer resultado = transactionTemplate.execute(status -> revisarBlob(sha256, pasada.limpieza));
+                if (resultado == null) {
+                    continue;
+                }
+                pasada.referenciasCorregidas++;
+                if (resultado == 0 && pasada.limpieza) {
+                    pasada.blobsRecolectados++;
+                }
+            } catch (RuntimeException e) {
+                LOG.warn("No se pudo revisar el blob {}", sha256, e);
+            }
+        }
+    }
+
+    /**
+     * Con el blob bloqueado (las altas y bajas de referencias esperan), compara su contador con las filas
+     * que lo usan. Devuelve null si cuadra, o el contador corregido; a cero, el blob se recolecta.
+     */
+    private Integer revisarBlob(String sha256, boolean corregir) {
+        return imagenBlobRepository.findBySha256ParaActualizar(sha256)
+                .map(blob -> {
+                    int filas = (int) imagenRepository.countBySha256(sha256);
+                    if (filas == blob.getReferencias()) {
+                        return null;
+                    }
+                    LOG.warn("Blob {} con {} referencias y {} filas", sha256, blob.getReferencias(), filas);
+                    if (corregir) {
+                        blob.setReferencias(filas);
+                        if (filas == 0) {
+                            imagenService.recolectarBlob(sha256);
+                        }
+                    }
+                    return filas;
+                })
+                .orElse(null);
+    }
+
+    // =======================================================
+    // FICHEROS -> FILAS
+    // =======================================================
+
+    private void revisarFicheros(Pasada pasada) throws IOException {
+        Path raiz = almacenImagenes.raiz();
+        Path variantes = raiz.resolve(AlmacenImagenes.DIRECTORIO_VARIANTES);
+        Path subidas = raiz.resolve(AlmacenImagenes.DIRECTORIO_SUBIDAS);
+        Instant limite = Instant.now().minus(gracia);
+
+        Map<String, Path> originales = new LinkedHashMap<>();
+        Map<String, Path> copias = new LinkedHashMap<>();
+
+        // Files.walk recorre el árbol de forma perezosa: no se listan los cientos de miles de ficheros de golpe
+        try (Stream<Path> ficheros = Files.walk(raiz)) {
+            Iterator<Path> it = ficheros.iterator();
+            while (it.hasNext()) {
+                Path fichero = it.next();
+                BasicFileAttributes atributos = atributos(fichero);
+                if (atributos == null || !atributos.isRegularFile() || fichero.startsWith(subidas)) {
+                    // Las subidas reanudables pueden durar más que la gracia: las caduca SubidasReanudables
+                    continue;
+                }
+                pasada.limitador.esperar();
+                pasada.ficherosRevisados++;
+                if (atributos.lastModifiedTime().toInstant().isAfter(limite)) {
+                    continue;
+                }
+
+                String nombre = fichero.getFileName().toString();
+                if (nombre.startsWith(".")) {
+                    // Temporal (.subida-*, .derivado-*) de una escritura que no terminó
+                    if (pasada.limpieza && borrarSiSigueAntiguo(fichero, limite)) {
+                        pasada.temporalesBorrados++;
+                    }
+                    continue;
+                }
+
+                Map<String, Path> lote = fichero.startsWith(variantes) ? copias : originales;
+                lote.put(nombre, fichero);
+                if (lote.size() >= TAMANO_LOTE) {
+                    revisarLote(pasada, lote, lote == copias, limite);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        revisarLote(pasada, originales, false, limite);
+        revisarLote(pasada, copias, true, limite);
+    }
+
+    private void revisarLote(Pasada pasada, Map<String, Path> lote, boolean variantes, Instant limite) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        Set<String> conFila = new HashSet<>();
+        if (variantes) {
+            conFila.addAll(imagenVarianteRepository.findNombreFicheroIn(lote.keySet()));
+        } else {
+            conFila.addAll(imagenBlobRepository.findNombreFicheroIn(lote.keySet()));
+            conFila.addAll(imagenRepository.findNombreFicheroIn(lote.keySet()));
+        }
+
+        for (Map.Entry<String, Path> fichero : lote.entrySet()) {
+            if (conFila.contains(fichero.getKey())) {
+                continue;
+            }
+            pasada.ficherosHuerfanos++;
+            pasada.ejemplo(pasada.ejemplosFicherosHuerfanos, fichero.getKey());
+            // publicar() renueva la fecha del fichero que reutiliza: si se acaba de reclamar, no se borra
+            if (pasada.limpieza && borrarSiSigueAntiguo(fichero.getValue(), limite)) {
+                pasada.ficherosBorrados++;
+            }
+        }
+        lote.clear();
+    }
+
+    private boolean borrarSiSigueAntiguo(Path fichero, Instant limite) {
+        try {
+            if (Files.getLastModifiedTime(fichero).toInstant().isAfter(limite)) {
+                return false;
+            }
+            return Files.deleteIfExists(fichero);
+        } catch (IOException e) {
+            LOG.warn("No se pudo borrar el fichero huérfano {}", fichero, e);
+            return false;
+        }
+    }
+
+    // null si el fichero desapareció durante el recorrido
+    private static BasicFileAttributes atributos(Path fichero) {
+        try {
+            return Files.readAttributes(fichero, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // =======================================================
+    // ESTADO DE UNA PASADA
+    // =======================================================
+
+    private class Pasada {
+        final LocalDateTime inicio = LocalDateTime.now();
+        final Limitador limitador = new Limitador(ficherosPorSegundo);
+        boolean limpieza = borrar;
+
+        long filasRevisadas;
+        long filasSinFichero;
+        long rutasCorregidas;
+        long filasEliminadas;
+        long referenciasCorregidas;
+        long blobsRecolectados;
+        long ficherosRevisados;
+        long ficherosHuerfanos;
+        long ficherosBorrados;
+        long temporalesBorrados;
+        final List<String> ejemplosFilasSinFichero = new ArrayList<>();
+        final List<String> ejemplosFicherosHuerfanos = new ArrayList<>();
+
+        void ejemplo(List<String> ejemplos, String nombre) {
+            if (ejemplos.size() < MAX_EJEMPLOS) {
+                ejemplos.add(nombre);
+            }
+        }
+
+        ReconciliacionImagenesResponse informe() {
+            return ReconciliacionImagenesResponse.builder()
+                    .inicio(inicio)
+                    .fin(LocalDateTime.now())
+                    .limpieza(limpieza)
+                    .filasRevisadas(filasRevisadas)
+                    .filasSinFichero(filasSinFichero)
+                    .rutasCorregidas(rutasCorregidas)
+                    .filasEliminadas(filasEliminadas)
+                    .referenciasCorregidas(referenciasCorregidas)
+                    .blobsRecolectados(blobsRecolectados)
+                    .ficherosRevisados(ficherosRevisados)
+                    .ficherosHuerfanos(ficherosHuerfanos)
+                    .ficherosBorrados(ficherosBorrados)
+                    .temporalesBorrados(temporalesBorrados)
+                    .ejemplosFilasSinFichero(ejemplosFilasSinFichero)
+                    .ejemplosFicherosHuerfanos(ejemplosFicherosHuerfanos)
+                    .build();
+        }
+    }
+
+    /**
+     * Reparte las operaciones de disco a un ritmo fijo para no competir con las peticiones.
+     * Sin acumulación: tras una pausa larga (consultas a BD) no se recupera el tiempo con una ráfaga.
+     */
+    static class Limitador {
+
+        private final long intervaloNanos;
+        private long siguiente = System.nanoTime();
+
+        Limitador(int porSegundo) {
+            this.intervaloNanos = porSegundo > 0 ? TimeUnit.SECONDS.toNanos(1) / porSegundo : 0;
+        }
+
+        void esperar() {
+            if (intervaloNanos == 0) {
+                return;
+            }
+            long ahora = System.nanoTime();
+            if (siguiente < ahora) {
+                siguiente = ahora;
+            }
+            long espera = siguiente - ahora;
+            siguiente += intervaloNanos;
+            if (espera > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(espera);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
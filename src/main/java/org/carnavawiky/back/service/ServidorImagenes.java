@@ -0,0 +1,303 @@
+package org.carnavawiky.back.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.carnavawiky.back.exception.FileNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Envío de los ficheros del almacén de imágenes (originales y variantes).
+ * Sustituye al manejador de recursos estáticos de Spring para /api/imagenes/**:
+ *   - las imágenes pequeñas más pedidas se sirven desde una caché LRU de bytes acotada por tamaño total;
+ *   - las grandes se delegan en el sendfile de Tomcat (el kernel copia del page cache al socket)
+ *     y, si el conector no lo admite, se copian con FileChannel.transferTo;
+ *   - se atienden peticiones Range de un solo intervalo (206 / 416), para reanudar descargas;
+ *   - los ficheros con nombre direccionado por contenido (sha256[_ancho].ext) no cambian nunca:
+ *     se sirven con Cache-Control inmutable de un año y ETag fuerte igual al hash. Sustituir una
+ *     imagen es subir otra, que tendrá otra URL. Los nombres antiguos se revalidan siempre.
+ * Cada petición comprueba tamaño y fecha del fichero, así que una entrada de la caché nunca
+ * sobrevive al borrado o la sustitución del fichero.
+ */
+@Component
+public class ServidorImagenes {
+
+    // Atributos de petición del sendfile de Tomcat (org.apache.catalina.Globals)
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Un único intervalo: "bytes=0-499", "bytes=500-" o "bytes=-500"
+    private static final Pattern RANGO = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+    // Sin separadores de ruta ni ficheros ocultos (los temporales del almacén empiezan por '.')
+    private static final Pattern NOMBRE_VALIDO = Pattern.compile("^[A-Za-z0-9_-][A-Za-z0-9._-]*$");
+    // Originales "<sha256>.jpg" y variantes "<sha256>_480.jpg"; el grupo 1 es la ETag
+    private static final Pattern DIRECCIONADO_POR_CONTENIDO = Pattern.compile("^([0-9a-f]{64}(?:_\\d+)?)(?:\\.[a-z0-9]{1,10})?$");
+
+    static final String CACHE_INMUTABLE = "public, max-age=31536000, immutable";
+    static final String CACHE_REVALIDAR = "public, no-cache";
+
+    @Autowired
+    private AlmacenImagenes almacenImagenes;
+
+    @Value("${app.imagenes.servidor.cache-max-bytes:67108864}")
+    private long maxBytesCache = 64 * 1024 * 1024;
+
+    @Value("${app.imagenes.servidor.cache-max-fichero:262144}")
+    private long maxBytesFichero = 256 * 1024;
+
+    private record Entrada(byte[] contenido, long modificado) {
+    }
+
+    private record Rango(long inicio, long fin) {
+
+        long longitud() {
+            return fin - inicio + 1;
+        }
+    }
+
+    // LRU por orden de acceso; el límite es de bytes, no de entradas
+    private final LinkedHashMap<Path, Entrada> cache = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytesEnCache;
+
+    // =======================================================
+    // ENVÍO
+    // =======================================================
+
+    public void servirOriginal(String nombreFichero, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        servir(almacenImagenes.localizar(validar(nombreFichero)), request, response);
+    }
+
+    public void servirVariante(String nombreFichero, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        servir(almacenImagenes.localizarVariante(validar(nombreFichero)), request, response);
+    }
+
+    void servir(Path fichero, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        BasicFileAttributes atributos;
+        try {
+            atributos = Files.readAttributes(fichero, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("Imagen no encontrada: " + fichero.getFileName());
+        }
+        if (!atributos.isRegularFile()) {
+            throw new FileNotFoundException("Imagen no encontrada: " + fichero.getFileName());
+        }
+        long longitud = atributos.size();
+        long modificado = atributos.lastModifiedTime().toMillis();
+
+        String nombre = fichero.getFileName().toString();
+        Matcher direccionado = DIRECCIONADO_POR_CONTENIDO.matcher(nombre);
+        boolean inmutable = direccionado.matches();
+        String etag = inmutable
+                ? "\"" + direccionado.group(1) + "\""
+                : "\"" + Long.toHexString(longitud) + "-" + Long.toHexString(modificado) + "\"";
+
+        // Spring Security no añade su no-cache si la respuesta ya trae Cache-Control
+        response.setHeader(HttpHeaders.CACHE_CONTROL, inmutable ? CACHE_INMUTABLE : CACHE_REVALIDAR);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, modificado);
+
+        if (noModificado(request, etag, modificado)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(MediaTypeFactory.getMediaType(fichero.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        Rango rango = new Rango(0, longitud - 1);
+        String cabeceraRango = request.getHeader(HttpHeaders.RANGE);
+        if (cabeceraRango != null && rangoVigente(request, etag, modificado)) {
+            Rango pedido = rango(cabeceraRango, longitud);
+            if (pedido == null) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + longitud);
+                return;
+            }
+            if (pedido.longitud() < longitud) {
+                rango = pedido;
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + rango.inicio() + "-" + rango.fin() + "/" + longitud);
+            }
+        }
+        response.setContentLengthLong(rango.longitud());
+
+        if (HttpMethod.HEAD.matches(request.getMethod()) || rango.longitud() == 0) {
+            return;
+        }
+
+        if (longitud <= maxBytesFichero) {
+            byte[] contenido = contenido(fichero, longitud, modificado);
+            response.getOutputStream().write(contenido, (int) rango.inicio(), (int) rango.longitud());
+        } else if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat envía el fichero al terminar la petición; no se escribe nada en el cuerpo
+            request.setAttribute(SENDFILE_FILENAME, fichero.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, rango.inicio());
+            request.setAttribute(SENDFILE_END, rango.fin() + 1);
+        } else {
+            transferir(fichero, rango, response.getOutputStream());
+        }
+    }
+
+    // =======================================================
+    // PETICIONES CONDICIONALES
+    // =======================================================
+
+    // If-None-Match manda sobre If-Modified-Since (RFC 9110, 13.2.2)
+    private static boolean noModificado(HttpServletRequest request, String etag, long modificado) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return coincide(ifNoneMatch, etag);
+        }
+        long ifModifiedSince = fecha(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && modificado / 1000 <= ifModifiedSince / 1000;
+    }
+
+    // Comparación débil: "W/" se ignora, como pide If-None-Match
+    static boolean coincide(String ifNoneMatch, String etag) {
+        for (String candidata : ifNoneMatch.split(",")) {
+            String valor = candidata.trim();
+            if (valor.equals("*") || (valor.startsWith("W/") ? valor.substring(2) : valor).equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // If-Range: el intervalo solo vale si el cliente tiene la misma versión; si no, se envía entera
+    private static boolean rangoVigente(HttpServletRequest request, String etag, long modificado) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.trim().startsWith("\"") || ifRange.trim().startsWith("W/")) {
+            // Comparación fuerte: una ETag débil nunca vale para un intervalo
+            return ifRange.trim().equals(etag);
+        }
+        long fecha = fecha(request, HttpHeaders.IF_RANGE);
+        return fecha >= 0 && fecha / 1000 == modificado / 1000;
+    }
+
+    private static long fecha(HttpServletRequest request, String cabecera) {
+        try {
+            return request.getDateHeader(cabecera);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    // =======================================================
+    // INTERVALOS
+    // =======================================================
+
+    /**
+     * Interpreta una cabecera Range de un solo intervalo.
+     * Devuelve el rango completo si la cabecera no se entiende o pide varios intervalos
+     * (se ignora, como permite RFC 9110) y null si no se puede satisfacer (416).
+     */
+    static Rango rango(String cabecera, long longitud) {
+        Rango completo = new Rango(0, longitud - 1);
+        Matcher matcher = RANGO.matcher(cabecera.trim());
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            return completo;
+        }
+        try {
+            if (matcher.group(1).isEmpty()) {
+                // Sufijo: los últimos N bytes
+                long sufijo = Long.parseLong(matcher.group(2));
+                return sufijo == 0 ? null : new Rango(Math.max(0, longitud - sufijo), longitud - 1);
+            }
+            long inicio = Long.parseLong(matcher.group(1));
+            long fin = matcher.group(2).isEmpty() ? longitud - 1 : Math.min(Long.parseLong(matcher.group(2)), longitud - 1);
+            if (inicio >= longitud || fin < inicio) {
+                return null;
+            }
+            return new Rango(inicio, fin);
+        } catch (NumberFormatException e) {
+            return completo;
+        }
+    }
+
+    private void transferir(Path fichero, Rango rango, OutputStream salida) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            WritableByteChannel destino = Channels.newChannel(salida);
+            long posicion = rango.inicio();
+            long restantes = rango.longitud();
+            while (restantes > 0) {
+                long enviados = canal.transferTo(posicion, restantes, destino);
+                if (enviados <= 0) {
+                    break;
+                }
+                posicion += enviados;
+                restantes -= enviados;
+            }
+        }
+    }
+
+    // =======================================================
+    // CACHÉ LRU DE IMÁGENES PEQUEÑAS
+    // =======================================================
+
+    private byte[] contenido(Path fichero, long longitud, long modificado) throws IOException {
+        synchronized (cache) {
+            Entrada entrada = cache.get(fichero);
+            if (entrada != null && entrada.modificado() == modificado && entrada.contenido().length == longitud) {
+                return entrada.contenido();
+            }
+        }
+
+        byte[] contenido = Files.readAllBytes(fichero);
+        if (contenido.length != longitud) {
+            // Cambió entre la lectura de atributos y la de contenido: se sirve sin cachear
+            return contenido;
+        }
+
+        synchronized (cache) {
+            Entrada anterior = cache.put(fichero, new Entrada(contenido, modificado));
+            bytesEnCache += contenido.length - (anterior != null ? anterior.contenido().length : 0);
+            Iterator<Map.Entry<Path, Entrada>> it = cache.entrySet().iterator();
+            while (bytesEnCache > maxBytesCache && it.hasNext()) {
+                bytesEnCache -= it.next().getValue().contenido().length;
+                it.remove();
+            }
+        }
+        return contenido;
+    }
+
+    // Solo para tests
+    long bytesEnCache() {
+        synchronized (cache) {
+            return bytesEnCache;
+        }
+    }
+
+    private static String validar(String nombreFichero) {
+        if (nombreFichero == null || !NOMBRE_VALIDO.matcher(nombreFichero).matches() || nombreFichero.contains("..")) {
+            throw new FileNotFoundException("Imagen no encontrada: " + nombreFichero);
+        }
+        return nombreFichero;
+    }
+}
@@ -0,0 +1,248 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.dto.ImagenResponse;
+import org.carnavawiky.back.dto.SubidaImagenRequest;
+import org.carnavawiky.back.dto.SubidaImagenResponse;
+import org.carnavawiky.back.exception.BadRequestException;
+import org.carnavawiky.back.exception.ResourceNotFoundException;
+import org.carnavawiky.back.model.SubidaImagen;
+import org.carnavawiky.back.repository.AgrupacionRepository;
+import org.carnavawiky.back.repository.SubidaImagenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Subidas reanudables para imágenes grandes en conexiones poco fiables:
+ *   1. POST  /api/imagenes/subidas                 crea la sesión y preasigna el fichero
+ *   2. PUT   /api/imagenes/subidas/{id}?offset=N   escribe un trozo en su posición
+ *   3. GET   /api/imagenes/subidas/{id}            tras un corte: cuántos bytes tiene ya el servidor
+ *   4. POST  /api/imagenes/subidas/{id}/finalizar  da de alta la imagen como una subida normal
+ * La sesión se guarda en BD y el fichero en <location>/subidas: sobreviven a un reinicio.
+ * Las sesiones sin actividad durante app.imagenes.subidas.caducidad se borran periódicamente.
+ */
+@Component
+public class SubidasReanudables {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SubidasReanudables.class);
+
+    @Autowired
+    private SubidaImagenRepository subidaImagenRepository;
+
+    @Autowired
+    private AgrupacionRepository agrupacionRepository;
+
+    @Autowired
+    private AlmacenImagenes almacenImagenes;
+
+    @Autowired
+    private ImagenService imagenService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.imagenes.subidas.caducidad:PT24H}")
+    private Duration caducidad = Duration.ofHours(24);
+
+    // =======================================================
+    // SESIONES
+    // =======================================================
+
+    public SubidaImagenResponse crear(SubidaImagenRequest request) throws IOException {
+        if (!agrupacionRepository.existsById(request.getAgrupacionId())) {
+            throw new ResourceNotFoundException("Agrupacion", "id", request.getAgrupacionId());
+        }
+
+        SubidaImagen subida = new SubidaImagen();
+        subida.setId(UUID.randomUUID().toString());
+        subida.setAgrupacionId(request.getAgrupacionId());
+        subida.setNombreOriginal(request.getNombre());
+        subida.setEsPortada(Boolean.TRUE.equals(request.getEsPortada()));
+        subida.setTamanoBytes(request.getTamanoBytes());
+        subida.setExpira(Instant.now().plus(caducidad));
+
+        // El fichero antes que la fila: una sesión visible siempre tiene dónde escribir
+        Path parte = almacenImagenes.rutaSubida(subida.getId());
+        almacenImagenes.reservar(parte, subida.getTamanoBytes());
+        try {
+            subidaImagenRepository.save(subida);
+        } catch (RuntimeException e) {
+            almacenImagenes.eliminar(parte);
+            throw e;
+        }
+        return toResponse(subida);
+    }
+
+    public SubidaImagenResponse obtener(String id) {
+        return toResponse(vigente(id));
+    }
+
+    /**
+     * Escribe un trozo a partir de offset. Se admite cualquier offset hasta los bytes ya recibidos:
+     * reenviar un trozo tras un corte sobrescribe los mismos bytes y no deja huecos.
+     */
+    public SubidaImagenResponse escribir(String id, long offset, InputStream contenido) throws IOException {
+        SubidaImagen subida = vigente(id);
+        if (offset < 0 || offset > subida.getRecibidos()) {
+            throw new BadRequestException("El trozo debe empezar entre el byte 0 y el " + subida.getRecibidos()
+                    + " (bytes ya recibidos); offset: " + offset);
+        }
+
+        long escritos;
+        try {
+            // Fuera de transacción: un trozo lento no retiene ninguna conexión del pool
+            escritos = almacenImagenes.escribirEn(almacenImagenes.rutaSubida(id), offset, contenido);
+        } catch (NoSuchFileException e) {
+            // Finalizada, cancelada o caducada mientras llegaba el trozo
+            throw new ResourceNotFoundException("SubidaImagen", "id", id);
+        }
+
+        // Los bytes ya están en disco: solo entonces cuentan como recibidos
+        Instant expira = Instant.now().plus(caducidad);
+        transactionTemplate.execute(status -> subidaImagenRepository.avanzar(id, offset, offset + escritos, expira));
+        return toResponse(subidaImagenRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("SubidaImagen", "id", id)));
+    }
+
+    /**
+     * Comprueba que han llegado todos los bytes y da de alta la imagen (hash, deduplicación,
+     * variantes y portada como en ImagenService.subirImagen). La sesión se retira antes de
+     * registrar: no admite más trozos ni una segunda finalización.
+     */
+    public ImagenResponse finalizar(String id) throws IOException {
+        SubidaImagen subida = transactionTemplate.execute(status -> {
+            SubidaImagen bloqueada = subidaImagenRepository.findByIdParaActualizar(id)
+                    .filter(s -> s.getExpira().isAfter(Instant.now()))
+                    .orElseThrow(() -> new ResourceNotFoundException("SubidaImagen", "id", id));
+            if (bloqueada.getRecibidos() < bloqueada.getTamanoBytes()) {
+                throw new BadRequestException("Faltan bytes por recibir: " + bloqueada.getRecibidos()
+                        + " de " + bloqueada.getTamanoBytes());
+            }
+            subidaImagenRepository.delete(bloqueada);
+            return bloqueada;
+        });
+
+        Path parte = almacenImagenes.rutaSubida(id);
+        AlmacenImagenes.FicheroTemporal fichero;
+        try {
+            fichero = almacenImagenes.completar(parte, subida.getNombreOriginal());
+        } catch (IOException | RuntimeException e) {
+            almacenImagenes.eliminar(parte);
+            throw e;
+        }
+        return imagenService.registrarRecibida(subida.getAgrupacionId(), fichero, subida.getEsPortada());
+    }
+
+    public void cancelar(String id) throws IOException {
+        Path parte = almacenImagenes.rutaSubida(id);
+        transactionTemplate.execute(status -> {
+            SubidaImagen subida = subidaImagenRepository.findByIdParaActualizar(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("SubidaImagen", "id", id));
+            subidaImagenRepository.delete(subida);
+            almacenImagenes.eliminarTrasCommit(parte);
+            return null;
+        });
+    }
+
+    // =======================================================
+    // CADUCIDAD
+    // =======================================================
+
+    @Scheduled(initialDelayString = "${app.imagenes.subidas.limpieza:PT15M}",
+            fixedDelayString = "${app.imagenes.subidas.limpieza:PT15M}")
+    void caducarPeriodicamente() {
+        try {
+            int borradas = caducar();
+            if (borradas > 0) {
+                LOG.info("Subidas reanudables caducadas: {} borradas", borradas);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.error("No se pudieron caducar las subidas reanudables", e);
+        }
+    }
+
+    /**
+     * Borra las sesiones caducadas con su fichero, y los ficheros de subidas que ya no tienen
+     * sesión (p. ej. si se cayó el proceso entre borrar la fila y el fichero). Devuelve cuántas.
+     */
+    int caducar() throws IOException {
+        int borradas = 0;
+        for (String id : subidaImagenRepository.findIdsCaducadas(Instant.now())) {
+            Path parte = almacenImagenes.rutaSubida(id);
+            Boolean borrada = transactionTemplate.execute(status -> subidaImagenRepository.findByIdParaActualizar(id)
+                    // Puede haber recibido un trozo desde la consulta
+                    .filter(s -> s.getExpira().isBefore(Instant.now()))
+                    .map(s -> {
+                        subidaImagenRepository.delete(s);
+                        almacenImagenes.eliminarTrasCommit(parte);
+                        return true;
+                    })
+                    .orElse(false));
+            if (Boolean.TRUE.equals(borrada)) {
+                borradas++;
+            }
+        }
+
+        Path directorio = almacenImagenes.directorioSubidas();
+        if (!Files.isDirectory(directorio)) {
+            return borradas;
+        }
+        Instant limite = Instant.now().minus(caducidad);
+        List<Path> antiguos;
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            antiguos = ficheros.filter(f -> modificadoAntesDe(f, limite)).toList();
+        }
+        for (Path fichero : antiguos) {
+            String nombre = fichero.getFileName().toString();
+            String id = nombre.endsWith(".part") ? nombre.substring(0, nombre.length() - ".part".length()) : nombre;
+            if (!subidaImagenRepository.existsById(id)) {
+                almacenImagenes.eliminar(fichero);
+                borradas++;
+            }
+        }
+        return borradas;
+    }
+
+    // =======================================================
+    // UTILIDADES
+    // =======================================================
+
+    private SubidaImagen vigente(String id) {
+        return subidaImagenRepository.findById(id)
+                .filter(s -> s.getExpira().isAfter(Instant.now()))
+                .orElseThrow(() -> new ResourceNotFoundException("SubidaImagen", "id", id));
+    }
+
+    private static boolean modificadoAntesDe(Path fichero, Instant limite) {
+        try {
+            return Files.getLastModifiedTime(fichero).toInstant().isBefore(limite);
+        } catch (IOException e) {
+            // Borrado mientras se listaba
+            return false;
+        }
+    }
+
+    private static SubidaImagenResponse toResponse(SubidaImagen subida) {
+        return SubidaImagenResponse.builder()
+                .id(subida.getId())
+                .tamanoBytes(subida.getTamanoBytes())
+                .recibidos(subida.getRecibidos())
+                .expira(subida.getExpira())
+                .build();
+    }
+}
@@ -1,5 +1,6 @@
 package org.carnavawiky.back.service;
 
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.dto.UsuarioRequest;
 import org.carnavawiky.back.dto.UsuarioResponse;
 import org.carnavawiky.back.dto.PageResponse; // <-- NUEVA IMPORTACIÓN
@@ -10,9 +11,11 @@ import org.carnavawiky.back.model.Role;
 import org.carnavawiky.back.model.Usuario;
 import org.carnavawiky.back.repository.RoleRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page; // <-- NUEVA IMPORTACIÓN
 import org.springframework.data.domain.Pageable; // <-- NUEVA IMPORTACIÓN
+import org.springframework.data.domain.Sort;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -24,6 +27,10 @@ import java.util.stream.Collectors;
 @Service
 public class UsuarioService {
 
+    // Paginación por cursor: propiedades por las que se permite ordenar (además del id)
+    private static final PaginacionKeyset.Config<Usuario> SCROLL = new PaginacionKeyset.Config<>(
+            Usuario.class, Sort.unsorted(), Set.of("username", "email", "fechaAlta"));
+
     @Autowired
     private UsuarioRepository usuarioRepository;
 
@@ -36,6 +43,9 @@ public class UsuarioService {
     @Autowired
     private UsuarioMapper usuarioMapper;
 
+    @Autowired
+    private EstadoUsuarioCache estadoUsuarios; // Estado de acceso cacheado para la autenticación por JWT
+
 
     // =======================================================
     // 1. CREAR (POST)
@@ -68,6 +78,8 @@ public class UsuarioService {
 
         // 3. Guardar y retornar
         Usuario nuevoUsuario = usuarioRepository.save(usuario);
+        // Por si el username se reutiliza tras una baja y quedó cacheado como inexistente
+        estadoUsuarios.invalidar(nuevoUsuario.getUsername());
         return usuarioMapper.toResponse(nuevoUsuario);
     }
 
@@ -107,6 +119,20 @@ public class UsuarioService {
         return PageResponse.fromPage(responsePage);
     }
 
+    // =======================================================
+    // OBTENER TODOS POR CURSOR (keyset) - sin OFFSET ni COUNT(*)
+    // =======================================================
+    @Transactional(readOnly = true)
+    public SliceResponse<UsuarioResponse> obtenerUsuariosPorCursor(Pageable pageable, String search, String cursor) {
+
+        PaginacionKeyset.Consulta<Usuario> consulta = StringUtils.hasText(search)
+                ? (posicion, sort, limit) -> usuarioRepository
+                        .findByUsernameContainingIgnoreCaseOrEmailContainingIgnoreCase(search, search, posicion, sort, limit)
+                : usuarioRepository::findAllBy;
+
+        return PaginacionKeyset.scroll(consulta, pageable, cursor, SCROLL, usuarioMapper::toResponse);
+    }
+
     // =======================================================
     // 4. ACTUALIZAR (PUT /ID)
     // =======================================================
@@ -142,6 +168,8 @@ public class UsuarioService {
 
         // 4. Guardar y retornar
         Usuario usuarioActualizado = usuarioRepository.save(usuarioExistente);
+        // Un usuario deshabilitado o con menos roles deja de tenerlos en la siguiente petición
+        estadoUsuarios.invalidar(usuarioActualizado.getUsername());
         return usuarioMapper.toResponse(usuarioActualizado);
     }
 
@@ -156,5 +184,7 @@ public class UsuarioService {
             throw new ResourceNotFoundException("Usuario", "id", id);
         }
         usuarioRepository.deleteById(id);
+        // Solo tenemos el id: se vacía la caché entera (las bajas son raras)
+        estadoUsuarios.invalidarTodos();
     }
 }
\ No newline at end of file
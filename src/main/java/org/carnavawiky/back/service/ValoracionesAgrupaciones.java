@@ -0,0 +1,177 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.config.CacheConfig;
+import org.carnavawiky.back.dto.ValoracionResponse;
+import org.carnavawiky.back.exception.ResourceNotFoundException;
+import org.carnavawiky.back.model.Comentario;
+import org.carnavawiky.back.model.ValoracionAgrupacion;
+import org.carnavawiky.back.repository.AgrupacionRepository;
+import org.carnavawiky.back.repository.ValoracionAgrupacionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Mantiene ValoracionAgrupacion a medida que los comentarios entran o salen del conjunto
+ * que cuenta (aprobados con puntuación). Se llama dentro de la transacción del comentario:
+ * si esta se deshace, el agregado también.
+ */
+@Component
+public class ValoracionesAgrupaciones {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ValoracionesAgrupaciones.class);
+
+    @Autowired
+    private ValoracionAgrupacionRepository valoracionRepository;
+
+    @Autowired
+    private AgrupacionRepository agrupacionRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    // =======================================================
+    // CARGA INICIAL
+    // =======================================================
+
+    /**
+     * Rellena la tabla desde los comentarios existentes la primera vez que arranca con ella
+     * vacía (despliegue de esta funcionalidad). A partir de ahí solo se actualiza por deltas.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void inicializar() {
+        if (valoracionRepository.count() > 0) {
+            return;
+        }
+        int filas = valoracionRepository.recalcularTodas();
+        if (filas > 0) {
+            LOG.info("Valoraciones de agrupaciones calculadas desde los comentarios: {} agrupaciones", filas);
+        }
+    }
+
+    // =======================================================
+    // ACTUALIZACIÓN INCREMENTAL
+    // =======================================================
+
+    // El comentario pasa a contar (aprobado, o editado ya aprobado)
+    @Transactional
+    public void sumar(Comentario comentario) {
+        if (cuenta(comentario)) {
+            aplicar(comentario.getAgrupacion().getId(), comentario.getPuntuacion(), 1);
+        }
+    }
+
+    // El comentario deja de contar con sus valores actuales (borrado, o antes de editarlo)
+    @Transactional
+    public void restar(Comentario comentario) {
+        if (cuenta(comentario)) {
+            aplicar(comentario.getAgrupacion().getId(), comentario.getPuntuacion(), -1);
+        }
+    }
+
+    /**
+     * Comentarios que se acaban de aprobar en lote (aún con aprobado=false en memoria):
+     * un UPDATE por agrupación y puntuación, no uno por comentario.
+     */
+    @Transactional
+    public void sumarAprobados(Collection<Comentario> aprobados) {
+        // Agrupaciones en orden de id: dos lotes simultáneos bloquean las filas en el mismo orden
+        Map<Long, Map<Integer, Long>> votos = aprobados.stream()
+                .filter(comentario -> comentario.getPuntuacion() != null)
+                .collect(Collectors.groupingBy(comentario -> comentario.getAgrupacion().getId(), TreeMap::new,
+                        Collectors.groupingBy(Comentario::getPuntuacion, TreeMap::new, Collectors.counting())));
+        votos.forEach((agrupacionId, porPuntuacion) -> {
+            porPuntuacion.forEach((puntuacion, numero) -> acumular(agrupacionId, puntuacion, numero));
+            cerrar(agrupacionId);
+        });
+    }
+
+    @Transactional
+    public void eliminar(Long agrupacionId) {
+        valoracionRepository.eliminar(agrupacionId);
+    }
+
+    private void aplicar(Long agrupacionId, int puntuacion, long delta) {
+        acumular(agrupacionId, puntuacion, delta);
+        cerrar(agrupacionId);
+    }
+
+    private void acumular(Long agrupacionId, int puntuacion, long delta) {
+        if (valoracionRepository.acumular(agrupacionId, puntuacion, delta) == 0) {
+            // Primera puntuación de la agrupación. Se bloquea la agrupación para que dos altas
+            // simultáneas no inserten la fila dos veces; la segunda encuentra la de la primera.
+            agrupacionRepository.findByIdParaActualizar(agrupacionId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Agrupacion", "id", agrupacionId));
+            if (valoracionRepository.acumular(agrupacionId, puntuacion, delta) == 0) {
+                valoracionRepository.crearVacia(agrupacionId);
+                valoracionRepository.acumular(agrupacionId, puntuacion, delta);
+            }
+        }
+    }
+
+    private void cerrar(Long agrupacionId) {
+        valoracionRepository.actualizarMedia(agrupacionId);
+        // Caché consciente de la transacción: se desaloja tras el commit
+        Cache cache = cacheManager.getCache(CacheConfig.AGRUPACION_BY_ID);
+        if (cache != null) {
+            cache.evict(agrupacionId);
+        }
+    }
+
+    private static boolean cuenta(Comentario comentario) {
+        return Boolean.TRUE.equals(comentario.getAprobado()) && comentario.getPuntuacion() != null;
+    }
+
+    // =======================================================
+    // LECTURA
+    // =======================================================
+
+    public ValoracionResponse obtener(Long agrupacionId) {
+        return valoracionRepository.findById(agrupacionId)
+                .map(ValoracionesAgrupaciones::toResponse)
+                .orElseGet(ValoracionesAgrupaciones::sinValoraciones);
+    }
+
+    // Una consulta por página de listado; las agrupaciones sin fila salen sin valoraciones
+    public Map<Long, ValoracionResponse> obtener(Collection<Long> agrupacionIds) {
+        if (agrupacionIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, ValoracionResponse> porId = valoracionRepository.findAllById(agrupacionIds).stream()
+                .collect(Collectors.toMap(ValoracionAgrupacion::getAgrupacionId, ValoracionesAgrupaciones::toResponse));
+        return agrupacionIds.stream().distinct()
+                .collect(Collectors.toMap(Function.identity(), id -> porId.getOrDefault(id, sinValoraciones())));
+    }
+
+    private static ValoracionResponse toResponse(ValoracionAgrupacion valoracion) {
+        return ValoracionResponse.builder()
+                .numero(valoracion.getNumero())
+                .suma(valoracion.getSuma())
+                .media(valoracion.getMedia())
+                .histograma(List.of(valoracion.getVotos1(), valoracion.getVotos2(), valoracion.getVotos3(),
+                        valoracion.getVotos4(), valoracion.getVotos5()))
+                .build();
+    }
+
+    private static ValoracionResponse sinValoraciones() {
+        return ValoracionResponse.builder()
+                .numero(0L)
+                .suma(0L)
+                .histograma(List.of(0L, 0L, 0L, 0L, 0L))
+                .build();
+    }
+}
@@ -0,0 +1,286 @@
+package org.carnavawiky.back.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.carnavawiky.back.model.ImagenBlob;
+import org.carnavawiky.back.model.ImagenVariante;
+import org.carnavawiky.back.repository.ImagenBlobRepository;
+import org.carnavawiky.back.repository.ImagenVarianteRepository;
+import org.carnavawiky.back.util.TrasCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.*;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Genera en segundo plano copias reducidas (por defecto 160/480/1080 px de ancho) de cada blob
+ * de imagen, para que los listados no descarguen el original. Las copias se recodifican con
+ * ImageIO, que no escribe los metadatos del original: el EXIF (GPS, cámara...) desaparece.
+ * Los trabajos se ejecutan en un pool propio con hilos y cola acotados; si la cola está llena
+ * el trabajo se descarta y lo recoge la siguiente pasada de regenerarPendientes().
+ */
+@Component
+public class VariantesImagenes {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VariantesImagenes.class);
+
+    private static final float CALIDAD_JPEG = 0.85f;
+
+    @Autowired
+    private ImagenBlobRepository imagenBlobRepository;
+
+    @Autowired
+    private ImagenVarianteRepository imagenVarianteRepository;
+
+    @Autowired
+    private AlmacenImagenes almacenImagenes;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.imagenes.variantes.anchos:160,480,1080}")
+    private List<Integer> anchos = List.of(160, 480, 1080);
+
+    @Value("${app.imagenes.variantes.hilos:2}")
+    private int hilos = 2;
+
+    @Value("${app.imagenes.variantes.cola:1000}")
+    private int capacidadCola = 1000;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void iniciar() {
+        AtomicInteger contador = new AtomicInteger();
+        executor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                tarea -> {
+                    Thread hilo = new Thread(tarea, "variantes-imagen-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    // Por debajo de los hilos que atienden peticiones
+                    hilo.setPriority(Thread.NORM_PRIORITY - 1);
+                    return hilo;
+                },
+                (tarea, pool) -> LOG.warn("Cola de variantes llena ({}); se generarán en la siguiente regeneración", capacidadCola));
+    }
+
+    @PreDestroy
+    void detener() {
+        executor.shutdownNow();
+    }
+
+    // =======================================================
+    // PROGRAMACIÓN
+    // =======================================================
+
+    /**
+     * Encola la generación de las variantes de un blob. Dentro de una transacción
+     * se encola tras el commit, cuando el blob ya es visible para el hilo del pool.
+     */
+    public void programar(String sha256) {
+        TrasCommit.ejecutar(() -> executor.execute(() -> generarSinFallar(sha256)));
+    }
+
+    /**
+     * Encola los blobs que aún no tienen variantes (los subidos antes de este proceso
+     * o los que no cupieron en la cola). Devuelve cuántos se han encolado.
+     */
+    public int regenerarPendientes() {
+        List<String> pendientes = imagenBlobRepository.findSha256SinVariantes();
+        int encolados = 0;
+        for (String sha256 : pendientes) {
+            if (executor.getQueue().remainingCapacity() == 0) {
+                LOG.warn("Cola de variantes llena: {} blobs quedan para la siguiente regeneración", pendientes.size() - encolados);
+                break;
+            }
+            executor.execute(() -> generarSinFallar(sha256));
+            encolados++;
+        }
+        return encolados;
+    }
+
+    // La copia más pequeña: la miniatura de los listados
+    public int anchoMiniatura() {
+        return Collections.min(anchos);
+    }
+
+    // Para trabajos largos de mantenimiento que deben correr fuera del hilo de la petición
+    public void enSegundoPlano(Runnable tarea) {
+        executor.execute(tarea);
+    }
+
+    private void generarSinFallar(String sha256) {
+        try {
+            generar(sha256);
+        } catch (Exception e) {
+            LOG.error("No se pudieron generar las variantes del blob {}", sha256, e);
+        }
+    }
+
+    // =======================================================
+    // GENERACIÓN
+    // =======================================================
+
+    void generar(String sha256) throws IOException {
+        ImagenBlob blob = imagenBlobRepository.findById(sha256).orElse(null);
+        if (blob == null || Boolean.TRUE.equals(blob.getVariantesGeneradas())) {
+            return;
+        }
+
+        List<ImagenVariante> variantes = new ArrayList<>();
+        Original original = leer(Paths.get(blob.getRutaAbsoluta()), Collections.max(anchos));
+        if (original != null) {
+            String formato = formatoSalida(blob.getNombreFichero());
+            for (Integer ancho : new TreeSet<>(anchos)) {
+                // Nunca se amplía: el original ya sirve para anchos mayores o iguales
+                if (ancho >= original.ancho()) {
+                    continue;
+                }
+                variantes.add(escribirVariante(sha256, original.imagen(), ancho, formato));
+            }
+        } else {
+            LOG.warn("El blob {} no es una imagen legible; no tendrá variantes", sha256);
+        }
+
+        Boolean registrado = transactionTemplate.execute(status -> {
+            Optional<ImagenBlob> bloqueado = imagenBlobRepository.findBySha256ParaActualizar(sha256);
+            if (bloqueado.isEmpty()) {
+                return false;
+            }
+            Set<Integer> existentes = new HashSet<>();
+            imagenVarianteRepository.findBySha256(sha256).forEach(v -> existentes.add(v.getAncho()));
+            imagenVarianteRepository.saveAll(variantes.stream().filter(v -> !existentes.contains(v.getAncho())).toList());
+            bloqueado.get().setVariantesGeneradas(true);
+            return true;
+        });
+
+        if (!Boolean.TRUE.equals(registrado)) {
+            // El blob se borró mientras se generaban: las copias no deben quedar huérfanas
+            variantes.forEach(v -> almacenImagenes.eliminar(Paths.get(v.getRutaAbsoluta())));
+        }
+    }
+
+    /**
+     * Borra las variantes (filas y ficheros) de un blob que se va a eliminar.
+     * Llamar dentro de la transacción que tiene el blob bloqueado; los ficheros se borran tras el commit.
+     */
+    public void eliminar(String sha256) {
+        List<ImagenVariante> variantes = imagenVarianteRepository.findBySha256(sha256);
+        imagenVarianteRepository.deleteAll(variantes);
+        variantes.forEach(v -> almacenImagenes.eliminarTrasCommit(Paths.get(v.getRutaAbsoluta())));
+    }
+
+    private ImagenVariante escribirVariante(String sha256, BufferedImage original, int ancho, String formato) throws IOException {
+        BufferedImage reducida = reducir(original, ancho, "jpg".equals(formato));
+        String nombreFichero = sha256 + "_" + ancho + "." + formato;
+        Path destino = almacenImagenes.rutaVariante(nombreFichero);
+        long tamano = almacenImagenes.escribir(destino, salida -> {
+            try (ImageOutputStream imagenSalida = ImageIO.createImageOutputStream(salida)) {
+                codificar(reducida, formato, imagenSalida);
+            }
+        });
+        return new ImagenVariante(null, sha256, reducida.getWidth(), reducida.getHeight(), nombreFichero, destino.toString(), tamano);
+    }
+
+    // =======================================================
+    // PROCESADO DE IMAGEN
+    // =======================================================
+
+    // La imagen decodificada (quizá submuestreada) y las dimensiones reales del fichero
+    record Original(BufferedImage imagen, int ancho, int alto) {
+    }
+
+    /**
+     * Decodifica el original. Si es mucho más ancho que la mayor variante se lee submuestreado,
+     * para no descomprimir en memoria una foto de 8000 px que se va a reducir a 1080.
+     * Devuelve null si el fichero no es una imagen que ImageIO sepa leer.
+     */
+    static Original leer(Path fichero, int anchoMaximo) throws IOException {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(Files.newInputStream(fichero))) {
+            Iterator<ImageReader> lectores = ImageIO.getImageReaders(entrada);
+            if (!lectores.hasNext()) {
+                return null;
+            }
+            ImageReader lector = lectores.next();
+            try {
+                lector.setInput(entrada, true, true);
+                ImageReadParam parametros = lector.getDefaultReadParam();
+                int ancho = lector.getWidth(0);
+                int submuestreo = Math.max(1, ancho / (2 * anchoMaximo));
+                parametros.setSourceSubsampling(submuestreo, submuestreo, 0, 0);
+                return new Original(lector.read(0, parametros), ancho, lector.getHeight(0));
+            } finally {
+                lector.dispose();
+            }
+        }
+    }
+
+    // Reducción por mitades sucesivas y un último paso bicúbico: mejor calidad que un único salto
+    static BufferedImage reducir(BufferedImage original, int ancho, boolean sinTransparencia) {
+        int alto = Math.max(1, Math.round((float) original.getHeight() * ancho / original.getWidth()));
+        int tipo = sinTransparencia || !original.getColorModel().hasAlpha()
+                ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+
+        BufferedImage actual = original;
+        int anchoActual = original.getWidth();
+        int altoActual = original.getHeight();
+        do {
+            anchoActual = Math.max(ancho, anchoActual / 2);
+            altoActual = Math.max(alto, altoActual / 2);
+            BufferedImage siguiente = new BufferedImage(anchoActual, altoActual, tipo);
+            Graphics2D g = siguiente.createGraphics();
+            try {
+                if (tipo == BufferedImage.TYPE_INT_RGB) {
+                    // Fondo blanco para las zonas transparentes de un PNG que se pasa a JPEG
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, anchoActual, altoActual);
+                }
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(actual, 0, 0, anchoActual, altoActual, null);
+            } finally {
+                g.dispose();
+            }
+            actual = siguiente;
+        } while (anchoActual > ancho);
+        return actual;
+    }
+
+    private static void codificar(BufferedImage imagen, String formato, ImageOutputStream salida) throws IOException {
+        ImageWriter escritor = ImageIO.getImageWritersByFormatName(formato).next();
+        try {
+            escritor.setOutput(salida);
+            ImageWriteParam parametros = escritor.getDefaultWriteParam();
+            if ("jpg".equals(formato)) {
+                parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                parametros.setCompressionQuality(CALIDAD_JPEG);
+            }
+            // Sin IIOMetadata del original: la copia sale sin EXIF
+            escritor.write(null, new IIOImage(imagen, null, null), parametros);
+        } finally {
+            escritor.dispose();
+        }
+    }
+
+    // PNG y GIF conservan transparencia como PNG; el resto se sirve como JPEG
+    static String formatoSalida(String nombreFichero) {
+        String extension = AlmacenImagenes.extension(nombreFichero);
+        return ".png".equals(extension) || ".gif".equals(extension) ? "png" : "jpg";
+    }
+}
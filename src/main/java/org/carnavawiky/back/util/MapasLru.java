@@ -0,0 +1,30 @@
+package org.carnavawiky.back.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+/**
+ * Mapas LRU acotados (LinkedHashMap en orden de acceso) para las cachés en memoria.
+ * El máximo se lee en cada inserción: puede venir de un @Value inyectado tras construir el mapa.
+ */
+public final class MapasLru {
+
+    private MapasLru() {
+    }
+
+    // Sin sincronizar: para quien ya protege el mapa con su propio cerrojo
+    public static <K, V> Map<K, V> crear(int capacidadInicial, IntSupplier maximo) {
+        return new LinkedHashMap<>(capacidadInicial, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maximo.getAsInt();
+            }
+        };
+    }
+
+    public static <K, V> Map<K, V> sincronizado(int capacidadInicial, IntSupplier maximo) {
+        return Collections.synchronizedMap(crear(capacidadInicial, maximo));
+    }
+}
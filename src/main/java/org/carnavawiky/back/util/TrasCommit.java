@@ -0,0 +1,28 @@
+package org.carnavawiky.back.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Acciones sobre estado en memoria (cachés, índices, colas, ficheros) que solo deben ocurrir si
+ * la transacción en curso se confirma: un rollback no debe dejarlas aplicadas ni una lectura
+ * concurrente verlas antes que la BD. Fuera de transacción se ejecutan en el acto.
+ */
+public final class TrasCommit {
+
+    private TrasCommit() {
+    }
+
+    public static void ejecutar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.carnavawiky.back.config;
+
+import org.carnavawiky.back.dto.ConcursoRequest;
+import org.carnavawiky.back.dto.ConcursoResponse;
+import org.carnavawiky.back.dto.EdicionResponse;
+import org.carnavawiky.back.dto.ModoConteo;
+import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.mapper.ConcursoMapper;
+import org.carnavawiky.back.mapper.EdicionMapper;
+import org.carnavawiky.back.model.Concurso;
+import org.carnavawiky.back.model.Localidad;
+import org.carnavawiky.back.repository.ConcursoRepository;
+import org.carnavawiky.back.repository.EdicionRepository;
+import org.carnavawiky.back.repository.LocalidadRepository;
+import org.carnavawiky.back.repository.PremioRepository;
+import org.carnavawiky.back.service.CachesDependientes;
+import org.carnavawiky.back.service.ConcursoService;
+import org.carnavawiky.back.service.ConteoCache;
+import org.carnavawiky.back.service.EdicionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(classes = {CacheConfig.class, CachesDependientes.class, ConcursoService.class, EdicionService.class})
+@ImportAutoConfiguration(CacheAutoConfiguration.class)
+@TestPropertySource(properties = {
+        "spring.cache.type=jcache",
+        "spring.cache.jcache.config=classpath:ehcache.xml"
+})
+class CacheConfigTest {
+
+    @Autowired
+    private ConcursoService concursoService;
+
+    @Autowired
+    private EdicionService edicionService;
+
+    @Autowired
+    private CachesDependientes cachesDependientes;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @MockBean private ConcursoRepository concursoRepository;
+    @MockBean private EdicionRepository edicionRepository;
+    @MockBean private LocalidadRepository localidadRepository;
+    @MockBean private PremioRepository premioRepository;
+    @MockBean private ConcursoMapper concursoMapper;
+    @MockBean private EdicionMapper edicionMapper;
+    @MockBean private ConteoCache conteoCache;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCacheNames().forEach(nombre -> cacheManager.getCache(nombre).clear());
+
+        when(concursoRepository.findById(any())).thenAnswer(inv -> {
+            Concurso concurso = new Concurso();
+            concurso.setId(inv.getArgument(0));
+            return Optional.of(concurso);
+        });
+        when(concursoRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(localidadRepository.findById(any())).thenReturn(Optional.of(new Localidad()));
+        when(concursoMapper.toResponse(any())).thenAnswer(inv -> {
+            ConcursoResponse response = new ConcursoResponse();
+            response.setId(((Concurso) inv.getArgument(0)).getId());
+            return response;
+        });
+        when(edicionRepository.findAllResponses(any())).thenReturn(new SliceImpl<>(List.of(new EdicionResponse())));
+        when(concursoRepository.findAllResponses(any())).thenReturn(new SliceImpl<>(List.of(new ConcursoResponse())));
+        when(conteoCache.paginar(any(), any(), any(), any(), any()))
+                .thenAnswer(inv -> PageResponse.fromSlice(inv.getArgument(0), null, false));
+    }
+
+    @Test
+    @DisplayName("Debe leer de la caché las fichas por id y los listados (clave con orden incluido)")
+    void testLecturas_SeCachean() {
+        concursoService.obtenerConcursoPorId(1L);
+        concursoService.obtenerConcursoPorId(1L);
+        verify(concursoRepository, times(1)).findById(1L);
+
+        PageRequest porAnho = PageRequest.of(0, 10, Sort.by("anho"));
+        edicionService.obtenerTodasEdiciones(porAnho, null, ModoConteo.EXACTO);
+        edicionService.obtenerTodasEdiciones(porAnho, null, ModoConteo.EXACTO);
+        verify(edicionRepository, times(1)).findAllResponses(any());
+
+        // Otra ordenación es otra página
+        edicionService.obtenerTodasEdiciones(PageRequest.of(0, 10, Sort.by("id")), null, ModoConteo.EXACTO);
+        verify(edicionRepository, times(2)).findAllResponses(any());
+    }
+
+    @Test
+    @DisplayName("Al actualizar un concurso se desaloja solo su ficha y los listados que muestran su nombre")
+    void testActualizar_DesalojoPreciso() {
+        concursoService.obtenerConcursoPorId(1L);
+        concursoService.obtenerConcursoPorId(2L);
+        edicionService.obtenerTodasEdiciones(PageRequest.of(0, 10), null, ModoConteo.EXACTO);
+        // La edición 5 es del concurso 1; la 6, de otro
+        cacheManager.getCache(CacheConfig.EDICION_BY_ID).put(5L, new EdicionResponse());
+        cacheManager.getCache(CacheConfig.EDICION_BY_ID).put(6L, new EdicionResponse());
+        when(edicionRepository.findIdsByConcursoId(1L)).thenReturn(List.of(5L));
+
+        ConcursoRequest request = new ConcursoRequest();
+        request.setNombre("COAC");
+        request.setLocalidadId(1L);
+        concursoService.actualizarConcurso(1L, request);
+
+        assertNull(cacheManager.getCache(CacheConfig.CONCURSO_BY_ID).get(1L));
+        assertNotNull(cacheManager.getCache(CacheConfig.CONCURSO_BY_ID).get(2L));
+        // EdicionResponse incluye el nombre del concurso
+        assertNull(cacheManager.getCache(CacheConfig.EDICION_BY_ID).get(5L));
+        assertNotNull(cacheManager.getCache(CacheConfig.EDICION_BY_ID).get(6L));
+        edicionService.obtenerTodasEdiciones(PageRequest.of(0, 10), null, ModoConteo.EXACTO);
+        verify(edicionRepository, times(2)).findAllResponses(any());
+    }
+
+    @Test
+    @DisplayName("Si el nombre del concurso no cambia, las cachés de ediciones siguen valiendo")
+    void testActualizar_MismoNombre_NoDesalojaDependientes() {
+        edicionService.obtenerTodasEdiciones(PageRequest.of(0, 10), null, ModoConteo.EXACTO);
+        cacheManager.getCache(CacheConfig.EDICION_BY_ID).put(5L, new EdicionResponse());
+
+        // El concurso simulado no tiene nombre: la petición tampoco lo cambia
+        ConcursoRequest request = new ConcursoRequest();
+        request.setLocalidadId(1L);
+        concursoService.actualizarConcurso(1L, request);
+
+        assertNotNull(cacheManager.getCache(CacheConfig.EDICION_BY_ID).get(5L));
+        edicionService.obtenerTodasEdiciones(PageRequest.of(0, 10), null, ModoConteo.EXACTO);
+        verify(edicionRepository, times(1)).findAllResponses(any());
+        verify(edicionRepository, never()).findIdsByConcursoId(any());
+    }
+
+    @Test
+    @DisplayName("Al eliminar un concurso no se tocan las cachés de otras entidades")
+    void testEliminar_NoDesalojaDependientes() {
+        concursoService.obtenerConcursoPorId(1L);
+        concursoService.obtenerConcursoPorId(2L);
+        edicionService.obtenerTodasEdiciones(PageRequest.of(0, 10), null, ModoConteo.EXACTO);
+
+        concursoService.eliminarConcurso(1L);
+
+        assertNull(cacheManager.getCache(CacheConfig.CONCURSO_BY_ID).get(1L));
+        assertNotNull(cacheManager.getCache(CacheConfig.CONCURSO_BY_ID).get(2L));
+        edicionService.obtenerTodasEdiciones(PageRequest.of(0, 10), null, ModoConteo.EXACTO);
+        verify(edicionRepository, times(1)).findAllResponses(any());
+    }
+
+    @Test
+    @DisplayName("El listado de concursos lleva la versión en la clave: avanzarla deja de servir las páginas anteriores")
+    void testListadoConcursos_Versionado() {
+        PageRequest pagina = PageRequest.of(0, 10);
+        concursoService.obtenerTodosConcursos(pagina, null, ModoConteo.EXACTO);
+        concursoService.obtenerTodosConcursos(pagina, null, ModoConteo.EXACTO);
+        verify(concursoRepository, times(1)).findAllResponses(any());
+
+        // Fuera de una transacción se aplica en el acto (dentro, tras el commit)
+        cachesDependientes.avanzarVersion(CacheConfig.CONCURSOS_LIST);
+
+        concursoService.obtenerTodosConcursos(pagina, null, ModoConteo.EXACTO);
+        verify(concursoRepository, times(2)).findAllResponses(any());
+    }
+}
@@ -0,0 +1,95 @@
+package org.carnavawiky.back.config;
+
+import org.carnavawiky.back.dto.LocalidadResponse;
+import org.carnavawiky.back.dto.PageResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Carga ehcache.xml / ehcache-disk.xml con el proveedor JCache real (sin contexto de Spring):
+ * todas las regiones de CacheConfig deben existir y los valores cacheados deben sobrevivir
+ * a la serialización de los niveles off-heap y disco.
+ */
+class EhcacheConfiguracionTest {
+
+    private CacheManager cacheManager;
+
+    @AfterEach
+    void tearDown() {
+        if (cacheManager != null) {
+            cacheManager.close();
+        }
+        System.clearProperty("carnavawiky.cache.dir");
+    }
+
+    @Test
+    @DisplayName("ehcache.xml define todas las regiones y guarda las páginas en off-heap")
+    void testConfiguracionPorDefecto() throws Exception {
+        cacheManager = abrir("ehcache.xml");
+
+        comprobarRegiones();
+        comprobarSerializacion();
+    }
+
+    @Test
+    @DisplayName("ehcache-disk.xml añade el nivel de disco en el directorio configurado")
+    void testConfiguracionConDisco(@TempDir Path directorio) throws Exception {
+        System.setProperty("carnavawiky.cache.dir", directorio.toString());
+        cacheManager = abrir("ehcache-disk.xml");
+
+        comprobarRegiones();
+        comprobarSerializacion();
+        try (var ficheros = Files.list(directorio)) {
+            assertTrue(ficheros.findAny().isPresent(), "El nivel de disco debe crear su almacén en el directorio");
+        }
+    }
+
+    private CacheManager abrir(String fichero) throws Exception {
+        CachingProvider proveedor = Caching.getCachingProvider();
+        return proveedor.getCacheManager(getClass().getResource("/" + fichero).toURI(), getClass().getClassLoader());
+    }
+
+    private void comprobarRegiones() throws IllegalAccessException {
+        for (Field campo : CacheConfig.class.getDeclaredFields()) {
+            if (Modifier.isStatic(campo.getModifiers()) && campo.getType() == String.class
+                    && !campo.getName().startsWith("CLAVE_LISTADO")) {
+                String region = (String) campo.get(null);
+                assertNotNull(cacheManager.getCache(region), "Falta la región " + region);
+            }
+        }
+    }
+
+    private void comprobarSerializacion() {
+        LocalidadResponse cadiz = new LocalidadResponse(1L, "Cádiz");
+        PageResponse<LocalidadResponse> pagina = PageResponse.<LocalidadResponse>builder()
+                .content(List.of(cadiz))
+                .pageNumber(0)
+                .pageSize(20)
+                .totalElements(1L)
+                .build();
+
+        Cache<Object, Object> cache = cacheManager.getCache(CacheConfig.CONCURSOS_LIST);
+        // Más entradas que el nivel heap para forzar el paso a off-heap
+        for (int i = 0; i < 500; i++) {
+            cache.put("clave_" + i, pagina);
+        }
+        Object leida = cache.get("clave_0");
+        assertEquals(pagina, leida);
+        assertEquals(Arrays.asList(cadiz), ((PageResponse<?>) leida).getContent());
+    }
+}
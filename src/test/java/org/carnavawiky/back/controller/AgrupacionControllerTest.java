@@ -10,6 +10,7 @@ import org.carnavawiky.back.dto.PageResponse;
 import org.carnavawiky.back.model.Modalidad;
 import org.carnavawiky.back.repository.RoleRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.carnavawiky.back.security.JwtService;
 import org.carnavawiky.back.service.AgrupacionService;
 import org.junit.jupiter.api.BeforeEach;
@@ -61,6 +62,9 @@ class AgrupacionControllerTest {
     @MockBean
     private UserDetailsService userDetailsService;
 
+    @MockBean
+    private EstadoUsuarioCache estadoUsuarioCache;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -125,7 +129,7 @@ class AgrupacionControllerTest {
                 .totalElements(1L)
                 .build();
 
-        when(agrupacionService.obtenerTodasAgrupaciones(any(Pageable.class), any())).thenReturn(pageResponse);
+        when(agrupacionService.obtenerTodasAgrupaciones(any(Pageable.class), any(), any())).thenReturn(pageResponse);
 
         mockMvc.perform(get("/api/agrupaciones"))
                 .andExpect(status().isOk())
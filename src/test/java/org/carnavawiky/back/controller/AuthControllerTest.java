@@ -11,6 +11,7 @@ import org.carnavawiky.back.dto.auth.TokenResponse;
 import org.carnavawiky.back.model.Usuario;
 import org.carnavawiky.back.repository.RoleRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.carnavawiky.back.security.JwtService;
 import org.carnavawiky.back.service.AuthService;
 import org.junit.jupiter.api.BeforeEach;
@@ -59,6 +60,9 @@ class AuthControllerTest {
     @MockBean
     private UserDetailsService userDetailsService;
 
+    @MockBean
+    private EstadoUsuarioCache estadoUsuarioCache;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -0,0 +1,105 @@
+package org.carnavawiky.back.controller;
+
+import org.carnavawiky.back.config.FileStorageProperties;
+import org.carnavawiky.back.config.SecurityConfig;
+import org.carnavawiky.back.config.WebConfig;
+import org.carnavawiky.back.dto.CacheEstadisticasResponse;
+import org.carnavawiky.back.exception.ResourceNotFoundException;
+import org.carnavawiky.back.repository.RoleRepository;
+import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
+import org.carnavawiky.back.security.JwtService;
+import org.carnavawiky.back.service.CacheEstadisticasService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@Import(SecurityConfig.class)
+@WebMvcTest(
+        controllers = CacheAdminController.class,
+        excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = WebConfig.class),
+        properties = {
+                "file.upload.location=test-uploads",
+                "app.security.seed-enabled=false"
+        }
+)
+class CacheAdminControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CacheEstadisticasService cacheEstadisticasService;
+
+    // Mocks requeridos por el contexto de seguridad
+    @MockBean private RoleRepository roleRepository;
+    @MockBean private UsuarioRepository usuarioRepository;
+    @MockBean private PasswordEncoder passwordEncoder;
+    @MockBean private FileStorageProperties fileStorageProperties;
+    @MockBean private JwtService jwtService;
+    @MockBean private UserDetailsService userDetailsService;
+    @MockBean private EstadoUsuarioCache estadoUsuarioCache;
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("ADMIN obtiene las estadísticas de todas las regiones")
+    void testObtenerEstadisticas_Admin() throws Exception {
+        when(cacheEstadisticasService.obtenerEstadisticas()).thenReturn(List.of(
+                CacheEstadisticasResponse.builder().nombre("concursos_list").aciertos(9).fallos(1).porcentajeAciertos(90f).build()));
+
+        mockMvc.perform(get("/api/admin/caches"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].nombre", is("concursos_list")))
+                .andExpect(jsonPath("$[0].aciertos", is(9)))
+                .andExpect(jsonPath("$[0].porcentajeAciertos", is(90.0)));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("Un USER no puede ver las estadísticas")
+    void testObtenerEstadisticas_User_Forbidden() throws Exception {
+        mockMvc.perform(get("/api/admin/caches"))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(cacheEstadisticasService);
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("Una región inexistente devuelve 404")
+    void testObtenerEstadisticas_RegionInexistente() throws Exception {
+        when(cacheEstadisticasService.obtenerEstadisticas("nada"))
+                .thenThrow(new ResourceNotFoundException("Cache", "nombre", "nada"));
+
+        mockMvc.perform(get("/api/admin/caches/nada"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("ADMIN puede reiniciar los contadores")
+    void testReiniciarEstadisticas() throws Exception {
+        mockMvc.perform(delete("/api/admin/caches/estadisticas").with(csrf()))
+                .andExpect(status().isNoContent());
+
+        verify(cacheEstadisticasService).reiniciarEstadisticas();
+    }
+}
@@ -6,11 +6,20 @@ import org.carnavawiky.back.config.SecurityConfig;
 import org.carnavawiky.back.config.WebConfig;
 import org.carnavawiky.back.dto.ComentarioRequest;
 import org.carnavawiky.back.dto.ComentarioResponse;
+import org.carnavawiky.back.dto.HiloComentarioResponse;
+import org.carnavawiky.back.dto.ModeracionLoteRequest;
+import org.carnavawiky.back.dto.ModeracionLoteResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.dto.SliceResponse;
+import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.repository.RoleRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.carnavawiky.back.security.JwtService;
 import org.carnavawiky.back.service.ComentarioService;
+import org.carnavawiky.back.service.IngestaComentarios;
+import org.carnavawiky.back.service.ModeracionComentarios;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -28,8 +37,12 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.List;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -47,6 +60,12 @@ class ComentarioControllerTest {
     @MockBean
     private ComentarioService comentarioService;
 
+    @MockBean
+    private ModeracionComentarios moderacionComentarios;
+
+    @MockBean
+    private IngestaComentarios ingestaComentarios;
+
     // Mocks necesarios para el contexto de seguridad y configuración
     @MockBean
     private FileStorageProperties fileStorageProperties;
@@ -60,6 +79,9 @@ class ComentarioControllerTest {
     @MockBean
     private UserDetailsService userDetailsService;
 
+    @MockBean
+    private EstadoUsuarioCache estadoUsuarioCache;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -99,6 +121,57 @@ class ComentarioControllerTest {
                 .andExpect(jsonPath("$.contenido").value("¡Qué gran actuación!"));
     }
 
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("Con la ingesta diferida activa debe encolar el comentario y responder 202")
+    void testCrearComentario_IngestaDiferida() throws Exception {
+        when(ingestaComentarios.activa()).thenReturn(true);
+
+        mockMvc.perform(post("/api/comentarios")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(comentarioRequest)))
+                .andExpect(status().isAccepted());
+
+        verify(ingestaComentarios).encolar(any(ComentarioRequest.class));
+        verifyNoInteractions(comentarioService);
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("Con la ingesta diferida activa una agrupación inexistente responde 404, no 202")
+    void testCrearComentario_IngestaDiferida_AgrupacionInexistente() throws Exception {
+        when(ingestaComentarios.activa()).thenReturn(true);
+        doThrow(new ResourceNotFoundException("Agrupacion", "id", 10L))
+                .when(ingestaComentarios).encolar(any(ComentarioRequest.class));
+
+        mockMvc.perform(post("/api/comentarios")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(comentarioRequest)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("Debe listar hilos de una agrupación con sus respuestas")
+    void testListarHilos() throws Exception {
+        ComentarioResponse respuesta = new ComentarioResponse();
+        respuesta.setId(2L);
+        respuesta.setPadreId(1L);
+        respuesta.setProfundidad(1);
+        SliceResponse<HiloComentarioResponse> hilos = SliceResponse.<HiloComentarioResponse>builder()
+                .content(List.of(HiloComentarioResponse.builder().comentario(comentarioResponse).respuestas(List.of(respuesta)).build()))
+                .size(1)
+                .build();
+        when(comentarioService.obtenerHilosPorCursor(eq(50L), any(Pageable.class), eq(null), eq(2))).thenReturn(hilos);
+
+        mockMvc.perform(get("/api/comentarios/hilos").param("agrupacionId", "50").param("profundidad", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].comentario.id").value(1L))
+                .andExpect(jsonPath("$.content[0].respuestas[0].padreId").value(1L));
+    }
+
     // =======================================================
     // 2. OBTENER TODOS (GET) - Abierto a USER/ADMIN
     // =======================================================
@@ -111,13 +184,56 @@ class ComentarioControllerTest {
                 .totalElements(1L)
                 .build();
 
-        when(comentarioService.obtenerTodosComentarios(any(Pageable.class), any())).thenReturn(pageResponse);
+        when(comentarioService.obtenerTodosComentarios(any(Pageable.class), any(), any())).thenReturn(pageResponse);
 
         mockMvc.perform(get("/api/comentarios"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.content[0].contenido").value("¡Qué gran actuación!"));
     }
 
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("Debe pasar el modo de conteo al servicio y rechazar valores desconocidos")
+    void testListarComentarios_ModoConteo() throws Exception {
+        PageResponse<ComentarioResponse> pageResponse = PageResponse.<ComentarioResponse>builder()
+                .content(List.of(comentarioResponse))
+                .isLast(false)
+                .build();
+
+        when(comentarioService.obtenerTodosComentarios(any(Pageable.class), any(), eq(ModoConteo.OMITIDO)))
+                .thenReturn(pageResponse);
+
+        mockMvc.perform(get("/api/comentarios").param("count", "OMITIDO"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements").doesNotExist())
+                .andExpect(jsonPath("$.last").value(false));
+
+        mockMvc.perform(get("/api/comentarios").param("count", "TODOS"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(containsString("count")));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("Debe listar comentarios por cursor devolviendo el siguiente cursor")
+    void testListarComentarios_PorCursor() throws Exception {
+        SliceResponse<ComentarioResponse> slice = SliceResponse.<ComentarioResponse>builder()
+                .content(List.of(comentarioResponse))
+                .size(1)
+                .nextCursor("abc")
+                .hasNext(true)
+                .build();
+
+        when(comentarioService.obtenerComentariosPorCursor(any(Pageable.class), eq("50"), eq("xyz"))).thenReturn(slice);
+
+        mockMvc.perform(get("/api/comentarios/scroll").param("search", "50").param("cursor", "xyz").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].contenido").value("¡Qué gran actuación!"))
+                .andExpect(jsonPath("$.nextCursor").value("abc"))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+    }
+
     // =======================================================
     // 3. OBTENER POR ID (GET)
     // =======================================================
@@ -194,6 +310,70 @@ class ComentarioControllerTest {
                 .andExpect(status().isForbidden());
     }
 
+    // =======================================================
+    // COLA DE MODERACIÓN Y MODERACIÓN EN LOTE - Solo ADMIN
+    // =======================================================
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("Debe listar la cola de pendientes por cursor")
+    void testObtenerPendientes_Ok() throws Exception {
+        SliceResponse<ComentarioResponse> slice = SliceResponse.<ComentarioResponse>builder()
+                .content(List.of(comentarioResponse)).size(20).hasNext(false).build();
+        when(comentarioService.obtenerPendientesPorCursor(any(Pageable.class), eq("abc"))).thenReturn(slice);
+
+        mockMvc.perform(get("/api/comentarios/pendientes").param("cursor", "abc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(1));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("Debe devolver 200 si se aprueban todos y 207 con el detalle si alguno no")
+    void testAprobarComentarios_Lote() throws Exception {
+        when(moderacionComentarios.aprobar(List.of(1L, 2L))).thenReturn(List.of(
+                ModeracionLoteResponse.builder().id(1L).estado(200).build(),
+                ModeracionLoteResponse.builder().id(2L).estado(409).error("El comentario ya estaba aprobado").build()));
+        when(moderacionComentarios.rechazar(List.of(3L))).thenReturn(List.of(
+                ModeracionLoteResponse.builder().id(3L).estado(200).build()));
+
+        mockMvc.perform(post("/api/comentarios/aprobar")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ModeracionLoteRequest(List.of(1L, 2L)))))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$[1].estado").value(409));
+
+        mockMvc.perform(post("/api/comentarios/rechazar")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ModeracionLoteRequest(List.of(3L)))))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("Debe denegar la moderación en lote y la cola a un USER")
+    void testModeracionLote_User_Forbidden() throws Exception {
+        mockMvc.perform(post("/api/comentarios/aprobar")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ModeracionLoteRequest(List.of(1L)))))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/comentarios/pendientes"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("Debe devolver 400 si el lote no trae ids")
+    void testAprobarComentarios_SinIds() throws Exception {
+        mockMvc.perform(post("/api/comentarios/aprobar")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ModeracionLoteRequest(List.of()))))
+                .andExpect(status().isBadRequest());
+    }
+
     // =======================================================
     // 7. VALIDACIÓN (400 BAD REQUEST)
     // =======================================================
@@ -10,6 +10,7 @@ import org.carnavawiky.back.dto.PageResponse;
 import org.carnavawiky.back.model.RolComponente;
 import org.carnavawiky.back.repository.RoleRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.carnavawiky.back.security.JwtService;
 import org.carnavawiky.back.service.ComponenteService;
 import org.junit.jupiter.api.BeforeEach;
@@ -61,6 +62,9 @@ class ComponenteControllerTest {
     @MockBean
     private UserDetailsService userDetailsService;
 
+    @MockBean
+    private EstadoUsuarioCache estadoUsuarioCache;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -122,7 +126,7 @@ class ComponenteControllerTest {
                 .totalElements(1L)
                 .build();
 
-        when(componenteService.obtenerTodosComponentes(any(Pageable.class), any())).thenReturn(pageResponse);
+        when(componenteService.obtenerTodosComponentes(any(Pageable.class), any(), any())).thenReturn(pageResponse);
 
         mockMvc.perform(get("/api/componentes"))
                 .andExpect(status().isOk())
@@ -9,6 +9,7 @@ import org.carnavawiky.back.dto.ConcursoResponse;
 import org.carnavawiky.back.dto.PageResponse;
 import org.carnavawiky.back.repository.RoleRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.carnavawiky.back.security.JwtService;
 import org.carnavawiky.back.service.ConcursoService;
 import org.junit.jupiter.api.BeforeEach;
@@ -54,6 +55,9 @@ public class ConcursoControllerTest {
     private FileStorageProperties fileStorageProperties;
     @MockBean
     private UserDetailsService userDetailsService;
+
+    @MockBean
+    private EstadoUsuarioCache estadoUsuarioCache;
     @MockBean
     private UsuarioRepository usuarioRepository;
     @MockBean
@@ -130,7 +134,7 @@ public class ConcursoControllerTest {
                 .totalElements(1L)
                 .build();
 
-        when(concursoService.obtenerTodosConcursos(any(Pageable.class), any()))
+        when(concursoService.obtenerTodosConcursos(any(Pageable.class), any(), any()))
                 .thenReturn(pageResponse);
 
         mockMvc.perform(get("/api/concursos")
@@ -9,6 +9,7 @@ import org.carnavawiky.back.dto.EdicionResponse;
 import org.carnavawiky.back.dto.PageResponse;
 import org.carnavawiky.back.repository.RoleRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.carnavawiky.back.security.JwtService;
 import org.carnavawiky.back.service.EdicionService;
 import org.junit.jupiter.api.BeforeEach;
@@ -54,6 +55,9 @@ public class EdicionControllerTest {
     private JwtService jwtService;
     @MockBean
     private UserDetailsService userDetailsService;
+
+    @MockBean
+    private EstadoUsuarioCache estadoUsuarioCache;
     @MockBean
     private UsuarioRepository usuarioRepository;
     @MockBean
@@ -111,7 +115,7 @@ public class EdicionControllerTest {
                 .totalElements(1L)
                 .build();
 
-        when(edicionService.obtenerTodasEdiciones(any(Pageable.class), any()))
+        when(edicionService.obtenerTodasEdiciones(any(Pageable.class), any(), any()))
                 .thenReturn(pageResponse);
 
         // ACT & ASSERT
@@ -2,6 +2,7 @@ package org.carnavawiky.back.controller;
 
 import org.carnavawiky.back.config.SecurityConfig;
 import org.carnavawiky.back.config.WebConfig;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.carnavawiky.back.security.JwtService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -33,6 +34,9 @@ class HealthControllerTest {
     @MockBean
     private UserDetailsService userDetailsService;
 
+    @MockBean
+    private EstadoUsuarioCache estadoUsuarioCache;
+
     // Mockeamos BuildProperties ya que no se carga automáticamente en WebMvcTest
     @MockBean
     private BuildProperties buildProperties;
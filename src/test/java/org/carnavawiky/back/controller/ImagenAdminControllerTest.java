@@ -0,0 +1,135 @@
+package org.carnavawiky.back.controller;
+
+import org.carnavawiky.back.config.FileStorageProperties;
+import org.carnavawiky.back.config.SecurityConfig;
+import org.carnavawiky.back.config.WebConfig;
+import org.carnavawiky.back.dto.AlmacenImagenesResponse;
+import org.carnavawiky.back.dto.ReconciliacionImagenesResponse;
+import org.carnavawiky.back.repository.RoleRepository;
+import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
+import org.carnavawiky.back.security.JwtService;
+import org.carnavawiky.back.service.ImagenService;
+import org.carnavawiky.back.service.MigracionAlmacenImagenes;
+import org.carnavawiky.back.service.ReconciliadorImagenes;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import java.util.List;
+import java.util.Optional;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Import(SecurityConfig.class)
+@WebMvcTest(
+        controllers = ImagenAdminController.class,
+        excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = WebConfig.class),
+        properties = {
+                "file.upload.location=test-uploads",
+                "app.security.seed-enabled=false"
+        }
+)
+class ImagenAdminControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ImagenService imagenService;
+
+    @MockBean
+    private MigracionAlmacenImagenes migracionAlmacenImagenes;
+
+    @MockBean
+    private ReconciliadorImagenes reconciliadorImagenes;
+
+    // Mocks requeridos por el contexto de seguridad
+    @MockBean private RoleRepository roleRepository;
+    @MockBean private UsuarioRepository usuarioRepository;
+    @MockBean private PasswordEncoder passwordEncoder;
+    @MockBean private FileStorageProperties fileStorageProperties;
+    @MockBean private JwtService jwtService;
+    @MockBean private UserDetailsService userDetailsService;
+    @MockBean private EstadoUsuarioCache estadoUsuarioCache;
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("ADMIN lanza la regeneración de variantes en segundo plano")
+    void testRegenerarVariantes_Admin() throws Exception {
+        mockMvc.perform(post("/api/admin/imagenes/variantes").with(csrf()))
+                .andExpect(status().isAccepted());
+
+        verify(imagenService).regenerarVariantes();
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("Un USER no puede lanzar la regeneración")
+    void testRegenerarVariantes_User_Forbidden() throws Exception {
+        mockMvc.perform(post("/api/admin/imagenes/variantes").with(csrf()))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(imagenService);
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("ADMIN lanza la migración del almacén y consulta su verificación")
+    void testMigrarYVerificarAlmacen_Admin() throws Exception {
+        when(migracionAlmacenImagenes.verificar()).thenReturn(AlmacenImagenesResponse.builder()
+                .enEsquemaFragmentado(10).enEsquemaPlano(2).perdidos(1).ficherosPerdidos(List.of("uuid-1.jpg")).build());
+
+        mockMvc.perform(post("/api/admin/imagenes/almacen/migracion").with(csrf()))
+                .andExpect(status().isAccepted());
+        verify(migracionAlmacenImagenes).migrarEnSegundoPlano();
+
+        mockMvc.perform(get("/api/admin/imagenes/almacen"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.enEsquemaPlano").value(2))
+                .andExpect(jsonPath("$.ficherosPerdidos[0]").value("uuid-1.jpg"));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("Un USER no puede migrar el almacén")
+    void testMigrarAlmacen_User_Forbidden() throws Exception {
+        mockMvc.perform(post("/api/admin/imagenes/almacen/migracion").with(csrf()))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(migracionAlmacenImagenes);
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("ADMIN lanza la reconciliación y consulta el último informe")
+    void testReconciliarAlmacen_Admin() throws Exception {
+        when(reconciliadorImagenes.obtenerUltimoInforme()).thenReturn(Optional.empty());
+        mockMvc.perform(get("/api/admin/imagenes/almacen/reconciliacion"))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(post("/api/admin/imagenes/almacen/reconciliacion").with(csrf()))
+                .andExpect(status().isAccepted());
+        verify(reconciliadorImagenes).reconciliarEnSegundoPlano();
+
+        when(reconciliadorImagenes.obtenerUltimoInforme()).thenReturn(Optional.of(
+                ReconciliacionImagenesResponse.builder().ficherosHuerfanos(3).ficherosBorrados(3).build()));
+        mockMvc.perform(get("/api/admin/imagenes/almacen/reconciliacion"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ficherosHuerfanos").value(3));
+    }
+}
@@ -3,11 +3,16 @@ package org.carnavawiky.back.controller;
 import org.carnavawiky.back.config.FileStorageProperties;
 import org.carnavawiky.back.config.SecurityConfig;
 import org.carnavawiky.back.config.WebConfig;
+import org.carnavawiky.back.dto.ImagenLoteResponse;
 import org.carnavawiky.back.dto.ImagenResponse;
+import org.carnavawiky.back.dto.SubidaImagenResponse;
 import org.carnavawiky.back.repository.RoleRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.carnavawiky.back.security.JwtService;
 import org.carnavawiky.back.service.ImagenService;
+import org.carnavawiky.back.service.ServidorImagenes;
+import org.carnavawiky.back.service.SubidasReanudables;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -23,6 +28,7 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.InputStream;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.*;
@@ -40,14 +46,23 @@ public class ImagenControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @MockBean
+    private SubidasReanudables subidasReanudables;
+
     @MockBean
     private ImagenService imagenService;
 
+    @MockBean
+    private ServidorImagenes servidorImagenes;
+
     // Mocks de infraestructura de seguridad obligatorios
     @MockBean
     private JwtService jwtService;
     @MockBean
     private UserDetailsService userDetailsService;
+
+    @MockBean
+    private EstadoUsuarioCache estadoUsuarioCache;
     @MockBean
     private UsuarioRepository usuarioRepository;
     @MockBean
@@ -91,6 +106,78 @@ public class ImagenControllerTest {
                 .andExpect(jsonPath("$.id").value(10L));
     }
 
+    @Test
+    @DisplayName("POST /api/imagenes con cuerpo image/* - ADMIN sube imagen sin multipart")
+    @WithMockUser(roles = "ADMIN")
+    void testSubirImagenDirecta_Admin_Ok() throws Exception {
+        when(imagenService.subirImagen(eq(1L), any(InputStream.class), eq("cartel.png"), eq(false))).thenReturn(imagenResponse);
+
+        mockMvc.perform(post("/api/imagenes")
+                        .contentType(MediaType.IMAGE_PNG)
+                        .content("image-data".getBytes())
+                        .param("agrupacionId", "1")
+                        .param("nombre", "cartel.png")
+                        .with(csrf()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(10L));
+    }
+
+    @Test
+    @DisplayName("POST /api/imagenes/lote - 207 con el resultado de cada fichero si alguno falla")
+    @WithMockUser(roles = "ADMIN")
+    void testSubirImagenes_Lote_Parcial() throws Exception {
+        List<ImagenLoteResponse> resultados = List.of(
+                ImagenLoteResponse.builder().indice(0).nombreOriginal("a.png").estado(201).imagen(imagenResponse).build(),
+                ImagenLoteResponse.builder().indice(1).nombreOriginal("b.png").estado(400).error("La imagen está vacía").build());
+        when(imagenService.subirImagenes(eq(1L), argThat(archivos -> archivos.size() == 2), eq(0))).thenReturn(resultados);
+
+        mockMvc.perform(multipart("/api/imagenes/lote")
+                        .file(new MockMultipartFile("archivos", "a.png", MediaType.IMAGE_PNG_VALUE, "a".getBytes()))
+                        .file(new MockMultipartFile("archivos", "b.png", MediaType.IMAGE_PNG_VALUE, new byte[0]))
+                        .param("agrupacionId", "1")
+                        .param("indicePortada", "0")
+                        .with(csrf()))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$[0].imagen.id").value(10L))
+                .andExpect(jsonPath("$[1].estado").value(400));
+    }
+
+    @Test
+    @DisplayName("Subida reanudable: crear la sesión, enviar un trozo y finalizar")
+    @WithMockUser(roles = "ADMIN")
+    void testSubidaReanudable_Admin_Ok() throws Exception {
+        SubidaImagenResponse creada = SubidaImagenResponse.builder().id("abc").tamanoBytes(4L).recibidos(0L).build();
+        SubidaImagenResponse tras = SubidaImagenResponse.builder().id("abc").tamanoBytes(4L).recibidos(4L).build();
+        when(subidasReanudables.crear(argThat(r -> r.getTamanoBytes() == 4L && r.getAgrupacionId() == 1L))).thenReturn(creada);
+        when(subidasReanudables.escribir(eq("abc"), eq(0L), any(InputStream.class))).thenReturn(tras);
+        when(subidasReanudables.finalizar("abc")).thenReturn(imagenResponse);
+
+        mockMvc.perform(post("/api/imagenes/subidas")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"agrupacionId\":1,\"nombre\":\"cartel.jpg\",\"tamanoBytes\":4}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "/api/imagenes/subidas/abc"));
+
+        mockMvc.perform(put("/api/imagenes/subidas/abc")
+                        .param("offset", "0")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content("data".getBytes()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.recibidos").value(4));
+
+        mockMvc.perform(post("/api/imagenes/subidas/abc/finalizar"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(10L));
+    }
+
+    @Test
+    @DisplayName("El estado de una subida reanudable no es público")
+    void testSubidaReanudable_Anonimo_Prohibido() throws Exception {
+        mockMvc.perform(get("/api/imagenes/subidas/abc"))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(subidasReanudables);
+    }
+
     @Test
     @DisplayName("GET /api/imagenes/agrupacion/{id} - Lista imágenes de una agrupación")
     @WithMockUser(roles = "USER")
@@ -102,6 +189,28 @@ public class ImagenControllerTest {
                 .andExpect(jsonPath("$[0].agrupacionId").value(1L));
     }
 
+    @Test
+    @DisplayName("GET /api/imagenes/{id}/variantes/{ancho} - Redirige a la copia reducida (público)")
+    void testObtenerVariante_Redirige() throws Exception {
+        when(imagenService.obtenerUrlVariante(10L, 480)).thenReturn("/api/imagenes/variantes/abc_480.jpg");
+
+        mockMvc.perform(get("/api/imagenes/10/variantes/480"))
+                .andExpect(status().isFound())
+                .andExpect(header().string("Location", "/api/imagenes/variantes/abc_480.jpg"));
+    }
+
+    @Test
+    @DisplayName("GET /api/imagenes/{fichero} - Delega el envío en ServidorImagenes (público)")
+    void testServirImagen_Publico() throws Exception {
+        mockMvc.perform(get("/api/imagenes/abc.jpg").header("Range", "bytes=0-99"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/imagenes/variantes/abc_480.jpg"))
+                .andExpect(status().isOk());
+
+        verify(servidorImagenes).servirOriginal(eq("abc.jpg"), any(), any());
+        verify(servidorImagenes).servirVariante(eq("abc_480.jpg"), any(), any());
+    }
+
     @Test
     @DisplayName("DELETE /api/imagenes/{id} - ADMIN elimina imagen")
     @WithMockUser(roles = "ADMIN")
@@ -3,6 +3,7 @@ package org.carnavawiky.back.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.carnavawiky.back.config.FileStorageProperties;
 import org.carnavawiky.back.config.SecurityConfig;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.carnavawiky.back.security.JwtService;
 import org.carnavawiky.back.dto.LocalidadRequest;
 import org.carnavawiky.back.dto.LocalidadResponse;
@@ -84,6 +85,9 @@ class LocalidadControllerTest {
     @MockBean
     private UserDetailsService userDetailsService;
 
+    @MockBean
+    private EstadoUsuarioCache estadoUsuarioCache;
+
     // Opcional, para evitar que Spring intente inicializar la DB:
     @MockBean
     private DataSource dataSource;
@@ -156,14 +160,14 @@ class LocalidadControllerTest {
                 .totalPages(1)
                 .build();
 
-        when(localidadService.obtenerTodasLocalidades(any(), eq(null))).thenReturn(pageResponse);
+        when(localidadService.obtenerTodasLocalidades(any(), eq(null), any())).thenReturn(pageResponse);
 
         // ACT & ASSERT
         mockMvc.perform(get(APIBASE))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.totalElements", is(1)));
 
-        verify(localidadService, times(1)).obtenerTodasLocalidades(any(), eq(null));
+        verify(localidadService, times(1)).obtenerTodasLocalidades(any(), eq(null), any());
     }
 
     // =======================================================
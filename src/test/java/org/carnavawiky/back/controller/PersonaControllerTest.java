@@ -9,6 +9,7 @@ import org.carnavawiky.back.dto.PersonaRequest;
 import org.carnavawiky.back.dto.PersonaResponse;
 import org.carnavawiky.back.repository.RoleRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.carnavawiky.back.security.JwtService;
 import org.carnavawiky.back.service.PersonaService;
 import org.junit.jupiter.api.BeforeEach;
@@ -60,6 +61,7 @@ class PersonaControllerTest {
     // Mocks necesarios para el contexto de seguridad
     @MockBean private JwtService jwtService;
     @MockBean private UserDetailsService userDetailsService;
+    @MockBean private EstadoUsuarioCache estadoUsuarioCache;
     @MockBean private UsuarioRepository usuarioRepository;
     @MockBean private RoleRepository roleRepository;
     @MockBean private PasswordEncoder passwordEncoder;
@@ -124,7 +126,7 @@ class PersonaControllerTest {
                 .totalElements(1L)
                 .build();
 
-        when(personaService.obtenerTodasPersonas(any(Pageable.class), any()))
+        when(personaService.obtenerTodasPersonas(any(Pageable.class), any(), any()))
                 .thenReturn(pageResponse);
 
         mockMvc.perform(get("/api/personas"))
@@ -242,7 +244,7 @@ class PersonaControllerTest {
                 .build();
 
         // Verificamos que el servicio reciba el String de búsqueda "Juan"
-        when(personaService.obtenerTodasPersonas(any(Pageable.class), eq("Juan")))
+        when(personaService.obtenerTodasPersonas(any(Pageable.class), eq("Juan"), any()))
                 .thenReturn(pageResponse);
 
         mockMvc.perform(get("/api/personas")
@@ -10,6 +10,7 @@ import org.carnavawiky.back.dto.PremioResponse;
 import org.carnavawiky.back.model.Modalidad;
 import org.carnavawiky.back.repository.RoleRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.carnavawiky.back.security.JwtService;
 import org.carnavawiky.back.service.PremioService;
 import org.junit.jupiter.api.BeforeEach;
@@ -61,6 +62,9 @@ class PremioControllerTest {
     @MockBean
     private UserDetailsService userDetailsService;
 
+    @MockBean
+    private EstadoUsuarioCache estadoUsuarioCache;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -121,7 +125,7 @@ class PremioControllerTest {
                 .totalElements(1L)
                 .build();
 
-        when(premioService.obtenerTodosPremios(any(Pageable.class), any())).thenReturn(pageResponse);
+        when(premioService.obtenerTodosPremios(any(Pageable.class), any(), any())).thenReturn(pageResponse);
 
         mockMvc.perform(get("/api/premios"))
                 .andExpect(status().isOk())
@@ -7,6 +7,7 @@ import org.carnavawiky.back.config.WebConfig;
 import org.carnavawiky.back.model.Texto;
 import org.carnavawiky.back.repository.RoleRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.carnavawiky.back.security.JwtService;
 import org.carnavawiky.back.service.TextoService;
 import org.junit.jupiter.api.BeforeEach;
@@ -59,6 +60,9 @@ class TextoControllerTest {
     @MockBean
     private UserDetailsService userDetailsService;
 
+    @MockBean
+    private EstadoUsuarioCache estadoUsuarioCache;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -10,6 +10,7 @@ import org.carnavawiky.back.dto.UsuarioResponse;
 import org.carnavawiky.back.exception.GlobalExceptionHandler;
 import org.carnavawiky.back.repository.RoleRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.carnavawiky.back.security.JwtService;
 import org.carnavawiky.back.service.UsuarioService;
 import org.junit.jupiter.api.BeforeEach;
@@ -69,6 +70,9 @@ class UsuarioControllerTest {
     @MockBean
     private UserDetailsService userDetailsService;
 
+    @MockBean
+    private EstadoUsuarioCache estadoUsuarioCache;
+
     @MockBean
     private PasswordEncoder passwordEncoder;
 
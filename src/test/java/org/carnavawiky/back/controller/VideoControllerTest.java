@@ -8,6 +8,7 @@ import org.carnavawiky.back.dto.VideoRequest;
 import org.carnavawiky.back.dto.VideoResponse;
 import org.carnavawiky.back.repository.RoleRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.carnavawiky.back.security.JwtService;
 import org.carnavawiky.back.service.VideoService;
 import org.junit.jupiter.api.BeforeEach;
@@ -58,6 +59,9 @@ class VideoControllerTest {
     @MockBean
     private UserDetailsService userDetailsService;
 
+    @MockBean
+    private EstadoUsuarioCache estadoUsuarioCache;
+
     @Autowired
     private ObjectMapper objectMapper;
 
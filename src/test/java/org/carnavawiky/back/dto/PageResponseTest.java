@@ -4,6 +4,8 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 
 import java.util.List;
 
@@ -65,6 +67,40 @@ class PageResponseTest {
         assertFalse(response.isLast());
     }
 
+    @Test
+    @DisplayName("Debe crear un PageResponse desde un Slice con total cacheado")
+    void testFromSlice() {
+        // Página 1 de tamaño 2 con más filas detrás; el total cacheado (3) se ha quedado corto
+        SliceImpl<String> slice = new SliceImpl<>(List.of("C", "D"), PageRequest.of(1, 2), true);
+
+        PageResponse<String> response = PageResponse.fromSlice(slice, 3L, true);
+
+        assertEquals(List.of("C", "D"), response.getContent());
+        assertEquals(1, response.getPageNumber());
+        assertEquals(5L, response.getTotalElements());
+        assertEquals(3, response.getTotalPages());
+        assertTrue(response.isApproximateTotal());
+        assertFalse(response.isLast());
+    }
+
+    @Test
+    @DisplayName("En la última página el total sale de lo leído y sin total no hay páginas")
+    void testFromSlice_UltimaPaginaYSinTotal() {
+        SliceImpl<String> ultima = new SliceImpl<>(List.of("E"), PageRequest.of(2, 2), false);
+
+        PageResponse<String> exacta = PageResponse.fromSlice(ultima, 99L, true);
+        PageResponse<String> omitida = PageResponse.fromSlice(ultima, null, false);
+
+        assertEquals(5L, exacta.getTotalElements());
+        assertEquals(3, exacta.getTotalPages());
+        assertFalse(exacta.isApproximateTotal());
+        assertTrue(exacta.isLast());
+
+        assertNull(omitida.getTotalElements());
+        assertNull(omitida.getTotalPages());
+        assertTrue(omitida.isLast());
+    }
+
     @Test
     @DisplayName("Debe probar los setters (cobertura de @Data)")
     void testSetters() {
@@ -0,0 +1,44 @@
+package org.carnavawiky.back.dto;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SliceResponseTest {
+
+    @Test
+    @DisplayName("Debe probar el patrón Builder y los getters")
+    void testBuilderAndGetters() {
+        // ARRANGE
+        List<String> content = List.of("Elemento 1", "Elemento 2");
+
+        // ACT
+        SliceResponse<String> response = SliceResponse.<String>builder()
+                .content(content)
+                .size(2)
+                .nextCursor("eyJvIjoiaWQ6IEFTQyJ9")
+                .hasNext(true)
+                .build();
+
+        // ASSERT
+        assertEquals(content, response.getContent());
+        assertEquals(2, response.getSize());
+        assertEquals("eyJvIjoiaWQ6IEFTQyJ9", response.getNextCursor());
+        assertTrue(response.isHasNext());
+    }
+
+    @Test
+    @DisplayName("La última porción no tiene cursor siguiente")
+    void testUltimaPorcion() {
+        SliceResponse<String> response = SliceResponse.<String>builder()
+                .content(List.of())
+                .size(20)
+                .build();
+
+        assertNull(response.getNextCursor());
+        assertFalse(response.isHasNext());
+    }
+}
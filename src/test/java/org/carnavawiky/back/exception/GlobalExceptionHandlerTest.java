@@ -6,12 +6,16 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.core.MethodParameter;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.time.Duration;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.mock;
@@ -89,6 +93,29 @@ class GlobalExceptionHandlerTest {
         assertEquals(400, response.getBody().getStatus());
     }
 
+    // 4b. BadRequestException (400 - Errores de negocio del cliente)
+    @Test
+    @DisplayName("Debe manejar BadRequestException devolviendo 400")
+    void handleBadRequestExceptionTest() {
+        BadRequestException ex = new BadRequestException("Cursor de paginación no válido.");
+        ResponseEntity<ErrorDetails> response = globalExceptionHandler.handleBadRequestException(ex, webRequest);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Cursor de paginación no válido.", response.getBody().getMessage());
+        assertEquals(400, response.getBody().getStatus());
+    }
+
+    // 4c. MaxUploadSizeExceededException (413 - Subida demasiado grande)
+    @Test
+    @DisplayName("Debe manejar MaxUploadSizeExceededException devolviendo 413")
+    void handleMaxUploadSizeExceededExceptionTest() {
+        MaxUploadSizeExceededException ex = new MaxUploadSizeExceededException(1024);
+        ResponseEntity<ErrorDetails> response = globalExceptionHandler.handleMaxUploadSizeExceededException(ex, webRequest);
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, response.getStatusCode());
+        assertEquals(413, response.getBody().getStatus());
+    }
+
     // 5. FileStorageException (500)
     @Test
     @DisplayName("Debe manejar FileStorageException")
@@ -100,6 +127,19 @@ class GlobalExceptionHandlerTest {
         assertTrue(response.getBody().getMessage().contains("Error de almacenamiento"));
     }
 
+    // 5b. ServicioSaturadoException (503 - Cola de ingesta llena)
+    @Test
+    @DisplayName("Debe manejar ServicioSaturadoException devolviendo 503 con Retry-After")
+    void handleServicioSaturadoExceptionTest() {
+        ServicioSaturadoException ex = new ServicioSaturadoException("Cola llena", Duration.ofMillis(200));
+        ResponseEntity<ErrorDetails> response = globalExceptionHandler.handleServicioSaturadoException(ex, webRequest);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals(503, response.getBody().getStatus());
+        // Nunca menos de un segundo: Retry-After va en segundos enteros
+        assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
     // 6. Exception genérica (500)
     @Test
     @DisplayName("Debe manejar excepciones inesperadas")
@@ -3,10 +3,13 @@ package org.carnavawiky.back.mapper;
 import org.carnavawiky.back.dto.ImagenResponse;
 import org.carnavawiky.back.model.Agrupacion;
 import org.carnavawiky.back.model.Imagen;
+import org.carnavawiky.back.model.ImagenVariante;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ImagenMapperTest {
@@ -33,6 +36,11 @@ class ImagenMapperTest {
         imagen.setUrlPublica("/images/foto.jpg");
         imagen.setEsPortada(true);
         imagen.setAgrupacion(agrupacion);
+        imagen.setAncho(800);
+        imagen.setAlto(600);
+        imagen.setTamanoBytes(1234L);
+        imagen.setColorDominante("#a1b2c3");
+        imagen.setMarcador("data:image/png;base64,AAAA");
 
         ImagenResponse response = imagenMapper.toResponse(imagen);
 
@@ -41,6 +49,12 @@ class ImagenMapperTest {
         assertEquals("foto.jpg", response.getNombreFichero());
         assertEquals("/images/foto.jpg", response.getUrlPublica());
         assertTrue(response.getEsPortada());
+        // Datos para maquetar sin descargar la imagen
+        assertEquals(800, response.getAncho());
+        assertEquals(600, response.getAlto());
+        assertEquals(1234L, response.getTamanoBytes());
+        assertEquals("#a1b2c3", response.getColorDominante());
+        assertEquals("data:image/png;base64,AAAA", response.getMarcador());
 
         // Verificación de Agrupación
         assertEquals(10L, response.getAgrupacionId());
@@ -67,4 +81,22 @@ class ImagenMapperTest {
         assertNull(response.getAgrupacionId());
         assertNull(response.getAgrupacionNombre());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Debe añadir las URLs de las variantes ordenadas por ancho")
+    void testToResponse_ConVariantes() {
+        Imagen imagen = new Imagen();
+        imagen.setId(7L);
+        imagen.setSha256("abc");
+        imagen.setEsPortada(false);
+
+        ImagenResponse response = imagenMapper.toResponse(imagen, List.of(
+                new ImagenVariante(2L, "abc", 480, 240, "abc_480.jpg", "/tmp/abc_480.jpg", 100L),
+                new ImagenVariante(1L, "abc", 160, 80, "abc_160.jpg", "/tmp/abc_160.jpg", 10L)));
+
+        assertEquals(List.of(160, 480), List.copyOf(response.getVariantes().keySet()));
+        assertEquals("/api/imagenes/variantes/abc_160.jpg", response.getVariantes().get(160));
+        // Sin variantes, el mapa está vacío (no null)
+        assertTrue(imagenMapper.toResponse(imagen).getVariantes().isEmpty());
+    }
+}
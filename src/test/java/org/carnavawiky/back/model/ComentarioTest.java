@@ -50,7 +50,7 @@ class ComentarioTest {
         Agrupacion agrupacion = new Agrupacion();
         agrupacion.setId(20L);
 
-        Comentario comentario = new Comentario(id, contenido, puntuacion, aprobado, fechaCreacion, usuario, agrupacion);
+        Comentario comentario = new Comentario(id, contenido, puntuacion, aprobado, fechaCreacion, usuario, agrupacion, null, null, null, null, 0L, 0L, null);
 
         assertEquals(id, comentario.getId());
         assertEquals(contenido, comentario.getContenido());
@@ -69,8 +69,8 @@ class ComentarioTest {
         agrupacion1.setId(1L);
         LocalDateTime fecha1 = LocalDateTime.of(2024, 1, 1, 10, 0);
 
-        Comentario c1 = new Comentario(1L, "Contenido", 5, true, fecha1, usuario1, agrupacion1);
-        Comentario c2 = new Comentario(1L, "Contenido", 5, true, fecha1, usuario1, agrupacion1);
+        Comentario c1 = new Comentario(1L, "Contenido", 5, true, fecha1, usuario1, agrupacion1, null, null, null, null, 0L, 0L, null);
+        Comentario c2 = new Comentario(1L, "Contenido", 5, true, fecha1, usuario1, agrupacion1, null, null, null, null, 0L, 0L, null);
 
         // Test igualdad básica
         assertEquals(c1, c2);
@@ -82,29 +82,29 @@ class ComentarioTest {
         assertNotEquals("String", c1);
 
         // Test desigualdad por campos individuales
-        Comentario c3 = new Comentario(2L, "Contenido", 5, true, fecha1, usuario1, agrupacion1); // ID diferente
+        Comentario c3 = new Comentario(2L, "Contenido", 5, true, fecha1, usuario1, agrupacion1, null, null, null, null, 0L, 0L, null); // ID diferente
         assertNotEquals(c1, c3);
 
-        c3 = new Comentario(1L, "Otro Contenido", 5, true, fecha1, usuario1, agrupacion1); // Contenido diferente
+        c3 = new Comentario(1L, "Otro Contenido", 5, true, fecha1, usuario1, agrupacion1, null, null, null, null, 0L, 0L, null); // Contenido diferente
         assertNotEquals(c1, c3);
 
-        c3 = new Comentario(1L, "Contenido", 4, true, fecha1, usuario1, agrupacion1); // Puntuación diferente
+        c3 = new Comentario(1L, "Contenido", 4, true, fecha1, usuario1, agrupacion1, null, null, null, null, 0L, 0L, null); // Puntuación diferente
         assertNotEquals(c1, c3);
 
-        c3 = new Comentario(1L, "Contenido", 5, false, fecha1, usuario1, agrupacion1); // Aprobado diferente
+        c3 = new Comentario(1L, "Contenido", 5, false, fecha1, usuario1, agrupacion1, null, null, null, null, 0L, 0L, null); // Aprobado diferente
         assertNotEquals(c1, c3);
 
-        c3 = new Comentario(1L, "Contenido", 5, true, LocalDateTime.now(), usuario1, agrupacion1); // Fecha diferente
+        c3 = new Comentario(1L, "Contenido", 5, true, LocalDateTime.now(), usuario1, agrupacion1, null, null, null, null, 0L, 0L, null); // Fecha diferente
         assertNotEquals(c1, c3);
 
         Usuario usuario2 = new Usuario();
         usuario2.setId(2L);
-        c3 = new Comentario(1L, "Contenido", 5, true, fecha1, usuario2, agrupacion1); // Usuario diferente
+        c3 = new Comentario(1L, "Contenido", 5, true, fecha1, usuario2, agrupacion1, null, null, null, null, 0L, 0L, null); // Usuario diferente
         assertNotEquals(c1, c3);
 
         Agrupacion agrupacion2 = new Agrupacion();
         agrupacion2.setId(2L);
-        c3 = new Comentario(1L, "Contenido", 5, true, fecha1, usuario1, agrupacion2); // Agrupación diferente
+        c3 = new Comentario(1L, "Contenido", 5, true, fecha1, usuario1, agrupacion2, null, null, null, null, 0L, 0L, null); // Agrupación diferente
         assertNotEquals(c1, c3);
     }
 
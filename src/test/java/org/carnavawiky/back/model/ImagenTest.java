@@ -42,7 +42,7 @@ class ImagenTest {
         Agrupacion agrupacion = new Agrupacion();
         agrupacion.setId(10L);
 
-        Imagen imagen = new Imagen(id, nombreFichero, rutaAbsoluta, urlPublica, esPortada, agrupacion);
+        Imagen imagen = new Imagen(id, nombreFichero, rutaAbsoluta, urlPublica, esPortada, agrupacion, null, null, null, null, null, null);
 
         assertEquals(id, imagen.getId());
         assertEquals(nombreFichero, imagen.getNombreFichero());
@@ -57,8 +57,8 @@ class ImagenTest {
         Agrupacion agrupacion1 = new Agrupacion();
         agrupacion1.setId(1L);
 
-        Imagen i1 = new Imagen(1L, "foto.jpg", "/path/foto.jpg", "http://url/foto.jpg", true, agrupacion1);
-        Imagen i2 = new Imagen(1L, "foto.jpg", "/path/foto.jpg", "http://url/foto.jpg", true, agrupacion1);
+        Imagen i1 = new Imagen(1L, "foto.jpg", "/path/foto.jpg", "http://url/foto.jpg", true, agrupacion1, null, null, null, null, null, null);
+        Imagen i2 = new Imagen(1L, "foto.jpg", "/path/foto.jpg", "http://url/foto.jpg", true, agrupacion1, null, null, null, null, null, null);
 
         // Test igualdad básica
         assertEquals(i1, i2);
@@ -70,24 +70,24 @@ class ImagenTest {
         assertNotEquals("String", i1);
 
         // Test desigualdad por campos individuales
-        Imagen i3 = new Imagen(2L, "foto.jpg", "/path/foto.jpg", "http://url/foto.jpg", true, agrupacion1); // ID diferente
+        Imagen i3 = new Imagen(2L, "foto.jpg", "/path/foto.jpg", "http://url/foto.jpg", true, agrupacion1, null, null, null, null, null, null); // ID diferente
         assertNotEquals(i1, i3);
 
-        i3 = new Imagen(1L, "otra.jpg", "/path/foto.jpg", "http://url/foto.jpg", true, agrupacion1); // Nombre diferente
+        i3 = new Imagen(1L, "otra.jpg", "/path/foto.jpg", "http://url/foto.jpg", true, agrupacion1, null, null, null, null, null, null); // Nombre diferente
         assertNotEquals(i1, i3);
 
-        i3 = new Imagen(1L, "foto.jpg", "/path/otra.jpg", "http://url/foto.jpg", true, agrupacion1); // Ruta diferente
+        i3 = new Imagen(1L, "foto.jpg", "/path/otra.jpg", "http://url/foto.jpg", true, agrupacion1, null, null, null, null, null, null); // Ruta diferente
         assertNotEquals(i1, i3);
 
-        i3 = new Imagen(1L, "foto.jpg", "/path/foto.jpg", "http://url/otra.jpg", true, agrupacion1); // URL diferente
+        i3 = new Imagen(1L, "foto.jpg", "/path/foto.jpg", "http://url/otra.jpg", true, agrupacion1, null, null, null, null, null, null); // URL diferente
         assertNotEquals(i1, i3);
 
-        i3 = new Imagen(1L, "foto.jpg", "/path/foto.jpg", "http://url/foto.jpg", false, agrupacion1); // EsPortada diferente
+        i3 = new Imagen(1L, "foto.jpg", "/path/foto.jpg", "http://url/foto.jpg", false, agrupacion1, null, null, null, null, null, null); // EsPortada diferente
         assertNotEquals(i1, i3);
 
         Agrupacion agrupacion2 = new Agrupacion();
         agrupacion2.setId(2L);
-        i3 = new Imagen(1L, "foto.jpg", "/path/foto.jpg", "http://url/foto.jpg", true, agrupacion2); // Agrupación diferente
+        i3 = new Imagen(1L, "foto.jpg", "/path/foto.jpg", "http://url/foto.jpg", true, agrupacion2, null, null, null, null, null, null); // Agrupación diferente
         assertNotEquals(i1, i3);
     }
 
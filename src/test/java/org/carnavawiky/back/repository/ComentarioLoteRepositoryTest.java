@@ -0,0 +1,121 @@
+package org.carnavawiky.back.repository;
+
+import org.carnavawiky.back.config.JpaAuditingConfig;
+import org.carnavawiky.back.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({ComentarioLoteRepository.class, JpaAuditingConfig.class})
+class ComentarioLoteRepositoryTest {
+
+    @Autowired
+    private ComentarioLoteRepository comentarioLoteRepository;
+
+    @Autowired
+    private ComentarioRepository comentarioRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Usuario usuario;
+    private Agrupacion agrupacion;
+
+    @BeforeEach
+    void setUp() {
+        Role rolUser = new Role();
+        rolUser.setName(Role.RoleName.ROLE_USER);
+        entityManager.persist(rolUser);
+
+        Localidad localidad = new Localidad();
+        localidad.setNombre("Cádiz");
+        entityManager.persist(localidad);
+
+        usuario = new Usuario();
+        usuario.setUsername("usuario");
+        usuario.setEmail("usuario@carnavawiky.com");
+        usuario.setPassword("secreto");
+        usuario.setRoles(Set.of(rolUser));
+        entityManager.persist(usuario);
+
+        agrupacion = new Agrupacion();
+        agrupacion.setNombre("Los Yesterday");
+        agrupacion.setAnho(2011);
+        agrupacion.setModalidad(Modalidad.CHIRIGOTA);
+        agrupacion.setUsuarioCreador(usuario);
+        agrupacion.setLocalidad(localidad);
+        entityManager.persist(agrupacion);
+        // Las filas del lote se insertan por JDBC: usuario y agrupación deben estar ya en la BD
+        entityManager.flush();
+    }
+
+    // =======================================================
+    // INSERCIÓN EN LOTE
+    // =======================================================
+    @Test
+    void testInsertar_DescartaReferenciasInexistentesSinAbortarElLote() {
+        LocalDateTime recibido = LocalDateTime.of(2026, 2, 20, 23, 30);
+        int insertados = comentarioLoteRepository.insertar(List.of(
+                comentario("i1", usuario.getId(), agrupacion.getId(), 5, recibido),
+                comentario("i2", usuario.getId(), 999L, 4, recibido),
+                comentario("i3", 999L, agrupacion.getId(), null, recibido)));
+
+        assertThat(insertados).isEqualTo(1);
+        entityManager.clear();
+        List<Comentario> guardados = comentarioRepository.findAll();
+        assertThat(guardados).hasSize(1);
+        Comentario guardado = guardados.get(0);
+        assertThat(guardado.getIdIngesta()).isEqualTo("i1");
+        assertThat(guardado.getPuntuacion()).isEqualTo(5);
+        assertThat(guardado.getAprobado()).isFalse();
+        // La hora a la que se aceptó, no la del volcado
+        assertThat(guardado.getFechaCreacion()).isEqualTo(recibido);
+        assertThat(guardado.getAgrupacion().getId()).isEqualTo(agrupacion.getId());
+    }
+
+    @Test
+    void testInsertar_ReintentoNoDuplica() {
+        LocalDateTime recibido = LocalDateTime.now().withNano(0);
+        comentarioLoteRepository.insertar(List.of(comentario("i1", usuario.getId(), agrupacion.getId(), null, recibido)));
+
+        // Se volvió a leer del diario tras una caída entre el commit y el borrado del segmento
+        int insertados = comentarioLoteRepository.insertar(List.of(
+                comentario("i1", usuario.getId(), agrupacion.getId(), null, recibido),
+                comentario("i2", usuario.getId(), agrupacion.getId(), 3, recibido)));
+
+        assertThat(insertados).isEqualTo(1);
+        assertThat(comentarioRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void testInsertar_ListaVacia() {
+        assertThat(comentarioLoteRepository.insertar(List.of())).isZero();
+    }
+
+    private Comentario comentario(String idIngesta, Long usuarioId, Long agrupacionId, Integer puntuacion,
+                                  LocalDateTime recibido) {
+        Usuario autor = new Usuario();
+        autor.setId(usuarioId);
+        Agrupacion destino = new Agrupacion();
+        destino.setId(agrupacionId);
+
+        Comentario comentario = new Comentario();
+        comentario.setContenido("¡Qué gran actuación!");
+        comentario.setPuntuacion(puntuacion);
+        comentario.setFechaCreacion(recibido);
+        comentario.setIdIngesta(idIngesta);
+        comentario.setUsuario(autor);
+        comentario.setAgrupacion(destino);
+        return comentario;
+    }
+}
@@ -0,0 +1,210 @@
+package org.carnavawiky.back.repository;
+
+import org.carnavawiky.back.config.JpaAuditingConfig;
+import org.carnavawiky.back.dto.ComentarioResponse;
+import org.carnavawiky.back.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(JpaAuditingConfig.class) // Rellena fechaAlta y fechaCreacion
+class ComentarioRepositoryTest {
+
+    @Autowired
+    private ComentarioRepository comentarioRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Usuario usuario;
+    private Agrupacion agrupacion;
+
+    @BeforeEach
+    void setUp() {
+        Role rolUser = new Role();
+        rolUser.setName(Role.RoleName.ROLE_USER);
+        entityManager.persist(rolUser);
+
+        Localidad localidad = new Localidad();
+        localidad.setNombre("Cádiz");
+        entityManager.persist(localidad);
+
+        usuario = new Usuario();
+        usuario.setUsername("usuario");
+        usuario.setEmail("usuario@carnavawiky.com");
+        usuario.setPassword("secreto");
+        usuario.setRoles(Set.of(rolUser));
+        entityManager.persist(usuario);
+
+        agrupacion = new Agrupacion();
+        agrupacion.setNombre("Los Yesterday");
+        agrupacion.setAnho(2011);
+        agrupacion.setModalidad(Modalidad.CHIRIGOTA);
+        agrupacion.setUsuarioCreador(usuario);
+        agrupacion.setLocalidad(localidad);
+        entityManager.persist(agrupacion);
+    }
+
+    // =======================================================
+    // COLA DE MODERACIÓN
+    // =======================================================
+    @Test
+    void testFindByAprobadoFalse_SoloPendientesEnOrdenDeLlegada() {
+        Long primero = comentario(false);
+        comentario(true);
+        Long segundo = comentario(false);
+        Long tercero = comentario(false);
+        entityManager.flush();
+        entityManager.clear();
+
+        Sort orden = Sort.by(Sort.Direction.ASC, "fechaCreacion").and(Sort.by("id"));
+        Window<Comentario> ventana = comentarioRepository.findByAprobadoFalse(ScrollPosition.keyset(), orden, Limit.of(2));
+
+        assertThat(ventana.getContent()).extracting(Comentario::getId).containsExactly(primero, segundo);
+        assertThat(ventana.hasNext()).isTrue();
+        Window<Comentario> siguiente = comentarioRepository.findByAprobadoFalse(ventana.positionAt(1), orden, Limit.of(2));
+        assertThat(siguiente.getContent()).extracting(Comentario::getId).containsExactly(tercero);
+    }
+
+    // =======================================================
+    // MODERACIÓN EN LOTE
+    // =======================================================
+    @Test
+    void testAprobarYEliminarPendientes_NoTocanLosAprobados() {
+        Long pendiente = comentario(false);
+        Long aprobado = comentario(true);
+        Long aRechazar = comentario(false);
+        entityManager.flush();
+
+        assertThat(comentarioRepository.findAllByIdParaActualizar(List.of(aRechazar, aprobado, pendiente)))
+                .extracting(Comentario::getId).containsExactly(pendiente, aprobado, aRechazar);
+
+        assertThat(comentarioRepository.aprobarPendientes(List.of(pendiente, aprobado))).isEqualTo(1);
+        assertThat(comentarioRepository.eliminarPendientes(List.of(aRechazar, aprobado, pendiente))).isEqualTo(1);
+
+        assertThat(comentarioRepository.findById(pendiente).orElseThrow().getAprobado()).isTrue();
+        assertThat(comentarioRepository.existsById(aprobado)).isTrue();
+        assertThat(comentarioRepository.existsById(aRechazar)).isFalse();
+    }
+
+    // =======================================================
+    // HILOS DE RESPUESTAS
+    // =======================================================
+    @Test
+    void testCompletarRaices_ComentariosSinRutaAbrenSuHilo() {
+        Long antiguo = comentario(true);
+        entityManager.flush();
+
+        assertThat(comentarioRepository.completarRaices()).isEqualTo(1);
+
+        entityManager.clear();
+        Comentario raiz = comentarioRepository.findById(antiguo).orElseThrow();
+        assertThat(raiz.getRuta()).isEqualTo(String.format("%012d/", antiguo));
+        assertThat(raiz.getRaizId()).isEqualTo(antiguo);
+        assertThat(raiz.getProfundidad()).isZero();
+    }
+
+    @Test
+    void testCompletarRaicesIngeridas_SoloLasDelTramo() {
+        Comentario ingerido = entityManager.find(Comentario.class, comentario(false));
+        ingerido.setIdIngesta("i1");
+        Long otro = comentario(false);
+        entityManager.flush();
+
+        assertThat(comentarioRepository.completarRaicesIngeridas(List.of("i1", "i2"))).isEqualTo(1);
+
+        entityManager.clear();
+        assertThat(comentarioRepository.findById(ingerido.getId()).orElseThrow().getRuta())
+                .isEqualTo(String.format("%012d/", ingerido.getId()));
+        assertThat(comentarioRepository.findById(otro).orElseThrow().getRuta()).isNull();
+    }
+
+    @Test
+    void testFindRespuestasYRama_UnaConsultaEnOrdenDeLectura() {
+        Comentario a = raiz();
+        Comentario b = respuesta(a, true);
+        Comentario x = raiz();
+        Comentario c = respuesta(b, true);
+        Comentario y = respuesta(x, true);
+        respuesta(a, false); // pendiente: no se muestra
+        Comentario e = respuesta(a, true);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Solo su hilo, y dentro de él cada respuesta tras su padre
+        assertThat(comentarioRepository.findRespuestasHiloResponses(a.getId(), 2, Limit.of(100)))
+                .extracting(ComentarioResponse::getId).containsExactly(b.getId(), c.getId(), e.getId());
+        assertThat(comentarioRepository.findRespuestasHiloResponses(a.getId(), 1, Limit.of(100)))
+                .extracting(ComentarioResponse::getId).containsExactly(b.getId(), e.getId());
+        assertThat(comentarioRepository.findRespuestasHiloResponses(x.getId(), 2, Limit.of(100)))
+                .extracting(ComentarioResponse::getId).containsExactly(y.getId());
+        // El tope corta en orden de lectura
+        assertThat(comentarioRepository.findRespuestasHiloResponses(a.getId(), 2, Limit.of(2)))
+                .extracting(ComentarioResponse::getId).containsExactly(b.getId(), c.getId());
+
+        List<ComentarioResponse> rama = comentarioRepository.findRamaResponses(a.getId(), b.getRuta() + "%", 5, Limit.of(100));
+        assertThat(rama).extracting(ComentarioResponse::getId).containsExactly(b.getId(), c.getId());
+        assertThat(rama.get(1).getPadreId()).isEqualTo(b.getId());
+        assertThat(rama.get(1).getProfundidad()).isEqualTo(2);
+    }
+
+    @Test
+    void testContadoresYBorradoDeRama() {
+        Comentario a = raiz();
+        Comentario b = respuesta(a, true);
+        Comentario c = respuesta(b, true);
+        Comentario otra = respuesta(a, true);
+        entityManager.flush();
+
+        comentarioRepository.sumarRespuestasTotales(List.of(a.getId(), b.getId()), 2);
+        assertThat(comentarioRepository.eliminarDescendientes(a.getId(), b.getRuta() + "%", b.getId())).isEqualTo(1);
+        entityManager.clear();
+
+        assertThat(comentarioRepository.findById(a.getId()).orElseThrow().getRespuestasTotales()).isEqualTo(2);
+        assertThat(comentarioRepository.existsById(c.getId())).isFalse();
+        assertThat(comentarioRepository.existsById(b.getId())).isTrue();
+        assertThat(comentarioRepository.existsById(otra.getId())).isTrue();
+        assertThat(comentarioRepository.existsByPadreId(a.getId())).isTrue();
+    }
+
+    private Comentario raiz() {
+        Comentario raiz = entityManager.find(Comentario.class, comentario(true));
+        raiz.setRaizId(raiz.getId());
+        raiz.setProfundidad(0);
+        raiz.setRuta(String.format("%012d/", raiz.getId()));
+        return raiz;
+    }
+
+    private Comentario respuesta(Comentario padre, boolean aprobado) {
+        Comentario respuesta = entityManager.find(Comentario.class, comentario(aprobado));
+        respuesta.setPuntuacion(null);
+        respuesta.setPadreId(padre.getId());
+        respuesta.setRaizId(padre.getRaizId());
+        respuesta.setProfundidad(padre.getProfundidad() + 1);
+        respuesta.setRuta(padre.getRuta() + String.format("%012d/", respuesta.getId()));
+        return respuesta;
+    }
+
+    private Long comentario(boolean aprobado) {
+        Comentario comentario = new Comentario();
+        comentario.setContenido("¡Qué gran agrupación!");
+        comentario.setPuntuacion(4);
+        comentario.setAprobado(aprobado);
+        comentario.setUsuario(usuario);
+        comentario.setAgrupacion(agrupacion);
+        return entityManager.persist(comentario).getId();
+    }
+}
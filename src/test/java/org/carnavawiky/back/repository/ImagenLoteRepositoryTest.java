@@ -0,0 +1,110 @@
+package org.carnavawiky.back.repository;
+
+import org.carnavawiky.back.config.JpaAuditingConfig;
+import org.carnavawiky.back.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({ImagenLoteRepository.class, JpaAuditingConfig.class})
+class ImagenLoteRepositoryTest {
+
+    @Autowired
+    private ImagenLoteRepository imagenLoteRepository;
+
+    @Autowired
+    private ImagenRepository imagenRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Agrupacion agrupacion;
+
+    @BeforeEach
+    void setUp() {
+        Role rolUser = new Role();
+        rolUser.setName(Role.RoleName.ROLE_USER);
+        entityManager.persist(rolUser);
+
+        Localidad localidad = new Localidad();
+        localidad.setNombre("Cádiz");
+        entityManager.persist(localidad);
+
+        Usuario usuario = new Usuario();
+        usuario.setUsername("usuario");
+        usuario.setEmail("usuario@carnavawiky.com");
+        usuario.setPassword("secreto");
+        usuario.setRoles(Set.of(rolUser));
+        entityManager.persist(usuario);
+
+        agrupacion = new Agrupacion();
+        agrupacion.setNombre("Los Yesterday");
+        agrupacion.setAnho(2011);
+        agrupacion.setModalidad(Modalidad.CHIRIGOTA);
+        agrupacion.setUsuarioCreador(usuario);
+        agrupacion.setLocalidad(localidad);
+        entityManager.persist(agrupacion);
+        // Las filas del lote se insertan por JDBC: la agrupación debe estar ya en la BD
+        entityManager.flush();
+    }
+
+    // =======================================================
+    // INSERCIÓN EN LOTE
+    // =======================================================
+    @Test
+    void testInsertar_AsignaIdsYPersisteLasFilas() {
+        List<Imagen> imagenes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Imagen imagen = new Imagen();
+            imagen.setNombreFichero("fichero" + i + ".jpg");
+            imagen.setRutaAbsoluta("/almacen/fichero" + i + ".jpg");
+            imagen.setUrlPublica("/api/imagenes/fichero" + i + ".jpg");
+            imagen.setEsPortada(i == 0);
+            imagen.setSha256("sha" + i);
+            imagen.setTamanoBytes(100L + i);
+            imagen.setAgrupacion(agrupacion);
+            if (i == 0) {
+                imagen.setAncho(800);
+                imagen.setAlto(600);
+                imagen.setColorDominante("#a1b2c3");
+                imagen.setMarcador("data:image/png;base64,AAAA");
+            }
+            imagenes.add(imagen);
+        }
+
+        imagenLoteRepository.insertar(imagenes);
+
+        assertThat(imagenes).extracting(Imagen::getId).doesNotContainNull().doesNotHaveDuplicates();
+        entityManager.clear();
+        List<Imagen> guardadas = imagenRepository.findAllById(imagenes.stream().map(Imagen::getId).toList());
+        assertThat(guardadas).hasSize(3);
+        Imagen portada = imagenRepository.findById(imagenes.get(0).getId()).orElseThrow();
+        assertThat(portada.getEsPortada()).isTrue();
+        assertThat(portada.getSha256()).isEqualTo("sha0");
+        assertThat(portada.getTamanoBytes()).isEqualTo(100L);
+        assertThat(portada.getAgrupacion().getId()).isEqualTo(agrupacion.getId());
+        assertThat(portada.getAncho()).isEqualTo(800);
+        assertThat(portada.getAlto()).isEqualTo(600);
+        assertThat(portada.getColorDominante()).isEqualTo("#a1b2c3");
+        assertThat(portada.getMarcador()).isEqualTo("data:image/png;base64,AAAA");
+        // Sin previsualización (no era una imagen legible): columnas a null
+        assertThat(imagenRepository.findById(imagenes.get(1).getId()).orElseThrow().getAncho()).isNull();
+    }
+
+    @Test
+    void testInsertar_ListaVacia() {
+        imagenLoteRepository.insertar(List.of());
+
+        assertThat(imagenRepository.count()).isZero();
+    }
+}
@@ -0,0 +1,108 @@
+package org.carnavawiky.back.repository;
+
+import org.carnavawiky.back.config.JpaAuditingConfig;
+import org.carnavawiky.back.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(JpaAuditingConfig.class) // Rellena fechaAlta
+class ImagenRepositoryTest {
+
+    @Autowired
+    private ImagenRepository imagenRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Localidad localidad;
+    private Usuario usuario;
+
+    @BeforeEach
+    void setUp() {
+        Role rolUser = new Role();
+        rolUser.setName(Role.RoleName.ROLE_USER);
+        entityManager.persist(rolUser);
+
+        localidad = new Localidad();
+        localidad.setNombre("Cádiz");
+        entityManager.persist(localidad);
+
+        usuario = new Usuario();
+        usuario.setUsername("usuario");
+        usuario.setEmail("usuario@carnavawiky.com");
+        usuario.setPassword("secreto");
+        usuario.setRoles(Set.of(rolUser));
+        entityManager.persist(usuario);
+    }
+
+    // =======================================================
+    // PORTADAS DE UNA PÁGINA DE LISTADO
+    // =======================================================
+    @Test
+    void testFindPortadas_UnaConsultaConMiniatura() {
+        Agrupacion conMiniatura = agrupacion("Los Yesterday");
+        Agrupacion sinVariantes = agrupacion("Los Carapapas");
+        Agrupacion sinPortada = agrupacion("Las Niñas");
+        Agrupacion fueraDeLaPagina = agrupacion("Los Cruzados");
+
+        imagen(conMiniatura, "aaa", true);
+        imagen(conMiniatura, "bbb", false);
+        imagen(sinVariantes, "ccc", true);
+        imagen(sinPortada, "ddd", false);
+        imagen(fueraDeLaPagina, "eee", true);
+        entityManager.persist(new ImagenVariante(null, "aaa", 160, 120, "aaa_160.jpg", "/almacen/aaa_160.jpg", 10L));
+        entityManager.persist(new ImagenVariante(null, "aaa", 480, 360, "aaa_480.jpg", "/almacen/aaa_480.jpg", 20L));
+        entityManager.flush();
+        entityManager.clear();
+
+        Map<Long, ImagenRepository.Portada> portadas = imagenRepository
+                .findPortadas(List.of(conMiniatura.getId(), sinVariantes.getId(), sinPortada.getId()), 160).stream()
+                .collect(Collectors.toMap(ImagenRepository.Portada::getAgrupacionId, Function.identity()));
+
+        assertThat(portadas).containsOnlyKeys(conMiniatura.getId(), sinVariantes.getId());
+        ImagenRepository.Portada portada = portadas.get(conMiniatura.getId());
+        assertThat(portada.getUrlPublica()).isEqualTo("/api/imagenes/aaa.jpg");
+        assertThat(portada.getMiniatura()).isEqualTo("aaa_160.jpg");
+        assertThat(portada.getAncho()).isEqualTo(800);
+        assertThat(portada.getColorDominante()).isEqualTo("#a1b2c3");
+        // Sin variantes todavía: el LEFT JOIN no descarta la portada
+        assertThat(portadas.get(sinVariantes.getId()).getMiniatura()).isNull();
+    }
+
+    private Agrupacion agrupacion(String nombre) {
+        Agrupacion agrupacion = new Agrupacion();
+        agrupacion.setNombre(nombre);
+        agrupacion.setAnho(2011);
+        agrupacion.setModalidad(Modalidad.CHIRIGOTA);
+        agrupacion.setUsuarioCreador(usuario);
+        agrupacion.setLocalidad(localidad);
+        return entityManager.persist(agrupacion);
+    }
+
+    private void imagen(Agrupacion agrupacion, String sha256, boolean esPortada) {
+        Imagen imagen = new Imagen();
+        imagen.setNombreFichero(sha256 + ".jpg");
+        imagen.setRutaAbsoluta("/almacen/" + sha256 + ".jpg");
+        imagen.setUrlPublica("/api/imagenes/" + sha256 + ".jpg");
+        imagen.setEsPortada(esPortada);
+        imagen.setSha256(sha256);
+        imagen.setAncho(800);
+        imagen.setAlto(600);
+        imagen.setColorDominante("#a1b2c3");
+        imagen.setAgrupacion(agrupacion);
+        entityManager.persist(imagen);
+    }
+}
@@ -0,0 +1,219 @@
+package org.carnavawiky.back.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.carnavawiky.back.config.JpaAuditingConfig;
+import org.carnavawiky.back.dto.AgrupacionResponse;
+import org.carnavawiky.back.dto.PremioResponse;
+import org.carnavawiky.back.model.*;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica mediante las estadísticas de Hibernate que los listados paginados (proyecciones
+ * directas a DTO) se sirven con una sola sentencia por página, sin N+1 por las relaciones LAZY/EAGER.
+ * Las páginas son Slice (size + 1 filas): el COUNT va aparte y lo cachea ConteoCache.
+ */
+@DataJpaTest
+@Import(JpaAuditingConfig.class) // Rellena fechaAlta / fechaCreacion
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ListadosPaginadosStatementCountTest {
+
+    private static final int FILAS = 6;
+    // Página de 3 sobre 6 filas: Slice pide 4 filas para saber si hay más, sin COUNT
+    private static final Pageable PAGINA = PageRequest.of(0, 3);
+    private static final long SENTENCIAS_POR_PAGINA = 1;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private AgrupacionRepository agrupacionRepository;
+
+    @Autowired
+    private ComponenteRepository componenteRepository;
+
+    @Autowired
+    private PremioRepository premioRepository;
+
+    @Autowired
+    private ComentarioRepository comentarioRepository;
+
+    @Autowired
+    private ConcursoRepository concursoRepository;
+
+    @Autowired
+    private EdicionRepository edicionRepository;
+
+    @Autowired
+    private PersonaRepository personaRepository;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        Role rolUser = new Role();
+        rolUser.setName(Role.RoleName.ROLE_USER);
+        entityManager.persist(rolUser);
+
+        // Cada fila tiene sus propias relaciones para que un N+1 sea visible en el contador
+        for (int i = 0; i < FILAS; i++) {
+            Localidad localidad = new Localidad();
+            localidad.setNombre("Localidad " + i);
+            entityManager.persist(localidad);
+
+            Usuario usuario = new Usuario();
+            usuario.setUsername("usuario" + i);
+            usuario.setEmail("usuario" + i + "@carnavawiky.com");
+            usuario.setPassword("secreto");
+            usuario.setRoles(Set.of(rolUser));
+            entityManager.persist(usuario);
+
+            Agrupacion agrupacion = new Agrupacion();
+            agrupacion.setNombre("Agrupación " + i);
+            agrupacion.setAnho(2020 + i);
+            agrupacion.setModalidad(Modalidad.COMPARSA);
+            agrupacion.setUsuarioCreador(usuario);
+            agrupacion.setLocalidad(localidad);
+            entityManager.persist(agrupacion);
+
+            Persona persona = new Persona();
+            persona.setNombreReal("Persona " + i);
+            persona.setApodo("Apodo " + i);
+            persona.setOrigen(localidad);
+            entityManager.persist(persona);
+
+            Componente componente = new Componente();
+            componente.setRol(RolComponente.AUTOR_LETRA);
+            componente.setPersona(persona);
+            componente.setAgrupacion(agrupacion);
+            entityManager.persist(componente);
+
+            Concurso concurso = new Concurso();
+            concurso.setNombre("Concurso " + i);
+            concurso.setLocalidad(localidad);
+            entityManager.persist(concurso);
+
+            Edicion edicion = new Edicion();
+            edicion.setAnho(2020 + i);
+            edicion.setConcurso(concurso);
+            entityManager.persist(edicion);
+
+            Premio premio = new Premio();
+            premio.setPuesto(1);
+            premio.setModalidad(Modalidad.COMPARSA);
+            premio.setAgrupacion(agrupacion);
+            premio.setEdicion(edicion);
+            entityManager.persist(premio);
+
+            Comentario comentario = new Comentario();
+            comentario.setContenido("Comentario " + i);
+            comentario.setPuntuacion(5);
+            comentario.setAprobado(true);
+            comentario.setUsuario(usuario);
+            comentario.setAgrupacion(agrupacion);
+            entityManager.persist(comentario);
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void testAgrupaciones_SinNmas1() {
+        Slice<?> pagina = agrupacionRepository.findAllResponses(PAGINA);
+        Slice<?> busqueda = agrupacionRepository.searchResponses("agrupación", PAGINA);
+
+        assertThat(pagina.getContent()).hasSize(3);
+        assertThat(busqueda.getContent()).hasSize(3);
+        assertThat(pagina.hasNext()).isTrue();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2 * SENTENCIAS_POR_PAGINA);
+    }
+
+    @Test
+    void testComponentes_SinNmas1() {
+        Slice<?> pagina = componenteRepository.findAllResponses(PAGINA);
+        Slice<?> busqueda = componenteRepository.searchResponses("persona", PAGINA);
+
+        assertThat(pagina.getContent()).hasSize(3);
+        assertThat(busqueda.getContent()).hasSize(3);
+        assertThat(pagina.hasNext()).isTrue();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2 * SENTENCIAS_POR_PAGINA);
+    }
+
+    @Test
+    void testPremios_SinNmas1() {
+        Slice<?> pagina = premioRepository.findAllResponses(PAGINA);
+        Slice<?> busqueda = premioRepository.findResponsesByAgrupacionNombre("agrupación", PAGINA);
+
+        assertThat(pagina.getContent()).hasSize(3);
+        assertThat(busqueda.getContent()).hasSize(3);
+        assertThat(pagina.hasNext()).isTrue();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2 * SENTENCIAS_POR_PAGINA);
+    }
+
+    @Test
+    void testComentarios_SinNmas1() {
+        Slice<?> pagina = comentarioRepository.findAllResponses(PAGINA);
+        Slice<?> busqueda = comentarioRepository.findAprobadosResponsesByContenido("comentario", PAGINA);
+
+        assertThat(pagina.getContent()).hasSize(3);
+        assertThat(busqueda.getContent()).hasSize(3);
+        assertThat(pagina.hasNext()).isTrue();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2 * SENTENCIAS_POR_PAGINA);
+    }
+
+    @Test
+    void testCatalogos_SinNmas1() {
+        // Antes, findAll() cargaba las relaciones EAGER (localidad, concurso) con una SELECT por fila
+        assertThat(concursoRepository.findAllResponses(PAGINA).getContent()).hasSize(3);
+        assertThat(edicionRepository.findAllResponses(PAGINA).getContent()).hasSize(3);
+        assertThat(personaRepository.findAllResponses(PAGINA).getContent()).hasSize(3);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3 * SENTENCIAS_POR_PAGINA);
+    }
+
+    @Test
+    void testConteos_MismoFiltroQueLaPagina() {
+        // Cada COUNT separado es una sola sentencia con el mismo WHERE que su consulta de página
+        assertThat(agrupacionRepository.countBusqueda("agrupación")).isEqualTo(FILAS);
+        assertThat(componenteRepository.countBusqueda("apodo 1")).isEqualTo(1);
+        assertThat(premioRepository.countByEdicionAnho(2020)).isEqualTo(1);
+        assertThat(comentarioRepository.countAprobadosByContenido("COMENTARIO")).isEqualTo(FILAS);
+        assertThat(edicionRepository.countByConcursoNombre("concurso")).isEqualTo(FILAS);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(5);
+    }
+
+    @Test
+    void testProyeccion_RellenaRelaciones() {
+        AgrupacionResponse agrupacion = agrupacionRepository
+                .findAllResponses(PageRequest.of(0, 1, Sort.by("nombre"))).getContent().get(0);
+        PremioResponse premio = premioRepository
+                .findResponsesByEdicionAnho(2020, PAGINA).getContent().get(0);
+
+        assertThat(agrupacion.getNombre()).isEqualTo("Agrupación 0");
+        assertThat(agrupacion.getNombreUsuarioCreador()).isEqualTo("usuario0");
+        assertThat(agrupacion.getLocalidadNombre()).isEqualTo("Localidad 0");
+        assertThat(premio.getConcursoNombre()).isEqualTo("Concurso 0");
+        assertThat(premio.getAgrupacionNombre()).isEqualTo("Agrupación 0");
+    }
+}
@@ -0,0 +1,135 @@
+package org.carnavawiky.back.repository;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import org.carnavawiky.back.dto.AgrupacionResponse;
+import org.carnavawiky.back.mapper.AgrupacionMapper;
+import org.carnavawiky.back.model.*;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.util.ClassUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-benchmark (JMH) de una página del buscador de agrupaciones: entidades gestionadas
+ * (con usuarioCreador y localidad, como hacía el @EntityGraph) + AgrupacionMapper frente a la
+ * proyección directa a AgrupacionResponse (las mismas JPQL de AgrupacionRepository), sobre H2 en memoria.
+ * Lo interesante es la memoria reservada por página: la proyección no crea entidades, proxies
+ * ni snapshots de dirty-checking en el contexto de persistencia.
+ * <p>
+ * Ejecutar con: mvn test-compile y lanzar el main desde el IDE (o con el classpath de test);
+ * el main activa el perfilador gc de JMH (gc.alloc.rate.norm = bytes reservados por página).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListadosProyeccionBenchmark {
+
+    private static final int FILAS = 40;
+    private static final int TAMANO_PAGINA = 20;
+    private static final String BUSQUEDA = "comparsa";
+
+    private static final String ENTIDADES = "SELECT a FROM Agrupacion a " +
+            "JOIN FETCH a.usuarioCreador JOIN FETCH a.localidad" + AgrupacionRepository.WHERE_BUSQUEDA;
+    private static final String PROYECCION = AgrupacionRepository.SELECT_RESPONSE + AgrupacionRepository.WHERE_BUSQUEDA;
+
+    private final AgrupacionMapper agrupacionMapper = new AgrupacionMapper();
+    private SessionFactory sessionFactory;
+
+    @Setup
+    public void setUp() {
+        Configuration configuracion = new Configuration()
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:benchmark-listados;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .setProperty("hibernate.physical_naming_strategy",
+                        "org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy")
+                .setProperty("jakarta.persistence.validation.mode", "none");
+        entidades().forEach(configuracion::addAnnotatedClass);
+        sessionFactory = configuracion.buildSessionFactory();
+
+        sessionFactory.inTransaction(session -> {
+            Role rolUser = new Role();
+            rolUser.setName(Role.RoleName.ROLE_USER);
+            session.persist(rolUser);
+
+            for (int i = 0; i < FILAS; i++) {
+                Localidad localidad = new Localidad();
+                localidad.setNombre("Localidad " + i);
+                session.persist(localidad);
+
+                Usuario usuario = new Usuario();
+                usuario.setUsername("usuario" + i);
+                usuario.setEmail("usuario" + i + "@carnavawiky.com");
+                usuario.setPassword("secreto");
+                usuario.setRoles(Set.of(rolUser));
+                session.persist(usuario);
+
+                Agrupacion agrupacion = new Agrupacion();
+                agrupacion.setNombre("Agrupación " + i);
+                agrupacion.setDescripcion("Comparsa de Cádiz número " + i);
+                agrupacion.setAnho(2000 + i);
+                agrupacion.setModalidad(Modalidad.COMPARSA);
+                agrupacion.setUsuarioCreador(usuario);
+                agrupacion.setLocalidad(localidad);
+                // Sin Spring no hay auditoría que la rellene
+                agrupacion.setFechaAlta(LocalDateTime.now());
+                session.persist(agrupacion);
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    // Cada invocación abre su propio contexto de persistencia, como una petición real
+    @Benchmark
+    public List<AgrupacionResponse> entidadesYMapper() {
+        return sessionFactory.fromTransaction(session -> pagina(session, ENTIDADES, Agrupacion.class).stream()
+                .map(agrupacionMapper::toResponse)
+                .toList());
+    }
+
+    @Benchmark
+    public List<AgrupacionResponse> proyeccion() {
+        return sessionFactory.fromTransaction(session -> pagina(session, PROYECCION, AgrupacionResponse.class));
+    }
+
+    private static <T> List<T> pagina(EntityManager entityManager, String jpql, Class<T> tipo) {
+        return entityManager.createQuery(jpql, tipo)
+                .setParameter("search", BUSQUEDA)
+                .setMaxResults(TAMANO_PAGINA + 1) // Slice: una fila de más para saber si hay siguiente
+                .getResultList();
+    }
+
+    private static List<Class<?>> entidades() {
+        ClassPathScanningCandidateComponentProvider escaner = new ClassPathScanningCandidateComponentProvider(false);
+        escaner.addIncludeFilter(new AnnotationTypeFilter(Entity.class));
+        return escaner.findCandidateComponents(Agrupacion.class.getPackageName()).stream()
+                .map(BeanDefinition::getBeanClassName)
+                .<Class<?>>map(nombre -> ClassUtils.resolveClassName(nombre, null))
+                .toList();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ListadosProyeccionBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,114 @@
+package org.carnavawiky.back.repository;
+
+import org.carnavawiky.back.config.JpaAuditingConfig;
+import org.carnavawiky.back.dto.AgrupacionResponse;
+import org.carnavawiky.back.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Los listados de agrupaciones se sirven con proyecciones JPQL directas a AgrupacionResponse:
+ * comprueba que cada consulta rellena todos los campos del DTO, incluidos los de las relaciones.
+ * La comparación de memoria frente a entidades + mapper está en ListadosProyeccionBenchmark.
+ */
+@DataJpaTest
+@Import(JpaAuditingConfig.class) // Rellena fechaAlta
+class ListadosProyeccionTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private AgrupacionRepository agrupacionRepository;
+
+    private Agrupacion comparsa;
+
+    @BeforeEach
+    void setUp() {
+        Role rolUser = new Role();
+        rolUser.setName(Role.RoleName.ROLE_USER);
+        entityManager.persist(rolUser);
+
+        Localidad cadiz = new Localidad();
+        cadiz.setNombre("Cádiz");
+        entityManager.persist(cadiz);
+
+        Usuario usuario = new Usuario();
+        usuario.setUsername("comparsista");
+        usuario.setEmail("comparsista@carnavawiky.com");
+        usuario.setPassword("secreto");
+        usuario.setRoles(Set.of(rolUser));
+        entityManager.persist(usuario);
+
+        comparsa = new Agrupacion();
+        comparsa.setNombre("Los Piratas");
+        comparsa.setDescripcion("Comparsa de Cádiz");
+        comparsa.setAnho(2024);
+        comparsa.setModalidad(Modalidad.COMPARSA);
+        comparsa.setUsuarioCreador(usuario);
+        comparsa.setLocalidad(cadiz);
+        entityManager.persist(comparsa);
+
+        Agrupacion chirigota = new Agrupacion();
+        chirigota.setNombre("Los Yesterday");
+        chirigota.setDescripcion("Chirigota del Selu");
+        chirigota.setAnho(2023);
+        chirigota.setModalidad(Modalidad.CHIRIGOTA);
+        chirigota.setUsuarioCreador(usuario);
+        chirigota.setLocalidad(cadiz);
+        entityManager.persist(chirigota);
+
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("La búsqueda debe devolver AgrupacionResponse con todos sus campos, filtrando por nombre o descripción")
+    void testSearchResponses() {
+        Slice<AgrupacionResponse> slice = agrupacionRepository.searchResponses("COMPARSA", PageRequest.of(0, 10));
+
+        assertThat(slice.getContent()).hasSize(1);
+        assertCompleta(slice.getContent().get(0));
+        assertThat(slice.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("El listado y la carga por ids deben devolver AgrupacionResponse con todos sus campos")
+    void testFindAllResponsesYFindResponsesByIdIn() {
+        Slice<AgrupacionResponse> slice = agrupacionRepository.findAllResponses(
+                PageRequest.of(0, 1, Sort.by("nombre")));
+
+        assertThat(slice.getContent()).hasSize(1);
+        assertCompleta(slice.getContent().get(0));
+        assertThat(slice.hasNext()).isTrue();
+
+        List<AgrupacionResponse> porIds = agrupacionRepository.findResponsesByIdIn(List.of(comparsa.getId()));
+        assertThat(porIds).hasSize(1);
+        assertCompleta(porIds.get(0));
+    }
+
+    private void assertCompleta(AgrupacionResponse response) {
+        assertThat(response.getId()).isEqualTo(comparsa.getId());
+        assertThat(response.getNombre()).isEqualTo("Los Piratas");
+        assertThat(response.getDescripcion()).isEqualTo("Comparsa de Cádiz");
+        assertThat(response.getFechaAlta()).isNotNull();
+        assertThat(response.getNombreUsuarioCreador()).isEqualTo("comparsista");
+        assertThat(response.getAnho()).isEqualTo(2024);
+        assertThat(response.getModalidad()).isEqualTo(Modalidad.COMPARSA);
+        assertThat(response.getLocalidadId()).isEqualTo(comparsa.getLocalidad().getId());
+        assertThat(response.getLocalidadNombre()).isEqualTo("Cádiz");
+    }
+}
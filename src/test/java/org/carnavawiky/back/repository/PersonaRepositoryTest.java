@@ -103,4 +103,21 @@ class PersonaRepositoryTest {
         Optional<Persona> eliminada = personaRepository.findByNombreReal("Juan Pérez");
         assertThat(eliminada).isEmpty();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Debe devolver solo los ids de las personas de una localidad de origen")
+    void testFindIdsByOrigenId() {
+        Localidad sevilla = new Localidad();
+        sevilla.setNombre("Sevilla");
+        sevilla = localidadRepository.save(sevilla);
+        Persona sevillano = new Persona();
+        sevillano.setNombreReal("Antonio Ruiz");
+        sevillano.setOrigen(sevilla);
+        entityManager.persist(sevillano);
+        entityManager.flush();
+
+        assertThat(personaRepository.findIdsByOrigenId(localidadCadiz.getId())).hasSize(2)
+                .doesNotContain(sevillano.getId());
+        assertThat(personaRepository.findIdsByOrigenId(sevilla.getId())).containsExactly(sevillano.getId());
+    }
+}
@@ -1,5 +1,6 @@
 package org.carnavawiky.back.repository;
 
+import org.carnavawiky.back.model.Role;
 import org.carnavawiky.back.model.Usuario;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -11,7 +12,9 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -84,4 +87,38 @@ class UsuarioRepositoryTest {
         assertThat(result.getContent()).hasSize(1);
         assertThat(result.getContent().get(0).getUsername()).isEqualTo("carnavalero");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Debe devolver el estado de acceso (id, enabled + una fila por rol) sin cargar la entidad")
+    void testFindEstadoAccesoByUsername() {
+        Role admin = new Role();
+        admin.setName(Role.RoleName.ROLE_ADMIN);
+        Role user = new Role();
+        user.setName(Role.RoleName.ROLE_USER);
+        entityManager.persist(admin);
+        entityManager.persist(user);
+        usuario.setEnabled(true);
+        usuario.setRoles(Set.of(admin, user));
+
+        Usuario sinRoles = new Usuario();
+        sinRoles.setUsername("sinroles");
+        sinRoles.setEmail("sinroles@carnaval.com");
+        sinRoles.setPassword("password123");
+        entityManager.persist(sinRoles);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<UsuarioRepository.EstadoAcceso> filas = usuarioRepository.findEstadoAccesoByUsername("carnavalero");
+        assertThat(filas).extracting(UsuarioRepository.EstadoAcceso::getRol)
+                .containsExactlyInAnyOrder(Role.RoleName.ROLE_ADMIN, Role.RoleName.ROLE_USER);
+        assertThat(filas).allMatch(f -> Boolean.TRUE.equals(f.getEnabled()));
+        assertThat(filas).allMatch(f -> usuario.getId().equals(f.getId()));
+
+        // LEFT JOIN: un usuario sin roles sigue apareciendo (rol nulo)
+        List<UsuarioRepository.EstadoAcceso> sinRolesFilas = usuarioRepository.findEstadoAccesoByUsername("sinroles");
+        assertThat(sinRolesFilas).hasSize(1);
+        assertThat(sinRolesFilas.get(0).getRol()).isNull();
+
+        assertThat(usuarioRepository.findEstadoAccesoByUsername("inexistente")).isEmpty();
+    }
+}
@@ -0,0 +1,167 @@
+package org.carnavawiky.back.repository;
+
+import org.carnavawiky.back.config.JpaAuditingConfig;
+import org.carnavawiky.back.dto.AgrupacionResponse;
+import org.carnavawiky.back.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(JpaAuditingConfig.class) // Rellena fechaAlta y fechaCreacion
+class ValoracionAgrupacionRepositoryTest {
+
+    @Autowired
+    private ValoracionAgrupacionRepository valoracionRepository;
+
+    @Autowired
+    private AgrupacionRepository agrupacionRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Localidad localidad;
+    private Usuario usuario;
+
+    @BeforeEach
+    void setUp() {
+        Role rolUser = new Role();
+        rolUser.setName(Role.RoleName.ROLE_USER);
+        entityManager.persist(rolUser);
+
+        localidad = new Localidad();
+        localidad.setNombre("Cádiz");
+        entityManager.persist(localidad);
+
+        usuario = new Usuario();
+        usuario.setUsername("usuario");
+        usuario.setEmail("usuario@carnavawiky.com");
+        usuario.setPassword("secreto");
+        usuario.setRoles(Set.of(rolUser));
+        entityManager.persist(usuario);
+    }
+
+    // =======================================================
+    // ACTUALIZACIÓN POR DELTAS
+    // =======================================================
+    @Test
+    void testAcumular_SinFilaNoActualizaNada() {
+        Agrupacion agrupacion = agrupacion("Los Yesterday");
+
+        assertThat(valoracionRepository.acumular(agrupacion.getId(), 4, 1)).isZero();
+        assertThat(valoracionRepository.count()).isZero();
+    }
+
+    @Test
+    void testAcumular_SumaRestaHistogramaYMedia() {
+        Long id = agrupacion("Los Yesterday").getId();
+        valoracionRepository.crearVacia(id);
+
+        valoracionRepository.acumular(id, 5, 1);
+        valoracionRepository.acumular(id, 4, 1);
+        valoracionRepository.acumular(id, 4, 1);
+        valoracionRepository.acumular(id, 5, -1);
+        valoracionRepository.actualizarMedia(id);
+        entityManager.clear();
+
+        ValoracionAgrupacion valoracion = valoracionRepository.findById(id).orElseThrow();
+        assertThat(valoracion.getNumero()).isEqualTo(2L);
+        assertThat(valoracion.getSuma()).isEqualTo(8L);
+        assertThat(valoracion.getVotos4()).isEqualTo(2L);
+        assertThat(valoracion.getVotos5()).isZero();
+        assertThat(valoracion.getMedia()).isEqualTo(4.0);
+
+        // Sin puntuaciones, la media vuelve a null (va al final del listado)
+        valoracionRepository.acumular(id, 4, -1);
+        valoracionRepository.acumular(id, 4, -1);
+        valoracionRepository.actualizarMedia(id);
+        entityManager.clear();
+        assertThat(valoracionRepository.findById(id).orElseThrow().getMedia()).isNull();
+    }
+
+    // =======================================================
+    // CARGA INICIAL DESDE COMENTARIOS
+    // =======================================================
+    @Test
+    void testRecalcularTodas_SoloAprobadosConPuntuacion() {
+        Agrupacion agrupacion = agrupacion("Los Yesterday");
+        Agrupacion sinAprobados = agrupacion("Los Carapapas");
+        comentario(agrupacion, 5, true);
+        comentario(agrupacion, 2, true);
+        comentario(agrupacion, null, true);
+        comentario(agrupacion, 1, false);
+        comentario(sinAprobados, 3, false);
+        entityManager.flush();
+
+        assertThat(valoracionRepository.recalcularTodas()).isEqualTo(1);
+        entityManager.clear();
+
+        ValoracionAgrupacion valoracion = valoracionRepository.findById(agrupacion.getId()).orElseThrow();
+        assertThat(valoracion.getNumero()).isEqualTo(2L);
+        assertThat(valoracion.getSuma()).isEqualTo(7L);
+        assertThat(valoracion.getVotos1()).isZero();
+        assertThat(valoracion.getVotos2()).isEqualTo(1L);
+        assertThat(valoracion.getVotos5()).isEqualTo(1L);
+        assertThat(valoracion.getMedia()).isEqualTo(3.5);
+        assertThat(valoracionRepository.existsById(sinAprobados.getId())).isFalse();
+    }
+
+    // =======================================================
+    // LISTADO ORDENADO POR VALORACIÓN
+    // =======================================================
+    @Test
+    void testFindAllResponsesPorValoracion_MejorValoradasPrimero() {
+        Long sinValorar = agrupacion("Las Niñas").getId();
+        Long regular = valorada("Los Carapapas", 3, 3);
+        Long buena = valorada("Los Yesterday", 5, 5);
+        // Misma media que 'buena' con menos votos: desempata el número de puntuaciones
+        Long buenaConPocos = valorada("Los Cruzados", 5);
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(agrupacionRepository.findAllResponsesPorValoracion(PageRequest.of(0, 10)).getContent())
+                .extracting(AgrupacionResponse::getId)
+                .containsExactly(buena, buenaConPocos, regular, sinValorar);
+        assertThat(agrupacionRepository.searchResponsesPorValoracion("los", PageRequest.of(0, 2)).getContent())
+                .extracting(AgrupacionResponse::getId)
+                .containsExactly(buena, buenaConPocos);
+    }
+
+    private Long valorada(String nombre, int... puntuaciones) {
+        Long id = agrupacion(nombre).getId();
+        valoracionRepository.crearVacia(id);
+        for (int puntuacion : puntuaciones) {
+            valoracionRepository.acumular(id, puntuacion, 1);
+        }
+        valoracionRepository.actualizarMedia(id);
+        return id;
+    }
+
+    private Agrupacion agrupacion(String nombre) {
+        Agrupacion agrupacion = new Agrupacion();
+        agrupacion.setNombre(nombre);
+        agrupacion.setAnho(2011);
+        agrupacion.setModalidad(Modalidad.CHIRIGOTA);
+        agrupacion.setUsuarioCreador(usuario);
+        agrupacion.setLocalidad(localidad);
+        return entityManager.persistAndFlush(agrupacion);
+    }
+
+    private void comentario(Agrupacion agrupacion, Integer puntuacion, boolean aprobado) {
+        Comentario comentario = new Comentario();
+        comentario.setContenido("¡Qué gran agrupación!");
+        comentario.setPuntuacion(puntuacion);
+        comentario.setAprobado(aprobado);
+        comentario.setUsuario(usuario);
+        comentario.setAgrupacion(agrupacion);
+        entityManager.persist(comentario);
+    }
+}
@@ -0,0 +1,117 @@
+package org.carnavawiky.back.security;
+
+import org.carnavawiky.back.model.Role;
+import org.carnavawiky.back.repository.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EstadoUsuarioCacheTest {
+
+    private static final Instant AHORA = Instant.parse("2025-02-20T10:00:00Z");
+
+    @Mock
+    private UsuarioRepository usuarioRepository;
+
+    @InjectMocks
+    private EstadoUsuarioCache estadoUsuarios;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(estadoUsuarios, "reloj", Clock.fixed(AHORA, ZoneOffset.UTC));
+    }
+
+    @Test
+    @DisplayName("Debe consultar la BD una sola vez por usuario mientras dure el TTL")
+    void testObtener_Cachea() {
+        when(usuarioRepository.findEstadoAccesoByUsername("admin")).thenReturn(List.of(
+                fila(true, Role.RoleName.ROLE_ADMIN), fila(true, Role.RoleName.ROLE_USER)));
+
+        Optional<EstadoUsuarioCache.EstadoUsuario> estado = estadoUsuarios.obtener("admin");
+        estadoUsuarios.obtener("admin");
+
+        assertTrue(estado.isPresent());
+        assertEquals(1L, estado.get().id());
+        assertTrue(estado.get().activo());
+        assertEquals(Set.of("ROLE_ADMIN", "ROLE_USER"), estado.get().roles());
+        verify(usuarioRepository, times(1)).findEstadoAccesoByUsername("admin");
+
+        // Pasado el TTL (30 s por defecto) se vuelve a consultar
+        ReflectionTestUtils.setField(estadoUsuarios, "reloj", Clock.fixed(AHORA.plus(Duration.ofSeconds(31)), ZoneOffset.UTC));
+        estadoUsuarios.obtener("admin");
+        verify(usuarioRepository, times(2)).findEstadoAccesoByUsername("admin");
+    }
+
+    @Test
+    @DisplayName("Debe cachear también los usuarios inexistentes y los que no tienen roles")
+    void testObtener_InexistenteYSinRoles() {
+        when(usuarioRepository.findEstadoAccesoByUsername("borrado")).thenReturn(List.of());
+        when(usuarioRepository.findEstadoAccesoByUsername("nuevo")).thenReturn(List.of(fila(false, null)));
+
+        assertTrue(estadoUsuarios.obtener("borrado").isEmpty());
+        assertTrue(estadoUsuarios.obtener("borrado").isEmpty());
+        verify(usuarioRepository, times(1)).findEstadoAccesoByUsername("borrado");
+
+        EstadoUsuarioCache.EstadoUsuario nuevo = estadoUsuarios.obtener("nuevo").orElseThrow();
+        assertFalse(nuevo.activo());
+        assertTrue(nuevo.roles().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Debe volver a la BD tras invalidar un usuario o toda la caché")
+    void testInvalidar() {
+        when(usuarioRepository.findEstadoAccesoByUsername("admin"))
+                .thenReturn(List.of(fila(true, Role.RoleName.ROLE_ADMIN)))
+                .thenReturn(List.of(fila(false, Role.RoleName.ROLE_ADMIN)));
+        when(usuarioRepository.findEstadoAccesoByUsername("otro")).thenReturn(List.of(fila(true, Role.RoleName.ROLE_USER)));
+
+        assertTrue(estadoUsuarios.obtener("admin").orElseThrow().activo());
+        estadoUsuarios.obtener("otro");
+
+        // Sin transacción activa la invalidación es inmediata
+        estadoUsuarios.invalidar("admin");
+        assertFalse(estadoUsuarios.obtener("admin").orElseThrow().activo());
+        estadoUsuarios.obtener("otro");
+        verify(usuarioRepository, times(1)).findEstadoAccesoByUsername("otro");
+
+        estadoUsuarios.invalidarTodos();
+        estadoUsuarios.obtener("otro");
+        verify(usuarioRepository, times(2)).findEstadoAccesoByUsername("otro");
+    }
+
+    private static UsuarioRepository.EstadoAcceso fila(boolean enabled, Role.RoleName rol) {
+        return new UsuarioRepository.EstadoAcceso() {
+            @Override
+            public Long getId() {
+                return 1L;
+            }
+
+            @Override
+            public Boolean getEnabled() {
+                return enabled;
+            }
+
+            @Override
+            public Role.RoleName getRol() {
+                return rol;
+            }
+        };
+    }
+}
@@ -1,5 +1,6 @@
 package org.carnavawiky.back.security;
 
+import io.jsonwebtoken.JwtException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -8,7 +9,13 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;
@@ -113,4 +120,52 @@ class JwtServiceTest {
         // 3. Verificar que es inválido
         assertFalse(jwtService.validateToken(tamperedToken));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Debe verificar una sola vez y servir el token desde la caché en las siguientes peticiones")
+    void testVerifyToken_Cacheado() {
+        Authentication auth = Mockito.mock(Authentication.class);
+        when(auth.getName()).thenReturn("cachero");
+        when(auth.getAuthorities()).thenAnswer(i -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_ADMIN")));
+        String token = jwtService.generateAccessToken(auth);
+
+        Optional<VerifiedToken> primero = jwtService.verifyToken(token);
+        Optional<VerifiedToken> segundo = jwtService.verifyToken(token);
+
+        assertTrue(primero.isPresent());
+        assertEquals("cachero", primero.get().username());
+        assertEquals(List.of("ROLE_ADMIN"), primero.get().roles());
+        // Misma instancia: la segunda vez no se ha vuelto a parsear ni a verificar la firma
+        assertSame(primero.get(), segundo.get());
+    }
+
+    @Test
+    @DisplayName("Un token cacheado deja de ser válido cuando expira")
+    void testVerifyToken_CacheRespetaExpiracion() {
+        Authentication auth = Mockito.mock(Authentication.class);
+        when(auth.getName()).thenReturn("user");
+        when(auth.getAuthorities()).thenAnswer(i -> Collections.emptyList());
+        String token = jwtService.generateAccessToken(auth);
+        assertTrue(jwtService.validateToken(token));
+
+        // 16 minutos después (el token dura 15)
+        ReflectionTestUtils.setField(jwtService, "reloj", Clock.fixed(Instant.now().plus(Duration.ofMinutes(16)), ZoneOffset.UTC));
+
+        assertFalse(jwtService.validateToken(token));
+        assertTrue(jwtService.verifyToken(token).isEmpty());
+        assertThrows(JwtException.class, () -> jwtService.getUsernameFromToken(token));
+    }
+
+    @Test
+    @DisplayName("Sin caché (max-entries = 0) el token se verifica igualmente")
+    void testVerifyToken_SinCache() {
+        ReflectionTestUtils.setField(jwtService, "maxTokensCacheados", 0);
+        Authentication auth = Mockito.mock(Authentication.class);
+        when(auth.getName()).thenReturn("user");
+        when(auth.getAuthorities()).thenAnswer(i -> Collections.emptyList());
+        String token = jwtService.generateAccessToken(auth);
+
+        assertNotSame(jwtService.verifyToken(token).get(), jwtService.verifyToken(token).get());
+        assertTrue(jwtService.verifyToken(null).isEmpty());
+    }
+}
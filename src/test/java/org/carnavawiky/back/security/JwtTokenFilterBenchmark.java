@@ -0,0 +1,93 @@
+package org.carnavawiky.back.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-benchmark (JMH) del JwtTokenFilter: throughput del filtro con y sin la caché de tokens
+ * verificados, frente al camino anterior (clave HMAC derivada y token parseado dos veces por petición).
+ * La carga del usuario se simula en memoria para medir solo el coste del JWT.
+ * <p>
+ * Ejecutar con: mvn test-compile y lanzar el main desde el IDE (o con el classpath de test).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtTokenFilterBenchmark {
+
+    private static final String SECRETO = "mi_clave_secreta_super_segura_para_el_benchmark_de_carnaval";
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    private JwtTokenFilter filtro;
+    private String token;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() {
+        JwtService jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "jwtSecretKey", SECRETO);
+        ReflectionTestUtils.setField(jwtService, "jwtExpirationMinutes", 60L);
+        ReflectionTestUtils.setField(jwtService, "maxTokensCacheados", cache ? 10000 : 0);
+
+        UserDetails usuario = User.withUsername("comparsista").password("x").roles("USER").build();
+        filtro = new JwtTokenFilter();
+        ReflectionTestUtils.setField(filtro, "jwtService", jwtService);
+        ReflectionTestUtils.setField(filtro, "userDetailsService",
+                (UserDetailsService) username -> usuario);
+
+        token = jwtService.generateAccessToken(new UsernamePasswordAuthenticationToken(
+                "comparsista", null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+        request = new MockHttpServletRequest("GET", "/api/agrupaciones");
+        request.addHeader("Authorization", "Bearer " + token);
+    }
+
+    @Benchmark
+    public Object filtro() throws Exception {
+        SecurityContextHolder.clearContext();
+        filtro.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    // Referencia: lo que hacía el filtro antes por petición (2 derivaciones de clave + 2 verificaciones)
+    @Benchmark
+    public void legadoDobleParseo(Blackhole blackhole) {
+        for (int i = 0; i < 2; i++) {
+            blackhole.consume(Jwts.parser()
+                    .verifyWith(Keys.hmacShaKeyFor(SECRETO.getBytes(StandardCharsets.UTF_8)))
+                    .build()
+                    .parseSignedClaims(token)
+                    .getPayload());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtTokenFilterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
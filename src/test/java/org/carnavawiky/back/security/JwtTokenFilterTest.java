@@ -12,13 +12,21 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.*;
@@ -44,6 +52,9 @@ class JwtTokenFilterTest {
     @Mock
     private UserDetails userDetails;
 
+    @Mock
+    private EstadoUsuarioCache estadoUsuarios;
+
     @InjectMocks
     private JwtTokenFilter jwtTokenFilter;
 
@@ -89,9 +100,8 @@ class JwtTokenFilterTest {
         String username = "usuarioPrueba";
 
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtService.getUsernameFromToken(token)).thenReturn(username);
+        when(jwtService.verifyToken(token)).thenReturn(Optional.of(verificado(username)));
         when(userDetailsService.loadUserByUsername(username)).thenReturn(userDetails);
-        when(jwtService.validateToken(token)).thenReturn(true);
         when(userDetails.getAuthorities()).thenReturn(Collections.emptyList());
 
         // ACT
@@ -101,6 +111,23 @@ class JwtTokenFilterTest {
         assertNotNull(SecurityContextHolder.getContext().getAuthentication());
         verify(filterChain, times(1)).doFilter(request, response);
         verify(userDetailsService, times(1)).loadUserByUsername(username);
+        // Una sola verificación del token por petición
+        verify(jwtService, times(1)).verifyToken(token);
+        verifyNoMoreInteractions(jwtService);
+    }
+
+    @Test
+    @DisplayName("No debe autenticar ni consultar la BD si el token no es válido")
+    void testDoFilterInternal_InvalidToken() throws ServletException, IOException {
+        String token = "token.caducado.jwt";
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtService.verifyToken(token)).thenReturn(Optional.empty());
+
+        jwtTokenFilter.doFilterInternal(request, response, filterChain);
+
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(filterChain, times(1)).doFilter(request, response);
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
 
     @Test
@@ -111,7 +138,7 @@ class JwtTokenFilterTest {
 
         String token = "token.valido.jwt";
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtService.getUsernameFromToken(token)).thenReturn("usuario");
+        when(jwtService.verifyToken(token)).thenReturn(Optional.of(verificado("usuario")));
 
         jwtTokenFilter.doFilterInternal(request, response, filterChain);
 
@@ -123,9 +150,10 @@ class JwtTokenFilterTest {
     @Test
     @DisplayName("Debe capturar excepciones y continuar la cadena de filtros")
     void testDoFilterInternal_WithException() throws ServletException, IOException {
-        String token = "token.corrupto";
+        String token = "token.valido.jwt";
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtService.getUsernameFromToken(token)).thenThrow(new RuntimeException("Error de parseo"));
+        when(jwtService.verifyToken(token)).thenReturn(Optional.of(verificado("borrado")));
+        when(userDetailsService.loadUserByUsername("borrado")).thenThrow(new RuntimeException("Usuario no encontrado"));
 
         jwtTokenFilter.doFilterInternal(request, response, filterChain);
 
@@ -133,4 +161,77 @@ class JwtTokenFilterTest {
         verify(filterChain, times(1)).doFilter(request, response);
         assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
-}
\ No newline at end of file
+
+    // =======================================================
+    // MODO SIN ESTADO (jwt.auth.stateless=true)
+    // =======================================================
+
+    @Test
+    @DisplayName("Sin estado: debe autenticar con los roles del token sin cargar el usuario")
+    void testStateless_SinCargarUsuario() throws ServletException, IOException {
+        ReflectionTestUtils.setField(jwtTokenFilter, "stateless", true);
+        String token = "token.valido.jwt";
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtService.verifyToken(token)).thenReturn(Optional.of(
+                new VerifiedToken("admin", List.of("ROLE_ADMIN", "ROLE_USER"), Instant.now().plusSeconds(60))));
+        when(estadoUsuarios.isHabilitado()).thenReturn(false);
+
+        jwtTokenFilter.doFilterInternal(request, response, filterChain);
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(auth);
+        assertThat(auth.getName()).isEqualTo("admin");
+        assertThat(auth.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactlyInAnyOrder("ROLE_ADMIN", "ROLE_USER");
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(estadoUsuarios, never()).obtener(anyString());
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
+    @Test
+    @DisplayName("Sin estado: debe quedarse solo con los roles del token que el usuario conserva")
+    void testStateless_RolesRetirados() throws ServletException, IOException {
+        ReflectionTestUtils.setField(jwtTokenFilter, "stateless", true);
+        String token = "token.valido.jwt";
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtService.verifyToken(token)).thenReturn(Optional.of(
+                new VerifiedToken("admin", List.of("ROLE_ADMIN", "ROLE_USER"), Instant.now().plusSeconds(60))));
+        when(estadoUsuarios.isHabilitado()).thenReturn(true);
+        when(estadoUsuarios.obtener("admin")).thenReturn(Optional.of(
+                new EstadoUsuarioCache.EstadoUsuario(1L, true, Set.of("ROLE_USER", "ROLE_ESPECIALISTO"))));
+
+        jwtTokenFilter.doFilterInternal(request, response, filterChain);
+
+        // Ni se conserva el rol retirado ni se gana uno que el token no incluye
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getAuthorities())
+                .extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_USER");
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+    }
+
+    @Test
+    @DisplayName("Sin estado: no debe autenticar a usuarios deshabilitados o borrados")
+    void testStateless_UsuarioRevocado() throws ServletException, IOException {
+        ReflectionTestUtils.setField(jwtTokenFilter, "stateless", true);
+        when(request.getHeader("Authorization")).thenReturn("Bearer a", "Bearer b");
+        when(jwtService.verifyToken("a")).thenReturn(Optional.of(verificado("deshabilitado")));
+        when(jwtService.verifyToken("b")).thenReturn(Optional.of(verificado("borrado")));
+        when(estadoUsuarios.isHabilitado()).thenReturn(true);
+        when(estadoUsuarios.obtener("deshabilitado")).thenReturn(Optional.of(
+                new EstadoUsuarioCache.EstadoUsuario(1L, false, Set.of("ROLE_USER"))));
+        when(estadoUsuarios.obtener("borrado")).thenReturn(Optional.empty());
+
+        jwtTokenFilter.doFilterInternal(request, response, filterChain);
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+
+        jwtTokenFilter.doFilterInternal(request, response, filterChain);
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+
+        // La petición sigue (sin autenticar) y la seguridad decide el 401/403
+        verify(filterChain, times(2)).doFilter(request, response);
+    }
+
+    private static VerifiedToken verificado(String username) {
+        return new VerifiedToken(username, List.of("ROLE_USER"), Instant.now().plusSeconds(60));
+    }
+}
@@ -4,6 +4,7 @@ import org.carnavawiky.back.exception.BadRequestException;
 import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.model.Usuario;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -29,6 +30,9 @@ class ActivationServiceTest {
     @Mock
     private EmailService emailService;
 
+    @Mock
+    private EstadoUsuarioCache estadoUsuarios;
+
     @InjectMocks
     private ActivationService activationService;
 
@@ -85,6 +89,7 @@ class ActivationServiceTest {
         assertTrue(usuario.isEnabled(), "El usuario debería estar habilitado.");
         assertNull(usuario.getActivationToken(), "El token debería haberse limpiado.");
         verify(usuarioRepository, times(1)).save(usuario);
+        verify(estadoUsuarios).invalidar("carnavalero");
     }
 
     @Test
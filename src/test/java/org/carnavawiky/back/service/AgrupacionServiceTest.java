@@ -1,8 +1,12 @@
 package org.carnavawiky.back.service;
 
+import org.carnavawiky.back.config.CacheConfig;
 import org.carnavawiky.back.dto.AgrupacionRequest;
 import org.carnavawiky.back.dto.AgrupacionResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.dto.PortadaResponse;
+import org.carnavawiky.back.dto.ValoracionResponse;
 import org.carnavawiky.back.mapper.AgrupacionMapper;
 import org.carnavawiky.back.model.Agrupacion;
 import org.carnavawiky.back.model.Localidad;
@@ -10,6 +14,7 @@ import org.carnavawiky.back.model.Modalidad;
 import org.carnavawiky.back.model.Usuario;
 import org.carnavawiky.back.repository.AgrupacionRepository;
 import org.carnavawiky.back.repository.LocalidadRepository;
+import org.carnavawiky.back.repository.PremioRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -17,16 +22,20 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -45,10 +54,23 @@ class AgrupacionServiceTest {
     @Mock
     private AgrupacionMapper agrupacionMapper;
     @Mock
+    private IndiceBusquedaAgrupaciones indiceBusqueda;
+    @Mock
+    private ImagenService imagenService;
+    @Mock
+    private ValoracionesAgrupaciones valoraciones;
+    @Mock
+    private PremioRepository premioRepository;
+    @Mock
+    private CachesDependientes cachesDependientes;
+    @Mock
     private SecurityContext securityContext;
     @Mock
     private Authentication authentication;
 
+    @Spy
+    private ConteoCache conteoCache = new ConteoCache();
+
     @InjectMocks
     private AgrupacionService agrupacionService;
 
@@ -101,6 +123,24 @@ class AgrupacionServiceTest {
         assertNotNull(result);
         assertEquals("Los Piratas", result.getNombre());
         verify(agrupacionRepository).save(any());
+        verify(indiceBusqueda).indexar(agrupacion);
+    }
+
+    @Test
+    @DisplayName("Debe resolver la búsqueda con el índice en memoria respetando el orden de relevancia")
+    void testObtenerTodas_BusquedaConIndice() {
+        Pageable pageable = PageRequest.of(0, 10);
+        AgrupacionResponse otraResponse = new AgrupacionResponse();
+        otraResponse.setId(20L);
+
+        when(indiceBusqueda.buscar("cadiz", pageable)).thenReturn(Optional.of(new PageImpl<>(List.of(20L, 10L), pageable, 2)));
+        when(agrupacionRepository.findResponsesByIdIn(List.of(20L, 10L))).thenReturn(List.of(response, otraResponse));
+
+        PageResponse<AgrupacionResponse> result = agrupacionService.obtenerTodasAgrupaciones(pageable, "cadiz", ModoConteo.EXACTO);
+
+        assertEquals(2, result.getTotalElements());
+        assertEquals(List.of(20L, 10L), result.getContent().stream().map(AgrupacionResponse::getId).toList());
+        verify(agrupacionRepository, never()).searchResponses(any(), any());
     }
 
 
@@ -108,16 +148,51 @@ class AgrupacionServiceTest {
     @DisplayName("Debe obtener todas las agrupaciones paginadas")
     void testObtenerTodas_Paginado() {
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Agrupacion> page = new PageImpl<>(Collections.singletonList(agrupacion));
+        Page<AgrupacionResponse> page = new PageImpl<>(Collections.singletonList(response));
 
-        when(agrupacionRepository.findAll(pageable)).thenReturn(page);
-        when(agrupacionMapper.toResponse(any())).thenReturn(response);
+        when(agrupacionRepository.findAllResponses(pageable)).thenReturn(page);
+        PortadaResponse portada = PortadaResponse.builder().imagenId(5L).urlMiniatura("/api/imagenes/variantes/a_160.jpg").build();
+        when(imagenService.obtenerPortadas(List.of(10L))).thenReturn(Map.of(10L, portada));
 
-        PageResponse<AgrupacionResponse> result = agrupacionService.obtenerTodasAgrupaciones(pageable, null);
+        PageResponse<AgrupacionResponse> result = agrupacionService.obtenerTodasAgrupaciones(pageable, null, ModoConteo.EXACTO);
 
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
-        verify(agrupacionRepository).findAll(pageable);
+        verify(agrupacionRepository).findAllResponses(pageable);
+        // La portada llega en el propio listado: una consulta para toda la página
+        assertSame(portada, result.getContent().get(0).getPortada());
+        verify(imagenService, times(1)).obtenerPortadas(any());
+    }
+
+    @Test
+    @DisplayName("Debe ordenar por valoración con el agregado, sin pasar el orden a Spring Data")
+    void testObtenerTodas_PorValoracion() {
+        Pageable pageable = PageRequest.of(1, 10, Sort.by(Sort.Direction.DESC, AgrupacionService.ORDEN_VALORACION));
+        Page<AgrupacionResponse> page = new PageImpl<>(Collections.singletonList(response));
+        ValoracionResponse valoracion = ValoracionResponse.builder().numero(3L).suma(14L).media(14 / 3.0).build();
+
+        when(agrupacionRepository.findAllResponsesPorValoracion(PageRequest.of(1, 10))).thenReturn(page);
+        when(valoraciones.obtener(List.of(10L))).thenReturn(Map.of(10L, valoracion));
+
+        PageResponse<AgrupacionResponse> result = agrupacionService.obtenerTodasAgrupaciones(pageable, null, ModoConteo.EXACTO);
+
+        assertSame(valoracion, result.getContent().get(0).getValoracion());
+        verify(agrupacionRepository, never()).findAllResponses(any());
+        verifyNoInteractions(indiceBusqueda);
+    }
+
+    @Test
+    @DisplayName("Debe usar la búsqueda JPA si el índice no está disponible")
+    void testObtenerTodas_BusquedaFallbackJpa() {
+        Pageable pageable = PageRequest.of(0, 10);
+        Page<AgrupacionResponse> page = new PageImpl<>(Collections.singletonList(response));
+
+        when(indiceBusqueda.buscar("piratas", pageable)).thenReturn(Optional.empty());
+        when(agrupacionRepository.searchResponses("piratas", pageable)).thenReturn(page);
+
+        PageResponse<AgrupacionResponse> result = agrupacionService.obtenerTodasAgrupaciones(pageable, "piratas", ModoConteo.EXACTO);
+
+        assertEquals(1, result.getContent().size());
     }
 
     @Test
@@ -132,6 +207,24 @@ class AgrupacionServiceTest {
 
         assertNotNull(result);
         verify(agrupacionRepository).save(agrupacion);
+        // Mismo nombre: los premios siguen valiendo
+        verifyNoInteractions(cachesDependientes, premioRepository);
+    }
+
+    @Test
+    @DisplayName("Al renombrar una agrupación se desalojan por clave solo sus premios")
+    void testActualizarAgrupacion_Renombrada_DesalojaSusPremios() {
+        request.setNombre("Los Corsarios");
+        when(agrupacionRepository.findById(10L)).thenReturn(Optional.of(agrupacion));
+        when(localidadRepository.findById(1L)).thenReturn(Optional.of(localidad));
+        when(agrupacionRepository.save(any())).thenReturn(agrupacion);
+        when(agrupacionMapper.toResponse(any())).thenReturn(response);
+        when(premioRepository.findIdsByAgrupacionId(10L)).thenReturn(List.of(7L));
+
+        agrupacionService.actualizarAgrupacion(10L, request);
+
+        verify(cachesDependientes).desalojar(CacheConfig.PREMIO_BY_ID, List.of(7L));
+        verify(cachesDependientes).vaciar(CacheConfig.PREMIOS_LIST);
     }
 
     @Test
@@ -142,5 +235,7 @@ class AgrupacionServiceTest {
 
         assertDoesNotThrow(() -> agrupacionService.eliminarAgrupacion(10L));
         verify(agrupacionRepository, times(1)).delete(agrupacion);
+        verify(indiceBusqueda).eliminar(10L);
+        verify(valoraciones).eliminar(10L);
     }
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.exception.BadRequestException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlmacenImagenesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private AlmacenImagenes almacenImagenes;
+
+    @BeforeEach
+    void setUp() {
+        almacenImagenes = new AlmacenImagenes();
+        ReflectionTestUtils.setField(almacenImagenes, "uploadLocation", tempDir.resolve("imagenes").toString());
+        ReflectionTestUtils.setField(almacenImagenes, "maxBytes", 256 * 1024L);
+    }
+
+    @Test
+    @DisplayName("Debe copiar el contenido en varios bloques y calcular SHA-256 y tamaño")
+    void testRecibirYPublicar() throws Exception {
+        // Más grande que el buffer de copia para recorrer varias iteraciones
+        byte[] contenido = new byte[200_000];
+        new Random(7).nextBytes(contenido);
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(contenido));
+
+        AlmacenImagenes.FicheroTemporal fichero = almacenImagenes.recibir(new ByteArrayInputStream(contenido), "cartel.PNG");
+
+        assertEquals(sha256, fichero.sha256());
+        assertEquals(contenido.length, fichero.tamanoBytes());
+        assertEquals(sha256 + ".png", fichero.nombreFichero());
+
+        Path publicado = almacenImagenes.publicar(fichero, fichero.nombreFichero());
+
+        assertArrayEquals(contenido, Files.readAllBytes(publicado));
+        // No quedan temporales junto al fichero definitivo
+        assertEquals(1, contarFicheros());
+    }
+
+    @Test
+    @DisplayName("Debe guardar una sola vez el mismo contenido")
+    void testPublicar_ContenidoRepetido() throws IOException {
+        AlmacenImagenes.FicheroTemporal primero = almacenImagenes.recibir(new ByteArrayInputStream("cartel".getBytes()), "a.jpg");
+        AlmacenImagenes.FicheroTemporal segundo = almacenImagenes.recibir(new ByteArrayInputStream("cartel".getBytes()), "b.jpg");
+
+        Path ruta = almacenImagenes.publicar(primero, primero.nombreFichero());
+        assertEquals(ruta, almacenImagenes.publicar(segundo, primero.nombreFichero()));
+
+        assertEquals(1, contarFicheros());
+    }
+
+    @Test
+    @DisplayName("Debe rechazar contenidos vacíos o por encima del límite sin dejar temporales")
+    void testGuardar_Rechazos() throws IOException {
+        assertThrows(BadRequestException.class,
+                () -> almacenImagenes.recibir(new ByteArrayInputStream(new byte[300 * 1024]), "grande.jpg"));
+        assertThrows(BadRequestException.class,
+                () -> almacenImagenes.recibir(new ByteArrayInputStream(new byte[0]), "vacia.jpg"));
+
+        assertEquals(0, contarFicheros());
+    }
+
+    @Test
+    @DisplayName("Debe repartir los ficheros en dos niveles de directorios y seguir encontrando los planos")
+    void testRutasFragmentadas() throws IOException {
+        Path raiz = tempDir.resolve("imagenes");
+        AlmacenImagenes.FicheroTemporal fichero = almacenImagenes.recibir(new ByteArrayInputStream("cartel".getBytes()), "a.jpg");
+        String sha256 = fichero.sha256();
+
+        Path publicado = almacenImagenes.publicar(fichero, fichero.nombreFichero());
+
+        assertEquals(raiz.resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256 + ".jpg"), publicado);
+        assertEquals(publicado, almacenImagenes.localizar(sha256 + ".jpg"));
+        assertEquals("variantes/" + sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256 + "_160.jpg",
+                raiz.relativize(almacenImagenes.rutaVariante(sha256 + "_160.jpg")).toString());
+
+        // Nombres antiguos (no hexadecimales): por el hash del nombre, siempre el mismo
+        assertEquals(AlmacenImagenes.fragmento("cartel_1.jpg"), AlmacenImagenes.fragmento("cartel_1.jpg"));
+        assertTrue(AlmacenImagenes.fragmento("cartel_1.jpg").matches("[0-9a-f]{2}/[0-9a-f]{2}/cartel_1\\.jpg"));
+
+        // Un fichero del esquema plano se encuentra hasta que se migra
+        Path plano = Files.write(raiz.resolve("uuid-1.jpg"), "antigua".getBytes());
+        assertEquals(plano, almacenImagenes.localizar("uuid-1.jpg"));
+        // Y una subida de ese mismo nombre lo reutiliza en lugar de duplicarlo
+        AlmacenImagenes.FicheroTemporal repetido = almacenImagenes.recibir(new ByteArrayInputStream("antigua".getBytes()), "x.jpg");
+        assertEquals(plano, almacenImagenes.publicar(repetido, "uuid-1.jpg"));
+        assertFalse(Files.exists(repetido.ruta()));
+    }
+
+    @Test
+    @DisplayName("Debe quedarse solo con extensiones simples")
+    void testExtension() {
+        assertEquals(".jpg", AlmacenImagenes.extension("foto.JPG"));
+        assertEquals(".webp", AlmacenImagenes.extension("a.b.webp"));
+        assertEquals("", AlmacenImagenes.extension("sin_extension"));
+        assertEquals("", AlmacenImagenes.extension("raro.j/pg"));
+        assertEquals("", AlmacenImagenes.extension(null));
+    }
+
+    private long contarFicheros() throws IOException {
+        try (Stream<Path> ficheros = Files.list(tempDir.resolve("imagenes"))) {
+            return ficheros.count();
+        }
+    }
+}
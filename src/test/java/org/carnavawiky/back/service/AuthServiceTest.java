@@ -9,6 +9,7 @@ import org.carnavawiky.back.model.Role;
 import org.carnavawiky.back.model.Usuario;
 import org.carnavawiky.back.repository.RoleRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.carnavawiky.back.security.JwtService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -40,6 +41,7 @@ class AuthServiceTest {
     @Mock private RefreshTokenService refreshTokenService;
     @Mock private ActivationService activationService;
     @Mock private EmailService emailService;
+    @Mock private EstadoUsuarioCache estadoUsuarios;
 
     @InjectMocks
     private AuthService authService;
@@ -82,6 +84,8 @@ class AuthServiceTest {
         assertNotNull(resultado);
         verify(activationService, times(1)).generateAndSendActivationEmail(any(Usuario.class));
         verify(usuarioRepository).save(any(Usuario.class));
+        // Un "no existe" cacheado para ese nombre deja de valer
+        verify(estadoUsuarios).invalidar("testuser");
     }
 
     @Test
@@ -152,6 +156,7 @@ class AuthServiceTest {
         assertEquals("newEncodedPass", usuario.getPassword());
         assertNull(usuario.getResetToken()); // Debe limpiarse tras el uso
         verify(usuarioRepository).save(usuario);
+        verify(estadoUsuarios).invalidar("testuser");
     }
 
     @Test
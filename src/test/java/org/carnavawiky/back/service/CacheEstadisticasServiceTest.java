@@ -0,0 +1,78 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.config.CacheConfig;
+import org.carnavawiky.back.dto.CacheEstadisticasResponse;
+import org.carnavawiky.back.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.jcache.JCacheCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.cache.Caching;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Estadísticas leídas de los MBeans reales que registra Ehcache con la configuración de ehcache.xml.
+ */
+class CacheEstadisticasServiceTest {
+
+    private javax.cache.CacheManager jCacheManager;
+    private JCacheCacheManager cacheManager;
+    private CacheEstadisticasService cacheEstadisticasService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jCacheManager = Caching.getCachingProvider().getCacheManager(
+                getClass().getResource("/ehcache.xml").toURI(), getClass().getClassLoader());
+        cacheManager = new JCacheCacheManager(jCacheManager);
+        cacheManager.afterPropertiesSet();
+
+        cacheEstadisticasService = new CacheEstadisticasService();
+        ReflectionTestUtils.setField(cacheEstadisticasService, "cacheManager", cacheManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jCacheManager.close();
+    }
+
+    @Test
+    @DisplayName("Debe contar aciertos, fallos y escrituras de cada región")
+    void testObtenerEstadisticas() {
+        Cache concursos = cacheManager.getCache(CacheConfig.CONCURSO_BY_ID);
+        concursos.get(1L);          // fallo
+        concursos.put(1L, "COAC");
+        concursos.get(1L);          // acierto
+        concursos.get(1L);          // acierto
+
+        CacheEstadisticasResponse estadisticas = cacheEstadisticasService.obtenerEstadisticas(CacheConfig.CONCURSO_BY_ID);
+
+        assertEquals(2, estadisticas.getAciertos());
+        assertEquals(1, estadisticas.getFallos());
+        assertEquals(1, estadisticas.getEscrituras());
+        assertEquals(3, estadisticas.getLecturas());
+        assertEquals(66.6f, estadisticas.getPorcentajeAciertos(), 0.1f);
+
+        // Todas las regiones de ehcache.xml aparecen en el listado
+        List<CacheEstadisticasResponse> todas = cacheEstadisticasService.obtenerEstadisticas();
+        assertEquals(cacheManager.getCacheNames().size(), todas.size());
+        assertTrue(todas.stream().anyMatch(e -> e.getNombre().equals(CacheConfig.PERSONA_BY_ID)));
+    }
+
+    @Test
+    @DisplayName("Debe reiniciar los contadores y rechazar regiones inexistentes")
+    void testReiniciarYRegionInexistente() {
+        Cache localidades = cacheManager.getCache(CacheConfig.LOCALIDAD_BY_ID);
+        localidades.get(1L);
+
+        cacheEstadisticasService.reiniciarEstadisticas();
+
+        assertEquals(0, cacheEstadisticasService.obtenerEstadisticas(CacheConfig.LOCALIDAD_BY_ID).getFallos());
+        assertThrows(ResourceNotFoundException.class, () -> cacheEstadisticasService.obtenerEstadisticas("no_existe"));
+    }
+}
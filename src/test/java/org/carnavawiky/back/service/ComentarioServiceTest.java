@@ -2,7 +2,10 @@ package org.carnavawiky.back.service;
 
 import org.carnavawiky.back.dto.ComentarioRequest;
 import org.carnavawiky.back.dto.ComentarioResponse;
+import org.carnavawiky.back.dto.HiloComentarioResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
+import org.carnavawiky.back.dto.SliceResponse;
 import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.mapper.ComentarioMapper;
 import org.carnavawiky.back.model.Agrupacion;
@@ -15,15 +18,23 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -45,6 +56,15 @@ class ComentarioServiceTest {
     @Mock
     private ComentarioMapper comentarioMapper;
 
+    @Mock
+    private ValoracionesAgrupaciones valoraciones;
+
+    @Mock
+    private HilosComentarios hilos;
+
+    @Spy
+    private ConteoCache conteoCache = new ConteoCache();
+
     @InjectMocks
     private ComentarioService comentarioService;
 
@@ -101,6 +121,26 @@ class ComentarioServiceTest {
         verify(comentarioRepository).save(any(Comentario.class));
     }
 
+    @Test
+    @DisplayName("Una respuesta se cuelga de su padre antes de guardarla y completa su ruta después")
+    void testCrearComentario_Respuesta() {
+        Comentario padre = new Comentario();
+        padre.setId(50L);
+        comentarioRequest.setPadreId(50L);
+        when(usuarioRepository.findById(1L)).thenReturn(Optional.of(usuario));
+        when(agrupacionRepository.findById(10L)).thenReturn(Optional.of(agrupacion));
+        when(comentarioMapper.toEntity(any(), any(), any())).thenReturn(comentario);
+        when(hilos.colgar(comentario, 50L)).thenReturn(padre);
+        when(comentarioRepository.save(comentario)).thenReturn(comentario);
+
+        comentarioService.crearComentario(comentarioRequest);
+
+        InOrder orden = inOrder(hilos, comentarioRepository);
+        orden.verify(hilos).colgar(comentario, 50L);
+        orden.verify(comentarioRepository).save(comentario);
+        orden.verify(hilos).completarRuta(comentario, padre);
+    }
+
     @Test
     @DisplayName("Debe lanzar excepción si el usuario no existe al comentar")
     void testCrearComentario_UsuarioNoEncontrado() {
@@ -117,25 +157,84 @@ class ComentarioServiceTest {
     void testListarComentarios_Paginado() {
         // ARRANGE
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Comentario> page = new PageImpl<>(Collections.singletonList(comentario));
+        Page<ComentarioResponse> page = new PageImpl<>(Collections.singletonList(comentarioResponse));
 
-        when(comentarioRepository.findAll(pageable)).thenReturn(page);
-        when(comentarioMapper.toResponse(any())).thenReturn(comentarioResponse);
+        when(comentarioRepository.findAllResponses(pageable)).thenReturn(page);
 
         // ACT
-        PageResponse<ComentarioResponse> result = comentarioService.obtenerTodosComentarios(pageable, null);
+        PageResponse<ComentarioResponse> result = comentarioService.obtenerTodosComentarios(pageable, null, ModoConteo.EXACTO);
 
         // ASSERT
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
-        verify(comentarioRepository).findAll(pageable);
+        verify(comentarioRepository).findAllResponses(pageable);
+    }
+
+    @Test
+    @DisplayName("Debe paginar por cursor los aprobados de una agrupación, más recientes primero")
+    void testListarComentarios_PorCursor() {
+        Pageable pageable = PageRequest.of(0, 10);
+        Window<Comentario> ventana = Window.from(List.of(comentario), i -> ScrollPosition.keyset());
+
+        when(comentarioRepository.findByAgrupacion_IdAndAprobadoTrue(
+                eq(50L), any(ScrollPosition.class), eq(Sort.by(Sort.Direction.DESC, "fechaCreacion")), eq(Limit.of(10))))
+                .thenReturn(ventana);
+        when(comentarioMapper.toResponse(comentario)).thenReturn(comentarioResponse);
+
+        SliceResponse<ComentarioResponse> result = comentarioService.obtenerComentariosPorCursor(pageable, "50", null);
+
+        assertEquals(1, result.getContent().size());
+        assertFalse(result.isHasNext());
+        assertNull(result.getNextCursor());
+        verify(comentarioRepository, never()).findAllBy(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Debe cargar las respuestas de cada hilo con su propio tope, solo de los que tienen, y marcar los truncados")
+    void testObtenerHilos() {
+        Comentario otro = new Comentario();
+        otro.setId(101L);
+        ComentarioResponse raiz = new ComentarioResponse();
+        raiz.setId(100L);
+        raiz.setRespuestasTotales(2L);
+        ComentarioResponse sinRespuestas = new ComentarioResponse();
+        sinRespuestas.setId(101L);
+        sinRespuestas.setRespuestasTotales(0L);
+        ComentarioResponse respuesta = new ComentarioResponse();
+        respuesta.setId(200L);
+        respuesta.setRaizId(100L);
+        ComentarioResponse respuestaDeRespuesta = new ComentarioResponse();
+        respuestaDeRespuesta.setId(201L);
+        respuestaDeRespuesta.setRaizId(100L);
+
+        Window<Comentario> ventana = Window.from(List.of(comentario, otro), i -> ScrollPosition.keyset());
+        when(comentarioRepository.findByAgrupacion_IdAndPadreIdIsNullAndAprobadoTrue(
+                eq(10L), any(ScrollPosition.class), eq(Sort.by(Sort.Direction.DESC, "fechaCreacion")), eq(Limit.of(10))))
+                .thenReturn(ventana);
+        when(comentarioMapper.toResponse(comentario)).thenReturn(raiz);
+        when(comentarioMapper.toResponse(otro)).thenReturn(sinRespuestas);
+        ReflectionTestUtils.setField(comentarioService, "respuestasPorHilo", 1);
+        // Una de más: el hilo sigue
+        when(comentarioRepository.findRespuestasHiloResponses(100L, 2, Limit.of(2)))
+                .thenReturn(List.of(respuesta, respuestaDeRespuesta));
+
+        SliceResponse<HiloComentarioResponse> result =
+                comentarioService.obtenerHilosPorCursor(10L, PageRequest.of(0, 10), null, 2);
+
+        assertEquals(2, result.getContent().size());
+        assertSame(raiz, result.getContent().get(0).getComentario());
+        assertEquals(List.of(respuesta), result.getContent().get(0).getRespuestas());
+        assertTrue(result.getContent().get(0).isTruncado());
+        assertTrue(result.getContent().get(1).getRespuestas().isEmpty());
+        assertFalse(result.getContent().get(1).isTruncado());
+        verify(comentarioRepository, never()).findRespuestasHiloResponses(eq(101L), anyInt(), any());
     }
 
     @Test
     @DisplayName("Debe permitir a un ADMIN aprobar un comentario")
     void testAprobarComentario_Exito() {
         // ARRANGE
-        when(comentarioRepository.findById(100L)).thenReturn(Optional.of(comentario));
+        when(comentarioRepository.findByIdParaActualizar(100L)).thenReturn(Optional.of(comentario));
 
         // Simulamos que al guardar, el estado cambia a aprobado
         ComentarioResponse aprobadoResponse = new ComentarioResponse();
@@ -152,13 +251,52 @@ class ComentarioServiceTest {
         assertTrue(result.getAprobado());
         verify(comentarioRepository).save(comentario);
         assertTrue(comentario.getAprobado()); // Verifica que la entidad cambió
+        verify(valoraciones).sumar(comentario);
+        verify(hilos).sumar(comentario);
+    }
+
+    @Test
+    @DisplayName("Aprobar un comentario ya aprobado no vuelve a sumar su puntuación")
+    void testAprobarComentario_YaAprobado() {
+        comentario.setAprobado(true);
+        when(comentarioRepository.findByIdParaActualizar(100L)).thenReturn(Optional.of(comentario));
+        when(comentarioRepository.save(any(Comentario.class))).thenReturn(comentario);
+
+        comentarioService.aprobarComentario(100L);
+
+        verify(valoraciones, never()).sumar(any());
+    }
+
+    @Test
+    @DisplayName("Editar un comentario aprobado mueve su puntuación en la valoración")
+    void testActualizarComentario_Valoracion() {
+        comentario.setAprobado(true);
+        comentario.setPuntuacion(2);
+        comentarioRequest.setPuntuacion(5);
+        when(comentarioRepository.findByIdParaActualizar(100L)).thenReturn(Optional.of(comentario));
+        when(usuarioRepository.findById(1L)).thenReturn(Optional.of(usuario));
+        when(agrupacionRepository.findById(10L)).thenReturn(Optional.of(agrupacion));
+        when(comentarioRepository.save(any(Comentario.class))).thenReturn(comentario);
+
+        // Se resta con la puntuación anterior, antes de aplicar la nueva
+        doAnswer(inv -> {
+            assertEquals(2, inv.<Comentario>getArgument(0).getPuntuacion());
+            return null;
+        }).when(valoraciones).restar(comentario);
+
+        comentarioService.actualizarComentario(100L, comentarioRequest);
+
+        InOrder orden = inOrder(valoraciones);
+        orden.verify(valoraciones).restar(comentario);
+        orden.verify(valoraciones).sumar(comentario);
+        assertEquals(5, comentario.getPuntuacion());
     }
 
     @Test
     @DisplayName("Debe eliminar un comentario correctamente")
     void testEliminarComentario_Exito() {
         // ARRANGE
-        when(comentarioRepository.findById(100L)).thenReturn(Optional.of(comentario));
+        when(comentarioRepository.findByIdParaActualizar(100L)).thenReturn(Optional.of(comentario));
         doNothing().when(comentarioRepository).delete(comentario);
 
         // ACT
@@ -166,5 +304,8 @@ class ComentarioServiceTest {
 
         // ASSERT
         verify(comentarioRepository, times(1)).delete(comentario);
+        verify(valoraciones).restar(comentario);
+        // Sus respuestas se van con él
+        verify(hilos).eliminarRama(comentario);
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package org.carnavawiky.back.service;
 
 import org.carnavawiky.back.dto.ComponenteRequest;
 import org.carnavawiky.back.dto.ComponenteResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
 import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.mapper.ComponenteMapper;
@@ -18,6 +19,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -46,6 +48,9 @@ class ComponenteServiceTest {
     @Mock
     private ComponenteMapper componenteMapper;
 
+    @Spy
+    private ConteoCache conteoCache = new ConteoCache();
+
     @InjectMocks
     private ComponenteService componenteService;
 
@@ -116,18 +121,17 @@ class ComponenteServiceTest {
     void testListarComponentes_Paginado() {
         // ARRANGE
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Componente> page = new PageImpl<>(Collections.singletonList(componente));
+        Page<ComponenteResponse> page = new PageImpl<>(Collections.singletonList(componenteResponse));
 
-        when(componenteRepository.findAll(pageable)).thenReturn(page);
-        when(componenteMapper.toResponse(any())).thenReturn(componenteResponse);
+        when(componenteRepository.findAllResponses(pageable)).thenReturn(page);
 
         // ACT
-        PageResponse<ComponenteResponse> result = componenteService.obtenerTodosComponentes(pageable, null);
+        PageResponse<ComponenteResponse> result = componenteService.obtenerTodosComponentes(pageable, null, ModoConteo.EXACTO);
 
         // ASSERT
         assertNotNull(result);
         assertFalse(result.getContent().isEmpty());
-        verify(componenteRepository).findAll(pageable);
+        verify(componenteRepository).findAllResponses(pageable);
     }
 
     @Test
@@ -1,20 +1,25 @@
 package org.carnavawiky.back.service;
 
+import org.carnavawiky.back.config.CacheConfig;
 import org.carnavawiky.back.dto.ConcursoRequest;
 import org.carnavawiky.back.dto.ConcursoResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
 import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.mapper.ConcursoMapper;
 import org.carnavawiky.back.model.Concurso;
 import org.carnavawiky.back.model.Localidad;
 import org.carnavawiky.back.repository.ConcursoRepository;
+import org.carnavawiky.back.repository.EdicionRepository;
 import org.carnavawiky.back.repository.LocalidadRepository;
+import org.carnavawiky.back.repository.PremioRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -22,6 +27,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -40,6 +46,18 @@ class ConcursoServiceTest {
     @Mock
     private ConcursoMapper concursoMapper;
 
+    @Mock
+    private EdicionRepository edicionRepository;
+
+    @Mock
+    private PremioRepository premioRepository;
+
+    @Mock
+    private CachesDependientes cachesDependientes;
+
+    @Spy
+    private ConteoCache conteoCache = new ConteoCache();
+
     @InjectMocks
     private ConcursoService concursoService;
 
@@ -104,18 +122,17 @@ class ConcursoServiceTest {
     void testObtenerTodos_Paginado() {
         // ARRANGE
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Concurso> page = new PageImpl<>(Collections.singletonList(concurso));
+        Page<ConcursoResponse> page = new PageImpl<>(Collections.singletonList(concursoResponse));
 
-        when(concursoRepository.findAll(pageable)).thenReturn(page);
-        when(concursoMapper.toResponse(any(Concurso.class))).thenReturn(concursoResponse);
+        when(concursoRepository.findAllResponses(pageable)).thenReturn(page);
 
         // ACT
-        PageResponse<ConcursoResponse> result = concursoService.obtenerTodosConcursos(pageable, null);
+        PageResponse<ConcursoResponse> result = concursoService.obtenerTodosConcursos(pageable, null, ModoConteo.EXACTO);
 
         // ASSERT
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
-        verify(concursoRepository).findAll(pageable);
+        verify(concursoRepository).findAllResponses(pageable);
     }
 
     @Test
@@ -133,6 +150,29 @@ class ConcursoServiceTest {
         // ASSERT
         assertNotNull(result);
         verify(concursoRepository).save(concurso);
+        // Mismo nombre: ediciones y premios siguen valiendo
+        verifyNoInteractions(cachesDependientes, edicionRepository, premioRepository);
+    }
+
+    @Test
+    @DisplayName("Al renombrar un concurso se desalojan por clave sus ediciones y premios")
+    void testActualizarConcurso_Renombrado_DesalojaSusEdicionesYPremios() {
+        // ARRANGE
+        concursoRequest.setNombre("Concurso de Agrupaciones");
+        when(concursoRepository.findById(10L)).thenReturn(Optional.of(concurso));
+        when(localidadRepository.findById(1L)).thenReturn(Optional.of(localidad));
+        when(concursoRepository.save(any(Concurso.class))).thenReturn(concurso);
+        when(concursoMapper.toResponse(any(Concurso.class))).thenReturn(concursoResponse);
+        when(edicionRepository.findIdsByConcursoId(10L)).thenReturn(List.of(5L));
+        when(premioRepository.findIdsByConcursoId(10L)).thenReturn(List.of(7L, 8L));
+
+        // ACT
+        concursoService.actualizarConcurso(10L, concursoRequest);
+
+        // ASSERT
+        verify(cachesDependientes).desalojar(CacheConfig.EDICION_BY_ID, List.of(5L));
+        verify(cachesDependientes).desalojar(CacheConfig.PREMIO_BY_ID, List.of(7L, 8L));
+        verify(cachesDependientes).vaciar(CacheConfig.EDICIONES_LIST, CacheConfig.PREMIOS_LIST);
     }
 
     @Test
@@ -0,0 +1,142 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.dto.ModoConteo;
+import org.carnavawiky.back.dto.PageResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConteoCacheTest {
+
+    // Primera página de 2 con más filas detrás: necesita el total
+    private static final Slice<String> PRIMERA = new SliceImpl<>(List.of("A", "B"), PageRequest.of(0, 2), true);
+
+    private ConteoCache conteoCache;
+    private AtomicInteger conteos;
+    private long totalBd;
+
+    private final LongSupplier contar = () -> {
+        conteos.incrementAndGet();
+        return totalBd;
+    };
+
+    @BeforeEach
+    void setUp() {
+        conteoCache = new ConteoCache();
+        conteos = new AtomicInteger();
+        totalBd = 10;
+    }
+
+    @Test
+    @DisplayName("EXACTO cuenta una sola vez por (región, filtro) hasta que hay una escritura")
+    void testExacto_CacheaEInvalida() {
+        PageResponse<String> primera = conteoCache.paginar(PRIMERA, ModoConteo.EXACTO, ConteoCache.COMENTARIOS, "contenido:ole", contar);
+        conteoCache.paginar(PRIMERA, ModoConteo.EXACTO, ConteoCache.COMENTARIOS, "contenido:ole", contar);
+        // Otro filtro es otra entrada
+        conteoCache.paginar(PRIMERA, ModoConteo.EXACTO, ConteoCache.COMENTARIOS, null, contar);
+
+        assertEquals(10L, primera.getTotalElements());
+        assertEquals(5, primera.getTotalPages());
+        assertFalse(primera.isApproximateTotal());
+        assertEquals(2, conteos.get());
+
+        totalBd = 11;
+        conteoCache.invalidar(ConteoCache.COMENTARIOS);
+        PageResponse<String> tras = conteoCache.paginar(PRIMERA, ModoConteo.EXACTO, ConteoCache.COMENTARIOS, "contenido:ole", contar);
+
+        assertEquals(11L, tras.getTotalElements());
+        assertEquals(3, conteos.get());
+    }
+
+    @Test
+    @DisplayName("Escribir en una región invalida las que filtran por ella")
+    void testInvalidacion_Dependientes() {
+        conteoCache.paginar(PRIMERA, ModoConteo.EXACTO, ConteoCache.COMPONENTES, "search:piratas", contar);
+        conteoCache.paginar(PRIMERA, ModoConteo.EXACTO, ConteoCache.LOCALIDADES, null, contar);
+
+        // El buscador de componentes filtra por nombre de agrupación; localidades no depende de ella
+        conteoCache.invalidar(ConteoCache.AGRUPACIONES);
+        conteoCache.paginar(PRIMERA, ModoConteo.EXACTO, ConteoCache.COMPONENTES, "search:piratas", contar);
+        conteoCache.paginar(PRIMERA, ModoConteo.EXACTO, ConteoCache.LOCALIDADES, null, contar);
+
+        assertEquals(3, conteos.get());
+    }
+
+    @Test
+    @DisplayName("APROXIMADO reutiliza el total tras una escritura hasta que caduca")
+    void testAproximado_ToleraEscriturasHastaTtl() {
+        MutableClock reloj = new MutableClock();
+        ReflectionTestUtils.setField(conteoCache, "reloj", reloj);
+
+        conteoCache.paginar(PRIMERA, ModoConteo.EXACTO, ConteoCache.PREMIOS, null, contar);
+        totalBd = 12;
+        conteoCache.invalidar(ConteoCache.PREMIOS);
+
+        PageResponse<String> aproximada = conteoCache.paginar(PRIMERA, ModoConteo.APROXIMADO, ConteoCache.PREMIOS, null, contar);
+        assertEquals(10L, aproximada.getTotalElements());
+        assertTrue(aproximada.isApproximateTotal());
+        assertEquals(1, conteos.get());
+
+        reloj.avanzar(Duration.ofHours(1));
+        assertEquals(12L, conteoCache.paginar(PRIMERA, ModoConteo.APROXIMADO, ConteoCache.PREMIOS, null, contar)
+                .getTotalElements());
+        assertEquals(2, conteos.get());
+    }
+
+    @Test
+    @DisplayName("OMITIDO y la última página no ejecutan COUNT")
+    void testSinConteo() {
+        PageResponse<String> omitida = conteoCache.paginar(PRIMERA, ModoConteo.OMITIDO, ConteoCache.PERSONAS, null, contar);
+        assertNull(omitida.getTotalElements());
+        assertFalse(omitida.isLast());
+
+        Slice<String> ultima = new SliceImpl<>(List.of("C"), PageRequest.of(1, 2), false);
+        PageResponse<String> exacta = conteoCache.paginar(ultima, ModoConteo.EXACTO, ConteoCache.PERSONAS, null, contar);
+        assertEquals(3L, exacta.getTotalElements());
+        assertTrue(exacta.isLast());
+
+        assertEquals(0, conteos.get());
+    }
+
+    // =======================================================
+    // Helpers
+    // =======================================================
+
+    private static class MutableClock extends Clock {
+
+        private Instant ahora = Instant.parse("2024-02-10T12:00:00Z");
+
+        void avanzar(Duration duracion) {
+            ahora = ahora.plus(duracion);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return ahora;
+        }
+    }
+}
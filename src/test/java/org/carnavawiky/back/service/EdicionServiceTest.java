@@ -1,7 +1,9 @@
 package org.carnavawiky.back.service;
 
+import org.carnavawiky.back.config.CacheConfig;
 import org.carnavawiky.back.dto.EdicionRequest;
 import org.carnavawiky.back.dto.EdicionResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
 import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.mapper.EdicionMapper;
@@ -9,12 +11,14 @@ import org.carnavawiky.back.model.Concurso;
 import org.carnavawiky.back.model.Edicion;
 import org.carnavawiky.back.repository.ConcursoRepository;
 import org.carnavawiky.back.repository.EdicionRepository;
+import org.carnavawiky.back.repository.PremioRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -22,6 +26,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -40,6 +45,15 @@ class EdicionServiceTest {
     @Mock
     private EdicionMapper edicionMapper;
 
+    @Mock
+    private PremioRepository premioRepository;
+
+    @Mock
+    private CachesDependientes cachesDependientes;
+
+    @Spy
+    private ConteoCache conteoCache = new ConteoCache();
+
     @InjectMocks
     private EdicionService edicionService;
 
@@ -117,18 +131,17 @@ class EdicionServiceTest {
     void testListarEdiciones_Paginado() {
         // ARRANGE
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Edicion> page = new PageImpl<>(Collections.singletonList(edicion));
+        Page<EdicionResponse> page = new PageImpl<>(Collections.singletonList(edicionResponse));
 
-        when(edicionRepository.findAll(pageable)).thenReturn(page);
-        when(edicionMapper.toResponse(any(Edicion.class))).thenReturn(edicionResponse);
+        when(edicionRepository.findAllResponses(pageable)).thenReturn(page);
 
         // ACT
-        PageResponse<EdicionResponse> result = edicionService.obtenerTodasEdiciones(pageable, null);
+        PageResponse<EdicionResponse> result = edicionService.obtenerTodasEdiciones(pageable, null, ModoConteo.EXACTO);
 
         // ASSERT
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
-        verify(edicionRepository).findAll(pageable);
+        verify(edicionRepository).findAllResponses(pageable);
     }
 
     @Test
@@ -143,6 +156,7 @@ class EdicionServiceTest {
         when(concursoRepository.findById(1L)).thenReturn(Optional.of(concurso));
         when(edicionRepository.save(any(Edicion.class))).thenReturn(edicion);
         when(edicionMapper.toResponse(any(Edicion.class))).thenReturn(edicionResponse);
+        when(premioRepository.findIdsByEdicionId(10L)).thenReturn(List.of(7L));
 
         // ACT
         EdicionResponse result = edicionService.actualizarEdicion(10L, updateRequest);
@@ -151,6 +165,25 @@ class EdicionServiceTest {
         assertNotNull(result);
         verify(edicionRepository).save(edicion);
         assertEquals(2025, edicion.getAnho());
+        // Los premios muestran el año de la edición
+        verify(cachesDependientes).desalojar(CacheConfig.PREMIO_BY_ID, List.of(7L));
+        verify(cachesDependientes).vaciar(CacheConfig.PREMIOS_LIST);
+    }
+
+    @Test
+    @DisplayName("Si no cambian el año ni el concurso, los premios de la edición siguen en caché")
+    void testActualizarEdicion_SinCambiosVisibles_NoDesalojaPremios() {
+        // ARRANGE
+        when(edicionRepository.findById(10L)).thenReturn(Optional.of(edicion));
+        when(concursoRepository.findById(1L)).thenReturn(Optional.of(concurso));
+        when(edicionRepository.save(any(Edicion.class))).thenReturn(edicion);
+        when(edicionMapper.toResponse(any(Edicion.class))).thenReturn(edicionResponse);
+
+        // ACT
+        edicionService.actualizarEdicion(10L, edicionRequest);
+
+        // ASSERT
+        verifyNoInteractions(cachesDependientes, premioRepository);
     }
 
     @Test
@@ -0,0 +1,172 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.dto.ComentarioRequest;
+import org.carnavawiky.back.exception.BadRequestException;
+import org.carnavawiky.back.model.Agrupacion;
+import org.carnavawiky.back.model.Comentario;
+import org.carnavawiky.back.repository.ComentarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HilosComentariosTest {
+
+    @Mock
+    private ComentarioRepository comentarioRepository;
+
+    @InjectMocks
+    private HilosComentarios hilos;
+
+    private Agrupacion agrupacion;
+
+    @BeforeEach
+    void setUp() {
+        agrupacion = new Agrupacion();
+        agrupacion.setId(10L);
+    }
+
+    @Test
+    @DisplayName("Una respuesta hereda el hilo del padre y su ruta termina en su propio id")
+    void testColgarYCompletarRuta() {
+        Comentario raiz = comentario(1L, null, true);
+        hilos.completarRuta(raiz, null);
+        assertEquals("000000000001/", raiz.getRuta());
+        assertEquals(1L, raiz.getRaizId());
+        assertEquals(0, raiz.getProfundidad());
+
+        when(comentarioRepository.findByIdParaActualizar(1L)).thenReturn(Optional.of(raiz));
+        Comentario respuesta = comentario(null, null, false);
+
+        assertSame(raiz, hilos.colgar(respuesta, 1L));
+        respuesta.setId(345L);
+        hilos.completarRuta(respuesta, raiz);
+
+        assertEquals(1L, respuesta.getPadreId());
+        assertEquals(1L, respuesta.getRaizId());
+        assertEquals(1, respuesta.getProfundidad());
+        assertEquals("000000000001/000000000345/", respuesta.getRuta());
+    }
+
+    @Test
+    @DisplayName("Solo se responde a comentarios aprobados de la misma agrupación, sin puntuación ni pasar del máximo")
+    void testColgar_Rechazos() {
+        Comentario pendiente = comentario(1L, null, false);
+        when(comentarioRepository.findByIdParaActualizar(1L)).thenReturn(Optional.of(pendiente));
+        assertThrows(BadRequestException.class, () -> hilos.colgar(comentario(null, null, false), 1L));
+
+        Comentario profundo = comentario(2L, null, true);
+        profundo.setProfundidad(HilosComentarios.PROFUNDIDAD_MAXIMA);
+        when(comentarioRepository.findByIdParaActualizar(2L)).thenReturn(Optional.of(profundo));
+        assertThrows(BadRequestException.class, () -> hilos.colgar(comentario(null, null, false), 2L));
+
+        Comentario padre = comentario(3L, null, true);
+        when(comentarioRepository.findByIdParaActualizar(3L)).thenReturn(Optional.of(padre));
+        Comentario conPuntuacion = comentario(null, null, false);
+        conPuntuacion.setPuntuacion(5);
+        assertThrows(BadRequestException.class, () -> hilos.colgar(conPuntuacion, 3L));
+
+        Agrupacion otra = new Agrupacion();
+        otra.setId(11L);
+        Comentario deOtraAgrupacion = comentario(null, null, false);
+        deOtraAgrupacion.setAgrupacion(otra);
+        assertThrows(BadRequestException.class, () -> hilos.colgar(deOtraAgrupacion, 3L));
+    }
+
+    @Test
+    @DisplayName("Un comentario con respuestas no puede cambiar de agrupación al editarlo")
+    void testValidarEdicion() {
+        Comentario raiz = comentario(1L, null, true);
+        when(comentarioRepository.existsByPadreId(1L)).thenReturn(true);
+        ComentarioRequest request = new ComentarioRequest();
+        request.setAgrupacionId(11L);
+
+        assertThrows(BadRequestException.class, () -> hilos.validarEdicion(raiz, request));
+
+        request.setAgrupacionId(10L);
+        request.setPuntuacion(4);
+        assertDoesNotThrow(() -> hilos.validarEdicion(raiz, request));
+    }
+
+    @Test
+    @DisplayName("Aprobar en lote agrupa los contadores por antepasado: una sentencia por delta")
+    void testSumarAprobados() {
+        // 1 <- 2 <- {3, 4}, y 1 <- 5
+        Comentario r3 = respuesta(3L, 2L, "000000000001/000000000002/000000000003/");
+        Comentario r4 = respuesta(4L, 2L, "000000000001/000000000002/000000000004/");
+        Comentario r5 = respuesta(5L, 1L, "000000000001/000000000005/");
+        Comentario raiz = comentario(6L, null, false);
+
+        hilos.sumarAprobados(List.of(r3, r4, r5, raiz));
+
+        verify(comentarioRepository).sumarRespuestas(List.of(2L), 2L);
+        verify(comentarioRepository).sumarRespuestas(List.of(1L), 1L);
+        verify(comentarioRepository).sumarRespuestasTotales(List.of(2L), 2L);
+        verify(comentarioRepository).sumarRespuestasTotales(List.of(1L), 3L);
+        verifyNoMoreInteractions(comentarioRepository);
+    }
+
+    @Test
+    @DisplayName("Borrar una respuesta aprobada borra su rama y la descuenta entera de sus antepasados")
+    void testEliminarRama() {
+        Comentario rama = respuesta(2L, 1L, "000000000001/000000000002/");
+        rama.setAprobado(true);
+        rama.setRespuestasTotales(4L);
+        when(comentarioRepository.eliminarDescendientes(1L, "000000000001/000000000002/%", 2L)).thenReturn(5);
+
+        assertEquals(5, hilos.eliminarRama(rama));
+
+        verify(comentarioRepository).sumarRespuestas(List.of(1L), -1);
+        verify(comentarioRepository).sumarRespuestasTotales(List.of(1L), -5);
+    }
+
+    @Test
+    @DisplayName("Borrar una respuesta pendiente no toca los contadores")
+    void testEliminarRama_Pendiente() {
+        Comentario pendiente = respuesta(2L, 1L, "000000000001/000000000002/");
+
+        hilos.eliminarRama(pendiente);
+
+        verify(comentarioRepository, never()).sumarRespuestas(anyCollection(), anyLong());
+        verify(comentarioRepository, never()).sumarRespuestasTotales(anyCollection(), anyLong());
+    }
+
+    @Test
+    void testAntepasados() {
+        assertEquals(List.of(), HilosComentarios.antepasados("000000000001/"));
+        assertEquals(List.of(1L, 22L), HilosComentarios.antepasados("000000000001/000000000022/000000000333/"));
+    }
+
+    private Comentario comentario(Long id, Long padreId, boolean aprobado) {
+        Comentario comentario = new Comentario();
+        comentario.setId(id);
+        comentario.setPadreId(padreId);
+        comentario.setAprobado(aprobado);
+        comentario.setAgrupacion(agrupacion);
+        if (id != null) {
+            comentario.setRaizId(id);
+            comentario.setProfundidad(0);
+            comentario.setRuta(HilosComentarios.segmento(id));
+        }
+        return comentario;
+    }
+
+    private Comentario respuesta(Long id, Long padreId, String ruta) {
+        Comentario respuesta = comentario(id, padreId, false);
+        respuesta.setRaizId(1L);
+        respuesta.setRuta(ruta);
+        respuesta.setProfundidad(ruta.length() / 13 - 1);
+        return respuesta;
+    }
+}
@@ -1,28 +1,52 @@
 package org.carnavawiky.back.service;
 
+import org.carnavawiky.back.dto.ImagenLoteResponse;
 import org.carnavawiky.back.dto.ImagenResponse;
+import org.carnavawiky.back.dto.PortadaResponse;
+import org.carnavawiky.back.exception.BadRequestException;
+import org.carnavawiky.back.exception.ResourceNotFoundException;
 import org.carnavawiky.back.mapper.ImagenMapper;
 import org.carnavawiky.back.model.Agrupacion;
 import org.carnavawiky.back.model.Imagen;
+import org.carnavawiky.back.model.ImagenBlob;
+import org.carnavawiky.back.model.ImagenVariante;
 import org.carnavawiky.back.repository.AgrupacionRepository;
+import org.carnavawiky.back.repository.ImagenBlobRepository;
+import org.carnavawiky.back.repository.ImagenLoteRepository;
 import org.carnavawiky.back.repository.ImagenRepository;
+import org.carnavawiky.back.repository.ImagenVarianteRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,9 +61,30 @@ class ImagenServiceTest {
     @Mock
     private ImagenMapper imagenMapper;
 
+    @Mock
+    private ImagenBlobRepository imagenBlobRepository;
+
+    @Mock
+    private ImagenVarianteRepository imagenVarianteRepository;
+
+    @Mock
+    private VariantesImagenes variantesImagenes;
+
+    @Mock
+    private ImagenLoteRepository imagenLoteRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private AlmacenImagenes almacenImagenes = new AlmacenImagenes();
+
     @InjectMocks
     private ImagenService imagenService;
 
+    // SHA-256 de "data"
+    private static final String SHA_DATA = "3a6eb0790f39ac87c94f3856b2dd2c5d110e6811602261a9a923d3bb23adc8b7";
+
     private Agrupacion agrupacion;
     private Imagen imagen;
     private ImagenResponse imagenResponse;
@@ -50,7 +95,7 @@ class ImagenServiceTest {
     void setUp() throws IOException {
         // Configurar directorio temporal para simular subida de archivos
         tempDir = Files.createTempDirectory("uploads");
-        ReflectionTestUtils.setField(imagenService, "uploadLocation", tempDir.toString());
+        ReflectionTestUtils.setField(almacenImagenes, "uploadLocation", tempDir.toString());
 
         agrupacion = new Agrupacion();
         agrupacion.setId(10L);
@@ -71,6 +116,8 @@ class ImagenServiceTest {
     @DisplayName("Debe guardar una imagen correctamente en el sistema de archivos")
     void testGuardarImagen_Exito() throws IOException {
         // ARRANGE
+        ejecutarTransaccionesEnLinea();
+        when(agrupacionRepository.existsById(10L)).thenReturn(true);
         when(agrupacionRepository.findById(10L)).thenReturn(Optional.of(agrupacion));
         when(imagenRepository.save(any(Imagen.class))).thenReturn(imagen);
         when(imagenMapper.toResponse(any(Imagen.class))).thenReturn(imagenResponse);
@@ -81,14 +128,73 @@ class ImagenServiceTest {
         // ASSERT
         assertNotNull(result);
         assertEquals(imagenResponse.getUrlPublica(), result.getUrlPublica());
-        
-        verify(imagenRepository).save(any(Imagen.class));
+
+        ArgumentCaptor<Imagen> captor = ArgumentCaptor.forClass(Imagen.class);
+        verify(imagenRepository).save(captor.capture());
+        assertEquals(SHA_DATA, captor.getValue().getSha256());
+        assertEquals(4L, captor.getValue().getTamanoBytes());
+        // El nombre en disco lo da el contenido
+        assertEquals(SHA_DATA + ".jpg", captor.getValue().getNombreFichero());
+        verify(imagenBlobRepository).save(argThat(blob -> blob.getReferencias() == 1));
+        // Blob nuevo: se encolan sus variantes
+        verify(variantesImagenes).programar(SHA_DATA);
         verify(imagenRepository).desmarcarPortadaActual(10L); // Verifica que se desmarca la portada anterior
         
         // Verificar que se creó algún archivo en el directorio temporal
         assertTrue(Files.list(tempDir).count() > 0);
     }
 
+    @Test
+    @DisplayName("Debe guardar dimensiones, color dominante y marcador de posición al subir")
+    void testGuardarImagen_Previsualizacion() throws IOException {
+        ejecutarTransaccionesEnLinea();
+        when(agrupacionRepository.existsById(10L)).thenReturn(true);
+        when(agrupacionRepository.findById(10L)).thenReturn(Optional.of(agrupacion));
+        when(imagenRepository.save(any(Imagen.class))).thenReturn(imagen);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB), "png", png);
+
+        imagenService.subirImagen(10L, new MockMultipartFile("file", "cartel.png", "image/png", png.toByteArray()), false);
+
+        ArgumentCaptor<Imagen> captor = ArgumentCaptor.forClass(Imagen.class);
+        verify(imagenRepository).save(captor.capture());
+        assertEquals(320, captor.getValue().getAncho());
+        assertEquals(240, captor.getValue().getAlto());
+        assertEquals("#000000", captor.getValue().getColorDominante());
+        assertTrue(captor.getValue().getMarcador().startsWith("data:image/png;base64,"));
+    }
+
+    @Test
+    @DisplayName("Si falla el registro en BD no debe borrar el fichero publicado: lo recoge el reconciliador")
+    void testGuardarImagen_FalloEnBd_NoBorraFichero() throws IOException {
+        ejecutarTransaccionesEnLinea();
+        when(agrupacionRepository.existsById(10L)).thenReturn(true);
+        when(agrupacionRepository.findById(10L)).thenReturn(Optional.of(agrupacion));
+        when(imagenRepository.save(any(Imagen.class))).thenThrow(new DataIntegrityViolationException("fallo"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> imagenService.subirImagen(10L, mockFile, false));
+
+        // Otra subida del mismo contenido podría estar reclamándolo: no se borra aquí
+        verify(almacenImagenes, never()).eliminar(any(Path.class));
+        // Solo queda el fichero publicado (huérfano), ningún temporal
+        try (Stream<Path> ficheros = Files.walk(tempDir)) {
+            assertEquals(1, ficheros.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    @DisplayName("No debe escribir nada si la agrupación no existe")
+    void testGuardarImagen_AgrupacionNoExiste() throws IOException {
+        when(agrupacionRepository.existsById(99L)).thenReturn(false);
+
+        assertThrows(ResourceNotFoundException.class, () -> imagenService.subirImagen(99L, mockFile, false));
+
+        verifyNoInteractions(transactionTemplate);
+        try (Stream<Path> ficheros = Files.list(tempDir)) {
+            assertEquals(0, ficheros.count());
+        }
+    }
+
     @Test
     @DisplayName("Debe eliminar una imagen correctamente del sistema de archivos")
     void testEliminarImagen_Exito() throws IOException {
@@ -98,6 +204,7 @@ class ImagenServiceTest {
         Files.createFile(archivoReal);
         imagen.setRutaAbsoluta(archivoReal.toString());
 
+        ejecutarTransaccionesEnLinea();
         when(imagenRepository.findById(1L)).thenReturn(Optional.of(imagen));
 
         // ACT
@@ -107,4 +214,218 @@ class ImagenServiceTest {
         verify(imagenRepository).delete(imagen);
         assertFalse(Files.exists(archivoReal)); // Verificar que el archivo físico fue borrado
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Debe reutilizar el blob existente cuando se sube el mismo contenido")
+    void testGuardarImagen_ContenidoRepetido() throws IOException {
+        ejecutarTransaccionesEnLinea();
+        Path existente = Files.write(tempDir.resolve(SHA_DATA + ".png"), "data".getBytes());
+        ImagenBlob blob = new ImagenBlob(SHA_DATA, SHA_DATA + ".png", existente.toString(), 4L, 1, true);
+
+        when(agrupacionRepository.existsById(10L)).thenReturn(true);
+        when(agrupacionRepository.findById(10L)).thenReturn(Optional.of(agrupacion));
+        when(imagenBlobRepository.findBySha256ParaActualizar(SHA_DATA)).thenReturn(Optional.of(blob));
+        when(imagenRepository.save(any(Imagen.class))).thenReturn(imagen);
+        when(imagenMapper.toResponse(any(Imagen.class))).thenReturn(imagenResponse);
+
+        imagenService.subirImagen(10L, mockFile, false);
+
+        ArgumentCaptor<Imagen> captor = ArgumentCaptor.forClass(Imagen.class);
+        verify(imagenRepository).save(captor.capture());
+        assertEquals(SHA_DATA + ".png", captor.getValue().getNombreFichero());
+        assertEquals(existente.toString(), captor.getValue().getRutaAbsoluta());
+        assertEquals(2, blob.getReferencias());
+        // Sus variantes ya existían
+        verifyNoInteractions(variantesImagenes);
+
+        // Un único fichero en disco y sin temporales
+        try (Stream<Path> ficheros = Files.list(tempDir)) {
+            assertEquals(List.of(existente), ficheros.toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Debe borrar el fichero solo al eliminar la última referencia del blob")
+    void testEliminarImagen_BlobCompartido() throws IOException {
+        ejecutarTransaccionesEnLinea();
+        Path fichero = Files.write(tempDir.resolve(SHA_DATA + ".jpg"), "data".getBytes());
+        ImagenBlob blob = new ImagenBlob(SHA_DATA, SHA_DATA + ".jpg", fichero.toString(), 4L, 2, true);
+        imagen.setSha256(SHA_DATA);
+        imagen.setRutaAbsoluta(fichero.toString());
+
+        when(imagenRepository.findById(1L)).thenReturn(Optional.of(imagen));
+        when(imagenBlobRepository.findBySha256ParaActualizar(SHA_DATA)).thenReturn(Optional.of(blob));
+
+        // Primera baja: otra imagen sigue usando el blob
+        imagenService.eliminarImagen(1L);
+        assertEquals(1, blob.getReferencias());
+        assertTrue(Files.exists(fichero));
+        verify(imagenBlobRepository, never()).delete(any());
+
+        // Segunda baja: última referencia
+        imagenService.eliminarImagen(1L);
+        assertEquals(0, blob.getReferencias());
+        assertFalse(Files.exists(fichero));
+        verify(imagenBlobRepository).delete(blob);
+        verify(variantesImagenes).eliminar(SHA_DATA);
+    }
+
+    @Test
+    @DisplayName("Debe devolver el listado con las variantes cargadas en una sola consulta")
+    void testObtenerImagenesPorAgrupacion_ConVariantes() {
+        imagen.setSha256(SHA_DATA);
+        Imagen antigua = new Imagen();
+        antigua.setId(2L);
+        List<ImagenVariante> variantes = List.of(new ImagenVariante(1L, SHA_DATA, 160, 80, "v.jpg", "/v.jpg", 1L));
+
+        when(imagenRepository.findByAgrupacion_Id(10L)).thenReturn(List.of(imagen, antigua));
+        when(imagenVarianteRepository.findBySha256In(Set.of(SHA_DATA))).thenReturn(variantes);
+        when(imagenMapper.toResponse(any(Imagen.class), anyList())).thenReturn(imagenResponse);
+
+        assertEquals(2, imagenService.obtenerImagenesPorAgrupacion(10L).size());
+
+        verify(imagenMapper).toResponse(imagen, variantes);
+        verify(imagenMapper).toResponse(antigua, List.of());
+        verify(imagenVarianteRepository, times(1)).findBySha256In(any());
+    }
+
+    @Test
+    @DisplayName("Debe elegir la variante más pequeña que cubra el ancho pedido")
+    void testObtenerUrlVariante() {
+        imagen.setSha256(SHA_DATA);
+        imagen.setUrlPublica("/api/imagenes/original.jpg");
+        ImagenVariante v160 = new ImagenVariante(1L, SHA_DATA, 160, 80, "v160.jpg", "/v160.jpg", 1L);
+        ImagenVariante v480 = new ImagenVariante(2L, SHA_DATA, 480, 240, "v480.jpg", "/v480.jpg", 1L);
+
+        when(imagenRepository.findById(1L)).thenReturn(Optional.of(imagen));
+        when(imagenVarianteRepository.findBySha256(SHA_DATA)).thenReturn(List.of(v480, v160));
+        when(imagenMapper.urlVariante(v480)).thenReturn("/api/imagenes/variantes/v480.jpg");
+
+        assertEquals("/api/imagenes/variantes/v480.jpg", imagenService.obtenerUrlVariante(1L, 300));
+        // Más ancho que cualquier variante: el original
+        assertEquals("/api/imagenes/original.jpg", imagenService.obtenerUrlVariante(1L, 2000));
+    }
+
+    @Test
+    @DisplayName("Debe incorporar al almacén por contenido las imágenes antiguas")
+    void testAdoptarImagenesAntiguas() throws IOException {
+        ejecutarTransaccionesEnLinea();
+        // Antigua única: conserva su fichero y su URL
+        Path unica = Files.write(tempDir.resolve("uuid-1.jpg"), "otra".getBytes());
+        Imagen antiguaUnica = imagenAntigua(1L, unica);
+        // Antigua duplicada de un blob existente: pasa a usarlo y su copia se borra
+        Path duplicada = Files.write(tempDir.resolve("uuid-2.jpg"), "data".getBytes());
+        Imagen antiguaDuplicada = imagenAntigua(2L, duplicada);
+        Path existente = Files.write(tempDir.resolve(SHA_DATA + ".jpg"), "data".getBytes());
+        ImagenBlob blob = new ImagenBlob(SHA_DATA, SHA_DATA + ".jpg", existente.toString(), 4L, 1, true);
+
+        when(imagenRepository.findIdsSinHuella()).thenReturn(List.of(1L, 2L));
+        when(imagenRepository.findById(1L)).thenReturn(Optional.of(antiguaUnica));
+        when(imagenRepository.findById(2L)).thenReturn(Optional.of(antiguaDuplicada));
+        when(imagenBlobRepository.findBySha256ParaActualizar(anyString())).thenReturn(Optional.empty());
+        when(imagenBlobRepository.findBySha256ParaActualizar(SHA_DATA)).thenReturn(Optional.of(blob));
+
+        assertEquals(2, imagenService.adoptarImagenesAntiguas());
+
+        assertNotNull(antiguaUnica.getSha256());
+        assertEquals("/api/imagenes/uuid-1.jpg", antiguaUnica.getUrlPublica());
+        assertTrue(Files.exists(unica));
+        verify(imagenBlobRepository).save(argThat(b -> b.getRutaAbsoluta().equals(unica.toString()) && b.getReferencias() == 1));
+
+        assertEquals(SHA_DATA, antiguaDuplicada.getSha256());
+        assertEquals("/api/imagenes/" + SHA_DATA + ".jpg", antiguaDuplicada.getUrlPublica());
+        assertEquals(2, blob.getReferencias());
+        assertFalse(Files.exists(duplicada));
+    }
+
+    @Test
+    @DisplayName("Debe subir un lote con un único registro en BD e informar de cada fichero")
+    void testSubirImagenes_Lote() throws IOException {
+        ejecutarTransaccionesEnLinea();
+        almacenImagenes.iniciar();
+        when(agrupacionRepository.existsById(10L)).thenReturn(true);
+        when(agrupacionRepository.findById(10L)).thenReturn(Optional.of(agrupacion));
+        when(imagenMapper.toResponse(any(Imagen.class))).thenReturn(imagenResponse);
+
+        List<ImagenLoteResponse> resultados;
+        try {
+            resultados = imagenService.subirImagenes(10L, List.of(
+                    new MockMultipartFile("archivos", "a.jpg", "image/jpeg", "data".getBytes()),
+                    new MockMultipartFile("archivos", "vacia.jpg", "image/jpeg", new byte[0]),
+                    new MockMultipartFile("archivos", "b.jpg", "image/jpeg", "data".getBytes())), 2);
+        } finally {
+            almacenImagenes.detener();
+        }
+
+        // El fichero vacío se rechaza sin afectar a los demás
+        assertEquals(List.of(201, 400, 201), resultados.stream().map(ImagenLoteResponse::getEstado).toList());
+        assertNotNull(resultados.get(1).getError());
+        assertNull(resultados.get(1).getImagen());
+
+        // Contenido repetido dentro del lote: un solo blob con dos referencias y un solo fichero
+        verify(imagenBlobRepository).saveAll(argThat(blobs -> blobs.iterator().next().getReferencias() == 2));
+        verify(agrupacionRepository, times(1)).findById(10L);
+        verify(imagenRepository, times(1)).desmarcarPortadaActual(10L);
+        ArgumentCaptor<List<Imagen>> captor = ArgumentCaptor.forClass(List.class);
+        verify(imagenLoteRepository).insertar(captor.capture());
+        assertEquals(2, captor.getValue().size());
+        assertFalse(captor.getValue().get(0).getEsPortada());
+        assertTrue(captor.getValue().get(1).getEsPortada());
+        verify(imagenRepository, never()).save(any());
+        try (Stream<Path> ficheros = Files.walk(tempDir)) {
+            assertEquals(1, ficheros.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    @DisplayName("Debe rechazar un lote con el índice de portada fuera de rango")
+    void testSubirImagenes_PortadaFueraDeRango() {
+        assertThrows(BadRequestException.class, () -> imagenService.subirImagenes(10L, List.of(mockFile), 1));
+        verifyNoInteractions(agrupacionRepository, imagenLoteRepository);
+    }
+
+    @Test
+    @DisplayName("Debe resolver las portadas de una página en una consulta, con miniatura o el original")
+    void testObtenerPortadas() {
+        ImagenMapper mapperReal = new ImagenMapper();
+        when(imagenMapper.toPortadaResponse(any())).thenAnswer(inv -> mapperReal.toPortadaResponse(inv.getArgument(0)));
+        when(variantesImagenes.anchoMiniatura()).thenReturn(160);
+        ImagenRepository.Portada conMiniatura = portada(1L, 11L, "a_160.jpg");
+        ImagenRepository.Portada antigua = portada(2L, 21L, null);
+        // Dos marcadas en la misma agrupación: gana la más reciente
+        ImagenRepository.Portada reciente = portada(2L, 22L, null);
+        when(imagenRepository.findPortadas(List.of(1L, 2L, 3L), 160)).thenReturn(List.of(conMiniatura, reciente, antigua));
+
+        Map<Long, PortadaResponse> portadas = imagenService.obtenerPortadas(List.of(1L, 2L, 3L));
+
+        assertEquals(Set.of(1L, 2L), portadas.keySet());
+        assertEquals("/api/imagenes/variantes/a_160.jpg", portadas.get(1L).getUrlMiniatura());
+        assertEquals(22L, portadas.get(2L).getImagenId());
+        // Sin variantes aún: la miniatura es el original
+        assertEquals("/api/imagenes/22.jpg", portadas.get(2L).getUrlMiniatura());
+    }
+
+    private static ImagenRepository.Portada portada(Long agrupacionId, Long imagenId, String miniatura) {
+        ImagenRepository.Portada portada = mock(ImagenRepository.Portada.class);
+        when(portada.getAgrupacionId()).thenReturn(agrupacionId);
+        when(portada.getImagenId()).thenReturn(imagenId);
+        when(portada.getUrlPublica()).thenReturn("/api/imagenes/" + imagenId + ".jpg");
+        when(portada.getMiniatura()).thenReturn(miniatura);
+        return portada;
+    }
+
+    private Imagen imagenAntigua(Long id, Path fichero) {
+        Imagen antigua = new Imagen();
+        antigua.setId(id);
+        antigua.setNombreFichero(fichero.getFileName().toString());
+        antigua.setRutaAbsoluta(fichero.toString());
+        antigua.setUrlPublica("/api/imagenes/" + fichero.getFileName());
+        return antigua;
+    }
+
+    // Ejecuta el callback como si la transacción se abriera y confirmara en el acto
+    private void ejecutarTransaccionesEnLinea() {
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+}
@@ -0,0 +1,142 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.model.Agrupacion;
+import org.carnavawiky.back.repository.AgrupacionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IndiceBusquedaAgrupacionesTest {
+
+    @Mock
+    private AgrupacionRepository agrupacionRepository;
+
+    @InjectMocks
+    private IndiceBusquedaAgrupaciones indice;
+
+    private record Datos(Long id, String nombre, String descripcion) implements AgrupacionRepository.DatosBusqueda {
+        public Long getId() { return id; }
+        public String getNombre() { return nombre; }
+        public String getDescripcion() { return descripcion; }
+    }
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(indice, "habilitado", true);
+        when(agrupacionRepository.findAllDatosBusqueda()).thenReturn(List.of(
+                new Datos(1L, "Los Piratas", "Comparsa de Cádiz con tipo de corsarios"),
+                new Datos(2L, "Los de Cádiz", "Chirigota callejera"),
+                new Datos(3L, "El Coro de la Viña", "Coro clásico del barrio de la Viña")
+        ));
+        indice.reconstruir();
+    }
+
+    @Test
+    @DisplayName("Debe ignorar tildes y mayúsculas (Cádiz == cadiz)")
+    void testBuscar_SinTildes() {
+        Page<Long> resultado = indice.buscar("CADIZ", PageRequest.of(0, 10)).orElseThrow();
+
+        assertEquals(2, resultado.getTotalElements());
+        // La coincidencia en el nombre pesa más que en la descripción
+        assertEquals(List.of(2L, 1L), resultado.getContent());
+    }
+
+    @Test
+    @DisplayName("Debe tratar cada término como prefijo y exigir todos (AND)")
+    void testBuscar_PrefijoYConjuncion() {
+        assertEquals(List.of(1L), indice.buscar("pira", PageRequest.of(0, 10)).orElseThrow().getContent());
+        assertEquals(List.of(3L), indice.buscar("coro vina", PageRequest.of(0, 10)).orElseThrow().getContent());
+        assertTrue(indice.buscar("coro piratas", PageRequest.of(0, 10)).orElseThrow().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Debe paginar los resultados ordenados por relevancia")
+    void testBuscar_Paginado() {
+        Page<Long> pagina = indice.buscar("cadiz", PageRequest.of(1, 1)).orElseThrow();
+
+        assertEquals(2, pagina.getTotalElements());
+        assertEquals(2, pagina.getTotalPages());
+        assertEquals(List.of(1L), pagina.getContent());
+    }
+
+    @Test
+    @DisplayName("Debe actualizar el índice de forma incremental al indexar y eliminar")
+    void testIndexarYEliminar() {
+        Agrupacion agrupacion = new Agrupacion();
+        agrupacion.setId(1L);
+        agrupacion.setNombre("Los Bucaneros");
+        agrupacion.setDescripcion("Comparsa de San Fernando");
+
+        indice.indexar(agrupacion); // Sin transacción activa se aplica inmediatamente
+
+        assertTrue(indice.buscar("piratas", PageRequest.of(0, 10)).orElseThrow().isEmpty());
+        assertEquals(List.of(1L), indice.buscar("bucaneros", PageRequest.of(0, 10)).orElseThrow().getContent());
+
+        indice.eliminar(1L);
+
+        assertTrue(indice.buscar("bucaneros", PageRequest.of(0, 10)).orElseThrow().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Los cambios confirmados durante una reconstrucción no se pierden al publicar el índice nuevo")
+    void testReconstruir_ConCambiosConcurrentes() {
+        Agrupacion nueva = new Agrupacion();
+        nueva.setId(4L);
+        nueva.setNombre("Los Bucaneros");
+        nueva.setDescripcion("Comparsa de San Fernando");
+
+        // La lectura de la tabla no ve el alta de la 4 ni la baja de la 3, confirmadas mientras tanto
+        when(agrupacionRepository.findAllDatosBusqueda()).thenAnswer(inv -> {
+            indice.indexar(nueva);
+            indice.eliminar(3L);
+            return List.of(
+                    new Datos(1L, "Los Piratas", "Comparsa de Cádiz con tipo de corsarios"),
+                    new Datos(2L, "Los de Cádiz", "Chirigota callejera"),
+                    new Datos(3L, "El Coro de la Viña", "Coro clásico del barrio de la Viña"));
+        });
+
+        indice.reconstruir();
+
+        assertEquals(List.of(4L), indice.buscar("bucaneros", PageRequest.of(0, 10)).orElseThrow().getContent());
+        assertTrue(indice.buscar("coro", PageRequest.of(0, 10)).orElseThrow().isEmpty());
+        assertEquals(2, indice.buscar("cadiz", PageRequest.of(0, 10)).orElseThrow().getTotalElements());
+
+        // Terminada la reconstrucción, los cambios vuelven a aplicarse solo sobre el índice publicado
+        indice.eliminar(4L);
+        assertTrue(indice.buscar("bucaneros", PageRequest.of(0, 10)).orElseThrow().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Debe devolver vacío (fallback JPA) si no hay términos o el índice está deshabilitado")
+    void testBuscar_Fallback() {
+        assertEquals(Optional.empty(), indice.buscar("¡¿!?", PageRequest.of(0, 10)));
+
+        IndiceBusquedaAgrupaciones deshabilitado = new IndiceBusquedaAgrupaciones();
+        ReflectionTestUtils.setField(deshabilitado, "habilitado", false);
+        deshabilitado.reconstruir();
+
+        assertFalse(deshabilitado.isDisponible());
+        assertEquals(Optional.empty(), deshabilitado.buscar("cadiz", PageRequest.of(0, 10)));
+    }
+
+    @Test
+    @DisplayName("Debe tokenizar normalizando tildes, diéresis y separadores")
+    void testTokenizar() {
+        assertEquals(List.of("pinguino", "cadiz", "2024"), IndiceBusquedaAgrupaciones.tokenizar("Pingüino-CÁDIZ, 2024"));
+        assertTrue(IndiceBusquedaAgrupaciones.tokenizar(null).isEmpty());
+    }
+}
@@ -0,0 +1,239 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.dto.ComentarioRequest;
+import org.carnavawiky.back.exception.BadRequestException;
+import org.carnavawiky.back.exception.ResourceNotFoundException;
+import org.carnavawiky.back.exception.ServicioSaturadoException;
+import org.carnavawiky.back.model.Comentario;
+import org.carnavawiky.back.repository.ComentarioLoteRepository;
+import org.carnavawiky.back.repository.ComentarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class IngestaComentariosTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private ComentarioLoteRepository comentarioLoteRepository;
+
+    @Mock
+    private ComentarioRepository comentarioRepository;
+
+    @Mock
+    private ConteoCache conteoCache;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private AgrupacionService agrupacionService;
+
+    @Mock
+    private EstadoUsuarioCache estadoUsuarios;
+
+    @InjectMocks
+    private IngestaComentarios ingestaComentarios;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(ingestaComentarios, "directorio", tempDir.resolve("ingesta").toString());
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(comentarioLoteRepository.insertar(anyList())).thenAnswer(inv -> inv.<List<?>>getArgument(0).size());
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("dani", null));
+        when(estadoUsuarios.obtener("dani")).thenReturn(Optional.of(
+                new EstadoUsuarioCache.EstadoUsuario(7L, true, Set.of("ROLE_USER"))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("Debe apuntar el comentario en el diario y volcarlo en lotes, borrando después el segmento")
+    void testEncolarYVolcar() throws IOException {
+        ReflectionTestUtils.setField(ingestaComentarios, "tamanoLote", 2);
+        for (int i = 0; i < 3; i++) {
+            ingestaComentarios.encolar(request(10L + i));
+        }
+
+        assertEquals(3, lineasDelDiario());
+        assertEquals(3, ingestaComentarios.pendientes());
+
+        assertEquals(3, ingestaComentarios.volcar());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Comentario>> captor = ArgumentCaptor.forClass(List.class);
+        verify(comentarioLoteRepository, times(2)).insertar(captor.capture());
+        assertEquals(List.of(2, 1), captor.getAllValues().stream().map(List::size).toList());
+        Comentario primero = captor.getAllValues().get(0).get(0);
+        assertEquals(10L, primero.getAgrupacion().getId());
+        assertEquals(7L, primero.getUsuario().getId());
+        assertNotNull(primero.getIdIngesta());
+        assertNotNull(primero.getFechaCreacion());
+
+        assertEquals(0, lineasDelDiario());
+        assertEquals(0, ingestaComentarios.pendientes());
+        // Cada tramo completa la ruta de hilo de sus raíces en su misma transacción
+        verify(comentarioRepository).completarRaicesIngeridas(
+                captor.getAllValues().get(0).stream().map(Comentario::getIdIngesta).toList());
+        verify(comentarioRepository, times(2)).completarRaicesIngeridas(anyCollection());
+        verify(comentarioRepository, never()).completarRaices();
+        verify(conteoCache).invalidar(ConteoCache.COMENTARIOS);
+        // Nada nuevo: no toca la BD
+        assertEquals(0, ingestaComentarios.volcar());
+        verify(comentarioLoteRepository, times(2)).insertar(anyList());
+    }
+
+    @Test
+    @DisplayName("Debe rechazar al aceptar, sin tocar el diario, una agrupación inexistente o un usuario ajeno")
+    void testEncolar_ReferenciasInvalidas() {
+        when(agrupacionService.obtenerAgrupacionPorId(99L))
+                .thenThrow(new ResourceNotFoundException("Agrupacion", "id", 99L));
+        assertThrows(ResourceNotFoundException.class, () -> ingestaComentarios.encolar(request(99L)));
+
+        ComentarioRequest ajeno = request(10L);
+        ajeno.setUsuarioId(8L);
+        assertThrows(BadRequestException.class, () -> ingestaComentarios.encolar(ajeno));
+
+        when(estadoUsuarios.obtener("dani")).thenReturn(Optional.empty());
+        assertThrows(ResourceNotFoundException.class, () -> ingestaComentarios.encolar(request(10L)));
+
+        assertEquals(0, ingestaComentarios.pendientes());
+        assertFalse(Files.exists(tempDir.resolve("ingesta")));
+    }
+
+    @Test
+    @DisplayName("Con la cola llena debe responder saturado tras la espera, y admitir de nuevo tras volcar")
+    void testEncolar_ColaLlena() {
+        ReflectionTestUtils.setField(ingestaComentarios, "capacidad", 2);
+        ReflectionTestUtils.setField(ingestaComentarios, "espera", Duration.ofMillis(10));
+        ingestaComentarios.encolar(request(10L));
+        ingestaComentarios.encolar(request(11L));
+
+        assertThrows(ServicioSaturadoException.class, () -> ingestaComentarios.encolar(request(12L)));
+
+        ingestaComentarios.volcar();
+        assertDoesNotThrow(() -> ingestaComentarios.encolar(request(12L)));
+    }
+
+    @Test
+    @DisplayName("Si falla el volcado debe conservar el diario y reintentar los mismos comentarios")
+    void testVolcar_FallaYReintenta() throws IOException {
+        ingestaComentarios.encolar(request(10L));
+        when(comentarioLoteRepository.insertar(anyList()))
+                .thenThrow(new DataAccessResourceFailureException("BD caída"))
+                .thenAnswer(inv -> inv.<List<?>>getArgument(0).size());
+
+        assertThrows(DataAccessResourceFailureException.class, () -> ingestaComentarios.volcar());
+        assertEquals(1, lineasDelDiario());
+        assertEquals(1, ingestaComentarios.pendientes());
+
+        // Lo que llega mientras tanto espera a la siguiente pasada
+        ingestaComentarios.encolar(request(11L));
+        assertEquals(1, ingestaComentarios.volcar());
+        assertEquals(1, ingestaComentarios.volcar());
+        assertEquals(0, lineasDelDiario());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Comentario>> captor = ArgumentCaptor.forClass(List.class);
+        verify(comentarioLoteRepository, times(3)).insertar(captor.capture());
+        // El reintento lleva el mismo id de ingesta: si llegó a insertarse, no se duplica
+        assertEquals(captor.getAllValues().get(0).get(0).getIdIngesta(), captor.getAllValues().get(1).get(0).getIdIngesta());
+    }
+
+    @Test
+    @DisplayName("Al arrancar debe recuperar lo que quedó en el diario, ignorando una línea a medio escribir")
+    void testRecuperar() throws IOException {
+        ingestaComentarios.encolar(request(10L));
+        ingestaComentarios.encolar(request(11L));
+        Path segmento = segmentos().get(0);
+        Files.writeString(segmento, Files.readString(segmento) + "{\"id\":\"cortad");
+
+        // Otro proceso sobre el mismo directorio, como tras una caída
+        IngestaComentarios reiniciada = new IngestaComentarios();
+        ReflectionTestUtils.setField(reiniciada, "directorio", tempDir.resolve("ingesta").toString());
+        ReflectionTestUtils.setField(reiniciada, "comentarioLoteRepository", comentarioLoteRepository);
+        ReflectionTestUtils.setField(reiniciada, "comentarioRepository", comentarioRepository);
+        ReflectionTestUtils.setField(reiniciada, "conteoCache", conteoCache);
+        ReflectionTestUtils.setField(reiniciada, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(reiniciada, "agrupacionService", agrupacionService);
+        ReflectionTestUtils.setField(reiniciada, "estadoUsuarios", estadoUsuarios);
+        reiniciada.recuperar();
+
+        assertEquals(2, reiniciada.pendientes());
+        // Los nuevos van a otro segmento, sin pisar los recuperados
+        reiniciada.encolar(request(12L));
+        assertEquals(2, segmentos().size());
+
+        assertEquals(3, reiniciada.volcar());
+        assertTrue(segmentos().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Sin directorio de diario no hay nada que recuperar")
+    void testRecuperar_SinDirectorio() throws IOException {
+        ingestaComentarios.recuperar();
+
+        assertEquals(0, ingestaComentarios.pendientes());
+        assertFalse(Files.exists(tempDir.resolve("ingesta")));
+    }
+
+    private ComentarioRequest request(Long agrupacionId) {
+        ComentarioRequest request = new ComentarioRequest();
+        request.setContenido("¡Qué gran actuación!");
+        request.setPuntuacion(5);
+        request.setAgrupacionId(agrupacionId);
+        request.setUsuarioId(7L);
+        return request;
+    }
+
+    private List<Path> segmentos() throws IOException {
+        try (Stream<Path> ficheros = Files.list(tempDir.resolve("ingesta"))) {
+            return ficheros.sorted().toList();
+        }
+    }
+
+    private long lineasDelDiario() throws IOException {
+        long lineas = 0;
+        for (Path segmento : segmentos()) {
+            lineas += Files.readAllLines(segmento).size();
+        }
+        return lineas;
+    }
+}
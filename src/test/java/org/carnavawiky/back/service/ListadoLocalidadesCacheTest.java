@@ -0,0 +1,129 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.dto.LocalidadResponse;
+import org.carnavawiky.back.dto.ModoConteo;
+import org.carnavawiky.back.dto.PageResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ListadoLocalidadesCacheTest {
+
+    private static final Pageable PRIMERA = PageRequest.of(0, 2);
+    private static final Pageable SEGUNDA = PageRequest.of(1, 2);
+    private static final Pageable POR_NOMBRE = PageRequest.of(0, 2, Sort.by("nombre"));
+
+    private ListadoLocalidadesCache listadoCache;
+
+    // Cargas a la BD por clave de página
+    private final Map<String, AtomicInteger> cargas = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        listadoCache = new ListadoLocalidadesCache();
+        ReflectionTestUtils.setField(listadoCache, "cacheManager", new ConcurrentMapCacheManager());
+        cargas.clear();
+    }
+
+    @Test
+    @DisplayName("Renombrar sin cambiar de búsqueda desaloja solo la página que contiene la localidad")
+    void testRenombrar_SoloPaginaAfectada() {
+        leer(PRIMERA, null, 1L, 2L);
+        leer(SEGUNDA, null, 3L, 4L);
+        leer(PRIMERA, "cad", 1L);
+        leer(PRIMERA, "sevi", 5L);
+
+        listadoCache.localidadRenombrada(3L, "Chipiona", "Chipiona de la Costa");
+
+        leer(PRIMERA, null, 1L, 2L);
+        leer(SEGUNDA, null, 3L, 4L);
+        leer(PRIMERA, "cad", 1L);
+        leer(PRIMERA, "sevi", 5L);
+        assertEquals(1, cargas(PRIMERA, null));
+        assertEquals(2, cargas(SEGUNDA, null));
+        assertEquals(1, cargas(PRIMERA, "cad"));
+        assertEquals(1, cargas(PRIMERA, "sevi"));
+    }
+
+    @Test
+    @DisplayName("Renombrar desaloja las búsquedas en las que entra y los listados ordenados por nombre")
+    void testRenombrar_EntraEnBusquedaYCambiaOrden() {
+        leer(PRIMERA, "cad", 1L);
+        leer(PRIMERA, "puerto", 6L);
+        leer(POR_NOMBRE, null, 1L, 2L);
+
+        // 3 pasa a llamarse "San Fernando de Cádiz": entra en "cad" y cambia de posición por nombre
+        listadoCache.localidadRenombrada(3L, "Isla de León", "San Fernando de Cádiz");
+
+        leer(PRIMERA, "cad", 1L, 3L);
+        leer(PRIMERA, "puerto", 6L);
+        leer(POR_NOMBRE, null, 1L, 2L);
+        assertEquals(2, cargas(PRIMERA, "cad"));
+        assertEquals(1, cargas(PRIMERA, "puerto"));
+        assertEquals(2, cargas(POR_NOMBRE, null));
+    }
+
+    @Test
+    @DisplayName("Altas y bajas desalojan el listado completo y las búsquedas que incluyen el nombre")
+    void testAltaYBaja() {
+        leer(PRIMERA, null, 1L, 2L);
+        leer(PRIMERA, "cad", 1L);
+        leer(PRIMERA, "sevi", 5L);
+
+        listadoCache.localidadCreada("Cádiz Norte");
+        leer(PRIMERA, null, 1L, 2L);
+        leer(PRIMERA, "cad", 1L, 7L);
+        leer(PRIMERA, "sevi", 5L);
+        assertEquals(2, cargas(PRIMERA, null));
+        assertEquals(2, cargas(PRIMERA, "cad"));
+        assertEquals(1, cargas(PRIMERA, "sevi"));
+
+        listadoCache.localidadEliminada(5L, "Sevilla");
+        leer(PRIMERA, "sevi");
+        leer(PRIMERA, "cad", 1L, 7L);
+        assertEquals(2, cargas(PRIMERA, "sevi"));
+        assertEquals(2, cargas(PRIMERA, "cad"));
+    }
+
+    @Test
+    @DisplayName("Los comodines de LIKE en la búsqueda se tratan como 'puede incluirla'")
+    void testIncluye() {
+        assertTrue(ListadoLocalidadesCache.incluye(null, "Cádiz"));
+        assertTrue(ListadoLocalidadesCache.incluye("cád", "Cádiz"));
+        // Sin distinguir tildes, como la colación de MySQL
+        assertTrue(ListadoLocalidadesCache.incluye("CAD", "Cádiz"));
+        assertFalse(ListadoLocalidadesCache.incluye("sevi", "Cádiz"));
+        assertTrue(ListadoLocalidadesCache.incluye("c_d", "Sevilla"));
+    }
+
+    private void leer(Pageable pageable, String search, Long... ids) {
+        List<LocalidadResponse> contenido = Arrays.stream(ids).map(id -> {
+            LocalidadResponse response = new LocalidadResponse();
+            response.setId(id);
+            return response;
+        }).toList();
+
+        listadoCache.obtener(pageable, search, ModoConteo.EXACTO, () -> {
+            cargas.computeIfAbsent(ListadoLocalidadesCache.clave(pageable, search, ModoConteo.EXACTO),
+                    k -> new AtomicInteger()).incrementAndGet();
+            return PageResponse.<LocalidadResponse>builder().content(contenido).build();
+        });
+    }
+
+    private int cargas(Pageable pageable, String search) {
+        return cargas.get(ListadoLocalidadesCache.clave(pageable, search, ModoConteo.EXACTO)).get();
+    }
+}
@@ -1,22 +1,30 @@
 package org.carnavawiky.back.service;
 
+import org.carnavawiky.back.config.CacheConfig;
 import org.carnavawiky.back.dto.LocalidadRequest;
 import org.carnavawiky.back.dto.LocalidadResponse;
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.exception.ResourceNotFoundException; // Asumiendo este paquete
 import org.carnavawiky.back.mapper.LocalidadMapper;
 import org.carnavawiky.back.model.Localidad; // Asumiendo este paquete
+import org.carnavawiky.back.repository.AgrupacionRepository;
+import org.carnavawiky.back.repository.ConcursoRepository;
 import org.carnavawiky.back.repository.LocalidadRepository; // Asumiendo este paquete
+import org.carnavawiky.back.repository.PersonaRepository;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Arrays;
 import java.util.List;
@@ -33,9 +41,31 @@ import static org.mockito.Mockito.*;
 class LocalidadServiceTest {
 
     // Instancia real de la clase a probar, donde se inyectarán los Mocks
+    @Spy
+    private ConteoCache conteoCache = new ConteoCache();
+
+    // Caché de páginas real sobre un CacheManager en memoria
+    @Spy
+    private ListadoLocalidadesCache listadoCache = new ListadoLocalidadesCache();
+
+    // Desalojo por clave de las fichas que muestran el nombre de la localidad, sobre el mismo CacheManager
+    @Spy
+    private CachesDependientes cachesDependientes = new CachesDependientes();
+
     @InjectMocks
     private LocalidadService localidadService;
 
+    @Mock
+    private AgrupacionRepository agrupacionRepository;
+
+    @Mock
+    private PersonaRepository personaRepository;
+
+    @Mock
+    private ConcursoRepository concursoRepository;
+
+    private final ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager();
+
     // Dependencia simulada (Repository): Controlamos la interacción con la BBDD
     @Mock
     private LocalidadRepository localidadRepository;
@@ -56,6 +86,9 @@ class LocalidadServiceTest {
 
     @BeforeEach
     void setUp() {
+        ReflectionTestUtils.setField(listadoCache, "cacheManager", cacheManager);
+        ReflectionTestUtils.setField(cachesDependientes, "cacheManager", cacheManager);
+
         // Inicialización de la Entidad Localidad para el test
         localidad = new Localidad();
         // Asumiendo que la entidad tiene getters y setters (Lombok @Data)
@@ -179,6 +212,47 @@ class LocalidadServiceTest {
         verify(localidadRepository, times(1)).save(argThat(loc ->
                 loc.getNombre().equals(NOMBRE_ACTUALIZADO) && loc.getId().equals(LOCALIDAD_ID)
         ));
+        // Del listado solo se desaloja lo que depende de esta localidad
+        verify(listadoCache).localidadRenombrada(LOCALIDAD_ID, NOMBRE, NOMBRE_ACTUALIZADO);
+    }
+
+    @Test
+    void testActualizarLocalidad_Renombrada_DesalojaSoloLasFichasDeEsaLocalidad() {
+        // Agrupación 10 y persona 30 son de la localidad; 20 y 40, de otra
+        cacheManager.getCache(CacheConfig.AGRUPACION_BY_ID).put(10L, "agrupación de Cádiz");
+        cacheManager.getCache(CacheConfig.AGRUPACION_BY_ID).put(20L, "otra agrupación");
+        cacheManager.getCache(CacheConfig.PERSONA_BY_ID).put(30L, "persona de Cádiz");
+        cacheManager.getCache(CacheConfig.PERSONA_BY_ID).put(40L, "otra persona");
+        cacheManager.getCache(CacheConfig.CONCURSO_BY_ID).put(50L, "otro concurso");
+        when(agrupacionRepository.findIdsByLocalidadId(LOCALIDAD_ID)).thenReturn(List.of(10L));
+        when(personaRepository.findIdsByOrigenId(LOCALIDAD_ID)).thenReturn(List.of(30L));
+        when(concursoRepository.findIdsByLocalidadId(LOCALIDAD_ID)).thenReturn(List.of());
+        LocalidadRequest requestActualizacion = new LocalidadRequest();
+        requestActualizacion.setNombre(NOMBRE_ACTUALIZADO);
+        when(localidadRepository.findById(LOCALIDAD_ID)).thenReturn(Optional.of(localidad));
+        when(localidadRepository.save(any(Localidad.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        localidadService.actualizarLocalidad(LOCALIDAD_ID, requestActualizacion);
+
+        assertNull(cacheManager.getCache(CacheConfig.AGRUPACION_BY_ID).get(10L));
+        assertNotNull(cacheManager.getCache(CacheConfig.AGRUPACION_BY_ID).get(20L));
+        assertNull(cacheManager.getCache(CacheConfig.PERSONA_BY_ID).get(30L));
+        assertNotNull(cacheManager.getCache(CacheConfig.PERSONA_BY_ID).get(40L));
+        assertNotNull(cacheManager.getCache(CacheConfig.CONCURSO_BY_ID).get(50L));
+        // Sin concursos en la localidad, el listado de concursos sigue valiendo
+        assertEquals(0, cachesDependientes.version(CacheConfig.CONCURSOS_LIST));
+    }
+
+    @Test
+    void testActualizarLocalidad_MismoNombre_NoDesalojaDependientes() {
+        cacheManager.getCache(CacheConfig.AGRUPACION_BY_ID).put(10L, "agrupación de Cádiz");
+        when(localidadRepository.findById(LOCALIDAD_ID)).thenReturn(Optional.of(localidad));
+        when(localidadRepository.save(any(Localidad.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        localidadService.actualizarLocalidad(LOCALIDAD_ID, localidadRequest);
+
+        assertNotNull(cacheManager.getCache(CacheConfig.AGRUPACION_BY_ID).get(10L));
+        verifyNoInteractions(agrupacionRepository, personaRepository, concursoRepository);
     }
 
     @Test
@@ -214,6 +288,7 @@ class LocalidadServiceTest {
         // ASSERT
         // Verificar que se llamó a delete() con la entidad encontrada.
         verify(localidadRepository, times(1)).delete(localidad);
+        verify(listadoCache).localidadEliminada(LOCALIDAD_ID, NOMBRE);
     }
 
     @Test
@@ -241,23 +316,24 @@ class LocalidadServiceTest {
         Pageable pageable = PageRequest.of(0, 10);
         String search = null; // Caso sin término de búsqueda
 
-        List<Localidad> localidadesList = Arrays.asList(localidad);
-        Page<Localidad> localidadPage = new PageImpl<>(localidadesList, pageable, 1);
+        List<LocalidadResponse> localidadesList = Arrays.asList(localidadResponse);
+        Page<LocalidadResponse> localidadPage = new PageImpl<>(localidadesList, pageable, 1);
 
-        // Simular que el método findAll devuelve una página
-        when(localidadRepository.findAll(pageable)).thenReturn(localidadPage);
-
-        // Simular el mapeo de la página
-        when(localidadMapper.toResponse(any(Localidad.class))).thenReturn(localidadResponse);
+        // Simular que la proyección general devuelve una página
+        when(localidadRepository.findAllResponses(pageable)).thenReturn(localidadPage);
 
         // ACT
-        localidadService.obtenerTodasLocalidades(pageable, search);
+        localidadService.obtenerTodasLocalidades(pageable, search, ModoConteo.EXACTO);
 
         // ASSERT
         // Verificar que se llamó al método general de paginación
-        verify(localidadRepository, times(1)).findAll(pageable);
+        verify(localidadRepository, times(1)).findAllResponses(pageable);
         // Verificar que NO se llamó al método de búsqueda específica
-        verify(localidadRepository, never()).findByNombreContainingIgnoreCase(anyString(), any(Pageable.class));
+        verify(localidadRepository, never()).searchResponses(anyString(), any(Pageable.class));
+
+        // La segunda petición igual sale de la caché
+        localidadService.obtenerTodasLocalidades(pageable, search, ModoConteo.EXACTO);
+        verify(localidadRepository, times(1)).findAllResponses(pageable);
     }
 
     @Test
@@ -266,22 +342,19 @@ class LocalidadServiceTest {
         Pageable pageable = PageRequest.of(0, 10);
         String search = "cádiz"; // Caso con término de búsqueda
 
-        List<Localidad> localidadesList = Arrays.asList(localidad);
-        Page<Localidad> localidadPage = new PageImpl<>(localidadesList, pageable, 1);
-
-        // Simular que el método findByNombreContainingIgnoreCase devuelve una página
-        when(localidadRepository.findByNombreContainingIgnoreCase(search, pageable)).thenReturn(localidadPage);
+        List<LocalidadResponse> localidadesList = Arrays.asList(localidadResponse);
+        Page<LocalidadResponse> localidadPage = new PageImpl<>(localidadesList, pageable, 1);
 
-        // Simular el mapeo de la página
-        when(localidadMapper.toResponse(any(Localidad.class))).thenReturn(localidadResponse);
+        // Simular que la proyección de búsqueda devuelve una página
+        when(localidadRepository.searchResponses(search, pageable)).thenReturn(localidadPage);
 
         // ACT
-        localidadService.obtenerTodasLocalidades(pageable, search);
+        localidadService.obtenerTodasLocalidades(pageable, search, ModoConteo.EXACTO);
 
         // ASSERT
         // Verificar que se llamó al método de búsqueda específica
-        verify(localidadRepository, times(1)).findByNombreContainingIgnoreCase(search, pageable);
+        verify(localidadRepository, times(1)).searchResponses(search, pageable);
         // Verificar que NO se llamó al método general
-        verify(localidadRepository, never()).findAll(any(Pageable.class));
+        verify(localidadRepository, never()).findAllResponses(any(Pageable.class));
     }
 }
\ No newline at end of file
@@ -0,0 +1,163 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.dto.AlmacenImagenesResponse;
+import org.carnavawiky.back.model.Imagen;
+import org.carnavawiky.back.model.ImagenBlob;
+import org.carnavawiky.back.model.ImagenVariante;
+import org.carnavawiky.back.repository.ImagenBlobRepository;
+import org.carnavawiky.back.repository.ImagenRepository;
+import org.carnavawiky.back.repository.ImagenVarianteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MigracionAlmacenImagenesTest {
+
+    private static final String SHA_A = "3a6e" + "0".repeat(56) + "c8b7";
+    private static final String SHA_B = "ffee" + "1".repeat(60);
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private ImagenBlobRepository imagenBlobRepository;
+
+    @Mock
+    private ImagenVarianteRepository imagenVarianteRepository;
+
+    @Mock
+    private ImagenRepository imagenRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private AlmacenImagenes almacenImagenes = new AlmacenImagenes();
+
+    @InjectMocks
+    private MigracionAlmacenImagenes migracionAlmacenImagenes;
+
+    private ImagenBlob blob;
+    private ImagenBlob blobPerdido;
+    private ImagenVariante variante;
+    private Imagen antigua;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ReflectionTestUtils.setField(almacenImagenes, "uploadLocation", tempDir.toString());
+
+        // Blob con una variante, ambos en el esquema plano
+        Path plano = Files.write(tempDir.resolve(SHA_A + ".jpg"), "cartel".getBytes());
+        blob = new ImagenBlob(SHA_A, SHA_A + ".jpg", plano.toString(), 6L, 2, true);
+        Files.createDirectories(tempDir.resolve(AlmacenImagenes.DIRECTORIO_VARIANTES));
+        Path varPlana = Files.write(tempDir.resolve(AlmacenImagenes.DIRECTORIO_VARIANTES).resolve(SHA_A + "_160.jpg"), "mini".getBytes());
+        variante = new ImagenVariante(1L, SHA_A, 160, 80, SHA_A + "_160.jpg", varPlana.toString(), 4L);
+
+        // Blob cuyo fichero desapareció antes de migrar
+        blobPerdido = new ImagenBlob(SHA_B, SHA_B + ".png", tempDir.resolve(SHA_B + ".png").toString(), 10L, 1, true);
+
+        // Imagen anterior al almacén por contenido
+        Path uuid = Files.write(tempDir.resolve("uuid-1.jpg"), "antigua".getBytes());
+        antigua = new Imagen();
+        antigua.setId(7L);
+        antigua.setNombreFichero("uuid-1.jpg");
+        antigua.setRutaAbsoluta(uuid.toString());
+
+    }
+
+    @Test
+    @DisplayName("Debe mover originales, variantes e imágenes antiguas a ab/cd/ y reescribir sus rutas")
+    void testMigrar() throws IOException {
+        filasDelAlmacen();
+        ejecutarTransaccionesEnLinea();
+        when(imagenBlobRepository.findBySha256ParaActualizar(SHA_A)).thenReturn(Optional.of(blob));
+        when(imagenBlobRepository.findBySha256ParaActualizar(SHA_B)).thenReturn(Optional.of(blobPerdido));
+        when(imagenVarianteRepository.findBySha256(SHA_A)).thenReturn(List.of(variante));
+        when(imagenRepository.findById(7L)).thenReturn(Optional.of(antigua));
+
+        AlmacenImagenesResponse resultado = migracionAlmacenImagenes.migrar();
+
+        Path destino = tempDir.resolve("3a/6e/" + SHA_A + ".jpg");
+        assertEquals(destino.toString(), blob.getRutaAbsoluta());
+        assertEquals("cartel", Files.readString(destino));
+        assertFalse(Files.exists(tempDir.resolve(SHA_A + ".jpg")));
+        verify(imagenRepository).actualizarRutaPorSha256(SHA_A, destino.toString());
+
+        assertEquals(tempDir.resolve(AlmacenImagenes.DIRECTORIO_VARIANTES).resolve("3a/6e/" + SHA_A + "_160.jpg").toString(),
+                variante.getRutaAbsoluta());
+        assertEquals(almacenImagenes.ruta("uuid-1.jpg").toString(), antigua.getRutaAbsoluta());
+        assertEquals("antigua", Files.readString(Paths.get(antigua.getRutaAbsoluta())));
+
+        // El blob sin fichero no se toca y aparece en la verificación
+        assertEquals(tempDir.resolve(SHA_B + ".png").toString(), blobPerdido.getRutaAbsoluta());
+        assertEquals(3, resultado.getMovidos());
+        assertEquals(3, resultado.getEnEsquemaFragmentado());
+        assertEquals(0, resultado.getEnEsquemaPlano());
+        assertEquals(1, resultado.getPerdidos());
+        assertEquals(List.of(SHA_B + ".png"), resultado.getFicherosPerdidos());
+
+        // Segunda pasada: nada que mover
+        assertEquals(0, migracionAlmacenImagenes.migrar().getMovidos());
+    }
+
+    @Test
+    @DisplayName("Debe registrar un fichero movido cuya fila no llegó a actualizarse")
+    void testColocar_MovidoAntes() throws IOException {
+        Path origen = tempDir.resolve("a.jpg");
+        Path destino = tempDir.resolve("ab/cd/a.jpg");
+        Files.createDirectories(destino.getParent());
+        Files.write(destino, "abc".getBytes());
+
+        assertTrue(MigracionAlmacenImagenes.colocar(origen, destino, 3L));
+        // Ni en origen ni en destino: perdido, la fila no cambia
+        assertFalse(MigracionAlmacenImagenes.colocar(tempDir.resolve("b.jpg"), tempDir.resolve("ab/cd/b.jpg"), 3L));
+    }
+
+    @Test
+    @DisplayName("La verificación debe contar los ficheros pendientes de migrar sin moverlos")
+    void testVerificar() {
+        filasDelAlmacen();
+        AlmacenImagenesResponse resultado = migracionAlmacenImagenes.verificar();
+
+        assertEquals(0, resultado.getEnEsquemaFragmentado());
+        assertEquals(3, resultado.getEnEsquemaPlano());
+        assertEquals(1, resultado.getPerdidos());
+        assertEquals(0, resultado.getMovidos());
+        verifyNoInteractions(transactionTemplate);
+    }
+
+    private void filasDelAlmacen() {
+        when(imagenBlobRepository.findAllSha256()).thenReturn(List.of(SHA_A, SHA_B));
+        when(imagenRepository.findIdsSinHuella()).thenReturn(List.of(7L));
+        when(imagenBlobRepository.findAllById(anyCollection())).thenReturn(List.of(blob, blobPerdido));
+        when(imagenVarianteRepository.findBySha256In(anyCollection())).thenReturn(List.of(variante));
+        when(imagenRepository.findAllById(anyCollection())).thenReturn(List.of(antigua));
+    }
+
+    private void ejecutarTransaccionesEnLinea() {
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+}
@@ -0,0 +1,136 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.dto.ModeracionLoteResponse;
+import org.carnavawiky.back.exception.BadRequestException;
+import org.carnavawiky.back.model.Agrupacion;
+import org.carnavawiky.back.model.Comentario;
+import org.carnavawiky.back.repository.ComentarioRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ModeracionComentariosTest {
+
+    @Mock
+    private ComentarioRepository comentarioRepository;
+
+    @Mock
+    private ValoracionesAgrupaciones valoraciones;
+
+    @Mock
+    private HilosComentarios hilos;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private ConteoCache conteoCache = new ConteoCache();
+
+    @InjectMocks
+    private ModeracionComentarios moderacionComentarios;
+
+    private void enTransaccion() {
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    @DisplayName("Debe aprobar los pendientes con un UPDATE por tramo e informar de cada id")
+    void testAprobar() {
+        enTransaccion();
+        Comentario pendiente = comentario(1L, false);
+        Comentario aprobado = comentario(2L, true);
+        when(comentarioRepository.findAllByIdParaActualizar(List.of(3L, 1L, 2L))).thenReturn(List.of(pendiente, aprobado));
+
+        List<ModeracionLoteResponse> resultados = moderacionComentarios.aprobar(List.of(3L, 1L, 2L, 1L));
+
+        // En el orden pedido y sin repetir el id duplicado
+        assertEquals(List.of(3L, 1L, 2L), resultados.stream().map(ModeracionLoteResponse::getId).toList());
+        assertEquals(List.of(404, 200, 409), resultados.stream().map(ModeracionLoteResponse::getEstado).toList());
+        // La valoración solo recibe los que pasan a contar, en la misma transacción que el UPDATE
+        InOrder orden = inOrder(valoraciones, comentarioRepository);
+        orden.verify(valoraciones).sumarAprobados(List.of(pendiente));
+        orden.verify(comentarioRepository).aprobarPendientes(List.of(1L));
+        verify(hilos).sumarAprobados(List.of(pendiente));
+        verify(conteoCache).invalidar(ConteoCache.COMENTARIOS);
+    }
+
+    @Test
+    @DisplayName("Debe procesar los ids por tramos, cada uno en su transacción")
+    void testAprobar_PorTramos() {
+        enTransaccion();
+        ReflectionTestUtils.setField(moderacionComentarios, "tamanoLote", 2);
+        when(comentarioRepository.findAllByIdParaActualizar(any())).thenAnswer(inv ->
+                inv.<List<Long>>getArgument(0).stream().map(id -> comentario(id, false)).toList());
+
+        List<ModeracionLoteResponse> resultados = moderacionComentarios.aprobar(LongStream.rangeClosed(1, 5).boxed().toList());
+
+        assertTrue(resultados.stream().allMatch(r -> r.getEstado() == 200));
+        verify(transactionTemplate, times(3)).execute(any());
+        verify(comentarioRepository).aprobarPendientes(List.of(1L, 2L));
+        verify(comentarioRepository).aprobarPendientes(List.of(3L, 4L));
+        verify(comentarioRepository).aprobarPendientes(List.of(5L));
+    }
+
+    @Test
+    @DisplayName("Rechazar borra solo los pendientes y no toca la valoración")
+    void testRechazar() {
+        enTransaccion();
+        when(comentarioRepository.findAllByIdParaActualizar(List.of(1L, 2L)))
+                .thenReturn(List.of(comentario(1L, false), comentario(2L, true)));
+
+        List<ModeracionLoteResponse> resultados = moderacionComentarios.rechazar(List.of(1L, 2L));
+
+        assertEquals(List.of(200, 409), resultados.stream().map(ModeracionLoteResponse::getEstado).toList());
+        verify(comentarioRepository).eliminarPendientes(List.of(1L));
+        verifyNoInteractions(valoraciones);
+    }
+
+    @Test
+    @DisplayName("Si no se modera ninguno no se invalida el conteo")
+    void testAprobar_NingunoPendiente() {
+        enTransaccion();
+        when(comentarioRepository.findAllByIdParaActualizar(List.of(9L))).thenReturn(List.of());
+
+        assertEquals(404, moderacionComentarios.aprobar(List.of(9L)).get(0).getEstado());
+
+        verify(comentarioRepository, never()).aprobarPendientes(any());
+        verify(conteoCache, never()).invalidar(any());
+    }
+
+    @Test
+    @DisplayName("Debe rechazar una petición con más ids de los permitidos")
+    void testAprobar_DemasiadosIds() {
+        ReflectionTestUtils.setField(moderacionComentarios, "maxIds", 2);
+
+        assertThrows(BadRequestException.class, () -> moderacionComentarios.aprobar(List.of(1L, 2L, 3L)));
+        verifyNoInteractions(comentarioRepository);
+    }
+
+    private static Comentario comentario(Long id, boolean aprobado) {
+        Agrupacion agrupacion = new Agrupacion();
+        agrupacion.setId(10L);
+        Comentario comentario = new Comentario();
+        comentario.setId(id);
+        comentario.setPuntuacion(4);
+        comentario.setAprobado(aprobado);
+        comentario.setAgrupacion(agrupacion);
+        return comentario;
+    }
+}
@@ -0,0 +1,173 @@
+package org.carnavawiky.back.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.carnavawiky.back.config.JpaAuditingConfig;
+import org.carnavawiky.back.dto.ComentarioResponse;
+import org.carnavawiky.back.dto.SliceResponse;
+import org.carnavawiky.back.exception.BadRequestException;
+import org.carnavawiky.back.mapper.ComentarioMapper;
+import org.carnavawiky.back.model.*;
+import org.carnavawiky.back.repository.ComentarioRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@Import(JpaAuditingConfig.class) // Rellena fechaCreacion
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class PaginacionKeysetTest {
+
+    private static final PaginacionKeyset.Config<Comentario> CONFIG = new PaginacionKeyset.Config<>(
+            Comentario.class, Sort.unsorted(), Set.of("fechaCreacion", "puntuacion"));
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ComentarioRepository comentarioRepository;
+
+    private final ComentarioMapper comentarioMapper = new ComentarioMapper();
+
+    private List<Comentario> comentarios;
+
+    @BeforeEach
+    void setUp() {
+        Role rolUser = new Role();
+        rolUser.setName(Role.RoleName.ROLE_USER);
+        entityManager.persist(rolUser);
+
+        Localidad localidad = new Localidad();
+        localidad.setNombre("Cádiz");
+        entityManager.persist(localidad);
+
+        comentarios = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Usuario usuario = new Usuario();
+            usuario.setUsername("usuario" + i);
+            usuario.setEmail("usuario" + i + "@carnavawiky.com");
+            usuario.setPassword("secreto");
+            usuario.setRoles(Set.of(rolUser));
+            entityManager.persist(usuario);
+
+            Agrupacion agrupacion = new Agrupacion();
+            agrupacion.setNombre("Agrupación " + i);
+            agrupacion.setAnho(2020);
+            agrupacion.setModalidad(Modalidad.CHIRIGOTA);
+            agrupacion.setUsuarioCreador(usuario);
+            agrupacion.setLocalidad(localidad);
+            entityManager.persist(agrupacion);
+
+            Comentario comentario = new Comentario();
+            comentario.setContenido("Comentario " + i);
+            // Puntuaciones repetidas para comprobar el desempate por id
+            comentario.setPuntuacion(i % 3);
+            comentario.setAprobado(i % 2 == 0);
+            comentario.setUsuario(usuario);
+            comentario.setAgrupacion(agrupacion);
+            comentarios.add(entityManager.persist(comentario));
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("Debe recorrer todas las filas sin huecos ni duplicados y con una sola sentencia por porción")
+    void testScroll_RecorreTodoSinCount() {
+        Pageable pageable = PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "puntuacion"));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<Long> recorridos = new ArrayList<>();
+        String cursor = null;
+        int porciones = 0;
+        do {
+            SliceResponse<ComentarioResponse> slice = PaginacionKeyset.scroll(
+                    comentarioRepository::findAllBy, pageable, cursor, CONFIG, comentarioMapper::toResponse);
+            slice.getContent().forEach(c -> {
+                // Las relaciones vienen en la misma consulta (@EntityGraph)
+                assertThat(c.getUsuarioUsername()).isNotNull();
+                recorridos.add(c.getId());
+            });
+            cursor = slice.getNextCursor();
+            porciones++;
+            entityManager.clear();
+        } while (cursor != null);
+
+        List<Long> esperados = comentarios.stream()
+                .sorted(Comparator.comparing(Comentario::getPuntuacion).reversed().thenComparing(Comentario::getId))
+                .map(Comentario::getId)
+                .toList();
+
+        assertThat(recorridos).isEqualTo(esperados);
+        assertThat(porciones).isEqualTo(3);
+        // Ni COUNT(*) ni consultas N+1: una sentencia por porción
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(porciones);
+    }
+
+    @Test
+    @DisplayName("Debe aplicar el filtro y marcar el final cuando no hay más filas")
+    void testScroll_ConFiltro() {
+        SliceResponse<ComentarioResponse> slice = PaginacionKeyset.scroll(
+                (posicion, sort, limit) -> comentarioRepository
+                        .findByContenidoContainingIgnoreCaseAndAprobadoTrue("COMENTARIO", posicion, sort, limit),
+                PageRequest.of(0, 10), null, CONFIG, comentarioMapper::toResponse);
+
+        // Solo los aprobados (índices pares)
+        assertThat(slice.getContent()).extracting(ComentarioResponse::getContenido)
+                .containsExactly("Comentario 0", "Comentario 2", "Comentario 4", "Comentario 6");
+        assertThat(slice.isHasNext()).isFalse();
+        assertThat(slice.getNextCursor()).isNull();
+        assertThat(slice.getSize()).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("Debe rechazar cursores corruptos o generados con otra ordenación")
+    void testScroll_CursorNoValido() {
+        Pageable porFecha = PageRequest.of(0, 2, Sort.by("fechaCreacion"));
+        String cursor = PaginacionKeyset.scroll(comentarioRepository::findAllBy, porFecha, null, CONFIG,
+                comentarioMapper::toResponse).getNextCursor();
+
+        assertThatThrownBy(() -> PaginacionKeyset.scroll(comentarioRepository::findAllBy,
+                PageRequest.of(0, 2, Sort.by("puntuacion")), cursor, CONFIG, comentarioMapper::toResponse))
+                .isInstanceOf(BadRequestException.class);
+
+        assertThatThrownBy(() -> PaginacionKeyset.scroll(comentarioRepository::findAllBy,
+                porFecha, "no-es-un-cursor", CONFIG, comentarioMapper::toResponse))
+                .isInstanceOf(BadRequestException.class);
+
+        // Con la misma ordenación el cursor sigue siendo válido
+        assertThat(PaginacionKeyset.scroll(comentarioRepository::findAllBy, porFecha, cursor, CONFIG,
+                comentarioMapper::toResponse).getContent()).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Debe rechazar la ordenación por propiedades no permitidas")
+    void testScroll_OrdenacionNoPermitida() {
+        assertThatThrownBy(() -> PaginacionKeyset.scroll(comentarioRepository::findAllBy,
+                PageRequest.of(0, 2, Sort.by("contenido")), null, CONFIG, comentarioMapper::toResponse))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("contenido");
+    }
+}
@@ -1,5 +1,6 @@
 package org.carnavawiky.back.service;
 
+import org.carnavawiky.back.dto.ModoConteo;
 import org.carnavawiky.back.dto.PageResponse;
 import org.carnavawiky.back.dto.PremioRequest;
 import org.carnavawiky.back.dto.PremioResponse;
@@ -15,6 +16,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -43,6 +45,9 @@ class PremioServiceTest {
     @Mock
     private PremioMapper premioMapper;
 
+    @Spy
+    private ConteoCache conteoCache = new ConteoCache();
+
     @InjectMocks
     private PremioService premioService;
 
@@ -118,16 +123,15 @@ class PremioServiceTest {
     @DisplayName("Debe listar todos los premios sin búsqueda (findAll)")
     void testObtenerTodos_SinBusqueda() {
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Premio> page = new PageImpl<>(List.of(premio));
+        Page<PremioResponse> page = new PageImpl<>(List.of(premioResponse));
 
-        when(premioRepository.findAll(pageable)).thenReturn(page);
-        when(premioMapper.toResponse(any())).thenReturn(premioResponse);
+        when(premioRepository.findAllResponses(pageable)).thenReturn(page);
 
-        PageResponse<PremioResponse> result = premioService.obtenerTodosPremios(pageable, null);
+        PageResponse<PremioResponse> result = premioService.obtenerTodosPremios(pageable, null, ModoConteo.EXACTO);
 
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
-        verify(premioRepository).findAll(pageable);
+        verify(premioRepository).findAllResponses(pageable);
     }
 
     @Test
@@ -135,16 +139,15 @@ class PremioServiceTest {
     void testObtenerTodos_BusquedaPorAnho() {
         Pageable pageable = PageRequest.of(0, 10);
         String search = "1999";
-        Page<Premio> page = new PageImpl<>(List.of(premio));
+        Page<PremioResponse> page = new PageImpl<>(List.of(premioResponse));
 
-        when(premioRepository.findByEdicion_Anho(1999, pageable)).thenReturn(page);
-        when(premioMapper.toResponse(any())).thenReturn(premioResponse);
+        when(premioRepository.findResponsesByEdicionAnho(1999, pageable)).thenReturn(page);
 
-        PageResponse<PremioResponse> result = premioService.obtenerTodosPremios(pageable, search);
+        PageResponse<PremioResponse> result = premioService.obtenerTodosPremios(pageable, search, ModoConteo.EXACTO);
 
         assertNotNull(result);
-        verify(premioRepository).findByEdicion_Anho(1999, pageable);
-        verify(premioRepository, never()).findByAgrupacion_NombreContainingIgnoreCase(any(), any());
+        verify(premioRepository).findResponsesByEdicionAnho(1999, pageable);
+        verify(premioRepository, never()).findResponsesByAgrupacionNombre(any(), any());
     }
 
     @Test
@@ -152,17 +155,16 @@ class PremioServiceTest {
     void testObtenerTodos_BusquedaPorNombreAgrupacion() {
         Pageable pageable = PageRequest.of(0, 10);
         String search = "Yesterday";
-        Page<Premio> page = new PageImpl<>(List.of(premio));
+        Page<PremioResponse> page = new PageImpl<>(List.of(premioResponse));
 
-        when(premioRepository.findByAgrupacion_NombreContainingIgnoreCase(search, pageable)).thenReturn(page);
-        when(premioMapper.toResponse(any())).thenReturn(premioResponse);
+        when(premioRepository.findResponsesByAgrupacionNombre(search, pageable)).thenReturn(page);
 
-        PageResponse<PremioResponse> result = premioService.obtenerTodosPremios(pageable, search);
+        PageResponse<PremioResponse> result = premioService.obtenerTodosPremios(pageable, search, ModoConteo.EXACTO);
 
         assertNotNull(result);
-        verify(premioRepository).findByAgrupacion_NombreContainingIgnoreCase(search, pageable);
+        verify(premioRepository).findResponsesByAgrupacionNombre(search, pageable);
         // Verificamos que al fallar el Integer.parseInt, entra en el catch y no llama al repo por año
-        verify(premioRepository, never()).findByEdicion_Anho(anyInt(), any());
+        verify(premioRepository, never()).findResponsesByEdicionAnho(anyInt(), any());
     }
 
     // =======================================================
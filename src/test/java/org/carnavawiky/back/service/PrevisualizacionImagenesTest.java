@@ -0,0 +1,74 @@
+package org.carnavawiky.back.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrevisualizacionImagenesTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Debe calcular dimensiones reales, color dominante y un marcador diminuto")
+    void testAnalizar() throws IOException {
+        // Apaisada, casi toda roja con una franja azul
+        BufferedImage imagen = new BufferedImage(1200, 600, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 1200; x++) {
+            for (int y = 0; y < 600; y++) {
+                imagen.setRGB(x, y, x < 900 ? 0xcc2020 : 0x2020cc);
+            }
+        }
+        Path fichero = tempDir.resolve("cartel.jpg");
+        ImageIO.write(imagen, "jpg", fichero.toFile());
+
+        PrevisualizacionImagenes.Previsualizacion previsualizacion = PrevisualizacionImagenes.analizar(fichero);
+
+        assertEquals(1200, previsualizacion.ancho());
+        assertEquals(600, previsualizacion.alto());
+        int dominante = Integer.parseInt(previsualizacion.colorDominante().substring(1), 16);
+        assertTrue(((dominante >> 16) & 0xff) > 0xa0 && (dominante & 0xff) < 0x60,
+                "dominante rojo: " + previsualizacion.colorDominante());
+
+        assertTrue(previsualizacion.marcador().startsWith(PrevisualizacionImagenes.PREFIJO_MARCADOR));
+        byte[] png = Base64.getDecoder().decode(previsualizacion.marcador().substring(PrevisualizacionImagenes.PREFIJO_MARCADOR.length()));
+        assertTrue(png.length < 1024, "marcador de " + png.length + " bytes");
+        BufferedImage marcador = ImageIO.read(new ByteArrayInputStream(png));
+        // Misma proporción, dentro de 16x16
+        assertEquals(16, marcador.getWidth());
+        assertEquals(8, marcador.getHeight());
+    }
+
+    @Test
+    @DisplayName("Una imagen vertical cabe en el marcador por su alto")
+    void testAnalizar_Vertical() throws IOException {
+        Path fichero = tempDir.resolve("vertical.png");
+        ImageIO.write(new BufferedImage(100, 400, BufferedImage.TYPE_INT_RGB), "png", fichero.toFile());
+
+        PrevisualizacionImagenes.Previsualizacion previsualizacion = PrevisualizacionImagenes.analizar(fichero);
+
+        assertEquals("#000000", previsualizacion.colorDominante());
+        byte[] png = Base64.getDecoder().decode(previsualizacion.marcador().substring(PrevisualizacionImagenes.PREFIJO_MARCADOR.length()));
+        BufferedImage marcador = ImageIO.read(new ByteArrayInputStream(png));
+        assertEquals(4, marcador.getWidth());
+        assertEquals(16, marcador.getHeight());
+    }
+
+    @Test
+    @DisplayName("Un fichero que no es una imagen no tiene previsualización")
+    void testAnalizar_NoEsImagen() throws IOException {
+        Path fichero = Files.write(tempDir.resolve("texto.jpg"), "data".getBytes());
+
+        assertNull(PrevisualizacionImagenes.analizar(fichero));
+    }
+}
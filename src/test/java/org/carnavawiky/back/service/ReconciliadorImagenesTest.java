@@ -0,0 +1,205 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.dto.ReconciliacionImagenesResponse;
+import org.carnavawiky.back.model.Imagen;
+import org.carnavawiky.back.model.ImagenBlob;
+import org.carnavawiky.back.repository.ImagenBlobRepository;
+import org.carnavawiky.back.repository.ImagenRepository;
+import org.carnavawiky.back.repository.ImagenVarianteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ReconciliadorImagenesTest {
+
+    private static final String SHA_A = "aa00" + "0".repeat(60);
+    private static final String SHA_B = "bb00" + "0".repeat(60);
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private ImagenRepository imagenRepository;
+
+    @Mock
+    private ImagenBlobRepository imagenBlobRepository;
+
+    @Mock
+    private ImagenVarianteRepository imagenVarianteRepository;
+
+    @Mock
+    private ImagenService imagenService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private AlmacenImagenes almacenImagenes = new AlmacenImagenes();
+
+    @InjectMocks
+    private ReconciliadorImagenes reconciliadorImagenes;
+
+    private Path usada;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ReflectionTestUtils.setField(almacenImagenes, "uploadLocation", tempDir.toString());
+        ReflectionTestUtils.setField(reconciliadorImagenes, "ficherosPorSegundo", 0);
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        usada = antiguo(almacenImagenes.ruta(SHA_A + ".jpg"));
+        when(imagenBlobRepository.findAllSha256()).thenReturn(List.of());
+    }
+
+    @Test
+    @DisplayName("Debe corregir rutas, dar de baja filas sin fichero y borrar ficheros huérfanos antiguos")
+    void testReconciliar() throws IOException {
+        Imagen conFichero = imagen(1L, SHA_A + ".jpg", usada);
+        // Fichero migrado al esquema fragmentado con la fila apuntando aún al plano
+        Path movida = antiguo(almacenImagenes.ruta("uuid-2.jpg"));
+        Imagen rutaVieja = imagen(2L, "uuid-2.jpg", tempDir.resolve("uuid-2.jpg"));
+        Imagen sinFichero = imagen(3L, "uuid-3.jpg", tempDir.resolve("uuid-3.jpg"));
+        filas(conFichero, rutaVieja, sinFichero);
+        when(imagenRepository.findById(2L)).thenReturn(Optional.of(rutaVieja));
+
+        Path huerfano = antiguo(almacenImagenes.ruta("huerfano.jpg"));
+        Path varianteHuerfana = antiguo(almacenImagenes.rutaVariante(SHA_B + "_160.jpg"));
+        Path temporal = antiguo(tempDir.resolve(".subida-123.tmp"));
+        // Subida reanudable en curso desde hace horas: no es asunto de la reconciliación
+        Path subidaEnCurso = antiguo(almacenImagenes.rutaSubida("sesion"));
+        Path reciente = almacenImagenes.ruta("reciente.jpg");
+        Files.createDirectories(reciente.getParent());
+        Files.write(reciente, new byte[1]);
+        when(imagenBlobRepository.findNombreFicheroIn(anyCollection())).thenReturn(List.of(SHA_A + ".jpg"));
+        when(imagenRepository.findNombreFicheroIn(anyCollection())).thenReturn(List.of("uuid-2.jpg"));
+        when(imagenVarianteRepository.findNombreFicheroIn(anyCollection())).thenReturn(List.of());
+
+        ReconciliacionImagenesResponse informe = reconciliadorImagenes.reconciliar();
+
+        assertEquals(3, informe.getFilasRevisadas());
+        assertEquals(movida.toString(), rutaVieja.getRutaAbsoluta());
+        assertEquals(1, informe.getRutasCorregidas());
+        assertEquals(1, informe.getFilasSinFichero());
+        assertEquals(List.of("uuid-3.jpg"), informe.getEjemplosFilasSinFichero());
+        verify(imagenService).eliminarImagen(3L);
+        verify(imagenService, never()).eliminarImagen(1L);
+
+        assertEquals(2, informe.getFicherosHuerfanos());
+        assertEquals(2, informe.getFicherosBorrados());
+        assertEquals(1, informe.getTemporalesBorrados());
+        assertFalse(Files.exists(huerfano));
+        assertFalse(Files.exists(varianteHuerfana));
+        assertFalse(Files.exists(temporal));
+        // Dentro del periodo de gracia y con fila: se conservan
+        assertTrue(Files.exists(reciente));
+        assertTrue(Files.exists(usada));
+        assertTrue(Files.exists(movida));
+        assertTrue(Files.exists(subidaEnCurso));
+        assertSame(informe, reconciliadorImagenes.obtenerUltimoInforme().orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Debe recalcular los contadores de referencias y recolectar los blobs sin filas")
+    void testReconciliar_Referencias() {
+        filas();
+        ImagenBlob descuadrado = new ImagenBlob(SHA_A, SHA_A + ".jpg", usada.toString(), 1L, 3, true);
+        ImagenBlob sinFilas = new ImagenBlob(SHA_B, SHA_B + ".jpg", "x", 1L, 1, true);
+        when(imagenBlobRepository.findAllSha256()).thenReturn(List.of(SHA_A, SHA_B));
+        when(imagenBlobRepository.findBySha256ParaActualizar(SHA_A)).thenReturn(Optional.of(descuadrado));
+        when(imagenBlobRepository.findBySha256ParaActualizar(SHA_B)).thenReturn(Optional.of(sinFilas));
+        when(imagenRepository.countBySha256(SHA_A)).thenReturn(1L);
+        when(imagenRepository.countBySha256(SHA_B)).thenReturn(0L);
+        when(imagenBlobRepository.findNombreFicheroIn(anyCollection())).thenReturn(List.of(SHA_A + ".jpg"));
+
+        ReconciliacionImagenesResponse informe = reconciliadorImagenes.reconciliar();
+
+        assertEquals(1, descuadrado.getReferencias());
+        assertEquals(0, sinFilas.getReferencias());
+        verify(imagenService).recolectarBlob(SHA_B);
+        verify(imagenService, never()).recolectarBlob(SHA_A);
+        assertEquals(2, informe.getReferenciasCorregidas());
+        assertEquals(1, informe.getBlobsRecolectados());
+    }
+
+    @Test
+    @DisplayName("Si faltan demasiados ficheros solo debe informar, sin borrar nada")
+    void testReconciliar_AlmacenSospechoso() throws IOException {
+        List<Imagen> perdidas = new ArrayList<>();
+        LongStream.rangeClosed(1, 10).forEach(id -> perdidas.add(imagen(id, "uuid-" + id + ".jpg", tempDir.resolve("uuid-" + id + ".jpg"))));
+        filas(perdidas.toArray(Imagen[]::new));
+        Path huerfano = antiguo(almacenImagenes.ruta("huerfano.jpg"));
+
+        ReconciliacionImagenesResponse informe = reconciliadorImagenes.reconciliar();
+
+        assertFalse(informe.isLimpieza());
+        assertEquals(10, informe.getFilasSinFichero());
+        assertEquals(0, informe.getFilasEliminadas());
+        verify(imagenService, never()).eliminarImagen(any());
+        assertTrue(Files.exists(huerfano));
+    }
+
+    @Test
+    @DisplayName("El limitador debe repartir las operaciones al ritmo configurado")
+    void testLimitador() {
+        ReconciliadorImagenes.Limitador limitador = new ReconciliadorImagenes.Limitador(100);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < 21; i++) {
+            limitador.esperar();
+        }
+        // 20 intervalos de 10 ms como mínimo
+        assertTrue(System.nanoTime() - inicio >= 190_000_000L);
+    }
+
+    private void filas(Imagen... imagenes) {
+        when(imagenRepository.findAllBy(any(ScrollPosition.class), any(), any()))
+                .thenReturn(Window.from(List.of(imagenes), ScrollPosition::offset));
+    }
+
+    private static Imagen imagen(Long id, String nombreFichero, Path ruta) {
+        Imagen imagen = new Imagen();
+        imagen.setId(id);
+        imagen.setNombreFichero(nombreFichero);
+        imagen.setRutaAbsoluta(ruta.toString());
+        return imagen;
+    }
+
+    // Fichero escrito hace dos horas: fuera del periodo de gracia
+    private static Path antiguo(Path fichero) throws IOException {
+        Files.createDirectories(fichero.getParent());
+        Files.write(fichero, new byte[1]);
+        Files.setLastModifiedTime(fichero, FileTime.from(Instant.now().minus(2, ChronoUnit.HOURS)));
+        return fichero;
+    }
+}
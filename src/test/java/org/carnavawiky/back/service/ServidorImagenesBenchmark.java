@@ -0,0 +1,104 @@
+package org.carnavawiky.back.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Micro-benchmark (JMH) del envío de imágenes: ServidorImagenes frente al ResourceHttpRequestHandler
+ * de Spring que servía antes /api/imagenes/**, con una imagen pequeña (cacheada en memoria)
+ * y otra grande (transferTo), completas o con una petición Range.
+ * El sendfile de Tomcat no se puede medir aquí: necesita un conector real.
+ * <p>
+ * Ejecutar con: mvn test-compile y lanzar el main desde el IDE (o con el classpath de test).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServidorImagenesBenchmark {
+
+    @Param({"20000", "2000000"})
+    public int bytes;
+
+    @Param({"", "bytes=0-16383"})
+    public String rango;
+
+    private Path directorio;
+    private ServidorImagenes servidorImagenes;
+    private ResourceHttpRequestHandler manejadorSpring;
+
+    @Setup
+    public void setUp() throws Exception {
+        directorio = Files.createTempDirectory("benchmark-imagenes");
+        byte[] contenido = new byte[bytes];
+        new Random(1).nextBytes(contenido);
+        Files.write(directorio.resolve("foto.jpg"), contenido);
+
+        AlmacenImagenes almacenImagenes = new AlmacenImagenes();
+        ReflectionTestUtils.setField(almacenImagenes, "uploadLocation", directorio.toString());
+        servidorImagenes = new ServidorImagenes();
+        ReflectionTestUtils.setField(servidorImagenes, "almacenImagenes", almacenImagenes);
+
+        manejadorSpring = new ResourceHttpRequestHandler();
+        manejadorSpring.setLocations(List.of(new FileSystemResource(directorio.toString() + "/")));
+        manejadorSpring.setServletContext(new MockServletContext());
+        manejadorSpring.afterPropertiesSet();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> ficheros = Files.walk(directorio)) {
+            ficheros.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int servidorImagenes() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servidorImagenes.servirOriginal("foto.jpg", peticion(), response);
+        return response.getContentAsByteArray().length;
+    }
+
+    @Benchmark
+    public int resourceHttpRequestHandler() throws Exception {
+        MockHttpServletRequest request = peticion();
+        request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, "foto.jpg");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        manejadorSpring.handleRequest(request, response);
+        return response.getContentAsByteArray().length;
+    }
+
+    private MockHttpServletRequest peticion() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/imagenes/foto.jpg");
+        if (!rango.isEmpty()) {
+            request.addHeader("Range", rango);
+        }
+        return request;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ServidorImagenesBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,242 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.exception.FileNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServidorImagenesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ServidorImagenes servidorImagenes;
+
+    private byte[] pequena;
+    private byte[] grande;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        AlmacenImagenes almacenImagenes = new AlmacenImagenes();
+        ReflectionTestUtils.setField(almacenImagenes, "uploadLocation", tempDir.toString());
+
+        servidorImagenes = new ServidorImagenes();
+        ReflectionTestUtils.setField(servidorImagenes, "almacenImagenes", almacenImagenes);
+        ReflectionTestUtils.setField(servidorImagenes, "maxBytesFichero", 1024L);
+        ReflectionTestUtils.setField(servidorImagenes, "maxBytesCache", 2048L);
+
+        Random random = new Random(3);
+        pequena = new byte[1000];
+        random.nextBytes(pequena);
+        grande = new byte[100_000];
+        random.nextBytes(grande);
+        Files.write(tempDir.resolve("pequena.jpg"), pequena);
+        Files.write(tempDir.resolve("grande.png"), grande);
+    }
+
+    @Test
+    @DisplayName("Debe servir una imagen pequeña completa y guardarla en la caché")
+    void testServir_Pequena() throws IOException {
+        MockHttpServletResponse response = servir("pequena.jpg", "GET", null, false);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("image/jpeg", response.getContentType());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertEquals(1000, response.getContentLengthLong());
+        assertArrayEquals(pequena, response.getContentAsByteArray());
+        assertEquals(1000, servidorImagenes.bytesEnCache());
+
+        // Segunda petición desde la caché: mismo contenido sin crecer
+        assertArrayEquals(pequena, servir("pequena.jpg", "GET", null, false).getContentAsByteArray());
+        assertEquals(1000, servidorImagenes.bytesEnCache());
+    }
+
+    @Test
+    @DisplayName("Debe servir intervalos con 206 y rechazar los imposibles con 416")
+    void testServir_Rangos() throws IOException {
+        MockHttpServletResponse parcial = servir("grande.png", "GET", "bytes=100-199", false);
+        assertEquals(206, parcial.getStatus());
+        assertEquals("bytes 100-199/100000", parcial.getHeader("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(grande, 100, 200), parcial.getContentAsByteArray());
+
+        MockHttpServletResponse sufijo = servir("pequena.jpg", "GET", "bytes=-10", false);
+        assertEquals(206, sufijo.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(pequena, 990, 1000), sufijo.getContentAsByteArray());
+
+        MockHttpServletResponse abierto = servir("grande.png", "GET", "bytes=99990-", false);
+        assertEquals("bytes 99990-99999/100000", abierto.getHeader("Content-Range"));
+        assertEquals(10, abierto.getContentAsByteArray().length);
+
+        MockHttpServletResponse imposible = servir("pequena.jpg", "GET", "bytes=5000-", false);
+        assertEquals(416, imposible.getStatus());
+        assertEquals("bytes */1000", imposible.getHeader("Content-Range"));
+
+        // Varios intervalos: se ignora la cabecera y se envía todo
+        MockHttpServletResponse varios = servir("pequena.jpg", "GET", "bytes=0-1,5-6", false);
+        assertEquals(200, varios.getStatus());
+        assertEquals(1000, varios.getContentAsByteArray().length);
+    }
+
+    @Test
+    @DisplayName("Debe delegar las imágenes grandes en el sendfile de Tomcat cuando está disponible")
+    void testServir_Sendfile() throws IOException {
+        MockHttpServletRequest request = peticion("GET", "bytes=1000-");
+        request.setAttribute(ServidorImagenes.SENDFILE_SUPPORT, Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        servidorImagenes.servirOriginal("grande.png", request, response);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(99_000, response.getContentLengthLong());
+        assertEquals(tempDir.resolve("grande.png").toAbsolutePath().toString(), request.getAttribute(ServidorImagenes.SENDFILE_FILENAME));
+        assertEquals(1000L, request.getAttribute(ServidorImagenes.SENDFILE_START));
+        assertEquals(100_000L, request.getAttribute(ServidorImagenes.SENDFILE_END));
+        assertEquals(0, response.getContentAsByteArray().length);
+        // Las grandes no ocupan la caché
+        assertEquals(0, servidorImagenes.bytesEnCache());
+    }
+
+    @Test
+    @DisplayName("Sin sendfile debe copiar la imagen grande con transferTo")
+    void testServir_TransferTo() throws IOException {
+        MockHttpServletResponse response = servir("grande.png", "GET", null, false);
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(grande, response.getContentAsByteArray());
+    }
+
+    @Test
+    @DisplayName("HEAD debe devolver solo las cabeceras")
+    void testServir_Head() throws IOException {
+        MockHttpServletResponse response = servir("pequena.jpg", "HEAD", null, false);
+
+        assertEquals(1000, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    @DisplayName("La caché debe respetar su tamaño total y no servir ficheros cambiados o borrados")
+    void testCache_ExpulsionYCambios() throws IOException {
+        Files.write(tempDir.resolve("otra.jpg"), new byte[900]);
+        Files.write(tempDir.resolve("tercera.jpg"), new byte[800]);
+
+        servir("pequena.jpg", "GET", null, false);
+        servir("otra.jpg", "GET", null, false);
+        servir("tercera.jpg", "GET", null, false);
+        // 1000 + 900 + 800 > 2048: sale la menos usada recientemente
+        assertEquals(1700, servidorImagenes.bytesEnCache());
+
+        // Fichero sustituido por otro contenido del mismo tamaño
+        byte[] nuevo = new byte[900];
+        Arrays.fill(nuevo, (byte) 7);
+        Files.write(tempDir.resolve("otra.jpg"), nuevo);
+        Files.setLastModifiedTime(tempDir.resolve("otra.jpg"), FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        assertArrayEquals(nuevo, servir("otra.jpg", "GET", null, false).getContentAsByteArray());
+
+        Files.delete(tempDir.resolve("tercera.jpg"));
+        assertThrows(FileNotFoundException.class, () -> servir("tercera.jpg", "GET", null, false));
+    }
+
+    @Test
+    @DisplayName("Los ficheros direccionados por contenido deben ser inmutables y responder 304 a su ETag")
+    void testCache_Inmutable() throws IOException {
+        String sha = "3a6e" + "0".repeat(56) + "c8b7";
+        Files.write(tempDir.resolve(sha + ".jpg"), pequena);
+
+        MockHttpServletResponse response = servir(sha + ".jpg", "GET", null, false);
+        assertEquals(ServidorImagenes.CACHE_INMUTABLE, response.getHeader("Cache-Control"));
+        assertEquals("\"" + sha + "\"", response.getHeader("ETag"));
+
+        MockHttpServletRequest condicional = peticion("GET", null);
+        condicional.addHeader("If-None-Match", "\"otra\", W/\"" + sha + "\"");
+        MockHttpServletResponse noModificada = new MockHttpServletResponse();
+        servidorImagenes.servirOriginal(sha + ".jpg", condicional, noModificada);
+        assertEquals(304, noModificada.getStatus());
+        assertEquals(0, noModificada.getContentAsByteArray().length);
+        assertEquals(ServidorImagenes.CACHE_INMUTABLE, noModificada.getHeader("Cache-Control"));
+
+        // Las variantes llevan el ancho en la ETag
+        Files.createDirectories(tempDir.resolve(AlmacenImagenes.DIRECTORIO_VARIANTES));
+        Files.write(tempDir.resolve(AlmacenImagenes.DIRECTORIO_VARIANTES).resolve(sha + "_480.jpg"), pequena);
+        assertEquals("\"" + sha + "_480\"", servir(sha + "_480.jpg", "GET", null, true).getHeader("ETag"));
+    }
+
+    @Test
+    @DisplayName("Los nombres antiguos deben revalidarse con ETag de tamaño y fecha")
+    void testCache_NombreAntiguo() throws IOException {
+        MockHttpServletResponse response = servir("pequena.jpg", "GET", null, false);
+        assertEquals(ServidorImagenes.CACHE_REVALIDAR, response.getHeader("Cache-Control"));
+        String etag = response.getHeader("ETag");
+        assertNotNull(etag);
+
+        MockHttpServletRequest condicional = peticion("GET", null);
+        condicional.addHeader("If-None-Match", etag);
+        MockHttpServletResponse noModificada = new MockHttpServletResponse();
+        servidorImagenes.servirOriginal("pequena.jpg", condicional, noModificada);
+        assertEquals(304, noModificada.getStatus());
+
+        Files.setLastModifiedTime(tempDir.resolve("pequena.jpg"), FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        MockHttpServletResponse cambiada = new MockHttpServletResponse();
+        servidorImagenes.servirOriginal("pequena.jpg", condicional, cambiada);
+        assertEquals(200, cambiada.getStatus());
+        assertNotEquals(etag, cambiada.getHeader("ETag"));
+    }
+
+    @Test
+    @DisplayName("If-Range debe enviar el intervalo solo si la versión coincide")
+    void testServir_IfRange() throws IOException {
+        String etag = servir("grande.png", "GET", null, false).getHeader("ETag");
+
+        MockHttpServletRequest vigente = peticion("GET", "bytes=0-9");
+        vigente.addHeader("If-Range", etag);
+        MockHttpServletResponse parcial = new MockHttpServletResponse();
+        servidorImagenes.servirOriginal("grande.png", vigente, parcial);
+        assertEquals(206, parcial.getStatus());
+
+        MockHttpServletRequest caducada = peticion("GET", "bytes=0-9");
+        caducada.addHeader("If-Range", "\"otra-version\"");
+        MockHttpServletResponse completa = new MockHttpServletResponse();
+        servidorImagenes.servirOriginal("grande.png", caducada, completa);
+        assertEquals(200, completa.getStatus());
+        assertEquals(100_000, completa.getContentAsByteArray().length);
+    }
+
+    @Test
+    @DisplayName("Debe rechazar nombres con rutas o ficheros ocultos")
+    void testServir_NombresNoValidos() {
+        assertThrows(FileNotFoundException.class, () -> servir("../secreto.jpg", "GET", null, false));
+        assertThrows(FileNotFoundException.class, () -> servir(".subida-123.tmp", "GET", null, false));
+        assertThrows(FileNotFoundException.class, () -> servir("no-existe.jpg", "GET", null, false));
+    }
+
+    private MockHttpServletResponse servir(String nombre, String metodo, String rango, boolean variante) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        if (variante) {
+            servidorImagenes.servirVariante(nombre, peticion(metodo, rango), response);
+        } else {
+            servidorImagenes.servirOriginal(nombre, peticion(metodo, rango), response);
+        }
+        return response;
+    }
+
+    private static MockHttpServletRequest peticion(String metodo, String rango) {
+        MockHttpServletRequest request = new MockHttpServletRequest(metodo, "/api/imagenes/x");
+        if (rango != null) {
+            request.addHeader("Range", rango);
+        }
+        return request;
+    }
+}
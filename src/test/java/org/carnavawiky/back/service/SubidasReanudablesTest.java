@@ -0,0 +1,213 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.dto.ImagenResponse;
+import org.carnavawiky.back.dto.SubidaImagenRequest;
+import org.carnavawiky.back.dto.SubidaImagenResponse;
+import org.carnavawiky.back.exception.BadRequestException;
+import org.carnavawiky.back.exception.ResourceNotFoundException;
+import org.carnavawiky.back.model.SubidaImagen;
+import org.carnavawiky.back.repository.AgrupacionRepository;
+import org.carnavawiky.back.repository.SubidaImagenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SubidasReanudablesTest {
+
+    // SHA-256 de "data"
+    private static final String SHA_DATA = "3a6eb0790f39ac87c94f3856b2dd2c5d110e6811602261a9a923d3bb23adc8b7";
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private SubidaImagenRepository subidaImagenRepository;
+
+    @Mock
+    private AgrupacionRepository agrupacionRepository;
+
+    @Mock
+    private ImagenService imagenService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private AlmacenImagenes almacenImagenes = new AlmacenImagenes();
+
+    @InjectMocks
+    private SubidasReanudables subidasReanudables;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(almacenImagenes, "uploadLocation", tempDir.toString());
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    @DisplayName("Debe crear la sesión con el fichero preasignado a su tamaño final")
+    void testCrear() throws IOException {
+        when(agrupacionRepository.existsById(10L)).thenReturn(true);
+
+        SubidaImagenResponse subida = subidasReanudables.crear(new SubidaImagenRequest(10L, "cartel.JPG", 4L, true));
+
+        assertEquals(0L, subida.getRecibidos());
+        assertTrue(subida.getExpira().isAfter(Instant.now()));
+        assertEquals(4L, Files.size(almacenImagenes.rutaSubida(subida.getId())));
+        ArgumentCaptor<SubidaImagen> captor = ArgumentCaptor.forClass(SubidaImagen.class);
+        verify(subidaImagenRepository).save(captor.capture());
+        assertEquals(subida.getId(), captor.getValue().getId());
+        assertTrue(captor.getValue().getEsPortada());
+    }
+
+    @Test
+    @DisplayName("Debe rechazar una sesión mayor que el tamaño máximo sin dejar fichero")
+    void testCrear_DemasiadoGrande() throws IOException {
+        when(agrupacionRepository.existsById(10L)).thenReturn(true);
+        ReflectionTestUtils.setField(almacenImagenes, "maxBytes", 3L);
+
+        assertThrows(BadRequestException.class,
+                () -> subidasReanudables.crear(new SubidaImagenRequest(10L, "cartel.jpg", 4L, false)));
+
+        verify(subidaImagenRepository, never()).save(any());
+        assertFalse(Files.exists(almacenImagenes.directorioSubidas()));
+    }
+
+    @Test
+    @DisplayName("Debe escribir cada trozo en su posición y admitir el reenvío de bytes ya recibidos")
+    void testEscribir_Posicional() throws IOException {
+        SubidaImagen subida = sesion("s1", 4L, 0L);
+        Path parte = almacenImagenes.rutaSubida("s1");
+        almacenImagenes.reservar(parte, 4L);
+
+        subidasReanudables.escribir("s1", 0, new ByteArrayInputStream("da".getBytes()));
+        verify(subidaImagenRepository).avanzar(eq("s1"), eq(0L), eq(2L), any());
+
+        // Tras un corte, el cliente reenvía desde el byte 1 (ya tenía el 0 y el 1)
+        subida.setRecibidos(2L);
+        subidasReanudables.escribir("s1", 1, new ByteArrayInputStream("ata".getBytes()));
+        verify(subidaImagenRepository).avanzar(eq("s1"), eq(1L), eq(4L), any());
+
+        assertEquals("data", Files.readString(parte));
+    }
+
+    @Test
+    @DisplayName("Debe rechazar un trozo que deja un hueco o se sale del tamaño declarado")
+    void testEscribir_FueraDeRango() throws IOException {
+        sesion("s1", 4L, 2L);
+        almacenImagenes.reservar(almacenImagenes.rutaSubida("s1"), 4L);
+
+        assertThrows(BadRequestException.class,
+                () -> subidasReanudables.escribir("s1", 3, new ByteArrayInputStream("a".getBytes())));
+        assertThrows(BadRequestException.class,
+                () -> subidasReanudables.escribir("s1", 2, new ByteArrayInputStream("abc".getBytes())));
+        verify(subidaImagenRepository, never()).avanzar(anyString(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Una sesión caducada ya no admite trozos")
+    void testEscribir_Caducada() {
+        SubidaImagen subida = sesion("s1", 4L, 0L);
+        subida.setExpira(Instant.now().minusSeconds(1));
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> subidasReanudables.escribir("s1", 0, new ByteArrayInputStream("data".getBytes())));
+    }
+
+    @Test
+    @DisplayName("Debe finalizar una subida completa registrándola como una subida normal")
+    void testFinalizar() throws IOException {
+        SubidaImagen subida = sesion("s1", 4L, 4L);
+        Path parte = almacenImagenes.rutaSubida("s1");
+        almacenImagenes.reservar(parte, 4L);
+        almacenImagenes.escribirEn(parte, 0, new ByteArrayInputStream("data".getBytes()));
+        ImagenResponse respuesta = new ImagenResponse();
+        when(imagenService.registrarRecibida(eq(10L), any(), eq(true))).thenReturn(respuesta);
+
+        assertSame(respuesta, subidasReanudables.finalizar("s1"));
+
+        verify(subidaImagenRepository).delete(subida);
+        verify(imagenService).registrarRecibida(eq(10L),
+                argThat(f -> f.sha256().equals(SHA_DATA) && f.tamanoBytes() == 4 && f.nombreFichero().equals(SHA_DATA + ".jpg")),
+                eq(true));
+    }
+
+    @Test
+    @DisplayName("No debe finalizar una subida a la que le faltan bytes")
+    void testFinalizar_Incompleta() {
+        sesion("s1", 4L, 2L);
+
+        assertThrows(BadRequestException.class, () -> subidasReanudables.finalizar("s1"));
+
+        verify(subidaImagenRepository, never()).delete(any());
+        verifyNoInteractions(imagenService);
+    }
+
+    @Test
+    @DisplayName("Debe borrar las sesiones caducadas y los ficheros de subida sin sesión")
+    void testCaducar() throws IOException {
+        SubidaImagen caducada = sesion("vieja", 4L, 1L);
+        caducada.setExpira(Instant.now().minusSeconds(1));
+        Path parteCaducada = almacenImagenes.rutaSubida("vieja");
+        almacenImagenes.reservar(parteCaducada, 4L);
+        when(subidaImagenRepository.findIdsCaducadas(any())).thenReturn(List.of("vieja"));
+
+        Path huerfana = almacenImagenes.rutaSubida("sin-sesion");
+        almacenImagenes.reservar(huerfana, 4L);
+        Files.setLastModifiedTime(huerfana, FileTime.from(Instant.now().minus(2, ChronoUnit.DAYS)));
+        Path enCurso = almacenImagenes.rutaSubida("en-curso");
+        almacenImagenes.reservar(enCurso, 4L);
+        Files.setLastModifiedTime(enCurso, FileTime.from(Instant.now().minus(2, ChronoUnit.DAYS)));
+        when(subidaImagenRepository.existsById("en-curso")).thenReturn(true);
+
+        assertEquals(2, subidasReanudables.caducar());
+
+        verify(subidaImagenRepository).delete(caducada);
+        assertFalse(Files.exists(parteCaducada));
+        assertFalse(Files.exists(huerfana));
+        assertTrue(Files.exists(enCurso));
+    }
+
+    private SubidaImagen sesion(String id, long tamano, long recibidos) {
+        SubidaImagen subida = new SubidaImagen();
+        subida.setId(id);
+        subida.setAgrupacionId(10L);
+        subida.setNombreOriginal("cartel.jpg");
+        subida.setEsPortada(true);
+        subida.setTamanoBytes(tamano);
+        subida.setRecibidos(recibidos);
+        subida.setExpira(Instant.now().plus(1, ChronoUnit.HOURS));
+        when(subidaImagenRepository.findById(id)).thenReturn(Optional.of(subida));
+        when(subidaImagenRepository.findByIdParaActualizar(id)).thenReturn(Optional.of(subida));
+        return subida;
+    }
+}
@@ -11,6 +11,7 @@ import org.carnavawiky.back.model.Role;
 import org.carnavawiky.back.model.Usuario;
 import org.carnavawiky.back.repository.RoleRepository;
 import org.carnavawiky.back.repository.UsuarioRepository;
+import org.carnavawiky.back.security.EstadoUsuarioCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -44,6 +45,8 @@ class UsuarioServiceTest {
     private UsuarioMapper usuarioMapper;
     @Mock
     private PasswordEncoder passwordEncoder;
+    @Mock
+    private EstadoUsuarioCache estadoUsuarios;
 
     @InjectMocks
     private UsuarioService usuarioService;
@@ -132,6 +135,8 @@ class UsuarioServiceTest {
         assertNotNull(result);
         verify(passwordEncoder).encode("new_pass");
         verify(usuarioRepository).save(any());
+        // La autenticación por JWT deja de usar el estado anterior
+        verify(estadoUsuarios).invalidar(usuario.getUsername());
     }
 
     @Test
@@ -142,5 +147,6 @@ class UsuarioServiceTest {
 
         assertDoesNotThrow(() -> usuarioService.eliminarUsuario(1L));
         verify(usuarioRepository).deleteById(1L);
+        verify(estadoUsuarios).invalidarTodos();
     }
 }
\ No newline at end of file
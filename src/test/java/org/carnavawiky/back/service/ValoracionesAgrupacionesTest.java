@@ -0,0 +1,183 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.config.CacheConfig;
+import org.carnavawiky.back.dto.ValoracionResponse;
+import org.carnavawiky.back.exception.ResourceNotFoundException;
+import org.carnavawiky.back.model.Agrupacion;
+import org.carnavawiky.back.model.Comentario;
+import org.carnavawiky.back.model.ValoracionAgrupacion;
+import org.carnavawiky.back.repository.AgrupacionRepository;
+import org.carnavawiky.back.repository.ValoracionAgrupacionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ValoracionesAgrupacionesTest {
+
+    @Mock
+    private ValoracionAgrupacionRepository valoracionRepository;
+
+    @Mock
+    private AgrupacionRepository agrupacionRepository;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @InjectMocks
+    private ValoracionesAgrupaciones valoraciones;
+
+    private Agrupacion agrupacion;
+    private Comentario comentario;
+
+    @BeforeEach
+    void setUp() {
+        agrupacion = new Agrupacion();
+        agrupacion.setId(10L);
+
+        comentario = new Comentario();
+        comentario.setAgrupacion(agrupacion);
+        comentario.setPuntuacion(4);
+        comentario.setAprobado(true);
+    }
+
+    @Test
+    @DisplayName("Debe sumar la puntuación con un UPDATE atómico y desalojar la agrupación cacheada")
+    void testSumar() {
+        ConcurrentMapCache cache = new ConcurrentMapCache(CacheConfig.AGRUPACION_BY_ID);
+        cache.put(10L, "cacheada");
+        when(cacheManager.getCache(CacheConfig.AGRUPACION_BY_ID)).thenReturn(cache);
+        when(valoracionRepository.acumular(10L, 4, 1)).thenReturn(1);
+
+        valoraciones.sumar(comentario);
+
+        verify(valoracionRepository).actualizarMedia(10L);
+        verify(valoracionRepository, never()).crearVacia(any());
+        verifyNoInteractions(agrupacionRepository);
+        assertNull(cache.get(10L));
+    }
+
+    @Test
+    @DisplayName("La primera puntuación crea la fila bajo el bloqueo de la agrupación")
+    void testSumar_PrimeraPuntuacion() {
+        when(valoracionRepository.acumular(10L, 4, -1)).thenReturn(0, 0, 1);
+        when(agrupacionRepository.findByIdParaActualizar(10L)).thenReturn(Optional.of(agrupacion));
+
+        valoraciones.restar(comentario);
+
+        InOrder orden = inOrder(valoracionRepository, agrupacionRepository);
+        orden.verify(valoracionRepository).acumular(10L, 4, -1);
+        orden.verify(agrupacionRepository).findByIdParaActualizar(10L);
+        orden.verify(valoracionRepository).acumular(10L, 4, -1);
+        orden.verify(valoracionRepository).crearVacia(10L);
+        orden.verify(valoracionRepository).acumular(10L, 4, -1);
+        orden.verify(valoracionRepository).actualizarMedia(10L);
+    }
+
+    @Test
+    @DisplayName("Si otra transacción creó la fila mientras se esperaba el bloqueo, no se vuelve a crear")
+    void testSumar_FilaCreadaPorOtra() {
+        when(valoracionRepository.acumular(10L, 4, 1)).thenReturn(0, 1);
+        when(agrupacionRepository.findByIdParaActualizar(10L)).thenReturn(Optional.of(agrupacion));
+
+        valoraciones.sumar(comentario);
+
+        verify(valoracionRepository, never()).crearVacia(any());
+        verify(valoracionRepository, times(2)).acumular(10L, 4, 1);
+    }
+
+    @Test
+    @DisplayName("Debe fallar si la agrupación ya no existe")
+    void testSumar_AgrupacionInexistente() {
+        when(valoracionRepository.acumular(10L, 4, 1)).thenReturn(0);
+        when(agrupacionRepository.findByIdParaActualizar(10L)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> valoraciones.sumar(comentario));
+        verify(valoracionRepository, never()).crearVacia(any());
+    }
+
+    @Test
+    @DisplayName("Los comentarios sin aprobar o sin puntuación no cuentan")
+    void testSumar_NoCuenta() {
+        comentario.setAprobado(false);
+        valoraciones.sumar(comentario);
+
+        comentario.setAprobado(true);
+        comentario.setPuntuacion(null);
+        valoraciones.restar(comentario);
+
+        verifyNoInteractions(valoracionRepository, agrupacionRepository, cacheManager);
+    }
+
+    @Test
+    @DisplayName("Un lote aprobado hace un UPDATE por agrupación y puntuación, y recalcula cada media una vez")
+    void testSumarAprobados() {
+        Agrupacion otra = new Agrupacion();
+        otra.setId(20L);
+        Comentario otraCuatro = new Comentario();
+        otraCuatro.setAgrupacion(agrupacion);
+        otraCuatro.setPuntuacion(4);
+        Comentario cinco = new Comentario();
+        cinco.setAgrupacion(otra);
+        cinco.setPuntuacion(5);
+        Comentario sinPuntuacion = new Comentario();
+        sinPuntuacion.setAgrupacion(otra);
+        when(valoracionRepository.acumular(anyLong(), anyLong(), anyLong())).thenReturn(1);
+
+        valoraciones.sumarAprobados(List.of(cinco, comentario, sinPuntuacion, otraCuatro));
+
+        verify(valoracionRepository).acumular(10L, 4, 2);
+        verify(valoracionRepository).acumular(20L, 5, 1);
+        verify(valoracionRepository, times(2)).acumular(anyLong(), anyLong(), anyLong());
+        InOrder orden = inOrder(valoracionRepository);
+        orden.verify(valoracionRepository).actualizarMedia(10L);
+        orden.verify(valoracionRepository).actualizarMedia(20L);
+    }
+
+    @Test
+    @DisplayName("Debe devolver las valoraciones de una página, a cero las agrupaciones sin puntuaciones")
+    void testObtener_Pagina() {
+        ValoracionAgrupacion valoracion = new ValoracionAgrupacion();
+        valoracion.setAgrupacionId(10L);
+        valoracion.setNumero(2L);
+        valoracion.setSuma(9L);
+        valoracion.setVotos4(1L);
+        valoracion.setVotos5(1L);
+        valoracion.setMedia(4.5);
+        when(valoracionRepository.findAllById(List.of(10L, 20L))).thenReturn(List.of(valoracion));
+
+        Map<Long, ValoracionResponse> resultado = valoraciones.obtener(List.of(10L, 20L));
+
+        assertEquals(4.5, resultado.get(10L).getMedia());
+        assertEquals(List.of(0L, 0L, 0L, 1L, 1L), resultado.get(10L).getHistograma());
+        assertEquals(0L, resultado.get(20L).getNumero());
+        assertNull(resultado.get(20L).getMedia());
+    }
+
+    @Test
+    @DisplayName("La carga inicial solo se hace con la tabla vacía")
+    void testInicializar() {
+        when(valoracionRepository.count()).thenReturn(3L);
+        valoraciones.inicializar();
+        verify(valoracionRepository, never()).recalcularTodas();
+
+        when(valoracionRepository.count()).thenReturn(0L);
+        valoraciones.inicializar();
+        verify(valoracionRepository).recalcularTodas();
+    }
+}
@@ -0,0 +1,177 @@
+package org.carnavawiky.back.service;
+
+import org.carnavawiky.back.model.ImagenBlob;
+import org.carnavawiky.back.model.ImagenVariante;
+import org.carnavawiky.back.repository.ImagenBlobRepository;
+import org.carnavawiky.back.repository.ImagenVarianteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VariantesImagenesTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private ImagenBlobRepository imagenBlobRepository;
+
+    @Mock
+    private ImagenVarianteRepository imagenVarianteRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private AlmacenImagenes almacenImagenes = new AlmacenImagenes();
+
+    @InjectMocks
+    private VariantesImagenes variantesImagenes;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(almacenImagenes, "uploadLocation", tempDir.toString());
+    }
+
+    @Test
+    @DisplayName("Debe generar las variantes menores que el original manteniendo la proporción")
+    void testGenerar_Png() throws IOException {
+        ImagenBlob blob = blob("png1", imagen(2000, 1000, "png"), ".png");
+        ejecutarTransaccionesEnLinea();
+        when(imagenBlobRepository.findBySha256ParaActualizar("png1")).thenReturn(Optional.of(blob));
+
+        variantesImagenes.generar("png1");
+
+        List<ImagenVariante> variantes = variantesGuardadas();
+        assertEquals(List.of(160, 480, 1080), variantes.stream().map(ImagenVariante::getAncho).toList());
+        assertEquals(List.of(80, 240, 540), variantes.stream().map(ImagenVariante::getAlto).toList());
+        for (ImagenVariante variante : variantes) {
+            BufferedImage leida = ImageIO.read(Path.of(variante.getRutaAbsoluta()).toFile());
+            assertEquals(variante.getAncho(), leida.getWidth());
+            assertTrue(variante.getNombreFichero().endsWith(".png"));
+            assertEquals(Files.size(Path.of(variante.getRutaAbsoluta())), variante.getTamanoBytes());
+        }
+        assertTrue(blob.getVariantesGeneradas());
+    }
+
+    @Test
+    @DisplayName("No debe ampliar y debe quitar el EXIF del JPEG original")
+    void testGenerar_JpegConExif() throws IOException {
+        byte[] jpeg = insertarExif(imagen(300, 200, "jpg"));
+        ImagenBlob blob = blob("jpg1", jpeg, ".jpg");
+        ejecutarTransaccionesEnLinea();
+        when(imagenBlobRepository.findBySha256ParaActualizar("jpg1")).thenReturn(Optional.of(blob));
+
+        variantesImagenes.generar("jpg1");
+
+        List<ImagenVariante> variantes = variantesGuardadas();
+        assertEquals(1, variantes.size());
+        assertEquals(160, variantes.get(0).getAncho());
+        String contenido = new String(Files.readAllBytes(Path.of(variantes.get(0).getRutaAbsoluta())), StandardCharsets.ISO_8859_1);
+        assertFalse(contenido.contains("Exif"));
+    }
+
+    @Test
+    @DisplayName("Un fichero que no es imagen se marca como procesado sin variantes")
+    void testGenerar_NoEsImagen() throws IOException {
+        ImagenBlob blob = blob("txt1", "no soy una imagen".getBytes(), ".jpg");
+        ejecutarTransaccionesEnLinea();
+        when(imagenBlobRepository.findBySha256ParaActualizar("txt1")).thenReturn(Optional.of(blob));
+
+        variantesImagenes.generar("txt1");
+
+        assertTrue(variantesGuardadas().isEmpty());
+        assertTrue(blob.getVariantesGeneradas());
+    }
+
+    @Test
+    @DisplayName("Si el blob se borra mientras se generan, las copias se eliminan")
+    void testGenerar_BlobBorradoEntretanto() throws IOException {
+        blob("png2", imagen(1000, 1000, "png"), ".png");
+        ejecutarTransaccionesEnLinea();
+        when(imagenBlobRepository.findBySha256ParaActualizar("png2")).thenReturn(Optional.empty());
+
+        variantesImagenes.generar("png2");
+
+        verify(imagenVarianteRepository, never()).saveAll(any());
+        // Quedan los directorios del esquema fragmentado, pero ningún fichero
+        try (var ficheros = Files.walk(tempDir.resolve(AlmacenImagenes.DIRECTORIO_VARIANTES))) {
+            assertEquals(0, ficheros.filter(Files::isRegularFile).count());
+        }
+    }
+
+    // =======================================================
+    // UTILIDADES
+    // =======================================================
+
+    private ImagenBlob blob(String sha256, byte[] contenido, String extension) throws IOException {
+        Path fichero = Files.write(tempDir.resolve(sha256 + extension), contenido);
+        ImagenBlob blob = new ImagenBlob(sha256, sha256 + extension, fichero.toString(), (long) contenido.length, 1, false);
+        when(imagenBlobRepository.findById(sha256)).thenReturn(Optional.of(blob));
+        return blob;
+    }
+
+    private static byte[] imagen(int ancho, int alto, String formato) throws IOException {
+        BufferedImage imagen = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < ancho; x++) {
+            for (int y = 0; y < alto; y++) {
+                imagen.setRGB(x, y, (x * 255 / ancho) << 16 | (y * 255 / alto) << 8);
+            }
+        }
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        ImageIO.write(imagen, formato, salida);
+        return salida.toByteArray();
+    }
+
+    // Segmento APP1 "Exif" justo después del SOI, como lo dejan las cámaras
+    private static byte[] insertarExif(byte[] jpeg) {
+        byte[] datos = "Exif\0\0GPS-Cadiz-36.5N".getBytes(StandardCharsets.ISO_8859_1);
+        int longitud = datos.length + 2;
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        salida.write(jpeg, 0, 2);
+        salida.write(0xFF);
+        salida.write(0xE1);
+        salida.write(longitud >> 8);
+        salida.write(longitud & 0xFF);
+        salida.write(datos, 0, datos.length);
+        salida.write(jpeg, 2, jpeg.length - 2);
+        return salida.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ImagenVariante> variantesGuardadas() {
+        ArgumentCaptor<List<ImagenVariante>> captor = ArgumentCaptor.forClass(List.class);
+        verify(imagenVarianteRepository).saveAll(captor.capture());
+        return captor.getValue();
+    }
+
+    private void ejecutarTransaccionesEnLinea() {
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+}